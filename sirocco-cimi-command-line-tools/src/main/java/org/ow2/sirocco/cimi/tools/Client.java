@@ -24,12 +24,15 @@
  */
 package org.ow2.sirocco.cimi.tools;
 
+import java.io.File;
+
 import javax.ws.rs.core.MediaType;
 
 import org.ow2.sirocco.cimi.sdk.CimiClient;
 import org.ow2.sirocco.cimi.sdk.CimiClient.Options;
 import org.ow2.sirocco.cimi.sdk.CimiClientException;
 import org.ow2.sirocco.cimi.sdk.CimiProviderException;
+import org.ow2.sirocco.cimi.sdk.auth.OpenStackKeystoneAuthPlugin;
 
 import com.beust.jcommander.JCommander;
 import com.beust.jcommander.Parameter;
@@ -44,6 +47,8 @@ public class Client {
 
     private static String SIROCCO_ENDPOINT_URL_ENV_NAME = "CIMICLIENT_ENDPOINT_URL";
 
+    private static String TOKEN_CACHE_DIR = ".cimiclient" + File.separator + "tokens";
+
     @Parameter(names = "-debug", description = "turn on debug mode", required = false)
     private boolean debug;
 
@@ -128,6 +133,10 @@ public class Client {
             } else {
                 options.setMediaType(MediaType.APPLICATION_JSON_TYPE);
             }
+            if (System.getProperty(OpenStackKeystoneAuthPlugin.TOKEN_CACHE_DIR_PROP) == null) {
+                System.setProperty(OpenStackKeystoneAuthPlugin.TOKEN_CACHE_DIR_PROP,
+                    new File(System.getProperty("user.home"), Client.TOKEN_CACHE_DIR).getPath());
+            }
             CimiClient cimiClient = CimiClient.login(endpointUrl, userName, password, tenantId, options);
 
             command.execute(cimiClient);
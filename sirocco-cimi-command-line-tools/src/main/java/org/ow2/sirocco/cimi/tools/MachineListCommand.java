@@ -55,6 +55,10 @@ public class MachineListCommand implements Command {
         Table table = CommandHelper.createResourceListTable(this.listParams, "id", "name", "description", "created", "updated",
             "properties", "state", "cpu", "memory", "disks", "provider");
 
+        if (this.listParams.isSelected("disks")) {
+            Machine.prefetch(machines, Machine.DISKS);
+        }
+
         for (Machine machine : machines) {
             CommandHelper.printResourceCommonAttributes(table, machine, this.listParams);
             if (this.listParams.isSelected("state")) {
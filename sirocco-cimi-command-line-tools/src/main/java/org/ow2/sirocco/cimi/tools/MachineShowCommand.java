@@ -24,7 +24,9 @@
  */
 package org.ow2.sirocco.cimi.tools;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import org.nocrala.tools.texttablefmt.Table;
 import org.ow2.sirocco.cimi.sdk.CimiClient;
@@ -53,19 +55,37 @@ public class MachineShowCommand implements Command {
 
     @Override
     public void execute(final CimiClient cimiClient) throws CimiClientException {
-        Machine machine;
-        if (CommandHelper.isResourceIdentifier(this.machineIds.get(0))) {
-            machine = Machine.getMachineByReference(cimiClient, this.machineIds.get(0), this.showParams.getQueryParams());
-        } else {
-            List<Machine> machines = Machine.getMachines(cimiClient,
-                this.showParams.getQueryParams().toBuilder().filter("name='" + this.machineIds.get(0) + "'").build());
-            if (machines.isEmpty()) {
-                System.err.println("No machine with name " + this.machineIds.get(0));
-                System.exit(-1);
+        List<String> ids = new ArrayList<String>();
+        for (String machineId : this.machineIds) {
+            if (CommandHelper.isResourceIdentifier(machineId)) {
+                ids.add(machineId);
             }
-            machine = machines.get(0);
         }
-        MachineShowCommand.printMachine(machine, this.showParams);
+        Map<String, Machine> machinesById = ids.size() > 1 ? Machine.getMachinesByIds(cimiClient, ids,
+            this.showParams.getQueryParams()) : null;
+        for (String machineId : this.machineIds) {
+            Machine machine;
+            if (CommandHelper.isResourceIdentifier(machineId)) {
+                if (machinesById == null) {
+                    machine = Machine.getMachineByReference(cimiClient, machineId, this.showParams.getQueryParams());
+                } else {
+                    machine = machinesById.get(machineId);
+                    if (machine == null) {
+                        System.err.println("No machine with id " + machineId);
+                        System.exit(-1);
+                    }
+                }
+            } else {
+                List<Machine> machines = Machine.getMachines(cimiClient,
+                    this.showParams.getQueryParams().toBuilder().filter("name='" + machineId + "'").build());
+                if (machines.isEmpty()) {
+                    System.err.println("No machine with name " + machineId);
+                    System.exit(-1);
+                }
+                machine = machines.get(0);
+            }
+            MachineShowCommand.printMachine(machine, this.showParams);
+        }
     }
 
     public static void printMachine(final Machine machine, final ResourceSelectExpandParams showParams)
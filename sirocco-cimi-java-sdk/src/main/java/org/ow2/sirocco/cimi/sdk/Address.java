@@ -25,7 +25,9 @@
 package org.ow2.sirocco.cimi.sdk;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import org.ow2.sirocco.cimi.domain.CimiAddress;
 import org.ow2.sirocco.cimi.domain.collection.CimiAddressCollection;
@@ -223,12 +225,61 @@ public class Address extends Resource<CimiAddress> {
 
         if (addressCollection.getCollection() != null) {
             for (CimiAddress cimiAddress : addressCollection.getCollection().getArray()) {
-                result.add(new Address(client, cimiAddress));
+                result.add(client.canonicalize(new Address(client, cimiAddress), queryParams));
             }
         }
         return result;
     }
 
+    /**
+     * Iterates over the collection of addresses, fetching them lazily by pages
+     * of pageSize elements.
+     * 
+     * @param client the client
+     * @param pageSize number of elements fetched per request
+     * @param queryParams optional query parameters ($first and $last bound the
+     *        range of elements iterated over)
+     * @return an iterable over the addresses
+     */
+    public static PagedIterable<Address> iterateAddresses(final CimiClient client, final int pageSize,
+        final QueryParams... queryParams) {
+        return new PagedIterable<Address>(client, pageSize, new PagedIterable.PageFetcher<Address>() {
+            @Override
+            public List<Address> fetch(final QueryParams pageParams) throws CimiClientException {
+                return Address.getAddresses(client, pageParams);
+            }
+        }, queryParams);
+    }
+
+    /**
+     * Retrieves the collection of addresses and hands each of them to a visitor
+     * as soon as it is decoded, without holding the whole collection in
+     * memory.
+     * 
+     * @param client the client
+     * @param visitor the visitor
+     * @param queryParams optional query parameters
+     * @return the number of addresses visited
+     * @throws CimiClientException If any internal errors are encountered
+     *         inside the client while attempting to make the request or handle
+     *         the response, or if the visitor aborts the traversal.
+     * @throws CimiProviderException If an error response is returned by the
+     *         CIMI provider.
+     */
+    public static int visitAddresses(final CimiClient client, final CollectionVisitor<? super Address> visitor,
+        final QueryParams... queryParams) throws CimiClientException, CimiProviderException {
+        if (client.cloudEntryPoint.getAddresses() == null) {
+            throw new CimiClientException("Unsupported operation");
+        }
+        return client.visitCollection(client.extractPath(client.cloudEntryPoint.getAddresses().getHref()), "addresses",
+            "Address", CimiAddress.class, new CollectionVisitor<CimiAddress>() {
+                @Override
+                public void visit(final CimiAddress cimiAddress) throws CimiClientException {
+                    visitor.visit(new Address(client, cimiAddress));
+                }
+            }, queryParams);
+    }
+
     /**
      * Retrieves the address with the given id.
      * 
@@ -245,6 +296,37 @@ public class Address extends Resource<CimiAddress> {
      */
     public static Address getAddressByReference(final CimiClient client, final String id, final QueryParams... params)
         throws CimiClientException, CimiProviderException {
-        return new Address(client, client.getCimiObjectByReference(id, CimiAddress.class, params));
+        Address result = new Address(client, client.getCimiObjectByReference(id, CimiAddress.class, params));
+        return client.canonicalize(result, params);
+    }
+
+    /**
+     * Retrieves the addresses with the given ids. The ids are fetched in
+     * batches with filtered requests on the collection, or with concurrent
+     * requests if the provider does not support filtering on ids.
+     * 
+     * @param client the client
+     * @param ids the ids of the resources
+     * @param queryParams optional query parameters
+     * @return the resources found, keyed by id in the order of the given ids
+     * @throws CimiClientException If any internal errors are encountered
+     *         inside the client while attempting to make the request or handle
+     *         the response.
+     * @throws CimiProviderException If an error response is returned by the
+     *         CIMI provider.
+     */
+    public static Map<String, Address> getAddressesByIds(final CimiClient client, final Collection<String> ids,
+        final QueryParams... queryParams) throws CimiClientException, CimiProviderException {
+        return BatchGet.getByIds(client, ids, new PagedIterable.PageFetcher<Address>() {
+            @Override
+            public List<Address> fetch(final QueryParams batchParams) throws CimiClientException {
+                return Address.getAddresses(client, batchParams);
+            }
+        }, new BatchGet.ResourceFetcher<Address>() {
+            @Override
+            public Address fetch(final String id, final QueryParams singleParams) throws CimiClientException {
+                return Address.getAddressByReference(client, id, singleParams);
+            }
+        }, queryParams);
     }
 }
\ No newline at end of file
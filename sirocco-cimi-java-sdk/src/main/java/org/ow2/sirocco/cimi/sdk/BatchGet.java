@@ -0,0 +1,179 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2012 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ *  $Id$
+ *
+ */
+package org.ow2.sirocco.cimi.sdk;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Retrieves several resources of the same type from their ids. The ids are
+ * grouped into chunks, each chunk being fetched with a single request on the
+ * collection filtered by an OR-expression on the id attribute. If the
+ * provider rejects the filter, the resources are fetched one by one with
+ * concurrent requests.
+ */
+final class BatchGet {
+    /** maximum number of ids per filter expression, bounding the URI length. */
+    static final int CHUNK_SIZE = 20;
+
+    /** maximum number of concurrent requests. */
+    static final int PARALLELISM = 8;
+
+    /**
+     * Fetches a single resource from its id.
+     */
+    interface ResourceFetcher<W> {
+        W fetch(String id, QueryParams queryParams) throws CimiClientException;
+    }
+
+    private BatchGet() {
+    }
+
+    static <W extends Resource<?>> Map<String, W> getByIds(final CimiClient client, final Collection<String> ids,
+        final PagedIterable.PageFetcher<W> collectionFetcher, final ResourceFetcher<W> resourceFetcher,
+        final QueryParams... queryParams) throws CimiClientException {
+        final QueryParams params = queryParams.length > 0 && queryParams[0] != null ? queryParams[0] : QueryParams
+            .builder().build();
+        List<String> distinctIds = new ArrayList<String>(new LinkedHashSet<String>(ids));
+        Map<String, W> found = new HashMap<String, W>();
+        if (distinctIds.isEmpty()) {
+            return new LinkedHashMap<String, W>();
+        }
+
+        List<List<String>> chunks = new ArrayList<List<String>>();
+        for (int i = 0; i < distinctIds.size(); i += BatchGet.CHUNK_SIZE) {
+            chunks.add(distinctIds.subList(i, Math.min(i + BatchGet.CHUNK_SIZE, distinctIds.size())));
+        }
+        // the first chunk tells whether the provider supports filtering on ids
+        Map<String, W> firstChunk = BatchGet.getChunk(client, chunks.get(0), collectionFetcher, params);
+        if (firstChunk == null) {
+            found.putAll(BatchGet.getOneByOne(client, distinctIds, resourceFetcher, params));
+        } else {
+            found.putAll(firstChunk);
+            List<Callable<Map<String, W>>> tasks = new ArrayList<Callable<Map<String, W>>>();
+            for (final List<String> chunk : chunks.subList(1, chunks.size())) {
+                tasks.add(new Callable<Map<String, W>>() {
+                    @Override
+                    public Map<String, W> call() throws CimiClientException {
+                        Map<String, W> result = BatchGet.getChunk(client, chunk, collectionFetcher, params);
+                        return result != null ? result : BatchGet.getOneByOne(client, chunk, resourceFetcher, params);
+                    }
+                });
+            }
+            for (Map<String, W> result : client.invokeAll(tasks, BatchGet.PARALLELISM)) {
+                found.putAll(result);
+            }
+        }
+
+        Map<String, W> result = new LinkedHashMap<String, W>();
+        for (String id : distinctIds) {
+            W resource = found.get(id);
+            if (resource != null) {
+                result.put(id, resource);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Fetches a chunk of ids with a filtered collection request, or returns
+     * null if the provider rejects the filter.
+     */
+    private static <W extends Resource<?>> Map<String, W> getChunk(final CimiClient client, final List<String> ids,
+        final PagedIterable.PageFetcher<W> collectionFetcher, final QueryParams params) throws CimiClientException {
+        Map<String, String> idsByPath = new HashMap<String, String>();
+        StringBuilder filter = new StringBuilder();
+        for (String id : ids) {
+            idsByPath.put(client.extractPath(id), id);
+            if (filter.length() > 0) {
+                filter.append(" or ");
+            }
+            // the provider stores absolute hrefs, relative ids would match
+            // nothing
+            filter.append("id='").append(client.toAbsoluteHref(id).replace("'", "\\'")).append("'");
+        }
+        if (params.getFilter() != null) {
+            filter.insert(0, "(" + params.getFilter() + ") and (").append(")");
+        }
+        String select = params.getSelect();
+        if (select != null && !("," + select.replace(" ", "") + ",").contains(",id,")) {
+            select = select + ",id";
+        }
+        List<W> resources;
+        try {
+            resources = collectionFetcher.fetch(params.toBuilder().filter(filter.toString()).select(select).first(null)
+                .last(null).build());
+        } catch (CimiProviderException e) {
+            if (e.getReturnCode() != null && (e.getReturnCode() == 400 || e.getReturnCode() == 501)) {
+                return null;
+            }
+            throw e;
+        }
+        Map<String, W> result = new HashMap<String, W>();
+        for (W resource : resources) {
+            String id = resource.getId() != null ? idsByPath.get(client.extractPath(resource.getId())) : null;
+            if (id != null) {
+                result.put(id, resource);
+            }
+        }
+        return result;
+    }
+
+    private static <W extends Resource<?>> Map<String, W> getOneByOne(final CimiClient client, final List<String> ids,
+        final ResourceFetcher<W> resourceFetcher, final QueryParams params) throws CimiClientException {
+        final QueryParams singleParams = params.toBuilder().filter(null).first(null).last(null).build();
+        List<Callable<W>> tasks = new ArrayList<Callable<W>>();
+        for (final String id : ids) {
+            tasks.add(new Callable<W>() {
+                @Override
+                public W call() throws CimiClientException {
+                    try {
+                        return resourceFetcher.fetch(id, singleParams);
+                    } catch (CimiProviderException e) {
+                        if (e.getReturnCode() != null && e.getReturnCode() == 404) {
+                            return null;
+                        }
+                        throw e;
+                    }
+                }
+            });
+        }
+        List<W> resources = client.invokeAll(tasks, BatchGet.PARALLELISM);
+        Map<String, W> result = new HashMap<String, W>();
+        for (int i = 0; i < ids.size(); i++) {
+            if (resources.get(i) != null) {
+                result.put(ids.get(i), resources.get(i));
+            }
+        }
+        return result;
+    }
+
+}
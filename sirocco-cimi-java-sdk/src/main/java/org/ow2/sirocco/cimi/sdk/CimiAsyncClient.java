@@ -0,0 +1,348 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2012 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ *  $Id$
+ *
+ */
+package org.ow2.sirocco.cimi.sdk;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Asynchronous facade over a CimiClient. Each operation is executed by a
+ * bounded pool of worker threads and returns a Future. The Future throws an
+ * ExecutionException wrapping the CimiClientException or
+ * CimiProviderException raised by the operation. Cancelling a Future with
+ * mayInterruptIfRunning set to true interrupts the worker thread: the
+ * operation stops at its next wait (retry back-off, rate or concurrency
+ * limiting, job polling) and sends no further request, but a request already
+ * on the wire is not aborted and runs until it completes or its read timeout
+ * expires. The RequestContext active when an operation is submitted also
+ * applies to its execution, so a deadline bounds such a request.
+ */
+public class CimiAsyncClient {
+
+    /** default number of worker threads. */
+    public static final int DEFAULT_THREAD_POOL_SIZE = 16;
+
+    /**
+     * An operation to be performed asynchronously against a CimiClient.
+     * 
+     * @param <T> the result type
+     */
+    public interface Call<T> {
+        /**
+         * Performs the operation.
+         * 
+         * @param client the client
+         * @return the result of the operation
+         * @throws CimiClientException If any internal errors are encountered
+         *         inside the client while attempting to make the request or
+         *         handle the response.
+         */
+        T call(CimiClient client) throws CimiClientException;
+    }
+
+    private static class WorkerThreadFactory implements ThreadFactory {
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            Thread thread = new Thread(runnable, "cimiclient-async-" + this.threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    private final CimiClient client;
+
+    private final ExecutorService executor;
+
+    private final boolean ownExecutor;
+
+    /**
+     * Creates an asynchronous client with a default number of worker threads.
+     * 
+     * @param client the synchronous client
+     */
+    public CimiAsyncClient(final CimiClient client) {
+        this(client, CimiAsyncClient.DEFAULT_THREAD_POOL_SIZE);
+    }
+
+    /**
+     * Creates an asynchronous client with a given number of worker threads.
+     * 
+     * @param client the synchronous client
+     * @param threadPoolSize maximum number of operations executed concurrently
+     */
+    public CimiAsyncClient(final CimiClient client, final int threadPoolSize) {
+        this.client = client;
+        this.executor = Executors.newFixedThreadPool(threadPoolSize, new WorkerThreadFactory());
+        this.ownExecutor = true;
+    }
+
+    /**
+     * Creates an asynchronous client executing operations with the given
+     * executor. The executor is not shut down by {@link #shutdown()}.
+     * 
+     * @param client the synchronous client
+     * @param executor the executor
+     */
+    public CimiAsyncClient(final CimiClient client, final ExecutorService executor) {
+        this.client = client;
+        this.executor = executor;
+        this.ownExecutor = false;
+    }
+
+    /**
+     * Returns the underlying synchronous client.
+     * 
+     * @return the client
+     */
+    public CimiClient getClient() {
+        return this.client;
+    }
+
+    /**
+     * Submits an arbitrary operation.
+     * 
+     * @param call the operation
+     * @return a Future representing the pending result of the operation
+     */
+    public <T> Future<T> submit(final Call<T> call) {
+        return this.submitInContext(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                return call.call(CimiAsyncClient.this.client);
+            }
+        });
+    }
+
+    /**
+     * Submits a task to the executor, running it within a fork of the
+     * RequestContext of the caller if any.
+     */
+    private <T> Future<T> submitInContext(final Callable<T> task) {
+        final RequestContext context = RequestContext.current() != null ? RequestContext.current().fork() : null;
+        return this.executor.submit(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                if (context == null) {
+                    return task.call();
+                }
+                context.attach();
+                try {
+                    return task.call();
+                } finally {
+                    context.close();
+                }
+            }
+        });
+    }
+
+    /**
+     * Retrieves asynchronously the collection of machines.
+     * 
+     * @param queryParams optional query parameters
+     * @return a Future holding the machines
+     */
+    public Future<List<Machine>> getMachines(final QueryParams... queryParams) {
+        return this.submit(new Call<List<Machine>>() {
+            @Override
+            public List<Machine> call(final CimiClient client) throws CimiClientException {
+                return Machine.getMachines(client, queryParams);
+            }
+        });
+    }
+
+    /**
+     * Retrieves asynchronously the machine with the given id.
+     * 
+     * @param id the id of the machine
+     * @param queryParams optional query parameters
+     * @return a Future holding the machine
+     */
+    public Future<Machine> getMachineByReference(final String id, final QueryParams... queryParams) {
+        return this.submit(new Call<Machine>() {
+            @Override
+            public Machine call(final CimiClient client) throws CimiClientException {
+                return Machine.getMachineByReference(client, id, queryParams);
+            }
+        });
+    }
+
+    /**
+     * Creates asynchronously a new machine.
+     * 
+     * @param machineCreate creation parameters
+     * @return a Future holding the creation result
+     */
+    public Future<CreateResult<Machine>> createMachine(final MachineCreate machineCreate) {
+        return this.submit(new Call<CreateResult<Machine>>() {
+            @Override
+            public CreateResult<Machine> call(final CimiClient client) throws CimiClientException {
+                return Machine.createMachine(client, machineCreate);
+            }
+        });
+    }
+
+    /**
+     * Starts asynchronously a machine.
+     * 
+     * @param machine the machine
+     * @return a Future holding the job representing this operation or null
+     */
+    public Future<Job> startMachine(final Machine machine) {
+        return this.submit(new Call<Job>() {
+            @Override
+            public Job call(final CimiClient client) throws CimiClientException {
+                return machine.start();
+            }
+        });
+    }
+
+    /**
+     * Stops asynchronously a machine.
+     * 
+     * @param machine the machine
+     * @return a Future holding the job representing this operation or null
+     */
+    public Future<Job> stopMachine(final Machine machine) {
+        return this.submit(new Call<Job>() {
+            @Override
+            public Job call(final CimiClient client) throws CimiClientException {
+                return machine.stop();
+            }
+        });
+    }
+
+    /**
+     * Deletes asynchronously a machine.
+     * 
+     * @param machine the machine
+     * @return a Future holding the job representing this operation or null
+     */
+    public Future<Job> deleteMachine(final Machine machine) {
+        return this.submit(new Call<Job>() {
+            @Override
+            public Job call(final CimiClient client) throws CimiClientException {
+                return machine.delete();
+            }
+        });
+    }
+
+    /**
+     * Retrieves asynchronously the collection of volumes.
+     * 
+     * @param queryParams optional query parameters
+     * @return a Future holding the volumes
+     */
+    public Future<List<Volume>> getVolumes(final QueryParams... queryParams) {
+        return this.submit(new Call<List<Volume>>() {
+            @Override
+            public List<Volume> call(final CimiClient client) throws CimiClientException {
+                return Volume.getVolumes(client, queryParams);
+            }
+        });
+    }
+
+    /**
+     * Creates asynchronously a new volume.
+     * 
+     * @param volumeCreate creation parameters
+     * @return a Future holding the creation result
+     */
+    public Future<CreateResult<Volume>> createVolume(final VolumeCreate volumeCreate) {
+        return this.submit(new Call<CreateResult<Volume>>() {
+            @Override
+            public CreateResult<Volume> call(final CimiClient client) throws CimiClientException {
+                return Volume.createVolume(client, volumeCreate);
+            }
+        });
+    }
+
+    /**
+     * Deletes asynchronously a volume.
+     * 
+     * @param volume the volume
+     * @return a Future holding the job representing this operation or null
+     */
+    public Future<Job> deleteVolume(final Volume volume) {
+        return this.submit(new Call<Job>() {
+            @Override
+            public Job call(final CimiClient client) throws CimiClientException {
+                return volume.delete();
+            }
+        });
+    }
+
+    /**
+     * Retrieves asynchronously the Job with the given id.
+     * 
+     * @param id the id of the job
+     * @param queryParams optional query parameters
+     * @return a Future holding the job
+     */
+    public Future<Job> getJobByReference(final String id, final QueryParams... queryParams) {
+        return this.submit(new Call<Job>() {
+            @Override
+            public Job call(final CimiClient client) throws CimiClientException {
+                return Job.getJobByReference(client, id, queryParams);
+            }
+        });
+    }
+
+    /**
+     * Waits asynchronously for a Job to be completed.
+     * 
+     * @param job the job
+     * @param timeout timeout until which the Job status is polled
+     * @param unit time unit in which the timeout is specified
+     * @return a Future holding the completed job
+     */
+    public Future<Job> waitForCompletion(final Job job, final long timeout, final TimeUnit unit) {
+        return this.submitInContext(new Callable<Job>() {
+            @Override
+            public Job call() throws Exception {
+                job.waitForCompletion(timeout, unit);
+                return job;
+            }
+        });
+    }
+
+    /**
+     * Stops accepting new operations and releases the worker threads once
+     * pending operations are completed.
+     */
+    public void shutdown() {
+        if (this.ownExecutor) {
+            this.executor.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,55 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2012 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ *  $Id$
+ *
+ */
+package org.ow2.sirocco.cimi.sdk;
+
+/**
+ * Exception raised when a request is not sent because the circuit breaker of
+ * the target CIMI endpoint is open.
+ */
+public class CimiCircuitOpenException extends CimiClientException {
+    private static final long serialVersionUID = 1L;
+
+    private final String endpoint;
+
+    /**
+     * Constructs a CimiCircuitOpenException for an endpoint.
+     * 
+     * @param endpoint the endpoint whose circuit is open
+     */
+    public CimiCircuitOpenException(final String endpoint) {
+        super("Circuit breaker open for " + endpoint);
+        this.endpoint = endpoint;
+    }
+
+    /**
+     * Endpoint whose circuit is open.
+     * 
+     * @return the endpoint
+     */
+    public String getEndpoint() {
+        return this.endpoint;
+    }
+
+}
@@ -25,27 +25,53 @@
 
 package org.ow2.sirocco.cimi.sdk;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.net.URI;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
 
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.MessageBodyWriter;
 
 import org.ow2.sirocco.cimi.domain.CimiCloudEntryPoint;
 import org.ow2.sirocco.cimi.domain.CimiJob;
 import org.ow2.sirocco.cimi.domain.CimiObjectCommonAbstract;
+import org.ow2.sirocco.cimi.domain.CimiResource;
 
 import com.sun.jersey.api.client.Client;
 import com.sun.jersey.api.client.ClientHandlerException;
 import com.sun.jersey.api.client.ClientResponse;
 import com.sun.jersey.api.client.WebResource;
 import com.sun.jersey.api.client.config.ClientConfig;
-import com.sun.jersey.api.client.config.DefaultClientConfig;
 import com.sun.jersey.api.client.filter.LoggingFilter;
-import com.sun.jersey.api.json.JSONConfiguration;
-import com.sun.jersey.client.apache.ApacheHttpClient;
-import com.sun.jersey.client.apache.config.ApacheHttpClientConfig;
-import com.sun.jersey.client.apache.config.DefaultApacheHttpClientConfig;
+import com.sun.jersey.core.header.InBoundHeaders;
+import com.sun.jersey.core.header.OutBoundHeaders;
 
 /**
  * Root handle representing a session with a CIMI provider and through which all
@@ -70,10 +96,32 @@ public class CimiClient {
 
     private static final String CIMI_LOCATION_HEADER = "Location";
 
+    private static final String RETRY_AFTER_HEADER = "Retry-After";
+
+    private static final String ETAG_HEADER = "ETag";
+
+    private static final String LAST_MODIFIED_HEADER = "Last-Modified";
+
+    private static final String IF_NONE_MATCH_HEADER = "If-None-Match";
+
+    private static final String IF_MODIFIED_SINCE_HEADER = "If-Modified-Since";
+
     private static final String CIMICLIENT_AUTH_PLUGIN_CLASS_PROP = "CIMICLIENT_AUTH_PLUGIN_CLASS";
 
     private static final String DEFAULT_CIMICLIENT_AUTH_PLUGIN_CLASS = "org.ow2.sirocco.cimi.sdk.auth.BasicAuthPlugin";
 
+    private static final String CIMICLIENT_TRANSPORT_CLASS_PROP = "CIMICLIENT_TRANSPORT_CLASS";
+
+    private static final String DEFAULT_CIMICLIENT_TRANSPORT_CLASS = "org.ow2.sirocco.cimi.sdk.transport.UrlConnectionTransport";
+
+    private static final String POOLED_CIMICLIENT_TRANSPORT_CLASS = "org.ow2.sirocco.cimi.sdk.transport.PooledHttpClientTransport";
+
+    private static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 20;
+
+    private static final int DEFAULT_MAX_TOTAL_CONNECTIONS = 100;
+
+    private static final long DEFAULT_IDLE_CONNECTION_TIMEOUT_IN_MILLISECONDS = 60 * 1000;
+
     /**
      * Contains options for connecting to a CIMI provider.
      */
@@ -86,6 +134,44 @@ public class CimiClient {
 
         private String httpProxyPort;
 
+        private boolean connectionPooling;
+
+        private int maxConnectionsPerHost = CimiClient.DEFAULT_MAX_CONNECTIONS_PER_HOST;
+
+        private int maxTotalConnections = CimiClient.DEFAULT_MAX_TOTAL_CONNECTIONS;
+
+        private long idleConnectionTimeout = CimiClient.DEFAULT_IDLE_CONNECTION_TIMEOUT_IN_MILLISECONDS;
+
+        private CimiTransport transport;
+
+        private RetryPolicy retryPolicy;
+
+        private RateLimiter rateLimiter;
+
+        private ConcurrencyLimiter concurrencyLimiter;
+
+        private CircuitBreakerConfig circuitBreakerConfig;
+
+        private Long endpointBackoff;
+
+        private Integer connectTimeout;
+
+        private Integer readTimeout;
+
+        private boolean compression;
+
+        private int requestCompressionThreshold = -1;
+
+        private boolean expandEmulation;
+
+        private ResponseCacheConfig responseCacheConfig;
+
+        private boolean conditionalGet;
+
+        private boolean requestCoalescing;
+
+        private boolean identityMap;
+
         private Options() {
 
         }
@@ -131,6 +217,310 @@ public class CimiClient {
             return this;
         }
 
+        /**
+         * Turns on or off the use of a pool of persistent (keep-alive) HTTP
+         * connections shared by all requests sent by the client.
+         * 
+         * @param connectionPooling true if connections should be pooled
+         * @return the options
+         */
+        public Options setConnectionPooling(final boolean connectionPooling) {
+            this.connectionPooling = connectionPooling;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of pooled connections per host.
+         * 
+         * @param maxConnectionsPerHost maximum number of connections per host
+         * @return the options
+         */
+        public Options setMaxConnectionsPerHost(final int maxConnectionsPerHost) {
+            this.maxConnectionsPerHost = maxConnectionsPerHost;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of pooled connections for all hosts.
+         * 
+         * @param maxTotalConnections maximum number of connections
+         * @return the options
+         */
+        public Options setMaxTotalConnections(final int maxTotalConnections) {
+            this.maxTotalConnections = maxTotalConnections;
+            return this;
+        }
+
+        /**
+         * Sets the time after which an idle pooled connection is closed.
+         * 
+         * @param idleConnectionTimeout idle timeout in milliseconds, 0 to keep
+         *        idle connections open
+         * @return the options
+         */
+        public Options setIdleConnectionTimeout(final long idleConnectionTimeout) {
+            this.idleConnectionTimeout = idleConnectionTimeout;
+            return this;
+        }
+
+        /**
+         * Sets the transport creating the Jersey client through which HTTP
+         * requests are sent. If not set, the transport class is taken from the
+         * CIMICLIENT_TRANSPORT_CLASS system property or defaults to a pooled
+         * or HttpURLConnection-based transport depending on the connection
+         * pooling option. A transport instance must not be shared between
+         * clients.
+         * 
+         * @param transport the transport
+         * @return the options
+         */
+        public Options setTransport(final CimiTransport transport) {
+            this.transport = transport;
+            return this;
+        }
+
+        /**
+         * Sets the policy used to retry requests when the CIMI provider is
+         * temporarily unavailable. Requests are not retried if no policy is
+         * set.
+         * 
+         * @param retryPolicy the retry policy
+         * @return the options
+         */
+        public Options setRetryPolicy(final RetryPolicy retryPolicy) {
+            this.retryPolicy = retryPolicy;
+            return this;
+        }
+
+        /**
+         * Sets the rate limiter applied to all requests sent by the client.
+         * 
+         * @param rateLimiter the rate limiter
+         * @return the options
+         */
+        public Options setRateLimiter(final RateLimiter rateLimiter) {
+            this.rateLimiter = rateLimiter;
+            return this;
+        }
+
+        /**
+         * Sets the adaptive limiter bounding the number of requests in flight.
+         * 
+         * @param concurrencyLimiter the concurrency limiter
+         * @return the options
+         */
+        public Options setConcurrencyLimiter(final ConcurrencyLimiter concurrencyLimiter) {
+            this.concurrencyLimiter = concurrencyLimiter;
+            return this;
+        }
+
+        /**
+         * Enables circuit breakers on the CIMI endpoints used by the client.
+         * 
+         * @param circuitBreakerConfig the circuit breaker configuration
+         * @return the options
+         */
+        public Options setCircuitBreakerConfig(final CircuitBreakerConfig circuitBreakerConfig) {
+            this.circuitBreakerConfig = circuitBreakerConfig;
+            return this;
+        }
+
+        /**
+         * Sets the time during which a CIMI endpoint that has just failed is
+         * not selected. It doubles with each consecutive failure, up to 5
+         * minutes, and defaults to 5 seconds.
+         * 
+         * @param endpointBackoff the initial backoff in milliseconds
+         * @return the options
+         */
+        public Options setEndpointBackoff(final long endpointBackoff) {
+            if (endpointBackoff <= 0) {
+                throw new IllegalArgumentException("endpointBackoff must be positive");
+            }
+            this.endpointBackoff = endpointBackoff;
+            return this;
+        }
+
+        /**
+         * Sets the default timeout for establishing a connection with the CIMI
+         * provider.
+         * 
+         * @param connectTimeout the connect timeout in milliseconds
+         * @return the options
+         */
+        public Options setConnectTimeout(final int connectTimeout) {
+            this.connectTimeout = connectTimeout;
+            return this;
+        }
+
+        /**
+         * Sets the default timeout for waiting for data from the CIMI
+         * provider.
+         * 
+         * @param readTimeout the read timeout in milliseconds
+         * @return the options
+         */
+        public Options setReadTimeout(final int readTimeout) {
+            this.readTimeout = readTimeout;
+            return this;
+        }
+
+        /**
+         * Turns on or off the negotiation of gzip/deflate compressed responses.
+         * 
+         * @param compression true if compressed responses are accepted
+         * @return the options
+         */
+        public Options setCompression(final boolean compression) {
+            this.compression = compression;
+            return this;
+        }
+
+        /**
+         * Sets the size above which request bodies are sent gzip-compressed.
+         * 
+         * @param requestCompressionThreshold the threshold in bytes, or a
+         *        negative value to never compress request bodies
+         * @return the options
+         */
+        public Options setRequestCompressionThreshold(final int requestCompressionThreshold) {
+            this.requestCompressionThreshold = requestCompressionThreshold;
+            return this;
+        }
+
+        /**
+         * Turns on or off the client-side resolution of the references that
+         * the provider left unexpanded in a response to a request with
+         * $expand.
+         * 
+         * @param expandEmulation true if unexpanded references are resolved
+         * @return the options
+         */
+        public Options setExpandEmulation(final boolean expandEmulation) {
+            this.expandEmulation = expandEmulation;
+            return this;
+        }
+
+        /**
+         * Turns on the caching of the responses to GET requests on the
+         * resource types given a time-to-live by the configuration.
+         * 
+         * @param responseCacheConfig the cache configuration, or null to not
+         *        cache responses
+         * @return the options
+         */
+        public Options setResponseCache(final ResponseCacheConfig responseCacheConfig) {
+            this.responseCacheConfig = responseCacheConfig;
+            return this;
+        }
+
+        /**
+         * Turns on or off the revalidation of previously read resources. When
+         * on, GET requests carry the ETag and Last-Modified validators of the
+         * previous response and unchanged resources are not downloaded
+         * again. Each read still returns a new instance.
+         * 
+         * @param conditionalGet true if GET requests are conditional
+         * @return the options
+         */
+        public Options setConditionalGet(final boolean conditionalGet) {
+            this.conditionalGet = conditionalGet;
+            return this;
+        }
+
+        /**
+         * Turns on or off the coalescing of identical concurrent GET
+         * requests. When on, a GET issued while an identical one is in flight
+         * waits for it and returns the same instance, or throws the same
+         * exception.
+         * 
+         * @param requestCoalescing true if identical concurrent GET requests
+         *        share one HTTP call
+         * @return the options
+         */
+        public Options setRequestCoalescing(final boolean requestCoalescing) {
+            this.requestCoalescing = requestCoalescing;
+            return this;
+        }
+
+        /**
+         * Turns on or off the identity map of loaded resources. When on,
+         * loading a resource that the application still references refreshes
+         * that instance in place and returns it instead of a new copy.
+         * 
+         * @param identityMap true if loaded resources are kept canonical
+         * @return the options
+         */
+        public Options setIdentityMap(final boolean identityMap) {
+            this.identityMap = identityMap;
+            return this;
+        }
+
+        /**
+         * Returns the default connect timeout.
+         * 
+         * @return the connect timeout in milliseconds or null if not set
+         */
+        public Integer getConnectTimeout() {
+            return this.connectTimeout;
+        }
+
+        /**
+         * Returns the default read timeout.
+         * 
+         * @return the read timeout in milliseconds or null if not set
+         */
+        public Integer getReadTimeout() {
+            return this.readTimeout;
+        }
+
+        /**
+         * Returns the HTTP proxy host, defaulting to the http.proxyHost system
+         * property.
+         * 
+         * @return the HTTP proxy host or null
+         */
+        public String getHttpProxyHost() {
+            return this.httpProxyHost != null ? this.httpProxyHost : java.lang.System.getProperty("http.proxyHost");
+        }
+
+        /**
+         * Returns the HTTP proxy port, defaulting to the http.proxyPort system
+         * property.
+         * 
+         * @return the HTTP proxy port or null
+         */
+        public String getHttpProxyPort() {
+            return this.httpProxyPort != null ? this.httpProxyPort : java.lang.System.getProperty("http.proxyPort");
+        }
+
+        /**
+         * Returns the maximum number of pooled connections per host.
+         * 
+         * @return the maximum number of connections per host
+         */
+        public int getMaxConnectionsPerHost() {
+            return this.maxConnectionsPerHost;
+        }
+
+        /**
+         * Returns the maximum number of pooled connections for all hosts.
+         * 
+         * @return the maximum number of connections
+         */
+        public int getMaxTotalConnections() {
+            return this.maxTotalConnections;
+        }
+
+        /**
+         * Returns the time after which an idle pooled connection is closed.
+         * 
+         * @return the idle timeout in milliseconds
+         */
+        public long getIdleConnectionTimeout() {
+            return this.idleConnectionTimeout;
+        }
+
     }
 
     static class CimiResult<E> {
@@ -170,14 +560,107 @@ public class CimiClient {
 
     private Map<String, String> authenticationHeaders;
 
+    private RefreshableAuthPlugin refreshableAuthPlugin;
+
+    private CimiTransport transport;
+
+    private Client client;
+
+    private final List<CimiEndpoint> endpoints = new CopyOnWriteArrayList<CimiEndpoint>();
+
+    private String baseUri;
+
+    private RetryPolicy retryPolicy;
+
+    private RateLimiter rateLimiter;
+
+    private ConcurrencyLimiter concurrencyLimiter;
+
+    private CircuitBreakerConfig circuitBreakerConfig;
+
+    private Integer connectTimeout;
+
+    private Integer readTimeout;
+
+    private int requestCompressionThreshold = -1;
+
+    private final CompressionStats compressionStats = new CompressionStats();
+
+    private ExecutorService workerExecutor;
+
+    private ReferenceExpander referenceExpander;
+
+    private ResponseCache responseCache;
+
+    private ConditionalGetCache conditionalGetCache;
+
+    private SingleFlight singleFlight;
+
+    private IdentityMap identityMap;
+
+    private final ConcurrentMap<String, Map<String, String>> collectionOperations = new ConcurrentHashMap<String, Map<String, String>>();
+
+    private final ConcurrentMap<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<String, CircuitBreaker>();
+
+    private final AtomicLong retryCount = new AtomicLong();
+
+    private final AtomicLong retriesExhaustedCount = new AtomicLong();
+
+    private final AtomicLong unchangedResponseCount = new AtomicLong();
+
     String extractPath(final String href) {
         if (href.startsWith("http")) {
+            if (this.endpoints.size() > 1) {
+                for (CimiEndpoint endpoint : this.endpoints) {
+                    String endpointBaseUri = endpoint.getBaseUri();
+                    if (endpointBaseUri != null && href.startsWith(endpointBaseUri)) {
+                        return href.substring(endpointBaseUri.length());
+                    }
+                }
+            }
             return href.substring(this.cloudEntryPoint.getBaseURI().length());
         } else {
             return href;
         }
     }
 
+    /**
+     * Returns the absolute href of a resource given by its href or by its path
+     * relative to the base URI of the provider.
+     */
+    String toAbsoluteHref(final String href) {
+        if (href.startsWith("http")) {
+            return href;
+        }
+        String baseUri = this.cloudEntryPoint.getBaseURI();
+        if (baseUri.endsWith("/") && href.startsWith("/")) {
+            return baseUri + href.substring(1);
+        }
+        if (!baseUri.endsWith("/") && !href.startsWith("/")) {
+            return baseUri + "/" + href;
+        }
+        return baseUri + href;
+    }
+
+    /**
+     * Returns the canonical instance of a loaded resource if the identity map
+     * is on. Partial resources loaded with $select are left out of the map.
+     */
+    <R extends Resource<?>> R canonicalize(final R resource, final QueryParams... queryParams) {
+        if (this.identityMap == null || (queryParams.length > 0 && queryParams[0].getSelect() != null)) {
+            return resource;
+        }
+        String href = resource.getId();
+        if (href == null) {
+            return resource;
+        }
+        String path = this.extractPath(href);
+        if (path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        return this.identityMap.canonicalize(resource.getClass().getName() + " " + path, resource);
+    }
+
     String getMachinesPath() {
         return this.extractPath(this.cloudEntryPoint.getMachines().getHref());
     }
@@ -231,6 +714,18 @@ public class CimiClient {
     }
 
     private void handleResponseStatus(final ClientResponse response) throws CimiProviderException {
+        try {
+            this.checkResponseStatus(response);
+        } catch (CimiProviderException e) {
+            e.setReturnCode(response.getStatus());
+            // the caller never gets to read an error response, release its
+            // connection now
+            response.close();
+            throw e;
+        }
+    }
+
+    private void checkResponseStatus(final ClientResponse response) throws CimiProviderException {
         if (response.getStatus() == 400) {
             String message = response.getEntity(String.class);
             throw new CimiProviderException(message);
@@ -242,6 +737,8 @@ public class CimiClient {
         } else if (response.getStatus() == 404) {
             String message = response.getEntity(String.class);
             throw new CimiProviderException("Resource not found: " + message);
+        } else if (response.getStatus() == 405) {
+            throw new CimiProviderException("Method not allowed");
         } else if (response.getStatus() == 409) {
             String message = response.getEntity(String.class);
             throw new CimiProviderException(message);
@@ -260,8 +757,8 @@ public class CimiClient {
         }
     }
 
-    private void initAuthenticationHeaders(final String userName, final String password, final String tenantId)
-        throws CimiClientException {
+    private void initAuthenticationHeaders(final String userName, final String password, final String tenantId,
+        final Options... optionList) throws CimiClientException {
         String authPluginClassName = java.lang.System.getProperty(CimiClient.CIMICLIENT_AUTH_PLUGIN_CLASS_PROP);
         if (authPluginClassName == null) {
             authPluginClassName = CimiClient.DEFAULT_CIMICLIENT_AUTH_PLUGIN_CLASS;
@@ -278,58 +775,482 @@ public class CimiClient {
         } catch (Exception ex) {
             throw new CimiClientException("Cannot create auth plugin " + authPluginClassName + " " + ex.getMessage());
         }
+        if (authPlugin instanceof RefreshableAuthPlugin) {
+            Integer authConnectTimeout = null;
+            Integer authReadTimeout = null;
+            for (Options options : optionList) {
+                if (options.connectTimeout != null) {
+                    authConnectTimeout = options.connectTimeout;
+                }
+                if (options.readTimeout != null) {
+                    authReadTimeout = options.readTimeout;
+                }
+            }
+            ((RefreshableAuthPlugin) authPlugin).setTimeouts(authConnectTimeout, authReadTimeout);
+        }
         this.authenticationHeaders = authPlugin.authenticate(userName, password, tenantId);
+        if (authPlugin instanceof RefreshableAuthPlugin) {
+            this.refreshableAuthPlugin = (RefreshableAuthPlugin) authPlugin;
+        }
     }
 
-    private WebResource.Builder addAuthenticationHeaders(final WebResource resource) {
-        WebResource.Builder builder = resource.getRequestBuilder();
-        for (Entry<String, String> header : this.authenticationHeaders.entrySet()) {
-            builder = builder.header(header.getKey(), header.getValue());
+    private Map<String, String> getAuthenticationHeaders() throws CimiClientException {
+        if (this.refreshableAuthPlugin != null) {
+            return this.refreshableAuthPlugin.getAuthenticationHeaders();
         }
-        return builder;
+        return this.authenticationHeaders;
     }
 
-    private Client createClient(final Options... optionList) {
-        String proxyHost = null;
-        String proxyPort = null;
-        if (optionList.length > 0) {
-            Options options = optionList[0];
-            proxyHost = options.httpProxyHost;
-            proxyPort = options.httpProxyPort;
+    private void checkNotInterrupted() throws CimiClientException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CimiClientException("Request interrupted");
         }
+    }
 
-        if (proxyHost == null) {
-            proxyHost = java.lang.System.getProperty("http.proxyHost");
+    private WebResource.Builder addAuthenticationHeaders(final WebResource resource,
+        final Map<String, String> authenticationHeaders) {
+        WebResource.Builder builder = resource.getRequestBuilder();
+        for (Entry<String, String> header : authenticationHeaders.entrySet()) {
+            builder = builder.header(header.getKey(), header.getValue());
         }
-        if (proxyPort == null) {
-            proxyPort = java.lang.System.getProperty("http.proxyPort");
+        return builder;
+    }
+
+    private boolean isRetryable(final OperationType operationType, final int attempt) {
+        return this.retryPolicy != null && this.retryPolicy.isRetryable(operationType)
+            && attempt < this.retryPolicy.getMaxAttempts();
+    }
+
+    private void waitBeforeRetry(final int attempt, final String retryAfter) throws CimiClientException {
+        long delay = this.retryPolicy.computeDelay(attempt, retryAfter);
+        RequestContext context = RequestContext.current();
+        if (context != null && delay >= context.getRemainingMillis()) {
+            throw new CimiClientException("Deadline exceeded");
+        }
+        this.retryCount.incrementAndGet();
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CimiClientException("Request interrupted", e);
+        }
+    }
+
+    private CircuitBreaker getCircuitBreaker(final URI uri) {
+        String endpoint = uri.getScheme() + "://" + uri.getRawAuthority();
+        CircuitBreaker circuitBreaker = this.circuitBreakers.get(endpoint);
+        if (circuitBreaker == null) {
+            this.circuitBreakers.putIfAbsent(endpoint, new CircuitBreaker(endpoint, this.circuitBreakerConfig));
+            circuitBreaker = this.circuitBreakers.get(endpoint);
         }
+        return circuitBreaker;
+    }
 
-        if (proxyHost != null && proxyPort == null) {
-            final DefaultApacheHttpClientConfig config = new DefaultApacheHttpClientConfig();
-            if (proxyHost != null && proxyPort != null) {
-                config.getProperties().put(ApacheHttpClientConfig.PROPERTY_PROXY_URI, "http://" + proxyHost + ":" + proxyPort);
+    private ClientResponse send(final WebResource service, final WebResource.Builder builder, final String method)
+        throws CimiClientException {
+        CircuitBreaker circuitBreaker = null;
+        if (this.circuitBreakerConfig != null) {
+            circuitBreaker = this.getCircuitBreaker(service.getURI());
+            circuitBreaker.acquirePermission();
+        }
+        if (this.concurrencyLimiter != null) {
+            try {
+                this.concurrencyLimiter.acquire();
+            } catch (CimiClientException e) {
+                if (circuitBreaker != null) {
+                    circuitBreaker.releasePermission();
+                }
+                throw e;
             }
-            config.getFeatures().put(JSONConfiguration.FEATURE_POJO_MAPPING, Boolean.TRUE);
-            return ApacheHttpClient.create(config);
-        } else {
-            ClientConfig config = new DefaultClientConfig();
-            config.getFeatures().put(JSONConfiguration.FEATURE_POJO_MAPPING, Boolean.TRUE);
-            return Client.create(config);
         }
+        long startTime = java.lang.System.nanoTime();
+        int status = -1;
+        try {
+            ClientResponse response = builder.method(method, ClientResponse.class);
+            status = response.getStatus();
+            return response;
+        } finally {
+            long duration = java.lang.System.nanoTime() - startTime;
+            if (this.concurrencyLimiter != null) {
+                this.concurrencyLimiter.release(duration, CimiClient.isEndpointFailure(status));
+            }
+            if (circuitBreaker != null) {
+                circuitBreaker.onResult(duration, CimiClient.isEndpointFailure(status));
+            }
+        }
+    }
+
+    /**
+     * Tells whether a response status reveals an unhealthy endpoint: a
+     * transport error (-1), a 502 (Bad gateway) or a 503 (Service
+     * unavailable). Other errors are returned by a working provider and are
+     * neither retried nor failed over.
+     */
+    private static boolean isEndpointFailure(final int status) {
+        return status == -1 || status == 502 || status == 503;
+    }
+
+    private void applyTimeouts(final WebResource target) throws CimiClientException {
+        Integer requestConnectTimeout = this.connectTimeout;
+        Integer requestReadTimeout = this.readTimeout;
+        RequestContext context = RequestContext.current();
+        if (context != null) {
+            int remaining = (int) Math.min(Integer.MAX_VALUE, context.getRemainingMillis());
+            requestConnectTimeout = requestConnectTimeout == null ? remaining : Math.min(requestConnectTimeout, remaining);
+            requestReadTimeout = requestReadTimeout == null ? remaining : Math.min(requestReadTimeout, remaining);
+        }
+        if (requestConnectTimeout != null) {
+            target.setProperty(ClientConfig.PROPERTY_CONNECT_TIMEOUT, requestConnectTimeout);
+        }
+        if (requestReadTimeout != null) {
+            target.setProperty(ClientConfig.PROPERTY_READ_TIMEOUT, requestReadTimeout);
+        }
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private byte[] serializeEntity(final Object entity) throws CimiClientException {
+        MessageBodyWriter writer = this.client.getProviders().getMessageBodyWriter(entity.getClass(), entity.getClass(),
+            new Annotation[0], this.mediaType);
+        if (writer == null) {
+            throw new CimiClientException("Cannot serialize " + entity.getClass().getName() + " as " + this.mediaType);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            writer.writeTo(entity, entity.getClass(), entity.getClass(), new Annotation[0], this.mediaType,
+                new OutBoundHeaders(), out);
+        } catch (IOException e) {
+            throw new CimiClientException(e.getMessage(), e);
+        }
+        return out.toByteArray();
+    }
+
+    private byte[] gzip(final byte[] data) throws CimiClientException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4);
+        try {
+            GZIPOutputStream gzipOut = new GZIPOutputStream(out);
+            gzipOut.write(data);
+            gzipOut.close();
+        } catch (IOException e) {
+            throw new CimiClientException(e.getMessage(), e);
+        }
+        return out.toByteArray();
+    }
+
+    private CimiEndpoint selectEndpoint() {
+        CimiEndpoint selected = null;
+        for (CimiEndpoint endpoint : this.endpoints) {
+            if (endpoint.claimProbe()) {
+                this.probeInBackground(endpoint);
+            }
+            if (endpoint.isSelectable() && !this.isCircuitOpen(endpoint)
+                && (selected == null || endpoint.getLatencyInNanoseconds() < selected.getLatencyInNanoseconds())) {
+                selected = endpoint;
+            }
+        }
+        if (selected == null) {
+            // all endpoints failed recently: pick the one that failed first
+            for (CimiEndpoint endpoint : this.endpoints) {
+                if (endpoint.getWebResource() != null
+                    && (selected == null || endpoint.getFailedAt() < selected.getFailedAt())) {
+                    selected = endpoint;
+                }
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Tells whether the circuit breaker of an endpoint currently rejects
+     * calls, in which case another endpoint is selected.
+     */
+    private boolean isCircuitOpen(final CimiEndpoint endpoint) {
+        if (this.circuitBreakerConfig == null) {
+            return false;
+        }
+        URI uri = URI.create(endpoint.getBaseUri() != null ? endpoint.getBaseUri() : endpoint.getUrl());
+        CircuitBreaker circuitBreaker = this.circuitBreakers.get(uri.getScheme() + "://" + uri.getRawAuthority());
+        return circuitBreaker != null && !circuitBreaker.isCallPermitted();
+    }
+
+    /**
+     * Probes again, in a worker thread, an endpoint that could not be reached
+     * so far, so that it can be selected once it is up.
+     */
+    private void probeInBackground(final CimiEndpoint endpoint) {
+        try {
+            this.getWorkerExecutor().submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        CimiClient.this.probe(endpoint);
+                    } catch (CimiClientException e) {
+                        // endpoint still down, probed again after its backoff
+                    } finally {
+                        endpoint.probeDone();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // closed client
+            endpoint.probeDone();
+        }
+    }
+
+    private WebResource retarget(final WebResource service, final CimiEndpoint endpoint) {
+        String uri = service.getURI().toString();
+        if (endpoint.getBaseUri().equals(this.baseUri) || !uri.startsWith(this.baseUri)) {
+            return service;
+        }
+        return this.client.resource(endpoint.getBaseUri() + uri.substring(this.baseUri.length()));
     }
 
-    private CimiClient(final String cimiEndpointUrl, final String userName, final String password, final String tenantId,
+    private boolean canFailover(final OperationType operationType, final int failovers) {
+        if (failovers >= this.endpoints.size() - 1) {
+            return false;
+        }
+        return operationType == OperationType.READ || operationType == OperationType.DELETE
+            || (this.retryPolicy != null && this.retryPolicy.isRetryable(operationType));
+    }
+
+    private ClientResponse invoke(final OperationType operationType, final WebResource service, final String method,
+        final Object entity) throws CimiClientException {
+        try {
+            return this.invoke(operationType, service, method, entity, this.endpoints.size() > 1, null);
+        } finally {
+            if (operationType != OperationType.READ) {
+                // cached responses are keyed by path, without the query
+                URI uri = service.getURI();
+                this.invalidateCachedResponses(this.extractPath(uri.getScheme() + "://" + uri.getRawAuthority()
+                    + uri.getRawPath()));
+            }
+        }
+    }
+
+    private void invalidateCachedResponses(final String path) {
+        if (this.responseCache != null) {
+            this.responseCache.invalidate(path);
+        }
+        if (this.conditionalGetCache != null) {
+            this.conditionalGetCache.invalidate(path);
+        }
+    }
+
+    /**
+     * Sends a request to the CIMI provider, retrying it according to the
+     * retry policy if the provider is temporarily unavailable. If routable,
+     * the request is sent to the best CIMI endpoint and fails over to the
+     * other endpoints.
+     */
+    private ClientResponse invoke(final OperationType operationType, final WebResource service, final String method,
+        final Object entity, final boolean routable, final Map<String, String> headers) throws CimiClientException {
+        Object requestEntity = entity;
+        boolean compressedEntity = false;
+        if (entity != null && this.requestCompressionThreshold >= 0) {
+            byte[] body = this.serializeEntity(entity);
+            int encodedLength = body.length;
+            if (encodedLength >= this.requestCompressionThreshold) {
+                body = this.gzip(body);
+                compressedEntity = true;
+            }
+            this.compressionStats.addRequestBytes(encodedLength, body.length);
+            requestEntity = body;
+        }
+        int attempt = 0;
+        int failovers = 0;
+        boolean failover = false;
+        boolean reauthenticated = false;
+        while (true) {
+            this.checkNotInterrupted();
+            if (this.rateLimiter != null) {
+                this.rateLimiter.acquire(operationType);
+            }
+            if (!failover) {
+                attempt++;
+            }
+            failover = false;
+            CimiEndpoint endpoint = routable ? this.selectEndpoint() : null;
+            WebResource target = endpoint != null ? this.retarget(service, endpoint) : service;
+            this.applyTimeouts(target);
+            Map<String, String> authHeaders = this.getAuthenticationHeaders();
+            WebResource.Builder builder = this.addAuthenticationHeaders(target, authHeaders).accept(this.mediaType);
+            if (requestEntity != null) {
+                builder = builder.entity(requestEntity, this.mediaType);
+            }
+            if (compressedEntity) {
+                builder = builder.header(ContentEncodingFilter.CONTENT_ENCODING_HEADER, ContentEncodingFilter.GZIP_ENCODING);
+            }
+            if (headers != null) {
+                for (Entry<String, String> header : headers.entrySet()) {
+                    builder = builder.header(header.getKey(), header.getValue());
+                }
+            }
+            long startTime = java.lang.System.nanoTime();
+            ClientResponse response;
+            try {
+                response = this.send(target, builder, method);
+            } catch (CimiCircuitOpenException e) {
+                if (endpoint != null && this.canFailover(operationType, failovers)) {
+                    failovers++;
+                    failover = true;
+                    continue;
+                }
+                throw e;
+            } catch (ClientHandlerException e) {
+                if (endpoint != null) {
+                    endpoint.recordFailure();
+                    if (this.canFailover(operationType, failovers)) {
+                        failovers++;
+                        failover = true;
+                        continue;
+                    }
+                }
+                if (this.isRetryable(operationType, attempt)) {
+                    this.waitBeforeRetry(attempt, null);
+                    continue;
+                }
+                if (attempt > 1) {
+                    this.retriesExhaustedCount.incrementAndGet();
+                }
+                throw e;
+            }
+            if (response.getStatus() == 401 && this.refreshableAuthPlugin != null && !reauthenticated) {
+                // resend once with renewed credentials, without counting a new attempt
+                response.close();
+                this.refreshableAuthPlugin.renew(authHeaders);
+                reauthenticated = true;
+                failover = true;
+                continue;
+            }
+            if (CimiClient.isEndpointFailure(response.getStatus())) {
+                if (endpoint != null) {
+                    endpoint.recordFailure();
+                    if (this.canFailover(operationType, failovers)) {
+                        response.close();
+                        failovers++;
+                        failover = true;
+                        continue;
+                    }
+                }
+                if (this.isRetryable(operationType, attempt)) {
+                    String retryAfter = response.getHeaders().getFirst(CimiClient.RETRY_AFTER_HEADER);
+                    response.close();
+                    this.waitBeforeRetry(attempt, retryAfter);
+                    continue;
+                }
+                if (attempt > 1) {
+                    this.retriesExhaustedCount.incrementAndGet();
+                }
+            } else if (endpoint != null) {
+                endpoint.recordSuccess(java.lang.System.nanoTime() - startTime);
+            }
+            return response;
+        }
+    }
+
+    private CimiCloudEntryPoint probe(final CimiEndpoint endpoint) throws CimiClientException {
+        WebResource cepWebResource = this.client.resource(endpoint.getUrl());
+        long startTime = java.lang.System.nanoTime();
+        try {
+            ClientResponse response = this.invoke(OperationType.READ, cepWebResource, "GET", null, false, null);
+            this.handleResponseStatus(response);
+            CimiCloudEntryPoint cep = response.getEntity(CimiCloudEntryPoint.class);
+            if (endpoint.getWebResource() == null) {
+                endpoint.setWebResource(cep.getBaseURI(), this.client.resource(cep.getBaseURI()));
+            }
+            endpoint.recordSuccess(java.lang.System.nanoTime() - startTime);
+            return cep;
+        } catch (CimiClientException e) {
+            endpoint.recordFailure();
+            throw e;
+        } catch (ClientHandlerException e) {
+            endpoint.recordFailure();
+            String message = (e.getCause() != null && !(e.getCause() instanceof UnknownHostException)) ? e.getCause()
+                .getMessage() : e.getMessage();
+            throw new CimiClientException(message, e);
+        }
+    }
+
+    /**
+     * Probes all the CIMI endpoints of this client by retrieving their cloud
+     * entry point, which updates their health status and latency.
+     * 
+     * @return the number of healthy endpoints
+     */
+    public int probeEndpoints() {
+        int healthyEndpoints = 0;
+        for (CimiEndpoint endpoint : this.endpoints) {
+            try {
+                this.probe(endpoint);
+                healthyEndpoints++;
+            } catch (CimiClientException e) {
+                // endpoint marked as unhealthy
+            }
+        }
+        return healthyEndpoints;
+    }
+
+    /**
+     * Returns the CIMI endpoints used by this client.
+     * 
+     * @return the endpoints
+     */
+    public List<CimiEndpoint> getEndpoints() {
+        return Collections.unmodifiableList(this.endpoints);
+    }
+
+    private CimiTransport createTransport(final Options options) throws CimiClientException {
+        if (options.transport != null) {
+            return options.transport;
+        }
+        String transportClassName = java.lang.System.getProperty(CimiClient.CIMICLIENT_TRANSPORT_CLASS_PROP);
+        if (transportClassName == null) {
+            transportClassName = options.connectionPooling ? CimiClient.POOLED_CIMICLIENT_TRANSPORT_CLASS
+                : CimiClient.DEFAULT_CIMICLIENT_TRANSPORT_CLASS;
+        }
+        Class<?> transportClazz = null;
+        try {
+            transportClazz = Class.forName(transportClassName);
+        } catch (ClassNotFoundException ex) {
+            throw new CimiClientException("Cannot find transport class " + transportClassName);
+        }
+        try {
+            return (CimiTransport) transportClazz.newInstance();
+        } catch (Exception ex) {
+            throw new CimiClientException("Cannot create transport " + transportClassName + " " + ex.getMessage());
+        }
+    }
+
+    private CimiClient(final List<String> cimiEndpointUrls, final String userName, final String password, final String tenantId,
         final Options... optionList) throws CimiClientException, CimiProviderException {
-        this.cimiEndpointUrl = cimiEndpointUrl;
+        this.cimiEndpointUrl = cimiEndpointUrls.get(0);
         this.userName = userName;
         this.password = password;
-        this.initAuthenticationHeaders(userName, password, tenantId);
+        this.initAuthenticationHeaders(userName, password, tenantId, optionList);
         // ClientConfig config = new DefaultClientConfig();
         // config.getFeatures().put(JSONConfiguration.FEATURE_POJO_MAPPING,
         // Boolean.TRUE);
         // Client client = Client.create(config);
-        Client client = this.createClient(optionList);
+        Options clientOptions = optionList.length > 0 ? optionList[0] : Options.build();
+        this.transport = this.createTransport(clientOptions);
+        Client client = this.transport.createClient(clientOptions);
+        this.client = client;
+        if (clientOptions.compression) {
+            client.addFilter(new ContentEncodingFilter(this.compressionStats));
+        }
+        this.requestCompressionThreshold = clientOptions.requestCompressionThreshold;
+        if (clientOptions.expandEmulation) {
+            this.referenceExpander = new ReferenceExpander(this);
+        }
+        if (clientOptions.conditionalGet) {
+            this.conditionalGetCache = new ConditionalGetCache();
+        }
+        if (clientOptions.requestCoalescing) {
+            this.singleFlight = new SingleFlight();
+        }
+        if (clientOptions.identityMap) {
+            this.identityMap = new IdentityMap();
+        }
+        long endpointBackoff = CimiEndpoint.INITIAL_BACKOFF_IN_MILLISECONDS;
         for (Options options : optionList) {
             if (options.debug) {
                 client.addFilter(this.loggingFilter);
@@ -337,21 +1258,86 @@ public class CimiClient {
             if (options.mediaType != null) {
                 this.mediaType = options.mediaType;
             }
+            if (options.retryPolicy != null) {
+                this.retryPolicy = options.retryPolicy;
+            }
+            if (options.rateLimiter != null) {
+                this.rateLimiter = options.rateLimiter;
+            }
+            if (options.concurrencyLimiter != null) {
+                this.concurrencyLimiter = options.concurrencyLimiter;
+            }
+            if (options.circuitBreakerConfig != null) {
+                this.circuitBreakerConfig = options.circuitBreakerConfig;
+            }
+            if (options.endpointBackoff != null) {
+                endpointBackoff = options.endpointBackoff;
+            }
+            if (options.connectTimeout != null) {
+                this.connectTimeout = options.connectTimeout;
+                client.setConnectTimeout(options.connectTimeout);
+            }
+            if (options.readTimeout != null) {
+                this.readTimeout = options.readTimeout;
+                client.setReadTimeout(options.readTimeout);
+            }
         }
-        try {
-            WebResource cepWebResource = client.resource(cimiEndpointUrl);
-
-            ClientResponse response = this.addAuthenticationHeaders(cepWebResource).accept(this.mediaType)
-                .get(ClientResponse.class);
-            this.handleResponseStatus(response);
-            this.cloudEntryPoint = response.getEntity(CimiCloudEntryPoint.class);
+        CimiClientException probeException = null;
+        for (String url : cimiEndpointUrls) {
+            CimiEndpoint endpoint = new CimiEndpoint(url, endpointBackoff);
+            this.endpoints.add(endpoint);
+            try {
+                CimiCloudEntryPoint cep = this.probe(endpoint);
+                if (this.cloudEntryPoint == null) {
+                    this.cloudEntryPoint = cep;
+                    this.baseUri = cep.getBaseURI();
+                    this.webResource = endpoint.getWebResource();
+                }
+            } catch (CimiClientException e) {
+                if (probeException == null) {
+                    probeException = e;
+                }
+            }
+        }
+        if (this.cloudEntryPoint == null) {
+            this.close();
+            throw probeException;
+        }
+        if (clientOptions.responseCacheConfig != null) {
+            this.responseCache = this.createResponseCache(clientOptions.responseCacheConfig);
+        }
+    }
 
-            this.webResource = client.resource(this.cloudEntryPoint.getBaseURI());
-        } catch (ClientHandlerException e) {
-            String message = (e.getCause() != null && !(e.getCause() instanceof UnknownHostException)) ? e.getCause()
-                .getMessage() : e.getMessage();
-            throw new CimiClientException(message, e);
+    private ResponseCache createResponseCache(final ResponseCacheConfig config) {
+        CimiCloudEntryPoint cep = this.cloudEntryPoint;
+        Map<Class<?>, String> hrefs = new HashMap<Class<?>, String>();
+        hrefs.put(Address.class, cep.getAddresses() == null ? null : cep.getAddresses().getHref());
+        hrefs.put(Credential.class, cep.getCredentials() == null ? null : cep.getCredentials().getHref());
+        hrefs.put(CredentialTemplate.class, cep.getCredentialTemplates() == null ? null : cep.getCredentialTemplates()
+            .getHref());
+        hrefs.put(Job.class, cep.getJobs() == null ? null : cep.getJobs().getHref());
+        hrefs.put(Machine.class, cep.getMachines() == null ? null : cep.getMachines().getHref());
+        hrefs.put(MachineConfiguration.class, cep.getMachineConfigs() == null ? null : cep.getMachineConfigs().getHref());
+        hrefs.put(MachineImage.class, cep.getMachineImages() == null ? null : cep.getMachineImages().getHref());
+        hrefs.put(MachineTemplate.class, cep.getMachineTemplates() == null ? null : cep.getMachineTemplates().getHref());
+        hrefs.put(Network.class, cep.getNetworks() == null ? null : cep.getNetworks().getHref());
+        hrefs.put(NetworkConfiguration.class, cep.getNetworkConfigs() == null ? null : cep.getNetworkConfigs().getHref());
+        hrefs.put(NetworkTemplate.class, cep.getNetworkTemplates() == null ? null : cep.getNetworkTemplates().getHref());
+        hrefs.put(ResourceMetadata.class, cep.getResourceMetadata() == null ? null : cep.getResourceMetadata().getHref());
+        hrefs.put(System.class, cep.getSystems() == null ? null : cep.getSystems().getHref());
+        hrefs.put(SystemTemplate.class, cep.getSystemTemplates() == null ? null : cep.getSystemTemplates().getHref());
+        hrefs.put(Volume.class, cep.getVolumes() == null ? null : cep.getVolumes().getHref());
+        hrefs.put(VolumeConfiguration.class, cep.getVolumeConfigs() == null ? null : cep.getVolumeConfigs().getHref());
+        hrefs.put(VolumeImage.class, cep.getVolumeImages() == null ? null : cep.getVolumeImages().getHref());
+        hrefs.put(VolumeTemplate.class, cep.getVolumeTemplates() == null ? null : cep.getVolumeTemplates().getHref());
+        Map<String, Long> ttlByCollectionPath = new HashMap<String, Long>();
+        for (Entry<Class<?>, Long> ttl : config.getTtls().entrySet()) {
+            String href = hrefs.get(ttl.getKey());
+            if (href != null) {
+                ttlByCollectionPath.put(this.extractPath(href), ttl.getValue());
+            }
         }
+        return new ResponseCache(config, ttlByCollectionPath);
     }
 
     /**
@@ -363,6 +1349,208 @@ public class CimiClient {
         this.mediaType = mediaType;
     }
 
+    /**
+     * Returns statistics about the pool of HTTP connections used by this
+     * client.
+     * 
+     * @return the connection pool statistics or null if connection pooling is
+     *         not enabled
+     */
+    public ConnectionPoolStats getConnectionPoolStats() {
+        return this.transport.getConnectionPoolStats();
+    }
+
+    /**
+     * Returns the rate limiter applied to the requests of this client.
+     * 
+     * @return the rate limiter or null
+     */
+    public RateLimiter getRateLimiter() {
+        return this.rateLimiter;
+    }
+
+    /**
+     * Returns the adaptive concurrency limiter applied to the requests of this
+     * client.
+     * 
+     * @return the concurrency limiter or null
+     */
+    public ConcurrencyLimiter getConcurrencyLimiter() {
+        return this.concurrencyLimiter;
+    }
+
+    /**
+     * Returns the circuit breakers of the CIMI endpoints contacted so far,
+     * keyed by endpoint (scheme, host and port).
+     * 
+     * @return the circuit breakers
+     */
+    public Map<String, CircuitBreaker> getCircuitBreakers() {
+        return Collections.unmodifiableMap(this.circuitBreakers);
+    }
+
+    /**
+     * Returns the byte counters of compressed requests and responses.
+     * 
+     * @return the compression statistics
+     */
+    public CompressionStats getCompressionStats() {
+        return this.compressionStats;
+    }
+
+    /**
+     * Returns the response cache of this client.
+     * 
+     * @return the response cache, or null if responses are not cached
+     */
+    public ResponseCache getResponseCache() {
+        return this.responseCache;
+    }
+
+    /**
+     * Returns the number of requests that have been retried since the creation
+     * of this client.
+     * 
+     * @return the number of retries
+     */
+    public long getRetryCount() {
+        return this.retryCount.get();
+    }
+
+    /**
+     * Returns the number of requests that failed even though they have been
+     * retried the maximum number of times.
+     * 
+     * @return the number of requests whose retries have been exhausted
+     */
+    public long getRetriesExhaustedCount() {
+        return this.retriesExhaustedCount.get();
+    }
+
+    /**
+     * Returns the number of conditional GET requests whose response was
+     * found unchanged, either by the provider (304 Not Modified) or by
+     * comparing the response body with the previous one.
+     * 
+     * @return the number of unchanged responses
+     */
+    public long getUnchangedResponseCount() {
+        return this.unchangedResponseCount.get();
+    }
+
+    /**
+     * Returns the number of GET requests that did not send an HTTP request
+     * of their own because an identical request was already in flight.
+     * 
+     * @return the number of HTTP calls saved by request coalescing
+     */
+    public long getCoalescedRequestCount() {
+        return this.singleFlight != null ? this.singleFlight.getCoalescedCount() : 0;
+    }
+
+    /**
+     * Releases the HTTP resources (pooled connections, background threads)
+     * held by this client. The client must not be used afterwards.
+     */
+    public void close() {
+        synchronized (this) {
+            if (this.workerExecutor != null) {
+                this.workerExecutor.shutdownNow();
+            }
+        }
+        if (this.refreshableAuthPlugin != null) {
+            this.refreshableAuthPlugin.close();
+        }
+        this.transport.close();
+    }
+
+    /**
+     * Runs tasks in the background worker threads of this client, with at most
+     * parallelism of them running at the same time, and returns their results
+     * in the order of the tasks. The first failure cancels the remaining
+     * tasks and is rethrown.
+     */
+    <T> List<T> invokeAll(final List<? extends Callable<T>> tasks, final int parallelism) throws CimiClientException {
+        List<T> results = new ArrayList<T>(Collections.<T> nCopies(tasks.size(), null));
+        final BlockingQueue<Integer> completed = new LinkedBlockingQueue<Integer>();
+        Map<Integer, Future<T>> inFlight = new HashMap<Integer, Future<T>>();
+        int next = 0;
+        try {
+            while (next < tasks.size() || !inFlight.isEmpty()) {
+                while (next < tasks.size() && inFlight.size() < Math.max(1, parallelism)) {
+                    final int index = next++;
+                    final Callable<T> task = tasks.get(index);
+                    inFlight.put(index, this.submitTask(new Callable<T>() {
+                        @Override
+                        public T call() throws Exception {
+                            try {
+                                return task.call();
+                            } finally {
+                                completed.add(index);
+                            }
+                        }
+                    }));
+                }
+                int index = completed.take();
+                try {
+                    results.set(index, inFlight.remove(index).get());
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof CimiClientException) {
+                        throw (CimiClientException) e.getCause();
+                    }
+                    throw new CimiClientException(e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CimiClientException("Interrupted", e);
+        } finally {
+            for (Future<T> future : inFlight.values()) {
+                future.cancel(true);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Runs a task in a background worker thread of this client. The
+     * RequestContext active when the task is submitted also applies to its
+     * execution.
+     */
+    <T> Future<T> submitTask(final Callable<T> task) {
+        final RequestContext context = RequestContext.current() != null ? RequestContext.current().fork() : null;
+        return this.getWorkerExecutor().submit(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                if (context == null) {
+                    return task.call();
+                }
+                context.attach();
+                try {
+                    return task.call();
+                } finally {
+                    context.close();
+                }
+            }
+        });
+    }
+
+    private synchronized ExecutorService getWorkerExecutor() {
+        if (this.workerExecutor == null) {
+            this.workerExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+                private final AtomicInteger threadCount = new AtomicInteger();
+
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    Thread thread = new Thread(runnable, "cimiclient-worker-" + this.threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return this.workerExecutor;
+    }
+
     /**
      * Login to a CIMI provider with some credentials.
      * 
@@ -376,10 +1564,33 @@ public class CimiClient {
      */
     public static CimiClient login(final String cimiEndpointUrl, final String userName, final String password,
         final String tenantId, final Options... options) throws CimiClientException {
-        return new CimiClient(cimiEndpointUrl, userName, password, tenantId, options);
+        return new CimiClient(Collections.singletonList(cimiEndpointUrl), userName, password, tenantId, options);
     }
 
-    <U> U getRequest(final String path, final Class<U> clazz, final QueryParams... queryParams) throws CimiClientException {
+    /**
+     * Login to a CIMI provider exposed through several replicas of its API.
+     * All the endpoints are probed; each request is then sent to the healthy
+     * endpoint with the lowest latency and fails over to the other endpoints
+     * if this endpoint becomes unavailable.
+     * 
+     * @param cimiEndpointUrls URLs of the CIMI provider endpoints
+     * @param userName user name
+     * @param password password
+     * @param tenantId tenant Id
+     * @param options options
+     * @return the cimi client
+     * @throws CimiClientException raised if none of the endpoints can be
+     *         reached
+     */
+    public static CimiClient login(final List<String> cimiEndpointUrls, final String userName, final String password,
+        final String tenantId, final Options... options) throws CimiClientException {
+        if (cimiEndpointUrls.isEmpty()) {
+            throw new CimiClientException("No CIMI endpoint");
+        }
+        return new CimiClient(cimiEndpointUrls, userName, password, tenantId, options);
+    }
+
+    private WebResource queryResource(final String path, final QueryParams... queryParams) {
         WebResource service = this.webResource.path(path);
         if (queryParams.length > 0) {
             if (queryParams[0].getExpand() != null) {
@@ -398,11 +1609,147 @@ public class CimiClient {
                 service = service.queryParam(CimiClient.CIMI_QUERY_LAST_KEYWORD, Integer.toString(queryParams[0].getLast()));
             }
         }
+        return service;
+    }
+
+    <U> U getRequest(final String path, final Class<U> clazz, final QueryParams... queryParams) throws CimiClientException {
+        final WebResource service = this.queryResource(path, queryParams);
+        if (this.singleFlight == null) {
+            return this.getRequest(path, service, clazz, queryParams);
+        }
+        String key = clazz.getName() + " " + this.mediaType + " " + service.getURI();
+        return this.singleFlight.execute(key, new Callable<U>() {
+            @Override
+            public U call() throws CimiClientException {
+                return CimiClient.this.getRequest(path, service, clazz, queryParams);
+            }
+        });
+    }
+
+    private <U> U getRequest(final String path, final WebResource service, final Class<U> clazz,
+        final QueryParams... queryParams) throws CimiClientException {
+        try {
+            U cimiObject;
+            String collectionPath = this.responseCache == null ? null : this.responseCache.findCollectionPath(path);
+            if (collectionPath != null) {
+                cimiObject = this.getCachedRequest(service, collectionPath, clazz);
+            } else if (this.conditionalGetCache != null) {
+                cimiObject = this.getConditionalRequest(path, service, clazz);
+            } else {
+                ClientResponse response = this.invoke(OperationType.READ, service, "GET", null);
+                this.handleResponseStatus(response);
+                cimiObject = response.getEntity(clazz);
+            }
+            if (this.referenceExpander != null && queryParams.length > 0 && queryParams[0].getExpand() != null) {
+                this.referenceExpander.expand(cimiObject, queryParams[0].getExpand());
+            }
+            return cimiObject;
+        } catch (ClientHandlerException e) {
+            throw new CimiClientException(e.getMessage(), e);
+        }
+    }
+
+    private <U> U getCachedRequest(final WebResource service, final String collectionPath, final Class<U> clazz)
+        throws CimiClientException {
+        String key = clazz.getName() + " " + this.mediaType + " " + service.getURI();
+        ResponseCache.Entry entry = this.responseCache.get(key);
+        if (entry == null) {
+            ClientResponse response = this.invoke(OperationType.READ, service, "GET", null);
+            if (response.getStatus() == 404) {
+                CimiProviderException e = new CimiProviderException("Resource not found: "
+                    + response.getEntity(String.class));
+                e.setReturnCode(404);
+                this.responseCache.putNotFound(key, collectionPath, e.getMessage());
+                throw e;
+            }
+            this.handleResponseStatus(response);
+            MediaType responseType = response.getType() != null ? response.getType() : this.mediaType;
+            entry = this.responseCache.put(key, collectionPath, response.getEntity(byte[].class), responseType);
+        }
+        if (entry.isNotFound()) {
+            CimiProviderException e = new CimiProviderException(entry.notFoundMessage);
+            e.setReturnCode(404);
+            throw e;
+        }
+        return this.deserializeEntity(entry.body, entry.mediaType, clazz);
+    }
+
+    private <U> U getConditionalRequest(final String path, final WebResource service, final Class<U> clazz)
+        throws CimiClientException {
+        String key = clazz.getName() + " " + this.mediaType + " " + service.getURI();
+        ConditionalGetCache.Validators previous = this.conditionalGetCache.get(key);
+        Map<String, String> headers = null;
+        if (previous != null) {
+            headers = new HashMap<String, String>();
+            if (previous.etag != null) {
+                headers.put(CimiClient.IF_NONE_MATCH_HEADER, previous.etag);
+            }
+            if (previous.lastModified != null) {
+                headers.put(CimiClient.IF_MODIFIED_SINCE_HEADER, previous.lastModified);
+            }
+        }
+        ClientResponse response = this.invoke(OperationType.READ, service, "GET", null, this.endpoints.size() > 1, headers);
+        if (response.getStatus() == 304 && previous != null) {
+            response.close();
+            this.unchangedResponseCount.incrementAndGet();
+            return this.deserializeEntity(previous.body, previous.mediaType, clazz);
+        }
         try {
-            ClientResponse response = this.addAuthenticationHeaders(service).accept(this.mediaType).get(ClientResponse.class);
             this.handleResponseStatus(response);
-            U cimiObject = response.getEntity(clazz);
-            return cimiObject;
+        } catch (CimiProviderException e) {
+            this.conditionalGetCache.remove(key);
+            throw e;
+        }
+        byte[] body = response.getEntity(byte[].class);
+        String etag = response.getHeaders().getFirst(CimiClient.ETAG_HEADER);
+        String lastModified = response.getHeaders().getFirst(CimiClient.LAST_MODIFIED_HEADER);
+        MediaType responseType = response.getType() != null ? response.getType() : this.mediaType;
+        ConditionalGetCache.Validators validators = new ConditionalGetCache.Validators(path, etag, lastModified, body,
+            responseType);
+        if (previous != null && previous.hasSameContent(validators.digest)) {
+            this.unchangedResponseCount.incrementAndGet();
+        }
+        this.conditionalGetCache.put(key, validators);
+        return this.deserializeEntity(body, responseType, clazz);
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private <U> U deserializeEntity(final byte[] body, final MediaType type, final Class<U> clazz) throws CimiClientException {
+        MessageBodyReader reader = this.client.getProviders().getMessageBodyReader(clazz, clazz, new Annotation[0], type);
+        if (reader == null) {
+            throw new CimiClientException("Cannot deserialize " + clazz.getName() + " from " + type);
+        }
+        try {
+            return (U) reader.readFrom(clazz, clazz, new Annotation[0], type, new InBoundHeaders(), new ByteArrayInputStream(
+                body));
+        } catch (IOException e) {
+            throw new CimiClientException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Retrieves a collection and decodes its members one at a time, handing
+     * each of them to a visitor while the response is being read. The
+     * connection is held until the visitor has seen the last member.
+     */
+    <E> int visitCollection(final String path, final String jsonArrayName, final String xmlElementName,
+        final Class<E> memberClass, final CollectionVisitor<? super E> visitor, final QueryParams... queryParams)
+        throws CimiClientException {
+        WebResource service = this.queryResource(path, queryParams);
+        try {
+            ClientResponse response = this.invoke(OperationType.READ, service, "GET", null);
+            this.handleResponseStatus(response);
+            InputStream in = response.getEntityInputStream();
+            try {
+                MediaType type = response.getType() != null ? response.getType() : this.mediaType;
+                return CollectionStreamReader.read(in, type, jsonArrayName, xmlElementName, memberClass, visitor);
+            } finally {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
         } catch (ClientHandlerException e) {
             throw new CimiClientException(e.getMessage(), e);
         }
@@ -411,19 +1758,22 @@ public class CimiClient {
     <U> CimiJob actionRequest(final String href, final U input) throws CimiClientException {
         WebResource service = this.webResource.path(this.extractPath(href));
         try {
-            ClientResponse response = this.addAuthenticationHeaders(service).accept(this.mediaType)
-                .entity(input, this.mediaType).post(ClientResponse.class);
-            this.handleResponseStatus(response);
-            if (response.getStatus() == 202) {
-                if (response.getLength() > 0
-                    || (response.getType() != null && (response.getType().equals(MediaType.APPLICATION_XML_TYPE) || response
-                        .getType().equals(MediaType.APPLICATION_JSON_TYPE)))) {
-                    return response.getEntity(CimiJob.class);
-                }
-                String jobId = response.getHeaders().getFirst(CimiClient.CIMI_JOB_URI_HEADER);
-                if (jobId != null) {
-                    return new CimiJob(jobId);
+            ClientResponse response = this.invoke(OperationType.ACTION, service, "POST", input);
+            try {
+                this.handleResponseStatus(response);
+                if (response.getStatus() == 202) {
+                    if (response.getLength() > 0
+                        || (response.getType() != null && (response.getType().equals(MediaType.APPLICATION_XML_TYPE) || response
+                            .getType().equals(MediaType.APPLICATION_JSON_TYPE)))) {
+                        return response.getEntity(CimiJob.class);
+                    }
+                    String jobId = response.getHeaders().getFirst(CimiClient.CIMI_JOB_URI_HEADER);
+                    if (jobId != null) {
+                        return new CimiJob(jobId);
+                    }
                 }
+            } finally {
+                response.close();
             }
         } catch (ClientHandlerException e) {
             throw new CimiClientException(e.getMessage(), e);
@@ -431,53 +1781,96 @@ public class CimiClient {
         return null;
     }
 
+    /**
+     * Returns the href of an operation of a collection. The operations of each
+     * collection are discovered once, with a request selecting only the
+     * operations attribute, and then cached.
+     */
+    <C extends CimiResource> String findCollectionOperation(final String collectionHref, final Class<C> collectionClass,
+        final String rel) throws CimiClientException {
+        String path = this.extractPath(collectionHref);
+        Map<String, String> operations = this.collectionOperations.get(path);
+        if (operations == null) {
+            C collection;
+            try {
+                collection = this.getRequest(path, collectionClass, QueryParams.builder().select("operations").build());
+            } catch (CimiProviderException e) {
+                if (e.getReturnCode() == null || (e.getReturnCode() != 400 && e.getReturnCode() != 501)) {
+                    throw e;
+                }
+                collection = this.getRequest(path, collectionClass);
+            }
+            operations = Helper.indexOperations(collection);
+            this.collectionOperations.put(path, operations);
+        }
+        return operations.get(rel);
+    }
+
+    /**
+     * Forgets the cached collection operations pointing to an href that turned
+     * out to be stale.
+     */
+    private void invalidateCollectionOperations(final String href) {
+        for (Iterator<Map<String, String>> it = this.collectionOperations.values().iterator(); it.hasNext();) {
+            if (it.next().containsValue(href)) {
+                it.remove();
+            }
+        }
+    }
+
     <U, V> CimiResult<V> postCreateRequest(final String ref, final U input, final Class<V> outputClazz)
         throws CimiClientException {
         WebResource service = this.webResource.path(this.extractPath(ref));
         try {
-            ClientResponse response = this.addAuthenticationHeaders(service).accept(this.mediaType)
-                .entity(input, this.mediaType).post(ClientResponse.class);
-            this.handleResponseStatus(response);
-            CimiResult<V> createResult = null;
-            if (response.getStatus() == 201) {
-                V resource = null;
-                if (response.getLength() > 0
-                    || (response.getType() != null && (response.getType().equals(MediaType.APPLICATION_XML_TYPE) || response
-                        .getType().equals(MediaType.APPLICATION_JSON_TYPE)))) {
-                    resource = response.getEntity(outputClazz);
-                } else {
-                    String resourceId = response.getHeaders().getFirst(CimiClient.CIMI_LOCATION_HEADER);
-                    try {
-                        resource = outputClazz.newInstance();
-                        ((CimiObjectCommonAbstract) resource).setId(resourceId);
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                    }
-                }
-                createResult = new CimiResult<V>(null, resource);
-            } else if (response.getStatus() == 202) {
-                CimiJob job = null;
-                V resource = null;
-                String jobId = response.getHeaders().getFirst(CimiClient.CIMI_JOB_URI_HEADER);
-                if (jobId != null) {
-                    job = new CimiJob(jobId);
+            ClientResponse response = this.invoke(OperationType.CREATE, service, "POST", input);
+            try {
+                if (response.getStatus() == 404 || response.getStatus() == 405) {
+                    this.invalidateCollectionOperations(ref);
                 }
-                if (response.getLength() > 0
-                    || (response.getType() != null && (response.getType().equals(MediaType.APPLICATION_XML_TYPE) || response
-                        .getType().equals(MediaType.APPLICATION_JSON_TYPE)))) {
-                    resource = response.getEntity(outputClazz);
-                } else {
-                    String resourceId = response.getHeaders().getFirst(CimiClient.CIMI_LOCATION_HEADER);
-                    try {
-                        resource = outputClazz.newInstance();
-                        ((CimiObjectCommonAbstract) resource).setId(resourceId);
-                    } catch (Exception e) {
-                        e.printStackTrace();
+                this.handleResponseStatus(response);
+                CimiResult<V> createResult = null;
+                if (response.getStatus() == 201) {
+                    V resource = null;
+                    if (response.getLength() > 0
+                        || (response.getType() != null && (response.getType().equals(MediaType.APPLICATION_XML_TYPE) || response
+                            .getType().equals(MediaType.APPLICATION_JSON_TYPE)))) {
+                        resource = response.getEntity(outputClazz);
+                    } else {
+                        String resourceId = response.getHeaders().getFirst(CimiClient.CIMI_LOCATION_HEADER);
+                        try {
+                            resource = outputClazz.newInstance();
+                            ((CimiObjectCommonAbstract) resource).setId(resourceId);
+                        } catch (Exception e) {
+                            e.printStackTrace();
+                        }
                     }
+                    createResult = new CimiResult<V>(null, resource);
+                } else if (response.getStatus() == 202) {
+                    CimiJob job = null;
+                    V resource = null;
+                    String jobId = response.getHeaders().getFirst(CimiClient.CIMI_JOB_URI_HEADER);
+                    if (jobId != null) {
+                        job = new CimiJob(jobId);
+                    }
+                    if (response.getLength() > 0
+                        || (response.getType() != null && (response.getType().equals(MediaType.APPLICATION_XML_TYPE) || response
+                            .getType().equals(MediaType.APPLICATION_JSON_TYPE)))) {
+                        resource = response.getEntity(outputClazz);
+                    } else {
+                        String resourceId = response.getHeaders().getFirst(CimiClient.CIMI_LOCATION_HEADER);
+                        try {
+                            resource = outputClazz.newInstance();
+                            ((CimiObjectCommonAbstract) resource).setId(resourceId);
+                        } catch (Exception e) {
+                            e.printStackTrace();
+                        }
+                    }
+                    createResult = new CimiResult<V>(job, resource);
                 }
-                createResult = new CimiResult<V>(job, resource);
+                return createResult;
+            } finally {
+                response.close();
             }
-            return createResult;
         } catch (ClientHandlerException e) {
             throw new CimiClientException(e.getMessage(), e);
         }
@@ -488,31 +1881,36 @@ public class CimiClient {
         WebResource service = this.webResource.path(this.extractPath(href));
         service = service.queryParam(CimiClient.CIMI_QUERY_SELECT_KEYWORD, attributes);
         try {
-            ClientResponse response = this.addAuthenticationHeaders(service).accept(this.mediaType)
-                .entity(input, this.mediaType).put(ClientResponse.class);
-            this.handleResponseStatus(response);
-            CimiResult<V> updateResult = null;
-            if (response.getStatus() == 200) {
-                V resource = null;
-                if (response.getLength() > 0) {
-                    resource = (V) response.getEntity(input.getClass());
-                }
-                updateResult = new CimiResult<V>(null, resource);
-            } else if (response.getStatus() == 202) {
-                CimiJob job = null;
-                V resource = null;
-                String jobId = response.getHeaders().getFirst(CimiClient.CIMI_JOB_URI_HEADER);
-                if (jobId != null) {
-                    job = new CimiJob(jobId);
-                }
-                if (response.getLength() > 0
-                    || (response.getType() != null && (response.getType().equals(MediaType.APPLICATION_XML_TYPE) || response
-                        .getType().equals(MediaType.APPLICATION_JSON_TYPE)))) {
-                    resource = (V) response.getEntity(input.getClass());
+            ClientResponse response = this.invoke(OperationType.UPDATE, service, "PUT", input);
+            try {
+                this.handleResponseStatus(response);
+                CimiResult<V> updateResult = null;
+                if (response.getStatus() == 200) {
+                    V resource = null;
+                    if (response.getLength() > 0
+                        || (response.getLength() < 0 && response.getType() != null && (response.getType().equals(
+                            MediaType.APPLICATION_XML_TYPE) || response.getType().equals(MediaType.APPLICATION_JSON_TYPE)))) {
+                        resource = (V) response.getEntity(input.getClass());
+                    }
+                    updateResult = new CimiResult<V>(null, resource);
+                } else if (response.getStatus() == 202) {
+                    CimiJob job = null;
+                    V resource = null;
+                    String jobId = response.getHeaders().getFirst(CimiClient.CIMI_JOB_URI_HEADER);
+                    if (jobId != null) {
+                        job = new CimiJob(jobId);
+                    }
+                    if (response.getLength() > 0
+                        || (response.getType() != null && (response.getType().equals(MediaType.APPLICATION_XML_TYPE) || response
+                            .getType().equals(MediaType.APPLICATION_JSON_TYPE)))) {
+                        resource = (V) response.getEntity(input.getClass());
+                    }
+                    updateResult = new CimiResult<V>(job, resource);
                 }
-                updateResult = new CimiResult<V>(job, resource);
+                return updateResult;
+            } finally {
+                response.close();
             }
-            return updateResult;
         } catch (ClientHandlerException e) {
             throw new CimiClientException(e.getMessage(), e);
         }
@@ -521,24 +1919,27 @@ public class CimiClient {
     CimiJob deleteRequest(final String id) throws CimiClientException {
         WebResource service = this.webResource.path(this.extractPath(id));
         try {
-            ClientResponse response = this.addAuthenticationHeaders(service).accept(this.mediaType)
-                .delete(ClientResponse.class);
-            this.handleResponseStatus(response);
-            if (response.getStatus() == 202) {
-                CimiJob job = null;
-                if (response.getLength() > 0
-                    || (response.getType() != null && (response.getType().equals(MediaType.APPLICATION_XML_TYPE) || response
-                        .getType().equals(MediaType.APPLICATION_JSON_TYPE)))) {
-                    job = response.getEntity(CimiJob.class);
-                } else {
-                    String jobId = response.getHeaders().getFirst(CimiClient.CIMI_JOB_URI_HEADER);
-                    if (jobId != null) {
-                        job = new CimiJob(jobId);
+            ClientResponse response = this.invoke(OperationType.DELETE, service, "DELETE", null);
+            try {
+                this.handleResponseStatus(response);
+                if (response.getStatus() == 202) {
+                    CimiJob job = null;
+                    if (response.getLength() > 0
+                        || (response.getType() != null && (response.getType().equals(MediaType.APPLICATION_XML_TYPE) || response
+                            .getType().equals(MediaType.APPLICATION_JSON_TYPE)))) {
+                        job = response.getEntity(CimiJob.class);
+                    } else {
+                        String jobId = response.getHeaders().getFirst(CimiClient.CIMI_JOB_URI_HEADER);
+                        if (jobId != null) {
+                            job = new CimiJob(jobId);
+                        }
                     }
+                    return job;
+                } else {
+                    return null;
                 }
-                return job;
-            } else {
-                return null;
+            } finally {
+                response.close();
             }
         } catch (ClientHandlerException e) {
             throw new CimiClientException(e.getMessage(), e);
@@ -0,0 +1,184 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2012 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ *  $Id$
+ *
+ */
+package org.ow2.sirocco.cimi.sdk;
+
+import java.util.concurrent.TimeUnit;
+
+import com.sun.jersey.api.client.WebResource;
+
+/**
+ * One replica of a CIMI provider API used by a CimiClient, with its health
+ * status and smoothed (EWMA) latency. A failed endpoint is not selected until
+ * a backoff delay, doubled on each consecutive failure, has elapsed; it is
+ * then given requests again, or probed again if it has never been reached.
+ */
+public class CimiEndpoint {
+
+    /** weight of a new sample in the latency moving average */
+    private static final double LATENCY_EWMA_WEIGHT = 0.2;
+
+    /** time during which an endpoint that has just failed is not selected */
+    static final long INITIAL_BACKOFF_IN_MILLISECONDS = 5 * 1000;
+
+    /** upper bound of the time during which a failed endpoint is not selected */
+    static final long MAX_BACKOFF_IN_MILLISECONDS = 5 * 60 * 1000;
+
+    private final String url;
+
+    private String baseUri;
+
+    private WebResource webResource;
+
+    private double latency = -1;
+
+    private boolean healthy;
+
+    private long failedAt;
+
+    private int consecutiveFailures;
+
+    private boolean probing;
+
+    private final long initialBackoff;
+
+    CimiEndpoint(final String url, final long initialBackoff) {
+        this.url = url;
+        this.initialBackoff = initialBackoff;
+    }
+
+    /**
+     * Returns the URL of the cloud entry point of this endpoint.
+     * 
+     * @return the URL
+     */
+    public String getUrl() {
+        return this.url;
+    }
+
+    /**
+     * Returns the base URI of the resources served by this endpoint.
+     * 
+     * @return the base URI or null if the endpoint has never been reached
+     */
+    public synchronized String getBaseUri() {
+        return this.baseUri;
+    }
+
+    /**
+     * Returns the smoothed latency of the requests sent to this endpoint.
+     * 
+     * @return the latency in milliseconds or -1 if unknown
+     */
+    public synchronized long getLatency() {
+        return this.latency < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis((long) this.latency);
+    }
+
+    /**
+     * Tells whether this endpoint is considered healthy.
+     * 
+     * @return true if the endpoint is healthy
+     */
+    public synchronized boolean isHealthy() {
+        return this.healthy;
+    }
+
+    synchronized WebResource getWebResource() {
+        return this.webResource;
+    }
+
+    synchronized void setWebResource(final String baseUri, final WebResource webResource) {
+        this.baseUri = baseUri;
+        this.webResource = webResource;
+    }
+
+    synchronized boolean isSelectable() {
+        if (this.webResource == null) {
+            return false;
+        }
+        return this.healthy || this.isBackoffElapsed();
+    }
+
+    /**
+     * Tells whether this endpoint, never reached so far, should be probed
+     * again. Returns true to a single caller until {@link #probeDone()}.
+     */
+    synchronized boolean claimProbe() {
+        if (this.webResource != null || this.probing || !this.isBackoffElapsed()) {
+            return false;
+        }
+        this.probing = true;
+        return true;
+    }
+
+    synchronized void probeDone() {
+        this.probing = false;
+    }
+
+    /**
+     * Returns the time during which this endpoint is not selected after its
+     * last failure.
+     */
+    synchronized long getBackoff() {
+        if (this.consecutiveFailures == 0) {
+            return 0;
+        }
+        int doublings = Math.min(this.consecutiveFailures - 1, 30);
+        return Math.min(CimiEndpoint.MAX_BACKOFF_IN_MILLISECONDS, this.initialBackoff << doublings);
+    }
+
+    private boolean isBackoffElapsed() {
+        return TimeUnit.NANOSECONDS.toMillis(java.lang.System.nanoTime() - this.failedAt) >= this.getBackoff();
+    }
+
+    synchronized long getFailedAt() {
+        return this.failedAt;
+    }
+
+    synchronized double getLatencyInNanoseconds() {
+        return this.latency;
+    }
+
+    synchronized void recordSuccess(final long latency) {
+        this.healthy = true;
+        this.consecutiveFailures = 0;
+        if (this.latency < 0) {
+            this.latency = latency;
+        } else {
+            this.latency += (latency - this.latency) * CimiEndpoint.LATENCY_EWMA_WEIGHT;
+        }
+    }
+
+    synchronized void recordFailure() {
+        this.healthy = false;
+        this.consecutiveFailures++;
+        this.failedAt = java.lang.System.nanoTime();
+    }
+
+    @Override
+    public String toString() {
+        return "CimiEndpoint [url=" + this.url + ", healthy=" + this.isHealthy() + ", latency=" + this.getLatency() + "]";
+    }
+
+}
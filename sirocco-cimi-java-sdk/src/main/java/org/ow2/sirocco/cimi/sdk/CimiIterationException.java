@@ -0,0 +1,55 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2012 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ *  $Id$
+ *
+ */
+package org.ow2.sirocco.cimi.sdk;
+
+/**
+ * Unchecked exception raised while iterating over a collection whose elements
+ * are fetched lazily from the CIMI provider. The cause is the
+ * CimiClientException or CimiProviderException raised by the underlying
+ * request.
+ */
+public class CimiIterationException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs a CimiIterationException with the specified cause.
+     * 
+     * @param cause the cause
+     */
+    public CimiIterationException(final CimiClientException cause) {
+        super(cause.getMessage(), cause);
+    }
+
+    /**
+     * Returns the exception raised by the underlying request.
+     * 
+     * @return the cause
+     */
+    @Override
+    public CimiClientException getCause() {
+        return (CimiClientException) super.getCause();
+    }
+
+}
@@ -0,0 +1,56 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2012 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ *  $Id$
+ *
+ */
+package org.ow2.sirocco.cimi.sdk;
+
+/**
+ * Exception raised when a request is rejected by the client-side rate limiter
+ * of a CimiClient configured in fail-fast mode.
+ */
+public class CimiRateLimitException extends CimiClientException {
+    private static final long serialVersionUID = 1L;
+
+    private final OperationType operationType;
+
+    /**
+     * Constructs a CimiRateLimitException with the specified detailed message.
+     * 
+     * @param message the detail message
+     * @param operationType the class of the rejected request
+     */
+    public CimiRateLimitException(final String message, final OperationType operationType) {
+        super(message);
+        this.operationType = operationType;
+    }
+
+    /**
+     * Class of the rejected request.
+     * 
+     * @return the operation type
+     */
+    public OperationType getOperationType() {
+        return this.operationType;
+    }
+
+}
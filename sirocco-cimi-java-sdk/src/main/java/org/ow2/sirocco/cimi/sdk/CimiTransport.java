@@ -0,0 +1,59 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2012 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ *  $Id$
+ *
+ */
+package org.ow2.sirocco.cimi.sdk;
+
+import com.sun.jersey.api.client.Client;
+
+/**
+ * Pluggable factory of the Jersey client used by a CimiClient to talk to a
+ * CIMI provider. A transport chooses the Jersey client handler (and thus the
+ * HTTP engine and its connection management) and owns the resources behind
+ * it; requests and responses remain Jersey objects, built and consumed by the
+ * CimiClient. A transport instance is bound to a single CimiClient.
+ */
+public interface CimiTransport {
+    /**
+     * Creates the client through which all HTTP requests to the CIMI provider
+     * will be sent
+     * 
+     * @param options client options
+     * @return a Jersey client
+     * @throws CimiClientException if the transport cannot be initialized
+     */
+    Client createClient(CimiClient.Options options) throws CimiClientException;
+
+    /**
+     * Returns statistics about the connections held by this transport.
+     * 
+     * @return the connection pool statistics or null if this transport does
+     *         not pool connections
+     */
+    ConnectionPoolStats getConnectionPoolStats();
+
+    /**
+     * Releases all resources held by this transport.
+     */
+    void close();
+}
@@ -0,0 +1,210 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2012 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ *  $Id$
+ *
+ */
+package org.ow2.sirocco.cimi.sdk;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Circuit breaker protecting a CIMI endpoint. While closed, calls go through
+ * and their outcome is recorded in a sliding window; the circuit opens when
+ * the failure rate or the slow call rate exceeds its threshold. While open,
+ * calls are rejected with a CimiCircuitOpenException. After a wait duration
+ * the circuit becomes half-open and lets a few trial calls through: it closes
+ * again if they succeed and opens again otherwise.
+ */
+public class CircuitBreaker {
+
+    /**
+     * Circuit breaker state.
+     */
+    public static enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String endpoint;
+
+    private final CircuitBreakerConfig config;
+
+    private State state = State.CLOSED;
+
+    private final boolean[] failures;
+
+    private final boolean[] slowCalls;
+
+    private int recordedCalls;
+
+    private int nextIndex;
+
+    private long openedAt;
+
+    private int halfOpenPermits;
+
+    private int halfOpenCalls;
+
+    private int halfOpenFailures;
+
+    CircuitBreaker(final String endpoint, final CircuitBreakerConfig config) {
+        this.endpoint = endpoint;
+        this.config = config;
+        this.failures = new boolean[config.getSlidingWindowSize()];
+        this.slowCalls = new boolean[config.getSlidingWindowSize()];
+    }
+
+    /**
+     * Returns the endpoint protected by this circuit breaker.
+     * 
+     * @return the endpoint
+     */
+    public String getEndpoint() {
+        return this.endpoint;
+    }
+
+    /**
+     * Returns the current state of this circuit breaker.
+     * 
+     * @return the state
+     */
+    public synchronized State getState() {
+        return this.state;
+    }
+
+    /**
+     * Tells, without taking a permission, whether a call would currently be
+     * let through.
+     */
+    synchronized boolean isCallPermitted() {
+        if (this.state == State.OPEN) {
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(java.lang.System.nanoTime() - this.openedAt);
+            return elapsed >= this.config.getWaitDurationInOpenState();
+        }
+        if (this.state == State.HALF_OPEN) {
+            return this.halfOpenPermits < this.config.getPermittedCallsInHalfOpenState();
+        }
+        return true;
+    }
+
+    void acquirePermission() throws CimiCircuitOpenException {
+        State previousState;
+        State newState;
+        synchronized (this) {
+            previousState = this.state;
+            if (this.state == State.OPEN) {
+                long elapsed = TimeUnit.NANOSECONDS.toMillis(java.lang.System.nanoTime() - this.openedAt);
+                if (elapsed < this.config.getWaitDurationInOpenState()) {
+                    throw new CimiCircuitOpenException(this.endpoint);
+                }
+                this.transitionTo(State.HALF_OPEN);
+            }
+            if (this.state == State.HALF_OPEN) {
+                if (this.halfOpenPermits >= this.config.getPermittedCallsInHalfOpenState()) {
+                    throw new CimiCircuitOpenException(this.endpoint);
+                }
+                this.halfOpenPermits++;
+            }
+            newState = this.state;
+        }
+        this.fireStateChange(previousState, newState);
+    }
+
+    synchronized void releasePermission() {
+        if (this.state == State.HALF_OPEN && this.halfOpenPermits > 0) {
+            this.halfOpenPermits--;
+        }
+    }
+
+    void onResult(final long duration, final boolean failure) {
+        State previousState;
+        State newState;
+        synchronized (this) {
+            previousState = this.state;
+            boolean slow = TimeUnit.NANOSECONDS.toMillis(duration) > this.config.getSlowCallDuration();
+            if (this.state == State.HALF_OPEN) {
+                this.halfOpenCalls++;
+                if (failure || slow) {
+                    this.halfOpenFailures++;
+                }
+                if (this.halfOpenFailures > 0) {
+                    this.transitionTo(State.OPEN);
+                } else if (this.halfOpenCalls >= this.config.getPermittedCallsInHalfOpenState()) {
+                    this.transitionTo(State.CLOSED);
+                }
+            } else if (this.state == State.CLOSED) {
+                this.failures[this.nextIndex] = failure;
+                this.slowCalls[this.nextIndex] = slow;
+                this.nextIndex = (this.nextIndex + 1) % this.failures.length;
+                this.recordedCalls = Math.min(this.recordedCalls + 1, this.failures.length);
+                if (this.recordedCalls >= this.config.getMinimumNumberOfCalls() && this.isThresholdExceeded()) {
+                    this.transitionTo(State.OPEN);
+                }
+            }
+            newState = this.state;
+        }
+        this.fireStateChange(previousState, newState);
+    }
+
+    private boolean isThresholdExceeded() {
+        int failureCount = 0;
+        int slowCallCount = 0;
+        for (int i = 0; i < this.recordedCalls; i++) {
+            if (this.failures[i]) {
+                failureCount++;
+            }
+            if (this.slowCalls[i]) {
+                slowCallCount++;
+            }
+        }
+        return (double) failureCount / this.recordedCalls >= this.config.getFailureRateThreshold()
+            || (double) slowCallCount / this.recordedCalls >= this.config.getSlowCallRateThreshold();
+    }
+
+    private void transitionTo(final State newState) {
+        this.state = newState;
+        this.recordedCalls = 0;
+        this.nextIndex = 0;
+        this.halfOpenPermits = 0;
+        this.halfOpenCalls = 0;
+        this.halfOpenFailures = 0;
+        if (newState == State.OPEN) {
+            this.openedAt = java.lang.System.nanoTime();
+        }
+    }
+
+    /**
+     * Notifies the listener of a transition. Both states are captured while
+     * holding the lock so that a concurrent transition cannot be reported in
+     * place of this one.
+     */
+    private void fireStateChange(final State previousState, final State newState) {
+        if (previousState != newState && this.config.getListener() != null) {
+            this.config.getListener().onStateChange(this, previousState, newState);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CircuitBreaker [endpoint=" + this.endpoint + ", state=" + this.getState() + "]";
+    }
+
+}
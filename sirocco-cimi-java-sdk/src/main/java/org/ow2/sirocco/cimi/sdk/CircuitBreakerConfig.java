@@ -0,0 +1,237 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2012 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ *  $Id$
+ *
+ */
+package org.ow2.sirocco.cimi.sdk;
+
+/**
+ * Configuration of the circuit breakers protecting the CIMI endpoints used by
+ * a CimiClient. Each endpoint gets its own circuit breaker built from this
+ * configuration.
+ */
+public class CircuitBreakerConfig {
+
+    /**
+     * Callback notified of circuit breaker state transitions.
+     */
+    public interface Listener {
+        /**
+         * Invoked when a circuit breaker changes state.
+         * 
+         * @param circuitBreaker the circuit breaker
+         * @param from the previous state
+         * @param to the new state
+         */
+        void onStateChange(CircuitBreaker circuitBreaker, CircuitBreaker.State from, CircuitBreaker.State to);
+    }
+
+    /**
+     * Helper class to build a CircuitBreakerConfig instance.
+     */
+    public static class Builder {
+        private double failureRateThreshold = 0.5;
+
+        private double slowCallRateThreshold = 1.0;
+
+        private long slowCallDuration = 60 * 1000;
+
+        private int slidingWindowSize = 20;
+
+        private int minimumNumberOfCalls = 10;
+
+        private long waitDurationInOpenState = 30 * 1000;
+
+        private int permittedCallsInHalfOpenState = 3;
+
+        private Listener listener;
+
+        /**
+         * Failure rate (between 0 and 1) above which the circuit opens.
+         * 
+         * @param failureRateThreshold the failure rate threshold
+         * @return the builder
+         */
+        public Builder failureRateThreshold(final double failureRateThreshold) {
+            this.failureRateThreshold = failureRateThreshold;
+            return this;
+        }
+
+        /**
+         * Rate of slow calls (between 0 and 1) above which the circuit opens.
+         * 
+         * @param slowCallRateThreshold the slow call rate threshold
+         * @return the builder
+         */
+        public Builder slowCallRateThreshold(final double slowCallRateThreshold) {
+            this.slowCallRateThreshold = slowCallRateThreshold;
+            return this;
+        }
+
+        /**
+         * Duration above which a call is considered slow.
+         * 
+         * @param slowCallDuration the duration in milliseconds
+         * @return the builder
+         */
+        public Builder slowCallDuration(final long slowCallDuration) {
+            this.slowCallDuration = slowCallDuration;
+            return this;
+        }
+
+        /**
+         * Number of most recent calls used to compute the failure and slow call
+         * rates.
+         * 
+         * @param slidingWindowSize the size of the sliding window
+         * @return the builder
+         */
+        public Builder slidingWindowSize(final int slidingWindowSize) {
+            this.slidingWindowSize = slidingWindowSize;
+            return this;
+        }
+
+        /**
+         * Minimum number of recorded calls before rates are evaluated.
+         * 
+         * @param minimumNumberOfCalls the minimum number of calls
+         * @return the builder
+         */
+        public Builder minimumNumberOfCalls(final int minimumNumberOfCalls) {
+            this.minimumNumberOfCalls = minimumNumberOfCalls;
+            return this;
+        }
+
+        /**
+         * Time during which an open circuit rejects calls before letting a few
+         * trial calls through.
+         * 
+         * @param waitDurationInOpenState the duration in milliseconds
+         * @return the builder
+         */
+        public Builder waitDurationInOpenState(final long waitDurationInOpenState) {
+            this.waitDurationInOpenState = waitDurationInOpenState;
+            return this;
+        }
+
+        /**
+         * Number of trial calls let through in half-open state.
+         * 
+         * @param permittedCallsInHalfOpenState the number of trial calls
+         * @return the builder
+         */
+        public Builder permittedCallsInHalfOpenState(final int permittedCallsInHalfOpenState) {
+            this.permittedCallsInHalfOpenState = permittedCallsInHalfOpenState;
+            return this;
+        }
+
+        /**
+         * Sets the callback notified of state transitions.
+         * 
+         * @param listener the listener
+         * @return the builder
+         */
+        public Builder listener(final Listener listener) {
+            this.listener = listener;
+            return this;
+        }
+
+        /**
+         * Builds a CircuitBreakerConfig.
+         * 
+         * @return the circuit breaker configuration
+         */
+        public CircuitBreakerConfig build() {
+            CircuitBreakerConfig result = new CircuitBreakerConfig();
+            result.failureRateThreshold = this.failureRateThreshold;
+            result.slowCallRateThreshold = this.slowCallRateThreshold;
+            result.slowCallDuration = this.slowCallDuration;
+            result.slidingWindowSize = Math.max(1, this.slidingWindowSize);
+            result.minimumNumberOfCalls = Math.max(1, Math.min(this.minimumNumberOfCalls, result.slidingWindowSize));
+            result.waitDurationInOpenState = this.waitDurationInOpenState;
+            result.permittedCallsInHalfOpenState = Math.max(1, this.permittedCallsInHalfOpenState);
+            result.listener = this.listener;
+            return result;
+        }
+    }
+
+    private double failureRateThreshold;
+
+    private double slowCallRateThreshold;
+
+    private long slowCallDuration;
+
+    private int slidingWindowSize;
+
+    private int minimumNumberOfCalls;
+
+    private long waitDurationInOpenState;
+
+    private int permittedCallsInHalfOpenState;
+
+    private Listener listener;
+
+    private CircuitBreakerConfig() {
+    }
+
+    /**
+     * Builder.
+     * 
+     * @return the builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    double getFailureRateThreshold() {
+        return this.failureRateThreshold;
+    }
+
+    double getSlowCallRateThreshold() {
+        return this.slowCallRateThreshold;
+    }
+
+    long getSlowCallDuration() {
+        return this.slowCallDuration;
+    }
+
+    int getSlidingWindowSize() {
+        return this.slidingWindowSize;
+    }
+
+    int getMinimumNumberOfCalls() {
+        return this.minimumNumberOfCalls;
+    }
+
+    long getWaitDurationInOpenState() {
+        return this.waitDurationInOpenState;
+    }
+
+    int getPermittedCallsInHalfOpenState() {
+        return this.permittedCallsInHalfOpenState;
+    }
+
+    Listener getListener() {
+        return this.listener;
+    }
+
+}
@@ -0,0 +1,160 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2012 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ *  $Id$
+ *
+ */
+package org.ow2.sirocco.cimi.sdk;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.ws.rs.core.MediaType;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+import org.codehaus.jackson.jaxrs.JacksonJaxbJsonProvider;
+import org.codehaus.jackson.map.ObjectMapper;
+
+/**
+ * Incremental decoder of CIMI collection representations. Collection members
+ * are decoded one at a time with the Jackson streaming parser (JSON) or StAX
+ * (XML) and handed to a visitor, so that the whole collection is never held
+ * in memory. Members are bound with the same Jackson and JAXB mappings as the
+ * ones used by the Jersey client: with POJO mapping on, Jersey decodes JSON
+ * with a JacksonJaxbJsonProvider, which accepts any type. DTDs and external
+ * entities are not processed.
+ */
+final class CollectionStreamReader {
+    private static final JacksonJaxbJsonProvider JSON_PROVIDER = new JacksonJaxbJsonProvider();
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = CollectionStreamReader.createXmlInputFactory();
+
+    private static final ConcurrentMap<Class<?>, JAXBContext> JAXB_CONTEXTS = new ConcurrentHashMap<Class<?>, JAXBContext>();
+
+    private CollectionStreamReader() {
+    }
+
+    private static XMLInputFactory createXmlInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        return factory;
+    }
+
+    /**
+     * Decodes the members of a collection.
+     * 
+     * @return the number of members decoded
+     */
+    static <E> int read(final InputStream in, final MediaType mediaType, final String jsonArrayName,
+        final String xmlElementName, final Class<E> memberClass, final CollectionVisitor<? super E> visitor)
+        throws CimiClientException {
+        try {
+            if (MediaType.APPLICATION_XML_TYPE.isCompatible(mediaType)) {
+                return CollectionStreamReader.readXml(in, xmlElementName, memberClass, visitor);
+            }
+            return CollectionStreamReader.readJson(in, jsonArrayName, memberClass, visitor);
+        } catch (IOException e) {
+            throw new CimiClientException(e.getMessage(), e);
+        } catch (XMLStreamException e) {
+            throw new CimiClientException(e.getMessage(), e);
+        } catch (JAXBException e) {
+            throw new CimiClientException(e.getMessage(), e);
+        }
+    }
+
+    private static <E> int readJson(final InputStream in, final String jsonArrayName, final Class<E> memberClass,
+        final CollectionVisitor<? super E> visitor) throws IOException, CimiClientException {
+        ObjectMapper mapper = CollectionStreamReader.JSON_PROVIDER.locateMapper(memberClass, MediaType.APPLICATION_JSON_TYPE);
+        JsonParser parser = mapper.getJsonFactory().createJsonParser(in);
+        try {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new CimiClientException("Malformed collection representation");
+            }
+            int count = 0;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                if (name.equals(jsonArrayName) && token == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        visitor.visit(mapper.readValue(parser, memberClass));
+                        count++;
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            return count;
+        } finally {
+            parser.close();
+        }
+    }
+
+    private static <E> int readXml(final InputStream in, final String xmlElementName, final Class<E> memberClass,
+        final CollectionVisitor<? super E> visitor) throws XMLStreamException, JAXBException, CimiClientException {
+        Unmarshaller unmarshaller = CollectionStreamReader.getJaxbContext(memberClass).createUnmarshaller();
+        XMLStreamReader reader = CollectionStreamReader.XML_INPUT_FACTORY.createXMLStreamReader(in);
+        try {
+            int count = 0;
+            int depth = 0;
+            while (reader.hasNext()) {
+                int event = reader.getEventType();
+                if (event == XMLStreamReader.START_ELEMENT) {
+                    if (depth == 1 && xmlElementName.equals(reader.getLocalName())) {
+                        // leaves the reader on the event following the member
+                        visitor.visit(unmarshaller.unmarshal(reader, memberClass).getValue());
+                        count++;
+                        continue;
+                    }
+                    depth++;
+                } else if (event == XMLStreamReader.END_ELEMENT) {
+                    depth--;
+                }
+                reader.next();
+            }
+            return count;
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static JAXBContext getJaxbContext(final Class<?> memberClass) throws JAXBException {
+        JAXBContext context = CollectionStreamReader.JAXB_CONTEXTS.get(memberClass);
+        if (context == null) {
+            context = JAXBContext.newInstance(memberClass);
+            JAXBContext previous = CollectionStreamReader.JAXB_CONTEXTS.putIfAbsent(memberClass, context);
+            if (previous != null) {
+                context = previous;
+            }
+        }
+        return context;
+    }
+
+}
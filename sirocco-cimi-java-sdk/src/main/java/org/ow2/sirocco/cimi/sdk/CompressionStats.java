@@ -0,0 +1,108 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2012 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ *  $Id$
+ *
+ */
+package org.ow2.sirocco.cimi.sdk;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Byte counters showing the bandwidth saved by HTTP compression on the
+ * requests and responses exchanged by a CimiClient.
+ */
+public class CompressionStats {
+    private final AtomicLong responseBytesReceived = new AtomicLong();
+
+    private final AtomicLong responseBytesDecoded = new AtomicLong();
+
+    private final AtomicLong requestBytesEncoded = new AtomicLong();
+
+    private final AtomicLong requestBytesSent = new AtomicLong();
+
+    CompressionStats() {
+    }
+
+    /**
+     * Returns the number of response body bytes received on the wire.
+     * 
+     * @return the number of bytes received
+     */
+    public long getResponseBytesReceived() {
+        return this.responseBytesReceived.get();
+    }
+
+    /**
+     * Returns the number of response body bytes after decompression.
+     * 
+     * @return the number of decoded bytes
+     */
+    public long getResponseBytesDecoded() {
+        return this.responseBytesDecoded.get();
+    }
+
+    /**
+     * Returns the number of request body bytes before compression.
+     * 
+     * @return the number of serialized bytes
+     */
+    public long getRequestBytesEncoded() {
+        return this.requestBytesEncoded.get();
+    }
+
+    /**
+     * Returns the number of request body bytes sent on the wire.
+     * 
+     * @return the number of bytes sent
+     */
+    public long getRequestBytesSent() {
+        return this.requestBytesSent.get();
+    }
+
+    /**
+     * Returns the number of bytes saved by compression in both directions.
+     * 
+     * @return the number of bytes saved
+     */
+    public long getBytesSaved() {
+        return this.getResponseBytesDecoded() - this.getResponseBytesReceived() + this.getRequestBytesEncoded()
+            - this.getRequestBytesSent();
+    }
+
+    void addResponseBytes(final long received, final long decoded) {
+        this.responseBytesReceived.addAndGet(received);
+        this.responseBytesDecoded.addAndGet(decoded);
+    }
+
+    void addRequestBytes(final long encoded, final long sent) {
+        this.requestBytesEncoded.addAndGet(encoded);
+        this.requestBytesSent.addAndGet(sent);
+    }
+
+    @Override
+    public String toString() {
+        return "CompressionStats [responseBytesReceived=" + this.getResponseBytesReceived() + ", responseBytesDecoded="
+            + this.getResponseBytesDecoded() + ", requestBytesEncoded=" + this.getRequestBytesEncoded()
+            + ", requestBytesSent=" + this.getRequestBytesSent() + "]";
+    }
+
+}
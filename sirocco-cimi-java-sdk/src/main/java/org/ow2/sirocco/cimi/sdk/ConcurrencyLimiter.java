@@ -0,0 +1,239 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2012 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ *  $Id$
+ *
+ */
+package org.ow2.sirocco.cimi.sdk;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adaptive limit on the number of requests a CimiClient may have in flight,
+ * following an AIMD (additive increase, multiplicative decrease) scheme. The
+ * limit grows by about one request per round trip while the latency stays
+ * close to the lowest observed latency and the limit is actually used. It is
+ * cut whenever a request is rejected by the provider (502, 503), fails with a
+ * connection error or timeout, or takes much longer than the lowest observed
+ * latency. The limit is cut at most once per round trip: requests already in
+ * flight when it was cut do not cut it again. Requests exceeding the current
+ * limit wait for an in-flight request to complete, or until the deadline of
+ * their RequestContext.
+ */
+public class ConcurrencyLimiter {
+
+    /**
+     * Helper class to build a ConcurrencyLimiter instance.
+     */
+    public static class Builder {
+        private int initialLimit = 10;
+
+        private int minLimit = 1;
+
+        private int maxLimit = 200;
+
+        private double backoffRatio = 0.7;
+
+        private double latencyTolerance = 2.0;
+
+        /**
+         * Initial number of concurrent requests.
+         * 
+         * @param initialLimit the initial limit
+         * @return the builder
+         */
+        public Builder initialLimit(final int initialLimit) {
+            this.initialLimit = initialLimit;
+            return this;
+        }
+
+        /**
+         * Lower bound of the limit.
+         * 
+         * @param minLimit the minimum limit
+         * @return the builder
+         */
+        public Builder minLimit(final int minLimit) {
+            this.minLimit = minLimit;
+            return this;
+        }
+
+        /**
+         * Upper bound of the limit.
+         * 
+         * @param maxLimit the maximum limit
+         * @return the builder
+         */
+        public Builder maxLimit(final int maxLimit) {
+            this.maxLimit = maxLimit;
+            return this;
+        }
+
+        /**
+         * Factor (between 0 and 1) applied to the limit when the provider
+         * shows signs of overload.
+         * 
+         * @param backoffRatio the backoff ratio
+         * @return the builder
+         */
+        public Builder backoffRatio(final double backoffRatio) {
+            this.backoffRatio = backoffRatio;
+            return this;
+        }
+
+        /**
+         * Ratio between the latency of a request and the lowest observed
+         * latency above which the request is considered a latency spike.
+         * 
+         * @param latencyTolerance the latency tolerance
+         * @return the builder
+         */
+        public Builder latencyTolerance(final double latencyTolerance) {
+            this.latencyTolerance = latencyTolerance;
+            return this;
+        }
+
+        /**
+         * Builds a ConcurrencyLimiter.
+         * 
+         * @return the concurrency limiter
+         */
+        public ConcurrencyLimiter build() {
+            ConcurrencyLimiter result = new ConcurrencyLimiter();
+            result.minLimit = Math.max(1, this.minLimit);
+            result.maxLimit = Math.max(result.minLimit, this.maxLimit);
+            result.limit = Math.min(result.maxLimit, Math.max(result.minLimit, this.initialLimit));
+            result.backoffRatio = this.backoffRatio;
+            result.latencyTolerance = this.latencyTolerance;
+            return result;
+        }
+    }
+
+    /** weight given to a new sample when the baseline latency drifts up */
+    private static final double BASELINE_DRIFT = 0.01;
+
+    private int minLimit;
+
+    private int maxLimit;
+
+    private double limit;
+
+    private double backoffRatio;
+
+    private double latencyTolerance;
+
+    private int inFlight;
+
+    private double baselineLatency = -1;
+
+    private boolean decreased;
+
+    private long lastDecrease;
+
+    private ConcurrencyLimiter() {
+    }
+
+    /**
+     * Builder.
+     * 
+     * @return the builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the current maximum number of concurrent requests.
+     * 
+     * @return the current limit
+     */
+    public synchronized int getLimit() {
+        return (int) this.limit;
+    }
+
+    /**
+     * Returns the number of requests currently in flight.
+     * 
+     * @return the number of requests in flight
+     */
+    public synchronized int getInFlight() {
+        return this.inFlight;
+    }
+
+    /**
+     * Returns the lowest latency recently observed.
+     * 
+     * @return the baseline latency in milliseconds or -1 if unknown
+     */
+    public synchronized long getBaselineLatency() {
+        return this.baselineLatency < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis((long) this.baselineLatency);
+    }
+
+    synchronized void acquire() throws CimiClientException {
+        RequestContext context = RequestContext.current();
+        try {
+            while (this.inFlight >= (int) this.limit) {
+                if (context != null) {
+                    // fails with "Deadline exceeded" once the deadline is past
+                    this.wait(context.getRemainingMillis());
+                } else {
+                    this.wait();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CimiClientException("Request interrupted", e);
+        }
+        this.inFlight++;
+    }
+
+    synchronized void release(final long latency, final boolean dropped) {
+        boolean limitUsed = this.inFlight * 2 >= this.limit;
+        this.inFlight--;
+        if (dropped) {
+            this.decrease(latency);
+        } else {
+            if (this.baselineLatency < 0 || latency < this.baselineLatency) {
+                this.baselineLatency = latency;
+            } else {
+                this.baselineLatency += (latency - this.baselineLatency) * ConcurrencyLimiter.BASELINE_DRIFT;
+            }
+            if (latency > this.baselineLatency * this.latencyTolerance) {
+                this.decrease(latency);
+            } else if (limitUsed) {
+                this.limit = Math.min(this.maxLimit, this.limit + 1 / this.limit);
+            }
+        }
+        this.notifyAll();
+    }
+
+    private void decrease(final long latency) {
+        long now = java.lang.System.nanoTime();
+        if (this.decreased && now - latency - this.lastDecrease < 0) {
+            // sent before the last cut, already accounted for
+            return;
+        }
+        this.limit = Math.max(this.minLimit, this.limit * this.backoffRatio);
+        this.decreased = true;
+        this.lastDecrease = now;
+    }
+
+}
@@ -0,0 +1,117 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2012 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ *  $Id$
+ *
+ */
+package org.ow2.sirocco.cimi.sdk;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.ws.rs.core.MediaType;
+
+/**
+ * Remembers, for the most recently read resources, the validators returned by
+ * the provider (ETag, Last-Modified) along with the response body and its
+ * digest, so that unchanged resources are not downloaded again. A new object
+ * is decoded from the body on every read, since callers modify the objects
+ * they are handed.
+ */
+final class ConditionalGetCache {
+
+    static final int MAXIMUM_SIZE = 1000;
+
+    static final class Validators {
+        final String path;
+
+        final String etag;
+
+        final String lastModified;
+
+        final byte[] digest;
+
+        final byte[] body;
+
+        final MediaType mediaType;
+
+        Validators(final String path, final String etag, final String lastModified, final byte[] body,
+            final MediaType mediaType) throws CimiClientException {
+            this.path = path;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.digest = ConditionalGetCache.digest(body);
+            this.body = body;
+            this.mediaType = mediaType;
+        }
+
+        boolean hasSameContent(final byte[] otherDigest) {
+            return Arrays.equals(this.digest, otherDigest);
+        }
+    }
+
+    private final Map<String, Validators> entries = new LinkedHashMap<String, Validators>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, Validators> eldest) {
+            return this.size() > ConditionalGetCache.MAXIMUM_SIZE;
+        }
+    };
+
+    synchronized Validators get(final String key) {
+        return this.entries.get(key);
+    }
+
+    synchronized void put(final String key, final Validators validators) {
+        this.entries.put(key, validators);
+    }
+
+    synchronized void remove(final String key) {
+        this.entries.remove(key);
+    }
+
+    /**
+     * Forgets the resource at the given path and its sub-resources, so that
+     * locally modified objects are never handed out again.
+     */
+    synchronized void invalidate(final String path) {
+        for (Iterator<Validators> it = this.entries.values().iterator(); it.hasNext();) {
+            String entryPath = it.next().path;
+            if (entryPath.equals(path) || entryPath.startsWith(path.endsWith("/") ? path : path + "/")) {
+                it.remove();
+            }
+        }
+    }
+
+    static byte[] digest(final byte[] body) throws CimiClientException {
+        try {
+            return MessageDigest.getInstance("SHA-1").digest(body);
+        } catch (NoSuchAlgorithmException e) {
+            throw new CimiClientException(e.getMessage(), e);
+        }
+    }
+
+}
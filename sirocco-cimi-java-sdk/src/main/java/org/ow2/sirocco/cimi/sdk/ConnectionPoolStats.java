@@ -0,0 +1,109 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2012 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ *  $Id$
+ *
+ */
+package org.ow2.sirocco.cimi.sdk;
+
+/**
+ * Snapshot of the state of the HTTP connection pool used by a CimiClient.
+ */
+public class ConnectionPoolStats {
+    private final int connectionsInPool;
+
+    private final int connectionsInUse;
+
+    private final int maxConnectionsPerHost;
+
+    private final int maxTotalConnections;
+
+    /**
+     * Instantiates a new connection pool statistics snapshot.
+     * 
+     * @param connectionsInPool number of pooled connections
+     * @param connectionsInUse number of connections in use
+     * @param maxConnectionsPerHost maximum number of connections per host
+     * @param maxTotalConnections maximum number of connections
+     */
+    public ConnectionPoolStats(final int connectionsInPool, final int connectionsInUse, final int maxConnectionsPerHost,
+        final int maxTotalConnections) {
+        this.connectionsInPool = connectionsInPool;
+        this.connectionsInUse = connectionsInUse;
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+        this.maxTotalConnections = maxTotalConnections;
+    }
+
+    /**
+     * Returns the number of open connections held by the pool, either idle or
+     * in use.
+     * 
+     * @return the number of pooled connections
+     */
+    public int getConnectionsInPool() {
+        return this.connectionsInPool;
+    }
+
+    /**
+     * Returns the number of connections currently leased by in-flight
+     * requests.
+     * 
+     * @return the number of connections in use
+     */
+    public int getConnectionsInUse() {
+        return this.connectionsInUse;
+    }
+
+    /**
+     * Returns the number of idle connections available for reuse.
+     * 
+     * @return the number of idle connections
+     */
+    public int getIdleConnections() {
+        return this.connectionsInPool - this.connectionsInUse;
+    }
+
+    /**
+     * Returns the maximum number of connections per host.
+     * 
+     * @return the maximum number of connections per host
+     */
+    public int getMaxConnectionsPerHost() {
+        return this.maxConnectionsPerHost;
+    }
+
+    /**
+     * Returns the maximum number of connections for the whole pool.
+     * 
+     * @return the maximum number of connections
+     */
+    public int getMaxTotalConnections() {
+        return this.maxTotalConnections;
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionPoolStats [connectionsInPool=" + this.connectionsInPool + ", connectionsInUse="
+            + this.connectionsInUse + ", maxConnectionsPerHost=" + this.maxConnectionsPerHost + ", maxTotalConnections="
+            + this.maxTotalConnections + "]";
+    }
+
+}
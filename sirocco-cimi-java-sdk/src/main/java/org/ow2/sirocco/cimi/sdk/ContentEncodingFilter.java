@@ -0,0 +1,171 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2012 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ *  $Id$
+ *
+ */
+package org.ow2.sirocco.cimi.sdk;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientRequest;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.filter.ClientFilter;
+
+/**
+ * Client filter negotiating gzip/deflate response compression and
+ * transparently decompressing response bodies.
+ */
+class ContentEncodingFilter extends ClientFilter {
+    static final String ACCEPT_ENCODING_HEADER = "Accept-Encoding";
+
+    static final String CONTENT_ENCODING_HEADER = "Content-Encoding";
+
+    static final String GZIP_ENCODING = "gzip";
+
+    static final String DEFLATE_ENCODING = "deflate";
+
+    /**
+     * Input stream counting the bytes read and reporting them once the stream
+     * is exhausted or closed.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        CountingInputStream(final InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                this.count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                this.count += n;
+            }
+            return n;
+        }
+
+        long getCount() {
+            return this.count;
+        }
+    }
+
+    private class DecodingInputStream extends FilterInputStream {
+        private final CountingInputStream wireStream;
+
+        private final CountingInputStream decodedStream;
+
+        private boolean reported;
+
+        DecodingInputStream(final CountingInputStream wireStream, final CountingInputStream decodedStream) {
+            super(decodedStream);
+            this.wireStream = wireStream;
+            this.decodedStream = decodedStream;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b == -1) {
+                this.report();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n == -1) {
+                this.report();
+            }
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.report();
+            super.close();
+        }
+
+        private void report() {
+            if (!this.reported) {
+                this.reported = true;
+                ContentEncodingFilter.this.stats.addResponseBytes(this.wireStream.getCount(), this.decodedStream.getCount());
+            }
+        }
+    }
+
+    private final CompressionStats stats;
+
+    ContentEncodingFilter(final CompressionStats stats) {
+        this.stats = stats;
+    }
+
+    @Override
+    public ClientResponse handle(final ClientRequest request) throws ClientHandlerException {
+        if (!request.getHeaders().containsKey(ContentEncodingFilter.ACCEPT_ENCODING_HEADER)) {
+            request.getHeaders().add(ContentEncodingFilter.ACCEPT_ENCODING_HEADER,
+                ContentEncodingFilter.GZIP_ENCODING + ", " + ContentEncodingFilter.DEFLATE_ENCODING);
+        }
+        ClientResponse response = this.getNext().handle(request);
+        if (!response.hasEntity()) {
+            return response;
+        }
+        String encoding = response.getHeaders().getFirst(ContentEncodingFilter.CONTENT_ENCODING_HEADER);
+        CountingInputStream wireStream = new CountingInputStream(response.getEntityInputStream());
+        InputStream decoded;
+        try {
+            if (ContentEncodingFilter.GZIP_ENCODING.equalsIgnoreCase(encoding)) {
+                decoded = new GZIPInputStream(wireStream);
+            } else if (ContentEncodingFilter.DEFLATE_ENCODING.equalsIgnoreCase(encoding)) {
+                decoded = new InflaterInputStream(wireStream, new Inflater());
+            } else {
+                decoded = wireStream;
+            }
+        } catch (IOException e) {
+            throw new ClientHandlerException(e);
+        }
+        if (decoded != wireStream) {
+            response.getHeaders().remove(ContentEncodingFilter.CONTENT_ENCODING_HEADER);
+            response.getHeaders().remove("Content-Length");
+            response.setEntityInputStream(new DecodingInputStream(wireStream, new CountingInputStream(decoded)));
+        } else {
+            response.setEntityInputStream(new DecodingInputStream(wireStream, wireStream));
+        }
+        return response;
+    }
+
+}
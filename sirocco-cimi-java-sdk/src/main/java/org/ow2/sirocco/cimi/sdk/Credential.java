@@ -26,7 +26,9 @@
 package org.ow2.sirocco.cimi.sdk;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import org.ow2.sirocco.cimi.domain.CimiCredential;
 import org.ow2.sirocco.cimi.domain.CimiJob;
@@ -102,9 +104,8 @@ public class Credential extends Resource<CimiCredential> {
         if (client.cloudEntryPoint.getCredentials() == null) {
             throw new CimiClientException("Unsupported operation");
         }
-        CimiCredentialCollection credentialCollection = client.getRequest(
-            client.extractPath(client.cloudEntryPoint.getCredentials().getHref()), CimiCredentialCollectionRoot.class);
-        String addRef = Helper.findOperation("add", credentialCollection);
+        String addRef = client.findCollectionOperation(client.cloudEntryPoint.getCredentials().getHref(),
+            CimiCredentialCollectionRoot.class, "add");
         if (addRef == null) {
             throw new CimiClientException("Unsupported operation");
         }
@@ -141,12 +142,32 @@ public class Credential extends Resource<CimiCredential> {
 
         if (credentialCollection.getCollection() != null) {
             for (CimiCredential cimiCrdential : credentialCollection.getCollection().getArray()) {
-                result.add(new Credential(client, cimiCrdential));
+                result.add(client.canonicalize(new Credential(client, cimiCrdential), queryParams));
             }
         }
         return result;
     }
 
+    /**
+     * Iterates over the collection of credentials, fetching them lazily by pages
+     * of pageSize elements.
+     * 
+     * @param client the client
+     * @param pageSize number of elements fetched per request
+     * @param queryParams optional query parameters ($first and $last bound the
+     *        range of elements iterated over)
+     * @return an iterable over the credentials
+     */
+    public static PagedIterable<Credential> iterateCredentials(final CimiClient client, final int pageSize,
+        final QueryParams... queryParams) {
+        return new PagedIterable<Credential>(client, pageSize, new PagedIterable.PageFetcher<Credential>() {
+            @Override
+            public List<Credential> fetch(final QueryParams pageParams) throws CimiClientException {
+                return Credential.getCredentials(client, pageParams);
+            }
+        }, queryParams);
+    }
+
     /**
      * Retrieves the credential with the given id.
      * 
@@ -163,7 +184,38 @@ public class Credential extends Resource<CimiCredential> {
      */
     public static Credential getCredentialByReference(final CimiClient client, final String id,
         final QueryParams... queryParams) throws CimiClientException, CimiProviderException {
-        return new Credential(client, client.getCimiObjectByReference(id, CimiCredential.class, queryParams));
+        Credential result = new Credential(client, client.getCimiObjectByReference(id, CimiCredential.class, queryParams));
+        return client.canonicalize(result, queryParams);
+    }
+
+    /**
+     * Retrieves the credentials with the given ids. The ids are fetched in
+     * batches with filtered requests on the collection, or with concurrent
+     * requests if the provider does not support filtering on ids.
+     * 
+     * @param client the client
+     * @param ids the ids of the resources
+     * @param queryParams optional query parameters
+     * @return the resources found, keyed by id in the order of the given ids
+     * @throws CimiClientException If any internal errors are encountered
+     *         inside the client while attempting to make the request or handle
+     *         the response.
+     * @throws CimiProviderException If an error response is returned by the
+     *         CIMI provider.
+     */
+    public static Map<String, Credential> getCredentialsByIds(final CimiClient client, final Collection<String> ids,
+        final QueryParams... queryParams) throws CimiClientException, CimiProviderException {
+        return BatchGet.getByIds(client, ids, new PagedIterable.PageFetcher<Credential>() {
+            @Override
+            public List<Credential> fetch(final QueryParams batchParams) throws CimiClientException {
+                return Credential.getCredentials(client, batchParams);
+            }
+        }, new BatchGet.ResourceFetcher<Credential>() {
+            @Override
+            public Credential fetch(final String id, final QueryParams singleParams) throws CimiClientException {
+                return Credential.getCredentialByReference(client, id, singleParams);
+            }
+        }, queryParams);
     }
 
 }
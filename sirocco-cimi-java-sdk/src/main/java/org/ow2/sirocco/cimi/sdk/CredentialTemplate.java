@@ -26,7 +26,9 @@
 package org.ow2.sirocco.cimi.sdk;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import org.ow2.sirocco.cimi.domain.CimiCredentialTemplate;
 import org.ow2.sirocco.cimi.domain.CimiJob;
@@ -102,10 +104,8 @@ public class CredentialTemplate extends Resource<CimiCredentialTemplate> {
         if (client.cloudEntryPoint.getCredentialTemplates() == null) {
             throw new CimiClientException("Unsupported operation");
         }
-        CimiCredentialTemplateCollection credentialTemplateCollection = client.getRequest(
-            client.extractPath(client.cloudEntryPoint.getCredentialTemplates().getHref()),
-            CimiCredentialTemplateCollectionRoot.class);
-        String addRef = Helper.findOperation("add", credentialTemplateCollection);
+        String addRef = client.findCollectionOperation(client.cloudEntryPoint.getCredentialTemplates().getHref(),
+            CimiCredentialTemplateCollectionRoot.class, "add");
         if (addRef == null) {
             throw new CimiClientException("Unsupported operation");
         }
@@ -143,12 +143,32 @@ public class CredentialTemplate extends Resource<CimiCredentialTemplate> {
 
         if (credentialTemplateCollection.getCollection() != null) {
             for (CimiCredentialTemplate cimiCredentialTemplate : credentialTemplateCollection.getCollection().getArray()) {
-                result.add(new CredentialTemplate(client, cimiCredentialTemplate));
+                result.add(client.canonicalize(new CredentialTemplate(client, cimiCredentialTemplate), queryParams));
             }
         }
         return result;
     }
 
+    /**
+     * Iterates over the collection of credential templates, fetching them lazily by pages
+     * of pageSize elements.
+     * 
+     * @param client the client
+     * @param pageSize number of elements fetched per request
+     * @param queryParams optional query parameters ($first and $last bound the
+     *        range of elements iterated over)
+     * @return an iterable over the credential templates
+     */
+    public static PagedIterable<CredentialTemplate> iterateCredentialTemplates(final CimiClient client, final int pageSize,
+        final QueryParams... queryParams) {
+        return new PagedIterable<CredentialTemplate>(client, pageSize, new PagedIterable.PageFetcher<CredentialTemplate>() {
+            @Override
+            public List<CredentialTemplate> fetch(final QueryParams pageParams) throws CimiClientException {
+                return CredentialTemplate.getCredentialTemplates(client, pageParams);
+            }
+        }, queryParams);
+    }
+
     /**
      * Retrieves the credential template with the given id.
      * 
@@ -165,7 +185,39 @@ public class CredentialTemplate extends Resource<CimiCredentialTemplate> {
      */
     public static CredentialTemplate getCredentialTemplateByReference(final CimiClient client, final String id,
         final QueryParams... queryParams) throws CimiClientException, CimiProviderException {
-        return new CredentialTemplate(client, client.getCimiObjectByReference(id, CimiCredentialTemplate.class, queryParams));
+        CredentialTemplate result = new CredentialTemplate(client,
+            client.getCimiObjectByReference(id, CimiCredentialTemplate.class, queryParams));
+        return client.canonicalize(result, queryParams);
+    }
+
+    /**
+     * Retrieves the credential templates with the given ids. The ids are fetched in
+     * batches with filtered requests on the collection, or with concurrent
+     * requests if the provider does not support filtering on ids.
+     * 
+     * @param client the client
+     * @param ids the ids of the resources
+     * @param queryParams optional query parameters
+     * @return the resources found, keyed by id in the order of the given ids
+     * @throws CimiClientException If any internal errors are encountered
+     *         inside the client while attempting to make the request or handle
+     *         the response.
+     * @throws CimiProviderException If an error response is returned by the
+     *         CIMI provider.
+     */
+    public static Map<String, CredentialTemplate> getCredentialTemplatesByIds(final CimiClient client, final Collection<String> ids,
+        final QueryParams... queryParams) throws CimiClientException, CimiProviderException {
+        return BatchGet.getByIds(client, ids, new PagedIterable.PageFetcher<CredentialTemplate>() {
+            @Override
+            public List<CredentialTemplate> fetch(final QueryParams batchParams) throws CimiClientException {
+                return CredentialTemplate.getCredentialTemplates(client, batchParams);
+            }
+        }, new BatchGet.ResourceFetcher<CredentialTemplate>() {
+            @Override
+            public CredentialTemplate fetch(final String id, final QueryParams singleParams) throws CimiClientException {
+                return CredentialTemplate.getCredentialTemplateByReference(client, id, singleParams);
+            }
+        }, queryParams);
     }
 
 }
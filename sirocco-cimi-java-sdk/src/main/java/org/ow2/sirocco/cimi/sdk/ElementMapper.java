@@ -0,0 +1,42 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2012 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ *  $Id$
+ *
+ */
+package org.ow2.sirocco.cimi.sdk;
+
+/**
+ * Function applied to the elements of a CIMI collection.
+ * 
+ * @param <T> the type of the collection elements
+ * @param <R> the type of the result
+ */
+public interface ElementMapper<T, R> {
+    /**
+     * Maps an element of the collection.
+     * 
+     * @param element the element
+     * @return the result, or null to drop the element
+     * @throws CimiClientException to abort the traversal of the collection
+     */
+    R map(T element) throws CimiClientException;
+}
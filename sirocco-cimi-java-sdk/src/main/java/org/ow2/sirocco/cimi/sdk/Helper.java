@@ -25,6 +25,10 @@
 
 package org.ow2.sirocco.cimi.sdk;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
 import org.ow2.sirocco.cimi.domain.CimiOperation;
 import org.ow2.sirocco.cimi.domain.CimiResource;
 
@@ -35,11 +39,29 @@ class Helper {
             return null;
         }
         for (CimiOperation op : resource.getOperations()) {
-            if (op.getRel().equals(name)) {
+            if (name.equals(op.getRel())) {
                 return op.getHref();
             }
         }
         return null;
     }
 
+    /**
+     * Returns the operations of a resource indexed by rel, the first one
+     * winning when a rel is repeated. The index is built on each call: callers
+     * looking up operations repeatedly keep it.
+     */
+    static Map<String, String> indexOperations(final CimiResource resource) {
+        if (resource.getOperations() == null) {
+            return Collections.emptyMap();
+        }
+        Map<String, String> index = new HashMap<String, String>();
+        for (CimiOperation op : resource.getOperations()) {
+            if (op.getRel() != null && !index.containsKey(op.getRel())) {
+                index.put(op.getRel(), op.getHref());
+            }
+        }
+        return Collections.unmodifiableMap(index);
+    }
+
 }
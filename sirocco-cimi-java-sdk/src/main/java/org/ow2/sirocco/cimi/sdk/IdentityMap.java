@@ -0,0 +1,91 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2012 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ *  $Id$
+ *
+ */
+package org.ow2.sirocco.cimi.sdk;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Identity map of the resources loaded by a CimiClient, keyed by resource
+ * type and normalized href. The map holds its resources weakly: a resource
+ * stays canonical as long as the application references it. Loading a
+ * resource again refreshes the canonical instance in place. The map is
+ * lock-free: concurrent loads of the same resource agree on one canonical
+ * instance through atomic map updates.
+ */
+final class IdentityMap {
+
+    private static final class ResourceReference extends WeakReference<Resource<?>> {
+        final String key;
+
+        ResourceReference(final String key, final Resource<?> resource, final ReferenceQueue<Resource<?>> queue) {
+            super(resource, queue);
+            this.key = key;
+        }
+    }
+
+    private final ConcurrentMap<String, ResourceReference> resources = new ConcurrentHashMap<String, ResourceReference>();
+
+    private final ReferenceQueue<Resource<?>> queue = new ReferenceQueue<Resource<?>>();
+
+    /**
+     * Returns the canonical instance of the given resource, after refreshing
+     * it with the state of the given one.
+     */
+    @SuppressWarnings("unchecked")
+    <R extends Resource<?>> R canonicalize(final String key, final R resource) {
+        this.expungeStaleEntries();
+        while (true) {
+            ResourceReference reference = this.resources.get(key);
+            R canonical = reference != null ? (R) reference.get() : null;
+            if (canonical != null) {
+                if (canonical != resource) {
+                    canonical.refresh(resource);
+                }
+                return canonical;
+            }
+            ResourceReference newReference = new ResourceReference(key, resource, this.queue);
+            if (reference == null ? this.resources.putIfAbsent(key, newReference) == null : this.resources.replace(key,
+                reference, newReference)) {
+                return resource;
+            }
+        }
+    }
+
+    int size() {
+        this.expungeStaleEntries();
+        return this.resources.size();
+    }
+
+    private void expungeStaleEntries() {
+        ResourceReference reference;
+        while ((reference = (ResourceReference) this.queue.poll()) != null) {
+            this.resources.remove(reference.key, reference);
+        }
+    }
+
+}
@@ -26,8 +26,10 @@
 package org.ow2.sirocco.cimi.sdk;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
@@ -222,12 +224,61 @@ public class Job extends Resource<CimiJob> {
 
         if (jobCollection.getCollection() != null) {
             for (CimiJob cimiJob : jobCollection.getCollection().getArray()) {
-                result.add(new Job(client, cimiJob));
+                result.add(client.canonicalize(new Job(client, cimiJob), queryParams));
             }
         }
         return result;
     }
 
+    /**
+     * Iterates over the collection of jobs, fetching them lazily by pages
+     * of pageSize elements.
+     * 
+     * @param client the client
+     * @param pageSize number of elements fetched per request
+     * @param queryParams optional query parameters ($first and $last bound the
+     *        range of elements iterated over)
+     * @return an iterable over the jobs
+     */
+    public static PagedIterable<Job> iterateJobs(final CimiClient client, final int pageSize,
+        final QueryParams... queryParams) {
+        return new PagedIterable<Job>(client, pageSize, new PagedIterable.PageFetcher<Job>() {
+            @Override
+            public List<Job> fetch(final QueryParams pageParams) throws CimiClientException {
+                return Job.getJobs(client, pageParams);
+            }
+        }, queryParams);
+    }
+
+    /**
+     * Retrieves the collection of jobs and hands each of them to a visitor
+     * as soon as it is decoded, without holding the whole collection in
+     * memory.
+     * 
+     * @param client the client
+     * @param visitor the visitor
+     * @param queryParams optional query parameters
+     * @return the number of jobs visited
+     * @throws CimiClientException If any internal errors are encountered
+     *         inside the client while attempting to make the request or handle
+     *         the response, or if the visitor aborts the traversal.
+     * @throws CimiProviderException If an error response is returned by the
+     *         CIMI provider.
+     */
+    public static int visitJobs(final CimiClient client, final CollectionVisitor<? super Job> visitor,
+        final QueryParams... queryParams) throws CimiClientException, CimiProviderException {
+        if (client.cloudEntryPoint.getJobs() == null) {
+            throw new CimiClientException("Unsupported operation");
+        }
+        return client.visitCollection(client.extractPath(client.cloudEntryPoint.getJobs().getHref()), "jobs",
+            "Job", CimiJob.class, new CollectionVisitor<CimiJob>() {
+                @Override
+                public void visit(final CimiJob cimiJob) throws CimiClientException {
+                    visitor.visit(new Job(client, cimiJob));
+                }
+            }, queryParams);
+    }
+
     /**
      * Retrieves a Job resource from its reference.
      * 
@@ -244,7 +295,38 @@ public class Job extends Resource<CimiJob> {
      */
     public static Job getJobByReference(final CimiClient client, final String id, final QueryParams... queryParams)
         throws CimiClientException, CimiProviderException {
-        return new Job(client, client.getCimiObjectByReference(id, CimiJob.class, queryParams));
+        Job result = new Job(client, client.getCimiObjectByReference(id, CimiJob.class, queryParams));
+        return client.canonicalize(result, queryParams);
+    }
+
+    /**
+     * Retrieves the jobs with the given ids. The ids are fetched in
+     * batches with filtered requests on the collection, or with concurrent
+     * requests if the provider does not support filtering on ids.
+     * 
+     * @param client the client
+     * @param ids the ids of the resources
+     * @param queryParams optional query parameters
+     * @return the resources found, keyed by id in the order of the given ids
+     * @throws CimiClientException If any internal errors are encountered
+     *         inside the client while attempting to make the request or handle
+     *         the response.
+     * @throws CimiProviderException If an error response is returned by the
+     *         CIMI provider.
+     */
+    public static Map<String, Job> getJobsByIds(final CimiClient client, final Collection<String> ids,
+        final QueryParams... queryParams) throws CimiClientException, CimiProviderException {
+        return BatchGet.getByIds(client, ids, new PagedIterable.PageFetcher<Job>() {
+            @Override
+            public List<Job> fetch(final QueryParams batchParams) throws CimiClientException {
+                return Job.getJobs(client, batchParams);
+            }
+        }, new BatchGet.ResourceFetcher<Job>() {
+            @Override
+            public Job fetch(final String id, final QueryParams singleParams) throws CimiClientException {
+                return Job.getJobByReference(client, id, singleParams);
+            }
+        }, queryParams);
     }
 
 }
@@ -26,9 +26,11 @@
 package org.ow2.sirocco.cimi.sdk;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
 
 import org.ow2.sirocco.cimi.domain.ActionType;
 import org.ow2.sirocco.cimi.domain.CimiAction;
@@ -37,13 +39,15 @@ import org.ow2.sirocco.cimi.domain.CimiMachine;
 import org.ow2.sirocco.cimi.domain.CimiMachineDisk;
 import org.ow2.sirocco.cimi.domain.CimiMachineImage;
 import org.ow2.sirocco.cimi.domain.CimiMachineNetworkInterface;
+import org.ow2.sirocco.cimi.domain.CimiMachineNetworkInterfaceAddress;
+import org.ow2.sirocco.cimi.domain.CimiMachineVolume;
 import org.ow2.sirocco.cimi.domain.collection.CimiMachineCollection;
 import org.ow2.sirocco.cimi.domain.collection.CimiMachineCollectionRoot;
 import org.ow2.sirocco.cimi.domain.collection.CimiMachineDiskCollectionRoot;
-import org.ow2.sirocco.cimi.domain.collection.CimiMachineImageCollection;
 import org.ow2.sirocco.cimi.domain.collection.CimiMachineImageCollectionRoot;
 import org.ow2.sirocco.cimi.domain.collection.CimiMachineNetworkInterfaceAddressCollectionRoot;
 import org.ow2.sirocco.cimi.domain.collection.CimiMachineNetworkInterfaceCollectionRoot;
+import org.ow2.sirocco.cimi.domain.collection.CimiMachineVolumeCollectionRoot;
 import org.ow2.sirocco.cimi.sdk.CimiClient.CimiResult;
 
 /**
@@ -55,6 +59,17 @@ public class Machine extends Resource<CimiMachine> {
     /** A unique URI denoting this resource type */
     public static final String TYPE_URI = "http://schemas.dmtf.org/cimi/1/Machine";
 
+    /** Name of the disks sub-collection */
+    public static final String DISKS = "disks";
+
+    /** Name of the network interfaces sub-collection */
+    public static final String NETWORK_INTERFACES = "networkInterfaces";
+
+    /** Name of the volumes sub-collection */
+    public static final String VOLUMES = "volumes";
+
+    private static final int PREFETCH_PARALLELISM = 8;
+
     /**
      * Machine state.
      */
@@ -115,15 +130,13 @@ public class Machine extends Resource<CimiMachine> {
      */
     public List<Disk> getDisks() throws CimiClientException, CimiProviderException {
         List<Disk> disks = null;
-        if (this.cimiObject.getDisks() != null && this.cimiObject.getDisks().getArray() == null) {
-            CimiMachineDiskCollectionRoot cimiDisks = this.cimiClient.getRequest(
-                this.cimiClient.extractPath(this.cimiObject.getDisks().getHref()), CimiMachineDiskCollectionRoot.class);
-            this.cimiObject.setDisks(cimiDisks);
-        }
+        this.loadDisks();
         if (this.cimiObject.getDisks() != null) {
             disks = new ArrayList<Disk>();
-            for (CimiMachineDisk cimiDisk : this.cimiObject.getDisks().getArray()) {
-                disks.add(new Disk(this.cimiClient, cimiDisk));
+            if (this.cimiObject.getDisks().getArray() != null) {
+                for (CimiMachineDisk cimiDisk : this.cimiObject.getDisks().getArray()) {
+                    disks.add(new Disk(this.cimiClient, cimiDisk));
+                }
             }
         }
         return disks;
@@ -142,7 +155,55 @@ public class Machine extends Resource<CimiMachine> {
      */
     public List<MachineNetworkInterface> getNetworkInterfaces() throws CimiClientException, CimiProviderException {
         List<MachineNetworkInterface> nics = new ArrayList<MachineNetworkInterface>();
+        this.loadNetworkInterfaces();
+        if (this.cimiObject.getNetworkInterfaces() != null && this.cimiObject.getNetworkInterfaces().getArray() != null) {
+            for (CimiMachineNetworkInterface cimiNic : this.cimiObject.getNetworkInterfaces().getArray()) {
+                MachineNetworkInterface nic = new MachineNetworkInterface(this.cimiClient, cimiNic);
+                nics.add(nic);
+            }
+        }
+        return nics;
+    }
 
+    /**
+     * Gets the volumes attached to this machine.
+     * 
+     * @return the volumes attached to this machine
+     * @throws CimiClientException If any internal errors are encountered inside
+     *         the client while attempting to make the request or handle the
+     *         response. For example if a network connection is not available.
+     * @throws CimiProviderException If an error response is returned by the
+     *         CIMI provider indicating either a problem with the data in the
+     *         request, or a server side issue.
+     */
+    public List<MachineVolume> getVolumes() throws CimiClientException, CimiProviderException {
+        List<MachineVolume> volumes = null;
+        this.loadVolumes();
+        if (this.cimiObject.getVolumes() != null) {
+            volumes = new ArrayList<MachineVolume>();
+            if (this.cimiObject.getVolumes().getArray() != null) {
+                for (CimiMachineVolume cimiMachineVolume : this.cimiObject.getVolumes().getArray()) {
+                    volumes.add(new MachineVolume(this.cimiClient, cimiMachineVolume));
+                }
+            }
+        }
+        return volumes;
+    }
+
+    private void loadDisks() throws CimiClientException {
+        if (this.cimiObject.getDisks() != null && this.cimiObject.getDisks().getArray() == null
+            && this.cimiObject.getDisks().getHref() != null) {
+            CimiMachineDiskCollectionRoot cimiDisks = this.cimiClient.getRequest(
+                this.cimiClient.extractPath(this.cimiObject.getDisks().getHref()), CimiMachineDiskCollectionRoot.class);
+            if (cimiDisks.getArray() == null) {
+                // empty collection: remember that it was loaded
+                cimiDisks.setArray(new CimiMachineDisk[0]);
+            }
+            this.cimiObject.setDisks(cimiDisks);
+        }
+    }
+
+    private void loadNetworkInterfaces() throws CimiClientException {
         if (this.cimiObject.getNetworkInterfaces() != null && this.cimiObject.getNetworkInterfaces().getArray() == null) {
             String machineNicsRef = this.cimiObject.getNetworkInterfaces().getHref();
             if (machineNicsRef != null) {
@@ -153,19 +214,101 @@ public class Machine extends Resource<CimiMachine> {
             }
         }
         if (this.cimiObject.getNetworkInterfaces() != null && this.cimiObject.getNetworkInterfaces().getArray() != null) {
+            List<CimiMachineNetworkInterface> unresolvedNics = new ArrayList<CimiMachineNetworkInterface>();
             for (CimiMachineNetworkInterface cimiNic : this.cimiObject.getNetworkInterfaces().getArray()) {
-                if (cimiNic.getAddresses().getArray() == null && cimiNic.getAddresses().getHref() != null) {
-                    CimiMachineNetworkInterfaceAddressCollectionRoot addresses = this.cimiClient
-                        .getRequest(this.cimiClient.extractPath(cimiNic.getAddresses().getHref()),
-                            CimiMachineNetworkInterfaceAddressCollectionRoot.class, QueryParams.builder().expand("address")
-                                .build());
-                    cimiNic.setAddresses(addresses);
+                if (cimiNic.getAddresses() != null && cimiNic.getAddresses().getArray() == null
+                    && cimiNic.getAddresses().getHref() != null) {
+                    unresolvedNics.add(cimiNic);
                 }
-                MachineNetworkInterface nic = new MachineNetworkInterface(this.cimiClient, cimiNic);
-                nics.add(nic);
+            }
+            if (unresolvedNics.size() == 1) {
+                this.loadAddresses(unresolvedNics.get(0));
+            } else if (unresolvedNics.size() > 1) {
+                // multi-homed machine: fetch the address collections
+                // concurrently
+                List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+                for (final CimiMachineNetworkInterface cimiNic : unresolvedNics) {
+                    tasks.add(new Callable<Void>() {
+                        @Override
+                        public Void call() throws CimiClientException {
+                            Machine.this.loadAddresses(cimiNic);
+                            return null;
+                        }
+                    });
+                }
+                this.cimiClient.invokeAll(tasks, Machine.PREFETCH_PARALLELISM);
             }
         }
-        return nics;
+    }
+
+    private void loadAddresses(final CimiMachineNetworkInterface cimiNic) throws CimiClientException {
+        CimiMachineNetworkInterfaceAddressCollectionRoot addresses = this.cimiClient.getRequest(
+            this.cimiClient.extractPath(cimiNic.getAddresses().getHref()), CimiMachineNetworkInterfaceAddressCollectionRoot.class,
+            QueryParams.builder().expand("address").build());
+        if (addresses.getArray() == null) {
+            // no address: remember that the collection was loaded
+            addresses.setArray(new CimiMachineNetworkInterfaceAddress[0]);
+        }
+        cimiNic.setAddresses(addresses);
+    }
+
+    private void loadVolumes() throws CimiClientException {
+        if (this.cimiObject.getVolumes() != null && this.cimiObject.getVolumes().getArray() == null
+            && this.cimiObject.getVolumes().getHref() != null) {
+            CimiMachineVolumeCollectionRoot cimiVolumes = this.cimiClient.getRequest(
+                this.cimiClient.extractPath(this.cimiObject.getVolumes().getHref()), CimiMachineVolumeCollectionRoot.class);
+            if (cimiVolumes.getArray() == null) {
+                // empty collection: remember that it was loaded
+                cimiVolumes.setArray(new CimiMachineVolume[0]);
+            }
+            this.cimiObject.setVolumes(cimiVolumes);
+        }
+    }
+
+    /**
+     * Loads sub-collections of several machines with concurrent requests, so
+     * that the corresponding accessors ({@link #getDisks()},
+     * {@link #getNetworkInterfaces()}, {@link #getVolumes()}) no longer need
+     * to contact the provider.
+     * 
+     * @param machines the machines, all retrieved with the same client
+     * @param subCollections names of the sub-collections to load: "disks",
+     *        "networkInterfaces" or "volumes"
+     * @throws CimiClientException If any internal errors are encountered inside
+     *         the client while attempting to make the request or handle the
+     *         response. For example if a network connection is not available.
+     * @throws CimiProviderException If an error response is returned by the
+     *         CIMI provider indicating either a problem with the data in the
+     *         request, or a server side issue.
+     */
+    public static void prefetch(final List<Machine> machines, final String... subCollections) throws CimiClientException,
+        CimiProviderException {
+        if (machines.isEmpty()) {
+            return;
+        }
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (final String subCollection : subCollections) {
+            if (!subCollection.equals(Machine.DISKS) && !subCollection.equals(Machine.NETWORK_INTERFACES)
+                && !subCollection.equals(Machine.VOLUMES)) {
+                throw new IllegalArgumentException("Unknown machine sub-collection: " + subCollection);
+            }
+            for (final Machine machine : machines) {
+                tasks.add(new Callable<Void>() {
+                    @Override
+                    public Void call() throws CimiClientException {
+                        if (subCollection.equals(Machine.DISKS)) {
+                            machine.loadDisks();
+                        } else if (subCollection.equals(Machine.NETWORK_INTERFACES)) {
+                            machine.loadNetworkInterfaces();
+                        } else {
+                            machine.loadVolumes();
+                        }
+                        return null;
+                    }
+                });
+            }
+        }
+        machines.get(0).cimiClient.invokeAll(tasks, Machine.PREFETCH_PARALLELISM);
     }
 
     public ProviderInfo getProviderInfo() {
@@ -278,10 +421,8 @@ public class Machine extends Resource<CimiMachine> {
         if (this.cimiClient.cloudEntryPoint.getMachineImages() == null) {
             throw new CimiClientException("Unsupported operation");
         }
-        CimiMachineImageCollection machineImagesCollection = this.cimiClient.getRequest(
-            this.cimiClient.extractPath(this.cimiClient.cloudEntryPoint.getMachineImages().getHref()),
-            CimiMachineImageCollectionRoot.class);
-        String addRef = Helper.findOperation("add", machineImagesCollection);
+        String addRef = this.cimiClient.findCollectionOperation(this.cimiClient.cloudEntryPoint.getMachineImages().getHref(),
+            CimiMachineImageCollectionRoot.class, "add");
         if (addRef == null) {
             throw new CimiClientException("Unsupported operation");
         }
@@ -338,9 +479,8 @@ public class Machine extends Resource<CimiMachine> {
         if (client.cloudEntryPoint.getMachines() == null) {
             throw new CimiClientException("Unsupported operation");
         }
-        CimiMachineCollection machinesCollection = client.getRequest(
-            client.extractPath(client.cloudEntryPoint.getMachines().getHref()), CimiMachineCollectionRoot.class);
-        String addRef = Helper.findOperation("add", machinesCollection);
+        String addRef = client.findCollectionOperation(client.cloudEntryPoint.getMachines().getHref(),
+            CimiMachineCollectionRoot.class, "add");
         if (addRef == null) {
             throw new CimiClientException("Unsupported operation");
         }
@@ -412,12 +552,61 @@ public class Machine extends Resource<CimiMachine> {
 
         if (machinesCollection.getCollection() != null) {
             for (CimiMachine cimiMachine : machinesCollection.getCollection().getArray()) {
-                result.add(new Machine(client, cimiMachine));
+                result.add(client.canonicalize(new Machine(client, cimiMachine), queryParams));
             }
         }
         return result;
     }
 
+    /**
+     * Iterates over the collection of machines, fetching them lazily by pages
+     * of pageSize elements.
+     * 
+     * @param client the client
+     * @param pageSize number of elements fetched per request
+     * @param queryParams optional query parameters ($first and $last bound the
+     *        range of elements iterated over)
+     * @return an iterable over the machines
+     */
+    public static PagedIterable<Machine> iterateMachines(final CimiClient client, final int pageSize,
+        final QueryParams... queryParams) {
+        return new PagedIterable<Machine>(client, pageSize, new PagedIterable.PageFetcher<Machine>() {
+            @Override
+            public List<Machine> fetch(final QueryParams pageParams) throws CimiClientException {
+                return Machine.getMachines(client, pageParams);
+            }
+        }, queryParams);
+    }
+
+    /**
+     * Retrieves the collection of machines and hands each of them to a visitor
+     * as soon as it is decoded, without holding the whole collection in
+     * memory.
+     * 
+     * @param client the client
+     * @param visitor the visitor
+     * @param queryParams optional query parameters
+     * @return the number of machines visited
+     * @throws CimiClientException If any internal errors are encountered
+     *         inside the client while attempting to make the request or handle
+     *         the response, or if the visitor aborts the traversal.
+     * @throws CimiProviderException If an error response is returned by the
+     *         CIMI provider.
+     */
+    public static int visitMachines(final CimiClient client, final CollectionVisitor<? super Machine> visitor,
+        final QueryParams... queryParams) throws CimiClientException, CimiProviderException {
+        if (client.cloudEntryPoint.getMachines() == null) {
+            throw new CimiClientException("Unsupported operation");
+        }
+        return client.visitCollection(client.extractPath(client.cloudEntryPoint.getMachines().getHref()), "machines",
+            "Machine", CimiMachine.class, new CollectionVisitor<CimiMachine>() {
+                @Override
+                public void visit(final CimiMachine cimiMachine) throws CimiClientException {
+                    visitor.visit(new Machine(client, cimiMachine));
+                }
+            }, queryParams);
+    }
+
     /**
      * Retrieves the machine with the given id.
      * 
@@ -435,7 +624,37 @@ public class Machine extends Resource<CimiMachine> {
     public static Machine getMachineByReference(final CimiClient client, final String id, final QueryParams... queryParams)
         throws CimiClientException, CimiProviderException {
         Machine result = new Machine(client, client.getCimiObjectByReference(id, CimiMachine.class, queryParams));
-        return result;
+        return client.canonicalize(result, queryParams);
+    }
+
+    /**
+     * Retrieves the machines with the given ids. The ids are fetched in
+     * batches with filtered requests on the collection, or with concurrent
+     * requests if the provider does not support filtering on ids.
+     * 
+     * @param client the client
+     * @param ids the ids of the resources
+     * @param queryParams optional query parameters
+     * @return the resources found, keyed by id in the order of the given ids
+     * @throws CimiClientException If any internal errors are encountered
+     *         inside the client while attempting to make the request or handle
+     *         the response.
+     * @throws CimiProviderException If an error response is returned by the
+     *         CIMI provider.
+     */
+    public static Map<String, Machine> getMachinesByIds(final CimiClient client, final Collection<String> ids,
+        final QueryParams... queryParams) throws CimiClientException, CimiProviderException {
+        return BatchGet.getByIds(client, ids, new PagedIterable.PageFetcher<Machine>() {
+            @Override
+            public List<Machine> fetch(final QueryParams batchParams) throws CimiClientException {
+                return Machine.getMachines(client, batchParams);
+            }
+        }, new BatchGet.ResourceFetcher<Machine>() {
+            @Override
+            public Machine fetch(final String id, final QueryParams singleParams) throws CimiClientException {
+                return Machine.getMachineByReference(client, id, singleParams);
+            }
+        }, queryParams);
     }
 
 }
@@ -26,6 +26,7 @@
 package org.ow2.sirocco.cimi.sdk;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -221,10 +222,8 @@ public class MachineConfiguration extends Resource<CimiMachineConfiguration> {
         if (client.cloudEntryPoint.getMachineConfigs() == null) {
             throw new CimiClientException("Unsupported operation");
         }
-        CimiMachineConfigurationCollection machineConfigCollection = client.getRequest(
-            client.extractPath(client.cloudEntryPoint.getMachineConfigs().getHref()),
-            CimiMachineConfigurationCollectionRoot.class);
-        String addRef = Helper.findOperation("add", machineConfigCollection);
+        String addRef = client.findCollectionOperation(client.cloudEntryPoint.getMachineConfigs().getHref(),
+            CimiMachineConfigurationCollectionRoot.class, "add");
         if (addRef == null) {
             throw new CimiClientException("Unsupported operation");
         }
@@ -309,12 +308,32 @@ public class MachineConfiguration extends Resource<CimiMachineConfiguration> {
 
         if (machineConfigCollection.getCollection() != null) {
             for (CimiMachineConfiguration cimiMachineConfig : machineConfigCollection.getCollection().getArray()) {
-                result.add(new MachineConfiguration(client, cimiMachineConfig));
+                result.add(client.canonicalize(new MachineConfiguration(client, cimiMachineConfig), queryParams));
             }
         }
         return result;
     }
 
+    /**
+     * Iterates over the collection of machine configurations, fetching them lazily by pages
+     * of pageSize elements.
+     * 
+     * @param client the client
+     * @param pageSize number of elements fetched per request
+     * @param queryParams optional query parameters ($first and $last bound the
+     *        range of elements iterated over)
+     * @return an iterable over the machine configurations
+     */
+    public static PagedIterable<MachineConfiguration> iterateMachineConfigurations(final CimiClient client, final int pageSize,
+        final QueryParams... queryParams) {
+        return new PagedIterable<MachineConfiguration>(client, pageSize, new PagedIterable.PageFetcher<MachineConfiguration>() {
+            @Override
+            public List<MachineConfiguration> fetch(final QueryParams pageParams) throws CimiClientException {
+                return MachineConfiguration.getMachineConfigurations(client, pageParams);
+            }
+        }, queryParams);
+    }
+
     /**
      * Retrieves the machine configuration with the given id.
      * 
@@ -331,8 +350,39 @@ public class MachineConfiguration extends Resource<CimiMachineConfiguration> {
      */
     public static MachineConfiguration getMachineConfigurationByReference(final CimiClient client, final String id,
         final QueryParams... queryParams) throws CimiClientException, CimiProviderException {
-        return new MachineConfiguration(client,
+        MachineConfiguration result = new MachineConfiguration(client,
             client.getCimiObjectByReference(id, CimiMachineConfiguration.class, queryParams));
+        return client.canonicalize(result, queryParams);
+    }
+
+    /**
+     * Retrieves the machine configurations with the given ids. The ids are fetched in
+     * batches with filtered requests on the collection, or with concurrent
+     * requests if the provider does not support filtering on ids.
+     * 
+     * @param client the client
+     * @param ids the ids of the resources
+     * @param queryParams optional query parameters
+     * @return the resources found, keyed by id in the order of the given ids
+     * @throws CimiClientException If any internal errors are encountered
+     *         inside the client while attempting to make the request or handle
+     *         the response.
+     * @throws CimiProviderException If an error response is returned by the
+     *         CIMI provider.
+     */
+    public static Map<String, MachineConfiguration> getMachineConfigurationsByIds(final CimiClient client, final Collection<String> ids,
+        final QueryParams... queryParams) throws CimiClientException, CimiProviderException {
+        return BatchGet.getByIds(client, ids, new PagedIterable.PageFetcher<MachineConfiguration>() {
+            @Override
+            public List<MachineConfiguration> fetch(final QueryParams batchParams) throws CimiClientException {
+                return MachineConfiguration.getMachineConfigurations(client, batchParams);
+            }
+        }, new BatchGet.ResourceFetcher<MachineConfiguration>() {
+            @Override
+            public MachineConfiguration fetch(final String id, final QueryParams singleParams) throws CimiClientException {
+                return MachineConfiguration.getMachineConfigurationByReference(client, id, singleParams);
+            }
+        }, queryParams);
     }
 
 }
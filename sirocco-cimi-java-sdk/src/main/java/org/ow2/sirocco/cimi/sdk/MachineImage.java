@@ -26,6 +26,7 @@
 package org.ow2.sirocco.cimi.sdk;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -187,9 +188,8 @@ public class MachineImage extends Resource<CimiMachineImage> {
         if (client.cloudEntryPoint.getMachineImages() == null) {
             throw new CimiClientException("Unsupported operation");
         }
-        CimiMachineImageCollection machineImagesCollection = client.getRequest(
-            client.extractPath(client.cloudEntryPoint.getMachineImages().getHref()), CimiMachineImageCollectionRoot.class);
-        String addRef = Helper.findOperation("add", machineImagesCollection);
+        String addRef = client.findCollectionOperation(client.cloudEntryPoint.getMachineImages().getHref(),
+            CimiMachineImageCollectionRoot.class, "add");
         if (addRef == null) {
             throw new CimiClientException("Unsupported operation");
         }
@@ -266,12 +266,32 @@ public class MachineImage extends Resource<CimiMachineImage> {
 
         if (machineImagesCollection.getCollection() != null) {
             for (CimiMachineImage cimiMachineImage : machineImagesCollection.getCollection().getArray()) {
-                result.add(new MachineImage(client, cimiMachineImage));
+                result.add(client.canonicalize(new MachineImage(client, cimiMachineImage), queryParams));
             }
         }
         return result;
     }
 
+    /**
+     * Iterates over the collection of machine images, fetching them lazily by pages
+     * of pageSize elements.
+     * 
+     * @param client the client
+     * @param pageSize number of elements fetched per request
+     * @param queryParams optional query parameters ($first and $last bound the
+     *        range of elements iterated over)
+     * @return an iterable over the machine images
+     */
+    public static PagedIterable<MachineImage> iterateMachineImages(final CimiClient client, final int pageSize,
+        final QueryParams... queryParams) {
+        return new PagedIterable<MachineImage>(client, pageSize, new PagedIterable.PageFetcher<MachineImage>() {
+            @Override
+            public List<MachineImage> fetch(final QueryParams pageParams) throws CimiClientException {
+                return MachineImage.getMachineImages(client, pageParams);
+            }
+        }, queryParams);
+    }
+
     /**
      * Retrieves the machine image with the given id.
      * 
@@ -288,7 +308,39 @@ public class MachineImage extends Resource<CimiMachineImage> {
      */
     public static MachineImage getMachineImageByReference(final CimiClient client, final String id,
         final QueryParams... queryParams) throws CimiClientException, CimiProviderException {
-        return new MachineImage(client, client.getCimiObjectByReference(id, CimiMachineImage.class, queryParams));
+        MachineImage result = new MachineImage(client,
+            client.getCimiObjectByReference(id, CimiMachineImage.class, queryParams));
+        return client.canonicalize(result, queryParams);
+    }
+
+    /**
+     * Retrieves the machine images with the given ids. The ids are fetched in
+     * batches with filtered requests on the collection, or with concurrent
+     * requests if the provider does not support filtering on ids.
+     * 
+     * @param client the client
+     * @param ids the ids of the resources
+     * @param queryParams optional query parameters
+     * @return the resources found, keyed by id in the order of the given ids
+     * @throws CimiClientException If any internal errors are encountered
+     *         inside the client while attempting to make the request or handle
+     *         the response.
+     * @throws CimiProviderException If an error response is returned by the
+     *         CIMI provider.
+     */
+    public static Map<String, MachineImage> getMachineImagesByIds(final CimiClient client, final Collection<String> ids,
+        final QueryParams... queryParams) throws CimiClientException, CimiProviderException {
+        return BatchGet.getByIds(client, ids, new PagedIterable.PageFetcher<MachineImage>() {
+            @Override
+            public List<MachineImage> fetch(final QueryParams batchParams) throws CimiClientException {
+                return MachineImage.getMachineImages(client, batchParams);
+            }
+        }, new BatchGet.ResourceFetcher<MachineImage>() {
+            @Override
+            public MachineImage fetch(final String id, final QueryParams singleParams) throws CimiClientException {
+                return MachineImage.getMachineImageByReference(client, id, singleParams);
+            }
+        }, queryParams);
     }
 
 }
@@ -86,15 +86,20 @@ public class MachineNetworkInterface extends Resource<CimiMachineNetworkInterfac
      *         request, or a server side issue.
      */
     public List<Address> getAddresses() throws CimiClientException, CimiProviderException {
-        String href = this.cimiObject.getAddresses().getHref();
-        if (href == null) {
-            href = this.cimiObject.getAddresses().getId();
-        }
-        CimiMachineNetworkInterfaceAddressCollectionRoot addresses = this.cimiClient.getRequest(
-            this.cimiClient.extractPath(href), CimiMachineNetworkInterfaceAddressCollectionRoot.class, QueryParams.builder()
-                .expand("address").build());
-        this.cimiObject.setAddresses(addresses);
         List<Address> result = new ArrayList<Address>();
+        if (this.cimiObject.getAddresses() == null) {
+            return result;
+        }
+        if (!this.isAddressesLoaded()) {
+            String href = this.cimiObject.getAddresses().getHref();
+            if (href == null) {
+                href = this.cimiObject.getAddresses().getId();
+            }
+            CimiMachineNetworkInterfaceAddressCollectionRoot addresses = this.cimiClient.getRequest(
+                this.cimiClient.extractPath(href), CimiMachineNetworkInterfaceAddressCollectionRoot.class, QueryParams
+                    .builder().expand("address").build());
+            this.cimiObject.setAddresses(addresses);
+        }
         if (this.cimiObject.getAddresses().getArray() != null) {
             for (CimiMachineNetworkInterfaceAddress addr : this.cimiObject.getAddresses().getArray()) {
                 Address address = new Address(this.cimiClient, addr.getAddress());
@@ -104,6 +109,23 @@ public class MachineNetworkInterface extends Resource<CimiMachineNetworkInterfac
         return result;
     }
 
+    /**
+     * Tells whether the addresses of this network interface were already
+     * retrieved with their content, for instance by
+     * {@link Machine#getNetworkInterfaces()}.
+     */
+    private boolean isAddressesLoaded() {
+        if (this.cimiObject.getAddresses().getArray() == null) {
+            return false;
+        }
+        for (CimiMachineNetworkInterfaceAddress addr : this.cimiObject.getAddresses().getArray()) {
+            if (addr.getAddress() != null && addr.getAddress().getId() == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Gets the network of this network interface.
      * 
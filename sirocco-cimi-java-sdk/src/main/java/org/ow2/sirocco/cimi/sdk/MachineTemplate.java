@@ -26,6 +26,7 @@
 package org.ow2.sirocco.cimi.sdk;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -408,10 +409,8 @@ public class MachineTemplate extends Resource<CimiMachineTemplate> {
         if (client.cloudEntryPoint.getMachineTemplates() == null) {
             throw new CimiClientException("Unsupported operation");
         }
-        CimiMachineTemplateCollection machineTemplateCollection = client
-            .getRequest(client.extractPath(client.cloudEntryPoint.getMachineTemplates().getHref()),
-                CimiMachineTemplateCollectionRoot.class);
-        String addRef = Helper.findOperation("add", machineTemplateCollection);
+        String addRef = client.findCollectionOperation(client.cloudEntryPoint.getMachineTemplates().getHref(),
+            CimiMachineTemplateCollectionRoot.class, "add");
         if (addRef == null) {
             throw new CimiClientException("Unsupported operation");
         }
@@ -492,12 +491,32 @@ public class MachineTemplate extends Resource<CimiMachineTemplate> {
 
         if (machineTemplateCollection.getCollection() != null) {
             for (CimiMachineTemplate cimiMachineTemplate : machineTemplateCollection.getCollection().getArray()) {
-                result.add(new MachineTemplate(client, cimiMachineTemplate));
+                result.add(client.canonicalize(new MachineTemplate(client, cimiMachineTemplate), queryParams));
             }
         }
         return result;
     }
 
+    /**
+     * Iterates over the collection of machine templates, fetching them lazily by pages
+     * of pageSize elements.
+     * 
+     * @param client the client
+     * @param pageSize number of elements fetched per request
+     * @param queryParams optional query parameters ($first and $last bound the
+     *        range of elements iterated over)
+     * @return an iterable over the machine templates
+     */
+    public static PagedIterable<MachineTemplate> iterateMachineTemplates(final CimiClient client, final int pageSize,
+        final QueryParams... queryParams) {
+        return new PagedIterable<MachineTemplate>(client, pageSize, new PagedIterable.PageFetcher<MachineTemplate>() {
+            @Override
+            public List<MachineTemplate> fetch(final QueryParams pageParams) throws CimiClientException {
+                return MachineTemplate.getMachineTemplates(client, pageParams);
+            }
+        }, queryParams);
+    }
+
     /**
      * Retrieves the machine template with the given id.
      * 
@@ -514,7 +533,39 @@ public class MachineTemplate extends Resource<CimiMachineTemplate> {
      */
     public static MachineTemplate getMachineTemplateByReference(final CimiClient client, final String id,
         final QueryParams... queryParams) throws CimiClientException, CimiProviderException {
-        return new MachineTemplate(client, client.getCimiObjectByReference(id, CimiMachineTemplate.class, queryParams));
+        MachineTemplate result = new MachineTemplate(client,
+            client.getCimiObjectByReference(id, CimiMachineTemplate.class, queryParams));
+        return client.canonicalize(result, queryParams);
+    }
+
+    /**
+     * Retrieves the machine templates with the given ids. The ids are fetched in
+     * batches with filtered requests on the collection, or with concurrent
+     * requests if the provider does not support filtering on ids.
+     * 
+     * @param client the client
+     * @param ids the ids of the resources
+     * @param queryParams optional query parameters
+     * @return the resources found, keyed by id in the order of the given ids
+     * @throws CimiClientException If any internal errors are encountered
+     *         inside the client while attempting to make the request or handle
+     *         the response.
+     * @throws CimiProviderException If an error response is returned by the
+     *         CIMI provider.
+     */
+    public static Map<String, MachineTemplate> getMachineTemplatesByIds(final CimiClient client, final Collection<String> ids,
+        final QueryParams... queryParams) throws CimiClientException, CimiProviderException {
+        return BatchGet.getByIds(client, ids, new PagedIterable.PageFetcher<MachineTemplate>() {
+            @Override
+            public List<MachineTemplate> fetch(final QueryParams batchParams) throws CimiClientException {
+                return MachineTemplate.getMachineTemplates(client, batchParams);
+            }
+        }, new BatchGet.ResourceFetcher<MachineTemplate>() {
+            @Override
+            public MachineTemplate fetch(final String id, final QueryParams singleParams) throws CimiClientException {
+                return MachineTemplate.getMachineTemplateByReference(client, id, singleParams);
+            }
+        }, queryParams);
     }
 
 }
@@ -25,7 +25,9 @@
 package org.ow2.sirocco.cimi.sdk;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import org.ow2.sirocco.cimi.domain.CimiNetwork;
 import org.ow2.sirocco.cimi.domain.collection.CimiNetworkCollection;
@@ -116,9 +118,8 @@ public class Network extends Resource<CimiNetwork> {
         if (client.cloudEntryPoint.getNetworks() == null) {
             throw new CimiClientException("Unsupported operation");
         }
-        CimiNetworkCollection networksCollection = client.getRequest(
-            client.extractPath(client.cloudEntryPoint.getNetworks().getHref()), CimiNetworkCollectionRoot.class);
-        String addRef = Helper.findOperation("add", networksCollection);
+        String addRef = client.findCollectionOperation(client.cloudEntryPoint.getNetworks().getHref(),
+            CimiNetworkCollectionRoot.class, "add");
         if (addRef == null) {
             throw new CimiClientException("Unsupported operation");
         }
@@ -152,12 +153,61 @@ public class Network extends Resource<CimiNetwork> {
 
         if (addressCollection.getCollection() != null) {
             for (CimiNetwork cimiNetwork : addressCollection.getCollection().getArray()) {
-                result.add(new Network(client, cimiNetwork));
+                result.add(client.canonicalize(new Network(client, cimiNetwork), queryParams));
             }
         }
         return result;
     }
 
+    /**
+     * Iterates over the collection of networks, fetching them lazily by pages
+     * of pageSize elements.
+     * 
+     * @param client the client
+     * @param pageSize number of elements fetched per request
+     * @param queryParams optional query parameters ($first and $last bound the
+     *        range of elements iterated over)
+     * @return an iterable over the networks
+     */
+    public static PagedIterable<Network> iterateNetworks(final CimiClient client, final int pageSize,
+        final QueryParams... queryParams) {
+        return new PagedIterable<Network>(client, pageSize, new PagedIterable.PageFetcher<Network>() {
+            @Override
+            public List<Network> fetch(final QueryParams pageParams) throws CimiClientException {
+                return Network.getNetworks(client, pageParams);
+            }
+        }, queryParams);
+    }
+
+    /**
+     * Retrieves the collection of networks and hands each of them to a visitor
+     * as soon as it is decoded, without holding the whole collection in
+     * memory.
+     * 
+     * @param client the client
+     * @param visitor the visitor
+     * @param queryParams optional query parameters
+     * @return the number of networks visited
+     * @throws CimiClientException If any internal errors are encountered
+     *         inside the client while attempting to make the request or handle
+     *         the response, or if the visitor aborts the traversal.
+     * @throws CimiProviderException If an error response is returned by the
+     *         CIMI provider.
+     */
+    public static int visitNetworks(final CimiClient client, final CollectionVisitor<? super Network> visitor,
+        final QueryParams... queryParams) throws CimiClientException, CimiProviderException {
+        if (client.cloudEntryPoint.getNetworks() == null) {
+            throw new CimiClientException("Unsupported operation");
+        }
+        return client.visitCollection(client.extractPath(client.cloudEntryPoint.getNetworks().getHref()), "networks",
+            "Network", CimiNetwork.class, new CollectionVisitor<CimiNetwork>() {
+                @Override
+                public void visit(final CimiNetwork cimiNetwork) throws CimiClientException {
+                    visitor.visit(new Network(client, cimiNetwork));
+                }
+            }, queryParams);
+    }
+
     /**
      * Retrieves the network with the given id.
      * 
@@ -174,6 +224,37 @@ public class Network extends Resource<CimiNetwork> {
      */
     public static Network getNetworkByReference(final CimiClient client, final String id, final QueryParams... queryParams)
         throws CimiClientException, CimiProviderException {
-        return new Network(client, client.getCimiObjectByReference(id, CimiNetwork.class, queryParams));
+        Network result = new Network(client, client.getCimiObjectByReference(id, CimiNetwork.class, queryParams));
+        return client.canonicalize(result, queryParams);
+    }
+
+    /**
+     * Retrieves the networks with the given ids. The ids are fetched in
+     * batches with filtered requests on the collection, or with concurrent
+     * requests if the provider does not support filtering on ids.
+     * 
+     * @param client the client
+     * @param ids the ids of the resources
+     * @param queryParams optional query parameters
+     * @return the resources found, keyed by id in the order of the given ids
+     * @throws CimiClientException If any internal errors are encountered
+     *         inside the client while attempting to make the request or handle
+     *         the response.
+     * @throws CimiProviderException If an error response is returned by the
+     *         CIMI provider.
+     */
+    public static Map<String, Network> getNetworksByIds(final CimiClient client, final Collection<String> ids,
+        final QueryParams... queryParams) throws CimiClientException, CimiProviderException {
+        return BatchGet.getByIds(client, ids, new PagedIterable.PageFetcher<Network>() {
+            @Override
+            public List<Network> fetch(final QueryParams batchParams) throws CimiClientException {
+                return Network.getNetworks(client, batchParams);
+            }
+        }, new BatchGet.ResourceFetcher<Network>() {
+            @Override
+            public Network fetch(final String id, final QueryParams singleParams) throws CimiClientException {
+                return Network.getNetworkByReference(client, id, singleParams);
+            }
+        }, queryParams);
     }
 }
\ No newline at end of file
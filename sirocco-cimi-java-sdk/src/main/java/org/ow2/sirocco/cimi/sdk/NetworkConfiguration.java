@@ -24,7 +24,9 @@
 package org.ow2.sirocco.cimi.sdk;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import org.ow2.sirocco.cimi.domain.CimiJob;
 import org.ow2.sirocco.cimi.domain.CimiNetworkConfiguration;
@@ -111,10 +113,8 @@ public class NetworkConfiguration extends Resource<CimiNetworkConfiguration> {
         if (client.cloudEntryPoint.getNetworkConfigs() == null) {
             throw new CimiClientException("Unsupported operation");
         }
-        CimiNetworkConfigurationCollection networkConfigurationCollection = client.getRequest(
-            client.extractPath(client.cloudEntryPoint.getNetworkConfigs().getHref()),
-            CimiNetworkConfigurationCollectionRoot.class);
-        String addRef = Helper.findOperation("add", networkConfigurationCollection);
+        String addRef = client.findCollectionOperation(client.cloudEntryPoint.getNetworkConfigs().getHref(),
+            CimiNetworkConfigurationCollectionRoot.class, "add");
         if (addRef == null) {
             throw new CimiClientException("Unsupported operation");
         }
@@ -152,12 +152,32 @@ public class NetworkConfiguration extends Resource<CimiNetworkConfiguration> {
 
         if (networkConfigurationCollection.getCollection() != null) {
             for (CimiNetworkConfiguration cimiNetworkConfiguration : networkConfigurationCollection.getCollection().getArray()) {
-                result.add(new NetworkConfiguration(client, cimiNetworkConfiguration));
+                result.add(client.canonicalize(new NetworkConfiguration(client, cimiNetworkConfiguration), queryParams));
             }
         }
         return result;
     }
 
+    /**
+     * Iterates over the collection of network configurations, fetching them lazily by pages
+     * of pageSize elements.
+     * 
+     * @param client the client
+     * @param pageSize number of elements fetched per request
+     * @param queryParams optional query parameters ($first and $last bound the
+     *        range of elements iterated over)
+     * @return an iterable over the network configurations
+     */
+    public static PagedIterable<NetworkConfiguration> iterateNetworkConfigurations(final CimiClient client, final int pageSize,
+        final QueryParams... queryParams) {
+        return new PagedIterable<NetworkConfiguration>(client, pageSize, new PagedIterable.PageFetcher<NetworkConfiguration>() {
+            @Override
+            public List<NetworkConfiguration> fetch(final QueryParams pageParams) throws CimiClientException {
+                return NetworkConfiguration.getNetworkConfigurations(client, pageParams);
+            }
+        }, queryParams);
+    }
+
     /**
      * Retrieves the network config with the given id.
      * 
@@ -174,7 +194,38 @@ public class NetworkConfiguration extends Resource<CimiNetworkConfiguration> {
      */
     public static NetworkConfiguration getNetworkConfigurationByReference(final CimiClient client, final String id,
         final QueryParams... queryParams) throws CimiClientException, CimiProviderException {
-        return new NetworkConfiguration(client,
+        NetworkConfiguration result = new NetworkConfiguration(client,
             client.getCimiObjectByReference(id, CimiNetworkConfiguration.class, queryParams));
+        return client.canonicalize(result, queryParams);
+    }
+
+    /**
+     * Retrieves the network configurations with the given ids. The ids are fetched in
+     * batches with filtered requests on the collection, or with concurrent
+     * requests if the provider does not support filtering on ids.
+     * 
+     * @param client the client
+     * @param ids the ids of the resources
+     * @param queryParams optional query parameters
+     * @return the resources found, keyed by id in the order of the given ids
+     * @throws CimiClientException If any internal errors are encountered
+     *         inside the client while attempting to make the request or handle
+     *         the response.
+     * @throws CimiProviderException If an error response is returned by the
+     *         CIMI provider.
+     */
+    public static Map<String, NetworkConfiguration> getNetworkConfigurationsByIds(final CimiClient client, final Collection<String> ids,
+        final QueryParams... queryParams) throws CimiClientException, CimiProviderException {
+        return BatchGet.getByIds(client, ids, new PagedIterable.PageFetcher<NetworkConfiguration>() {
+            @Override
+            public List<NetworkConfiguration> fetch(final QueryParams batchParams) throws CimiClientException {
+                return NetworkConfiguration.getNetworkConfigurations(client, batchParams);
+            }
+        }, new BatchGet.ResourceFetcher<NetworkConfiguration>() {
+            @Override
+            public NetworkConfiguration fetch(final String id, final QueryParams singleParams) throws CimiClientException {
+                return NetworkConfiguration.getNetworkConfigurationByReference(client, id, singleParams);
+            }
+        }, queryParams);
     }
 }
@@ -24,7 +24,9 @@
 package org.ow2.sirocco.cimi.sdk;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import org.ow2.sirocco.cimi.domain.CimiJob;
 import org.ow2.sirocco.cimi.domain.CimiNetworkTemplate;
@@ -134,10 +136,8 @@ public class NetworkTemplate extends Resource<CimiNetworkTemplate> {
         if (client.cloudEntryPoint.getNetworkTemplates() == null) {
             throw new CimiClientException("Unsupported operation");
         }
-        CimiNetworkTemplateCollection networkTemplateCollection = client
-            .getRequest(client.extractPath(client.cloudEntryPoint.getNetworkTemplates().getHref()),
-                CimiNetworkTemplateCollectionRoot.class);
-        String addRef = Helper.findOperation("add", networkTemplateCollection);
+        String addRef = client.findCollectionOperation(client.cloudEntryPoint.getNetworkTemplates().getHref(),
+            CimiNetworkTemplateCollectionRoot.class, "add");
         if (addRef == null) {
             throw new CimiClientException("Unsupported operation");
         }
@@ -175,12 +175,32 @@ public class NetworkTemplate extends Resource<CimiNetworkTemplate> {
 
         if (networkTemplateCollection.getCollection() != null) {
             for (CimiNetworkTemplate cimiNetworkTemplate : networkTemplateCollection.getCollection().getArray()) {
-                result.add(new NetworkTemplate(client, cimiNetworkTemplate));
+                result.add(client.canonicalize(new NetworkTemplate(client, cimiNetworkTemplate), queryParams));
             }
         }
         return result;
     }
 
+    /**
+     * Iterates over the collection of network templates, fetching them lazily by pages
+     * of pageSize elements.
+     * 
+     * @param client the client
+     * @param pageSize number of elements fetched per request
+     * @param queryParams optional query parameters ($first and $last bound the
+     *        range of elements iterated over)
+     * @return an iterable over the network templates
+     */
+    public static PagedIterable<NetworkTemplate> iterateNetworkTemplates(final CimiClient client, final int pageSize,
+        final QueryParams... queryParams) {
+        return new PagedIterable<NetworkTemplate>(client, pageSize, new PagedIterable.PageFetcher<NetworkTemplate>() {
+            @Override
+            public List<NetworkTemplate> fetch(final QueryParams pageParams) throws CimiClientException {
+                return NetworkTemplate.getNetworkTemplates(client, pageParams);
+            }
+        }, queryParams);
+    }
+
     /**
      * Retrieves the network template with the given id.
      * 
@@ -197,6 +217,38 @@ public class NetworkTemplate extends Resource<CimiNetworkTemplate> {
      */
     public static NetworkTemplate getNetworkTemplateByReference(final CimiClient client, final String id,
         final QueryParams... queryParams) throws CimiClientException, CimiProviderException {
-        return new NetworkTemplate(client, client.getCimiObjectByReference(id, CimiNetworkTemplate.class, queryParams));
+        NetworkTemplate result = new NetworkTemplate(client,
+            client.getCimiObjectByReference(id, CimiNetworkTemplate.class, queryParams));
+        return client.canonicalize(result, queryParams);
+    }
+
+    /**
+     * Retrieves the network templates with the given ids. The ids are fetched in
+     * batches with filtered requests on the collection, or with concurrent
+     * requests if the provider does not support filtering on ids.
+     * 
+     * @param client the client
+     * @param ids the ids of the resources
+     * @param queryParams optional query parameters
+     * @return the resources found, keyed by id in the order of the given ids
+     * @throws CimiClientException If any internal errors are encountered
+     *         inside the client while attempting to make the request or handle
+     *         the response.
+     * @throws CimiProviderException If an error response is returned by the
+     *         CIMI provider.
+     */
+    public static Map<String, NetworkTemplate> getNetworkTemplatesByIds(final CimiClient client, final Collection<String> ids,
+        final QueryParams... queryParams) throws CimiClientException, CimiProviderException {
+        return BatchGet.getByIds(client, ids, new PagedIterable.PageFetcher<NetworkTemplate>() {
+            @Override
+            public List<NetworkTemplate> fetch(final QueryParams batchParams) throws CimiClientException {
+                return NetworkTemplate.getNetworkTemplates(client, batchParams);
+            }
+        }, new BatchGet.ResourceFetcher<NetworkTemplate>() {
+            @Override
+            public NetworkTemplate fetch(final String id, final QueryParams singleParams) throws CimiClientException {
+                return NetworkTemplate.getNetworkTemplateByReference(client, id, singleParams);
+            }
+        }, queryParams);
     }
 }
@@ -0,0 +1,497 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2012 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ *  $Id$
+ *
+ */
+package org.ow2.sirocco.cimi.sdk;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Iterable over a CIMI collection fetched lazily, one page at a time, with the
+ * $first and $last query parameters. While the elements of a page are
+ * consumed, the next page is fetched in the background. Each call to
+ * {@link #iterator()} walks the collection again from the start. Errors raised
+ * while fetching a page are thrown by the iterator as CimiIterationException.
+ * An iteration abandoned before the end should be closed with
+ * {@link PagedIterator#close()}, which cancels the page being fetched in
+ * the background; otherwise that request runs to completion and its result
+ * is discarded.
+ * The collection can also be fetched eagerly with several page requests in
+ * flight using {@link #fetchAll(int)}, {@link #visitAll(int, CollectionVisitor)}
+ * or {@link #map(int, ElementMapper)}.
+ * 
+ * @param <T> the type of the collection elements
+ */
+public class PagedIterable<T> implements Iterable<T> {
+
+    /** default number of elements per page. */
+    public static final int DEFAULT_PAGE_SIZE = 100;
+
+    /**
+     * Iterator over the pages of a collection. Closing it cancels the page
+     * being fetched in the background and ends the iteration; an iterator
+     * that has returned all the elements needs no closing.
+     */
+    public interface PagedIterator<T> extends Iterator<T>, Closeable {
+        /**
+         * Cancels the background page fetch, if any, and ends the iteration.
+         */
+        @Override
+        void close();
+    }
+
+    /**
+     * Fetches the elements of a collection matching some query parameters.
+     */
+    interface PageFetcher<T> {
+        List<T> fetch(QueryParams queryParams) throws CimiClientException;
+    }
+
+    private final CimiClient client;
+
+    private final int pageSize;
+
+    private final PageFetcher<T> fetcher;
+
+    private final QueryParams queryParams;
+
+    PagedIterable(final CimiClient client, final int pageSize, final PageFetcher<T> fetcher,
+        final QueryParams... queryParams) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("pageSize must be positive");
+        }
+        this.client = client;
+        this.pageSize = pageSize;
+        this.fetcher = fetcher;
+        this.queryParams = queryParams.length > 0 && queryParams[0] != null ? queryParams[0] : QueryParams.builder()
+            .build();
+    }
+
+    /**
+     * Returns the number of elements fetched per request.
+     * 
+     * @return the page size
+     */
+    public int getPageSize() {
+        return this.pageSize;
+    }
+
+    @Override
+    public PagedIterator<T> iterator() {
+        return new PageIterator();
+    }
+
+    /**
+     * Fetches the whole collection (or the range bounded by $first and $last)
+     * with up to parallelism page requests in flight at the same time, and
+     * returns the elements in collection order. The first page is fetched
+     * alone to detect small collections and providers that do not support
+     * paging.
+     * 
+     * @param parallelism maximum number of concurrent page requests
+     * @return the elements of the collection
+     * @throws CimiClientException If any internal errors are encountered
+     *         inside the client while attempting to make the request or handle
+     *         the response.
+     * @throws CimiProviderException If an error response is returned by the
+     *         CIMI provider.
+     */
+    public List<T> fetchAll(final int parallelism) throws CimiClientException {
+        List<T> result = new ArrayList<T>();
+        this.fetchParallel(parallelism, null, result, null);
+        return result;
+    }
+
+    /**
+     * Fetches the whole collection (or the range bounded by $first and $last)
+     * with up to parallelism page requests in flight at the same time, and
+     * hands each element to a visitor as soon as its page is received. Pages
+     * are visited in the order they arrive; the visitor is always called from
+     * the calling thread.
+     * 
+     * @param parallelism maximum number of concurrent page requests
+     * @param visitor the visitor
+     * @throws CimiClientException If any internal errors are encountered
+     *         inside the client while attempting to make the request or handle
+     *         the response, or if the visitor aborts the traversal.
+     * @throws CimiProviderException If an error response is returned by the
+     *         CIMI provider.
+     */
+    public void visitAll(final int parallelism, final CollectionVisitor<? super T> visitor) throws CimiClientException {
+        this.fetchParallel(parallelism, null, null, visitor);
+    }
+
+    /**
+     * Fetches the whole collection (or the range bounded by $first and $last)
+     * with up to parallelism page requests in flight at the same time, and
+     * applies a mapper to the elements of each page in the thread that fetched
+     * the page, so that fetching and mapping are both spread over the pages.
+     * Elements mapped to null are dropped, which allows filtering. The results
+     * are returned in collection order.
+     * 
+     * @param parallelism maximum number of pages fetched and mapped
+     *        concurrently
+     * @param mapper the mapper, called concurrently from several threads
+     * @return the mapped elements
+     * @throws CimiClientException If any internal errors are encountered
+     *         inside the client while attempting to make the request or handle
+     *         the response, or if the mapper aborts the traversal.
+     * @throws CimiProviderException If an error response is returned by the
+     *         CIMI provider.
+     */
+    public <R> List<R> map(final int parallelism, final ElementMapper<? super T, ? extends R> mapper)
+        throws CimiClientException {
+        List<R> result = new ArrayList<R>();
+        this.fetchParallel(parallelism, mapper, result, null);
+        return result;
+    }
+
+    private static class Page<R> {
+        final int fetched;
+
+        final Object firstElement;
+
+        final List<R> elements;
+
+        Page(final int fetched, final Object firstElement, final List<R> elements) {
+            this.fetched = fetched;
+            this.firstElement = firstElement;
+            this.elements = elements;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <R> Page<R> fetchPage(final int first, final int last, final ElementMapper<? super T, ? extends R> mapper)
+        throws CimiClientException {
+        List<T> elements = this.fetchRange(first, last);
+        T firstElement = elements.isEmpty() ? null : elements.get(0);
+        if (mapper == null) {
+            return new Page<R>(elements.size(), firstElement, (List<R>) elements);
+        }
+        List<R> mapped = new ArrayList<R>(elements.size());
+        for (T element : elements) {
+            R result = mapper.map(element);
+            if (result != null) {
+                mapped.add(result);
+            }
+        }
+        return new Page<R>(elements.size(), firstElement, mapped);
+    }
+
+    private <R> void fetchParallel(final int parallelism, final ElementMapper<? super T, ? extends R> mapper,
+        final List<R> ordered, final CollectionVisitor<? super R> visitor) throws CimiClientException {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        final int rangeStart = this.getRangeStart();
+        final Integer rangeEnd = this.getRangeEnd();
+        if (rangeEnd != null && rangeEnd < rangeStart) {
+            return;
+        }
+        Page<R> firstPage = this.fetchPage(rangeStart, this.pageEnd(rangeStart, 0, rangeEnd), mapper);
+        this.deliver(firstPage.elements, ordered, visitor);
+        int requested = this.pageEnd(rangeStart, 0, rangeEnd) - rangeStart + 1;
+        if (firstPage.fetched != requested || this.pageStart(rangeStart, 1, rangeEnd) < 0) {
+            return;
+        }
+
+        final BlockingQueue<Integer> completed = new LinkedBlockingQueue<Integer>();
+        Map<Integer, Future<Page<R>>> inFlight = new HashMap<Integer, Future<Page<R>>>();
+        SortedMap<Integer, List<R>> pending = new TreeMap<Integer, List<R>>();
+        int nextPage = 1;
+        int lastPage = Integer.MAX_VALUE;
+        int nextToDeliver = 1;
+        try {
+            while (true) {
+                while (inFlight.size() < parallelism && nextPage <= lastPage
+                    && this.pageStart(rangeStart, nextPage, rangeEnd) >= 0) {
+                    final int page = nextPage++;
+                    final int first = this.pageStart(rangeStart, page, rangeEnd);
+                    final int last = this.pageEnd(rangeStart, page, rangeEnd);
+                    inFlight.put(page, this.client.submitTask(new Callable<Page<R>>() {
+                        @Override
+                        public Page<R> call() throws CimiClientException {
+                            try {
+                                return PagedIterable.this.fetchPage(first, last, mapper);
+                            } finally {
+                                completed.add(page);
+                            }
+                        }
+                    }));
+                }
+                if (inFlight.isEmpty()) {
+                    break;
+                }
+                int page = completed.take();
+                Future<Page<R>> future = inFlight.remove(page);
+                if (future == null || page > lastPage) {
+                    // page cancelled once the end of the collection was found
+                    continue;
+                }
+                Page<R> result = PagedIterable.await(future);
+                boolean repeated = PagedIterable.isSameElement(result.firstElement, firstPage.firstElement);
+                boolean shortPage = result.fetched < this.pageEnd(rangeStart, page, rangeEnd)
+                    - this.pageStart(rangeStart, page, rangeEnd) + 1;
+                if (repeated) {
+                    // the provider ignores $first/$last and returned the first page again
+                    lastPage = 0;
+                } else if (shortPage) {
+                    // short page: the collection ends here
+                    lastPage = page;
+                }
+                if (repeated || shortPage) {
+                    for (Iterator<Map.Entry<Integer, Future<Page<R>>>> it = inFlight.entrySet().iterator(); it.hasNext();) {
+                        Map.Entry<Integer, Future<Page<R>>> entry = it.next();
+                        if (entry.getKey() > lastPage) {
+                            entry.getValue().cancel(true);
+                            it.remove();
+                        }
+                    }
+                }
+                if (repeated) {
+                    continue;
+                }
+                if (ordered == null) {
+                    this.deliver(result.elements, null, visitor);
+                } else {
+                    pending.put(page, result.elements);
+                    while (!pending.isEmpty() && pending.firstKey() == nextToDeliver) {
+                        this.deliver(pending.remove(nextToDeliver++), ordered, null);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CimiClientException("Interrupted", e);
+        } finally {
+            for (Future<Page<R>> future : inFlight.values()) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Returns the position of the first element of the given page (the page
+     * at rangeStart being page 0), or -1 if the page is beyond the range.
+     */
+    private int pageStart(final int rangeStart, final int page, final Integer rangeEnd) {
+        long start = rangeStart + (long) page * this.pageSize;
+        if (start > Integer.MAX_VALUE || (rangeEnd != null && start > rangeEnd)) {
+            return -1;
+        }
+        return (int) start;
+    }
+
+    private int pageEnd(final int rangeStart, final int page, final Integer rangeEnd) {
+        long end = rangeStart + (long) (page + 1) * this.pageSize - 1;
+        if (rangeEnd != null) {
+            end = Math.min(end, rangeEnd);
+        }
+        return (int) Math.min(end, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Tells whether two elements are the same collection member, resources
+     * being compared by id.
+     */
+    private static boolean isSameElement(final Object element, final Object other) {
+        if (element == null || other == null) {
+            return false;
+        }
+        if (element instanceof Resource && other instanceof Resource) {
+            String id = ((Resource<?>) element).getId();
+            return id != null && id.equals(((Resource<?>) other).getId());
+        }
+        return element.equals(other);
+    }
+
+    private <R> void deliver(final List<R> elements, final List<R> ordered, final CollectionVisitor<? super R> visitor)
+        throws CimiClientException {
+        if (ordered != null) {
+            ordered.addAll(elements);
+        } else {
+            for (R element : elements) {
+                visitor.visit(element);
+            }
+        }
+    }
+
+    private static <V> V await(final Future<V> future) throws CimiClientException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof CimiClientException) {
+                throw (CimiClientException) e.getCause();
+            }
+            throw new CimiClientException(e.getCause());
+        }
+    }
+
+    CimiClient getClient() {
+        return this.client;
+    }
+
+    PageFetcher<T> getFetcher() {
+        return this.fetcher;
+    }
+
+    QueryParams getQueryParams() {
+        return this.queryParams;
+    }
+
+    /**
+     * Returns the (1-based) position of the first element to fetch.
+     */
+    int getRangeStart() {
+        return this.queryParams.getFirst() != null ? Math.max(1, this.queryParams.getFirst()) : 1;
+    }
+
+    /**
+     * Returns the (1-based) position of the last element to fetch, or null if
+     * the range is unbounded.
+     */
+    Integer getRangeEnd() {
+        return this.queryParams.getLast();
+    }
+
+    List<T> fetchRange(final int first, final int last) throws CimiClientException {
+        return this.fetcher.fetch(this.queryParams.toBuilder().first(first).last(last).build());
+    }
+
+    private class PageIterator implements PagedIterator<T> {
+        private int pageStart = PagedIterable.this.getRangeStart();
+
+        private final Integer rangeEnd = PagedIterable.this.getRangeEnd();
+
+        private Iterator<T> current = Collections.<T> emptyList().iterator();
+
+        private Future<List<T>> nextPage;
+
+        private boolean exhausted = this.rangeEnd != null && this.rangeEnd < this.pageStart;
+
+        private T previousFirstElement;
+
+        @Override
+        public boolean hasNext() {
+            while (!this.current.hasNext()) {
+                if (this.exhausted) {
+                    return false;
+                }
+                this.advance();
+            }
+            return true;
+        }
+
+        @Override
+        public T next() {
+            if (!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return this.current.next();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+            this.exhausted = true;
+            this.current = Collections.<T> emptyList().iterator();
+            if (this.nextPage != null) {
+                this.nextPage.cancel(true);
+                this.nextPage = null;
+            }
+        }
+
+        private int pageEnd(final int start) {
+            int end = start + PagedIterable.this.pageSize - 1;
+            return this.rangeEnd != null ? Math.min(end, this.rangeEnd) : end;
+        }
+
+        private void advance() {
+            int requested = this.pageEnd(this.pageStart) - this.pageStart + 1;
+            List<T> page;
+            try {
+                if (this.nextPage != null) {
+                    page = this.awaitNextPage();
+                } else {
+                    page = PagedIterable.this.fetchRange(this.pageStart, this.pageEnd(this.pageStart));
+                }
+            } catch (CimiClientException e) {
+                this.exhausted = true;
+                throw new CimiIterationException(e);
+            }
+            // a short page marks the end of the collection; a larger one, or
+            // the previous page again, means that the provider ignored
+            // $first/$last and returned everything
+            T firstElement = page.isEmpty() ? null : page.get(0);
+            if (PagedIterable.isSameElement(firstElement, this.previousFirstElement)) {
+                page = Collections.<T> emptyList();
+            }
+            this.previousFirstElement = firstElement;
+            this.pageStart += requested;
+            if (page.size() != requested || (this.rangeEnd != null && this.pageStart > this.rangeEnd)) {
+                this.exhausted = true;
+            } else {
+                final int start = this.pageStart;
+                final int end = this.pageEnd(start);
+                this.nextPage = PagedIterable.this.client.submitTask(new Callable<List<T>>() {
+                    @Override
+                    public List<T> call() throws CimiClientException {
+                        return PagedIterable.this.fetchRange(start, end);
+                    }
+                });
+            }
+            this.current = page.iterator();
+        }
+
+        private List<T> awaitNextPage() throws CimiClientException {
+            Future<List<T>> future = this.nextPage;
+            this.nextPage = null;
+            try {
+                return PagedIterable.await(future);
+            } catch (InterruptedException e) {
+                future.cancel(true);
+                Thread.currentThread().interrupt();
+                throw new CimiClientException("Interrupted", e);
+            }
+        }
+    }
+
+}
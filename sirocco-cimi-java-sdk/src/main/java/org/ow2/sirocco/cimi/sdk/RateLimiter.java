@@ -0,0 +1,265 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2012 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ *  $Id$
+ *
+ */
+package org.ow2.sirocco.cimi.sdk;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Client-side token-bucket rate limiter shared by all the requests of a
+ * CimiClient. A global limit and per operation type limits (reads, creates,
+ * actions, updates, deletes) can be combined: a request must obtain a token
+ * from each bucket that applies to it. In blocking mode the request waits
+ * until tokens are available, unless its RequestContext deadline comes first;
+ * in fail-fast mode a CimiRateLimitException is raised.
+ */
+public class RateLimiter {
+
+    /**
+     * Behavior when no token is available.
+     */
+    public static enum Mode {
+        /** wait until a token is available */
+        BLOCKING,
+        /** raise a CimiRateLimitException */
+        FAIL_FAST
+    }
+
+    /**
+     * Helper class to build a RateLimiter instance.
+     */
+    public static class Builder {
+        private TokenBucket globalBucket;
+
+        private Map<OperationType, TokenBucket> buckets = new EnumMap<OperationType, TokenBucket>(OperationType.class);
+
+        private Mode mode = Mode.BLOCKING;
+
+        /**
+         * Limits the rate of all requests.
+         * 
+         * @param permitsPerSecond sustained number of requests per second, must
+         *        be positive
+         * @param burst maximum number of requests that can be sent at once
+         * @return the builder
+         */
+        public Builder globalRate(final double permitsPerSecond, final int burst) {
+            Builder.checkRate(permitsPerSecond);
+            this.globalBucket = new TokenBucket(permitsPerSecond, burst);
+            return this;
+        }
+
+        /**
+         * Limits the rate of a class of requests.
+         * 
+         * @param operationType the class of requests
+         * @param permitsPerSecond sustained number of requests per second, must
+         *        be positive
+         * @param burst maximum number of requests that can be sent at once
+         * @return the builder
+         */
+        public Builder rate(final OperationType operationType, final double permitsPerSecond, final int burst) {
+            Builder.checkRate(permitsPerSecond);
+            this.buckets.put(operationType, new TokenBucket(permitsPerSecond, burst));
+            return this;
+        }
+
+        private static void checkRate(final double permitsPerSecond) {
+            if (!(permitsPerSecond > 0)) {
+                throw new IllegalArgumentException("permitsPerSecond must be positive");
+            }
+        }
+
+        /**
+         * Sets the behavior when no token is available. Defaults to BLOCKING.
+         * 
+         * @param mode the mode
+         * @return the builder
+         */
+        public Builder mode(final Mode mode) {
+            this.mode = mode;
+            return this;
+        }
+
+        /**
+         * Builds a RateLimiter.
+         * 
+         * @return the rate limiter
+         */
+        public RateLimiter build() {
+            RateLimiter result = new RateLimiter();
+            result.globalBucket = this.globalBucket;
+            result.buckets.putAll(this.buckets);
+            result.mode = this.mode;
+            return result;
+        }
+    }
+
+    private static class TokenBucket {
+        private final double permitsPerNano;
+
+        private final double capacity;
+
+        private double tokens;
+
+        private long lastRefillTime;
+
+        TokenBucket(final double permitsPerSecond, final int burst) {
+            this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+            this.capacity = Math.max(1, burst);
+            this.tokens = this.capacity;
+            this.lastRefillTime = java.lang.System.nanoTime();
+        }
+
+        private void refill(final long now) {
+            this.tokens = Math.min(this.capacity, this.tokens + (now - this.lastRefillTime) * this.permitsPerNano);
+            this.lastRefillTime = now;
+        }
+
+        boolean hasToken(final long now) {
+            this.refill(now);
+            return this.tokens >= 1;
+        }
+
+        /**
+         * Takes a token, possibly in advance, and returns the time to wait in
+         * nanoseconds before it is actually available.
+         */
+        long reserve(final long now) {
+            this.refill(now);
+            this.tokens -= 1;
+            return this.tokens >= 0 ? 0 : (long) (-this.tokens / this.permitsPerNano);
+        }
+
+        /**
+         * Gives back a token reserved by a request that gave up waiting.
+         */
+        void cancel() {
+            this.tokens += 1;
+        }
+    }
+
+    private TokenBucket globalBucket;
+
+    private final Map<OperationType, TokenBucket> buckets = new EnumMap<OperationType, TokenBucket>(OperationType.class);
+
+    private Mode mode;
+
+    private final AtomicLong throttledCount = new AtomicLong();
+
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    private RateLimiter() {
+    }
+
+    /**
+     * Builder.
+     * 
+     * @return the builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the mode of this rate limiter.
+     * 
+     * @return the mode
+     */
+    public Mode getMode() {
+        return this.mode;
+    }
+
+    /**
+     * Returns the number of requests that had to wait for a token.
+     * 
+     * @return the number of delayed requests
+     */
+    public long getThrottledCount() {
+        return this.throttledCount.get();
+    }
+
+    /**
+     * Returns the number of requests rejected in fail-fast mode.
+     * 
+     * @return the number of rejected requests
+     */
+    public long getRejectedCount() {
+        return this.rejectedCount.get();
+    }
+
+    void acquire(final OperationType operationType) throws CimiClientException {
+        TokenBucket bucket = this.buckets.get(operationType);
+        long waitTime = 0;
+        synchronized (this) {
+            long now = java.lang.System.nanoTime();
+            if (this.mode == Mode.FAIL_FAST) {
+                if ((bucket != null && !bucket.hasToken(now))
+                    || (this.globalBucket != null && !this.globalBucket.hasToken(now))) {
+                    this.rejectedCount.incrementAndGet();
+                    throw new CimiRateLimitException("Request rate limit exceeded", operationType);
+                }
+            }
+            if (bucket != null) {
+                waitTime = bucket.reserve(now);
+            }
+            if (this.globalBucket != null) {
+                waitTime = Math.max(waitTime, this.globalBucket.reserve(now));
+            }
+        }
+        if (waitTime > 0) {
+            this.throttledCount.incrementAndGet();
+            RequestContext context = RequestContext.current();
+            if (context != null
+                && TimeUnit.NANOSECONDS.toMillis(waitTime) >= context.getRemainingTime(TimeUnit.MILLISECONDS)) {
+                this.cancel(bucket);
+                throw new CimiClientException("Deadline exceeded");
+            }
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitTime);
+            } catch (InterruptedException e) {
+                this.cancel(bucket);
+                Thread.currentThread().interrupt();
+                throw new CimiClientException("Request interrupted", e);
+            }
+        }
+    }
+
+    /**
+     * Gives back the tokens reserved by a request that will not be sent, so
+     * that it does not delay the following ones.
+     */
+    private synchronized void cancel(final TokenBucket bucket) {
+        if (bucket != null) {
+            bucket.cancel();
+        }
+        if (this.globalBucket != null) {
+            this.globalBucket.cancel();
+        }
+    }
+
+}
@@ -0,0 +1,284 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2012 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ *  $Id$
+ *
+ */
+package org.ow2.sirocco.cimi.sdk;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Client-side emulation of the $expand query parameter for providers that
+ * ignore it. References left unexpanded in a response (objects carrying only
+ * an href) are resolved with one request per distinct href, the requests
+ * being sent concurrently, and the resolved objects are set in place of the
+ * references. Reference attributes are discovered through the bean accessors
+ * of the CIMI domain classes. Once the provider has been seen to expand the
+ * references itself, its responses are no longer inspected.
+ */
+final class ReferenceExpander {
+    private static final String EXPAND_ALL = "*";
+
+    private static final int PARALLELISM = 8;
+
+    private final CimiClient client;
+
+    /** null until a response tells whether the provider supports $expand */
+    private volatile Boolean expandSupported;
+
+    /**
+     * Unexpanded reference found in a response.
+     */
+    private static class Reference {
+        final Object owner;
+
+        final Method setter;
+
+        final String href;
+
+        final Class<?> type;
+
+        Reference(final Object owner, final Method setter, final String href, final Class<?> type) {
+            this.owner = owner;
+            this.setter = setter;
+            this.href = href;
+            this.type = type;
+        }
+    }
+
+    ReferenceExpander(final CimiClient client) {
+        this.client = client;
+    }
+
+    /**
+     * Expands the references of a resource, or of each member of a
+     * collection, named in an $expand expression.
+     * 
+     * @return the number of references resolved on the client side
+     */
+    int expand(final Object resource, final String expand) throws CimiClientException {
+        if (Boolean.TRUE.equals(this.expandSupported)) {
+            return 0;
+        }
+        List<String> attributes = new ArrayList<String>();
+        for (String attribute : expand.split(",")) {
+            if (attribute.trim().length() > 0) {
+                attributes.add(attribute.trim());
+            }
+        }
+        List<Reference> references = new ArrayList<Reference>();
+        int expandedReferences = 0;
+        for (Object member : ReferenceExpander.members(resource)) {
+            expandedReferences += this.findReferences(member, attributes, references);
+        }
+        if (references.isEmpty()) {
+            if (expandedReferences > 0 && this.expandSupported == null) {
+                this.expandSupported = Boolean.TRUE;
+            }
+            return 0;
+        }
+        this.expandSupported = Boolean.FALSE;
+
+        final Map<String, Class<?>> types = new LinkedHashMap<String, Class<?>>();
+        for (Reference reference : references) {
+            if (!types.containsKey(reference.href)) {
+                types.put(reference.href, reference.type);
+            }
+        }
+        final List<String> hrefs = new ArrayList<String>(types.keySet());
+        List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+        for (final String href : hrefs) {
+            tasks.add(new Callable<Object>() {
+                @Override
+                public Object call() throws CimiClientException {
+                    return ReferenceExpander.this.client.getCimiObjectByReference(href, types.get(href));
+                }
+            });
+        }
+        List<Object> resolved = this.client.invokeAll(tasks, ReferenceExpander.PARALLELISM);
+        Map<String, Object> resolvedByHref = new LinkedHashMap<String, Object>();
+        for (int i = 0; i < hrefs.size(); i++) {
+            resolvedByHref.put(hrefs.get(i), resolved.get(i));
+        }
+        for (Reference reference : references) {
+            ReferenceExpander.invoke(reference.setter, reference.owner, resolvedByHref.get(reference.href));
+        }
+        return references.size();
+    }
+
+    /**
+     * Collects the unexpanded references of a member and returns the number of
+     * references the provider did expand.
+     */
+    private int findReferences(final Object member, final List<String> attributes, final List<Reference> references)
+        throws CimiClientException {
+        List<Method> getters = new ArrayList<Method>();
+        if (attributes.contains(ReferenceExpander.EXPAND_ALL)) {
+            for (Method method : member.getClass().getMethods()) {
+                if (ReferenceExpander.isGetter(method) && !method.getReturnType().isPrimitive()
+                    && !method.getReturnType().getName().startsWith("java.")) {
+                    getters.add(method);
+                }
+            }
+        } else {
+            for (String attribute : attributes) {
+                Method getter = ReferenceExpander.findMethod(member.getClass(),
+                    "get" + Character.toUpperCase(attribute.charAt(0)) + attribute.substring(1));
+                if (getter != null && ReferenceExpander.isGetter(getter)) {
+                    getters.add(getter);
+                }
+            }
+        }
+        int expandedReferences = 0;
+        for (Method getter : getters) {
+            Object value = ReferenceExpander.invoke(getter, member);
+            String href = ReferenceExpander.href(value);
+            if (href == null) {
+                continue;
+            }
+            if (ReferenceExpander.isExpanded(value)) {
+                expandedReferences++;
+                continue;
+            }
+            Method setter = ReferenceExpander.findMethod(member.getClass(), "set" + getter.getName().substring(3),
+                getter.getReturnType());
+            if (setter == null) {
+                continue;
+            }
+            references.add(new Reference(member, setter, href, ReferenceExpander.resolvedType(value.getClass(),
+                getter.getReturnType())));
+        }
+        return expandedReferences;
+    }
+
+    /**
+     * Returns the members of a collection, or the resource itself.
+     */
+    private static List<?> members(final Object resource) throws CimiClientException {
+        Object collection = resource;
+        Method getArray = ReferenceExpander.findMethod(collection.getClass(), "getArray");
+        if (getArray == null) {
+            Method getCollection = ReferenceExpander.findMethod(resource.getClass(), "getCollection");
+            collection = getCollection != null ? ReferenceExpander.invoke(getCollection, resource) : null;
+            getArray = collection != null ? ReferenceExpander.findMethod(collection.getClass(), "getArray") : null;
+        }
+        if (getArray == null) {
+            return Arrays.asList(resource);
+        }
+        Object array = ReferenceExpander.invoke(getArray, collection);
+        if (array instanceof Object[]) {
+            return Arrays.asList((Object[]) array);
+        } else if (array instanceof Collection) {
+            return new ArrayList<Object>((Collection<?>) array);
+        }
+        return Arrays.asList(resource);
+    }
+
+    /**
+     * Returns the href of a value that is a reference to a resource or a
+     * collection, or null.
+     */
+    private static String href(final Object value) throws CimiClientException {
+        if (value == null) {
+            return null;
+        }
+        Method getHref = ReferenceExpander.findMethod(value.getClass(), "getHref");
+        if (getHref == null || getHref.getReturnType() != String.class) {
+            return null;
+        }
+        if (ReferenceExpander.findMethod(value.getClass(), "getArray") == null
+            && ReferenceExpander.findMethod(value.getClass(), "getId") == null) {
+            return null;
+        }
+        return (String) ReferenceExpander.invoke(getHref, value);
+    }
+
+    /**
+     * Tells whether a reference has been expanded: a resource with an id, or
+     * a collection with members or with a count of zero. A collection
+     * expanded without members has no array but still has its count.
+     */
+    private static boolean isExpanded(final Object value) throws CimiClientException {
+        Method getArray = ReferenceExpander.findMethod(value.getClass(), "getArray");
+        if (getArray != null) {
+            if (ReferenceExpander.invoke(getArray, value) != null) {
+                return true;
+            }
+            Method getCount = ReferenceExpander.findMethod(value.getClass(), "getCount");
+            Object count = getCount != null ? ReferenceExpander.invoke(getCount, value) : null;
+            return count instanceof Number && ((Number) count).intValue() == 0;
+        }
+        Method getId = ReferenceExpander.findMethod(value.getClass(), "getId");
+        return ReferenceExpander.invoke(getId, value) != null;
+    }
+
+    /**
+     * Returns the class used to decode a reference: collections are decoded
+     * with their root element class (XxxCollectionRoot) when it exists.
+     */
+    private static Class<?> resolvedType(final Class<?> valueClass, final Class<?> declaredType) {
+        if (ReferenceExpander.findMethod(valueClass, "getArray") != null) {
+            try {
+                Class<?> rootClass = Class.forName(valueClass.getName() + "Root", true, valueClass.getClassLoader());
+                if (declaredType.isAssignableFrom(rootClass)) {
+                    return rootClass;
+                }
+            } catch (ClassNotFoundException e) {
+                // no root element class
+            }
+        }
+        return valueClass;
+    }
+
+    private static boolean isGetter(final Method method) {
+        return method.getName().startsWith("get") && method.getName().length() > 3 && method.getParameterTypes().length == 0
+            && !Modifier.isStatic(method.getModifiers()) && method.getDeclaringClass() != Object.class;
+    }
+
+    private static Method findMethod(final Class<?> clazz, final String name, final Class<?>... parameterTypes) {
+        try {
+            return clazz.getMethod(name, parameterTypes);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static Object invoke(final Method method, final Object target, final Object... args) throws CimiClientException {
+        try {
+            return method.invoke(target, args);
+        } catch (IllegalAccessException e) {
+            throw new CimiClientException(e.getMessage(), e);
+        } catch (InvocationTargetException e) {
+            throw new CimiClientException(e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+}
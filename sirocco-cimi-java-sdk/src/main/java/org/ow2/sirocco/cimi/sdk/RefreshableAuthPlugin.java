@@ -0,0 +1,71 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2012 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ *  $Id$
+ *
+ */
+package org.ow2.sirocco.cimi.sdk;
+
+import java.util.Map;
+
+/**
+ * Authentication plugin whose credentials expire, such as tokens. The client
+ * asks the plugin for the current headers before each request and asks it to
+ * renew them once when the provider rejects a request as unauthorized.
+ */
+public interface RefreshableAuthPlugin extends AuthPlugin {
+    /**
+     * Returns the authentication-related HTTP headers to include in the next
+     * request, renewing the credentials if they are about to expire.
+     * 
+     * @return a map of HTTP headers
+     * @throws CimiClientException if the credentials cannot be renewed
+     */
+    Map<String, String> getAuthenticationHeaders() throws CimiClientException;
+
+    /**
+     * Renews the credentials after the provider rejected the given headers.
+     * The credentials are renewed only once if several requests were
+     * rejected with the same headers.
+     * 
+     * @param rejectedHeaders the headers of the rejected request
+     * @return the renewed HTTP headers
+     * @throws CimiClientException if the credentials cannot be renewed
+     */
+    Map<String, String> renew(Map<String, String> rejectedHeaders) throws CimiClientException;
+
+    /**
+     * Sets the timeouts of the requests sent by the plugin to obtain
+     * credentials. Called before {@link #authenticate}.
+     * 
+     * @param connectTimeout the connect timeout in milliseconds or null for
+     *        the plugin default
+     * @param readTimeout the read timeout in milliseconds or null for the
+     *        plugin default
+     */
+    void setTimeouts(Integer connectTimeout, Integer readTimeout);
+
+    /**
+     * Releases the resources held by the plugin. Called when the client is
+     * closed.
+     */
+    void close();
+}
@@ -0,0 +1,132 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2012 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ *  $Id$
+ *
+ */
+package org.ow2.sirocco.cimi.sdk;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deadline shared by all the HTTP requests issued by the current thread while
+ * the context is active, so that an SDK operation sending several requests
+ * (e.g. Machine.createMachine) respects a single time budget. Contexts can be
+ * nested, the inner deadline being capped by the outer one.
+ * 
+ * <pre>
+ * RequestContext context = RequestContext.withTimeout(30, TimeUnit.SECONDS);
+ * try {
+ *     Machine.createMachine(client, machineCreate);
+ * } finally {
+ *     context.close();
+ * }
+ * </pre>
+ */
+public final class RequestContext {
+    private static final ThreadLocal<RequestContext> CURRENT = new ThreadLocal<RequestContext>();
+
+    private final long deadline;
+
+    private RequestContext previous;
+
+    private RequestContext(final long deadline) {
+        this.deadline = deadline;
+    }
+
+    /**
+     * Activates on the current thread a new context expiring after the given
+     * timeout.
+     * 
+     * @param timeout the time budget
+     * @param unit the time unit of the timeout
+     * @return the new context, to be closed when the operation is complete
+     */
+    public static RequestContext withTimeout(final long timeout, final TimeUnit unit) {
+        long deadline = java.lang.System.nanoTime() + unit.toNanos(timeout);
+        RequestContext current = RequestContext.CURRENT.get();
+        if (current != null && current.deadline - deadline < 0) {
+            deadline = current.deadline;
+        }
+        RequestContext context = new RequestContext(deadline);
+        context.attach();
+        return context;
+    }
+
+    /**
+     * Returns the context active on the current thread.
+     * 
+     * @return the current context or null
+     */
+    public static RequestContext current() {
+        return RequestContext.CURRENT.get();
+    }
+
+    /**
+     * Returns the time left before the deadline.
+     * 
+     * @param unit the time unit of the result
+     * @return the remaining time, negative or zero if the deadline has passed
+     */
+    public long getRemainingTime(final TimeUnit unit) {
+        return unit.convert(this.deadline - java.lang.System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Tells whether the deadline has passed.
+     * 
+     * @return true if the deadline has passed
+     */
+    public boolean isExpired() {
+        return this.deadline - java.lang.System.nanoTime() <= 0;
+    }
+
+    /**
+     * Deactivates this context and restores the previous one.
+     */
+    public void close() {
+        if (RequestContext.CURRENT.get() == this) {
+            if (this.previous != null) {
+                RequestContext.CURRENT.set(this.previous);
+            } else {
+                RequestContext.CURRENT.remove();
+            }
+        }
+    }
+
+    RequestContext fork() {
+        return new RequestContext(this.deadline);
+    }
+
+    void attach() {
+        this.previous = RequestContext.CURRENT.get();
+        RequestContext.CURRENT.set(this);
+    }
+
+    long getRemainingMillis() throws CimiClientException {
+        long remaining = this.getRemainingTime(TimeUnit.MILLISECONDS);
+        if (remaining <= 0) {
+            throw new CimiClientException("Deadline exceeded");
+        }
+        return remaining;
+    }
+
+}
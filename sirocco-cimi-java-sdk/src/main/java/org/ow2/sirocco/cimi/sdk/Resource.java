@@ -40,7 +40,7 @@ public abstract class Resource<E extends CimiObjectCommonAbstract> {
 
     protected CimiClient cimiClient;
 
-    protected E cimiObject;
+    protected volatile E cimiObject;
 
     Resource(final CimiClient cimiClient, final E cimiObject) {
         this.cimiClient = cimiClient;
@@ -181,4 +181,9 @@ public abstract class Resource<E extends CimiObjectCommonAbstract> {
         return this.cimiObject;
     }
 
+    @SuppressWarnings("unchecked")
+    void refresh(final Resource<?> resource) {
+        this.cimiObject = (E) resource.cimiObject;
+    }
+
 }
@@ -176,6 +176,26 @@ public class ResourceMetadata {
         return result;
     }
 
+    /**
+     * Iterates over the collection of resource metadata, fetching them lazily by pages
+     * of pageSize elements.
+     * 
+     * @param client the client
+     * @param pageSize number of elements fetched per request
+     * @param queryParams optional query parameters ($first and $last bound the
+     *        range of elements iterated over)
+     * @return an iterable over the resource metadata
+     */
+    public static PagedIterable<ResourceMetadata> iterateResourceMetadatas(final CimiClient client, final int pageSize,
+        final QueryParams... queryParams) {
+        return new PagedIterable<ResourceMetadata>(client, pageSize, new PagedIterable.PageFetcher<ResourceMetadata>() {
+            @Override
+            public List<ResourceMetadata> fetch(final QueryParams pageParams) throws CimiClientException {
+                return ResourceMetadata.getResourceMetadatas(client, pageParams);
+            }
+        }, queryParams);
+    }
+
     /**
      * Retrieves the resource metadata with a given id.
      * 
@@ -192,7 +212,8 @@ public class ResourceMetadata {
      */
     public static ResourceMetadata getResourceMetadataByReference(final CimiClient client, final String id,
         final QueryParams... queryParams) throws CimiClientException, CimiProviderException {
-        ResourceMetadata result = new ResourceMetadata(client, client.getCimiObjectByReference(id, CimiResourceMetadata.class,
+        ResourceMetadata result = new ResourceMetadata(client,
+            client.getCimiObjectByReference(id, CimiResourceMetadata.class,
             queryParams));
         return result;
     }
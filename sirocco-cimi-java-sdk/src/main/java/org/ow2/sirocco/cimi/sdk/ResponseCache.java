@@ -0,0 +1,208 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2012 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ *  $Id$
+ *
+ */
+package org.ow2.sirocco.cimi.sdk;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.ws.rs.core.MediaType;
+
+/**
+ * LRU cache of the raw responses to GET requests on slow-changing resources,
+ * with a time-to-live per resource type. Cached responses are decoded again
+ * on each hit, so that callers never share mutable objects. The cache entries
+ * of a resource type are dropped whenever the client creates, updates or
+ * deletes a resource of that type.
+ */
+public class ResponseCache {
+
+    static final class Entry {
+        final byte[] body;
+
+        final MediaType mediaType;
+
+        final String notFoundMessage;
+
+        final String collectionPath;
+
+        final long expiresAt;
+
+        Entry(final byte[] body, final MediaType mediaType, final String notFoundMessage, final String collectionPath,
+            final long expiresAt) {
+            this.body = body;
+            this.mediaType = mediaType;
+            this.notFoundMessage = notFoundMessage;
+            this.collectionPath = collectionPath;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isNotFound() {
+            return this.notFoundMessage != null;
+        }
+    }
+
+    private final ResponseCacheConfig config;
+
+    private final Map<String, Long> ttlByCollectionPath;
+
+    private final Map<String, Entry> entries;
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    ResponseCache(final ResponseCacheConfig config, final Map<String, Long> ttlByCollectionPath) {
+        this.config = config;
+        this.ttlByCollectionPath = ttlByCollectionPath;
+        this.entries = new LinkedHashMap<String, ResponseCache.Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, ResponseCache.Entry> eldest) {
+                if (this.size() > ResponseCache.this.config.getMaximumSize()) {
+                    ResponseCache.this.evictionCount.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the time against which entries expire, in nanoseconds.
+     */
+    long nanoTime() {
+        return java.lang.System.nanoTime();
+    }
+
+    /**
+     * Returns the path of the cached collection containing the resource at
+     * the given path, or null if resources at this path are not cached.
+     */
+    String findCollectionPath(final String path) {
+        String result = null;
+        for (String collectionPath : this.ttlByCollectionPath.keySet()) {
+            if (path.startsWith(collectionPath)
+                && (path.length() == collectionPath.length() || "/?".indexOf(path.charAt(collectionPath.length())) >= 0)
+                && (result == null || collectionPath.length() > result.length())) {
+                result = collectionPath;
+            }
+        }
+        return result;
+    }
+
+    synchronized Entry get(final String key) {
+        Entry entry = this.entries.get(key);
+        if (entry != null && entry.expiresAt - this.nanoTime() <= 0) {
+            this.entries.remove(key);
+            entry = null;
+        }
+        if (entry == null) {
+            this.missCount.incrementAndGet();
+        } else {
+            this.hitCount.incrementAndGet();
+        }
+        return entry;
+    }
+
+    synchronized Entry put(final String key, final String collectionPath, final byte[] body, final MediaType mediaType) {
+        long ttl = this.ttlByCollectionPath.get(collectionPath);
+        Entry entry = new Entry(body, mediaType, null, collectionPath, this.nanoTime() + ttl * 1000000L);
+        this.entries.put(key, entry);
+        return entry;
+    }
+
+    synchronized void putNotFound(final String key, final String collectionPath, final String message) {
+        if (this.config.getNotFoundTtl() > 0) {
+            this.entries.put(key, new Entry(null, null, message, collectionPath, this.nanoTime()
+                + this.config.getNotFoundTtl() * 1000000L));
+        }
+    }
+
+    /**
+     * Drops the entries of the resource type of the given path.
+     */
+    synchronized void invalidate(final String path) {
+        String collectionPath = this.findCollectionPath(path);
+        if (collectionPath == null) {
+            return;
+        }
+        for (Iterator<Entry> it = this.entries.values().iterator(); it.hasNext();) {
+            if (it.next().collectionPath.equals(collectionPath)) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Drops all the cached responses.
+     */
+    public synchronized void invalidateAll() {
+        this.entries.clear();
+    }
+
+    /**
+     * Returns the number of cached responses.
+     * 
+     * @return the size of the cache
+     */
+    public synchronized int getSize() {
+        return this.entries.size();
+    }
+
+    /**
+     * Returns the number of requests served from the cache.
+     * 
+     * @return the hit count
+     */
+    public long getHitCount() {
+        return this.hitCount.get();
+    }
+
+    /**
+     * Returns the number of cacheable requests sent to the provider because
+     * the cache had no valid response for them.
+     * 
+     * @return the miss count
+     */
+    public long getMissCount() {
+        return this.missCount.get();
+    }
+
+    /**
+     * Returns the number of responses evicted to keep the cache within its
+     * maximum size.
+     * 
+     * @return the eviction count
+     */
+    public long getEvictionCount() {
+        return this.evictionCount.get();
+    }
+
+}
@@ -0,0 +1,160 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2012 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ *  $Id$
+ *
+ */
+package org.ow2.sirocco.cimi.sdk;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Configuration of the response cache of a CimiClient. Only the resource types
+ * given a time-to-live are cached. By default these are the slow-changing
+ * catalog resources: configurations, images, templates and resource metadata.
+ */
+public class ResponseCacheConfig {
+
+    /** default time-to-live in milliseconds of catalog resources. */
+    public static final long DEFAULT_TTL = 5 * 60 * 1000;
+
+    /**
+     * Helper class to build a ResponseCacheConfig instance.
+     */
+    public static class Builder {
+        private int maximumSize = 1000;
+
+        private long notFoundTtl = 30 * 1000;
+
+        private final Map<Class<?>, Long> ttls = new LinkedHashMap<Class<?>, Long>();
+
+        private Builder() {
+            for (Class<?> type : new Class<?>[] {MachineConfiguration.class, MachineImage.class, MachineTemplate.class,
+                VolumeConfiguration.class, VolumeImage.class, VolumeTemplate.class, NetworkConfiguration.class,
+                NetworkTemplate.class, SystemTemplate.class, CredentialTemplate.class, ResourceMetadata.class}) {
+                this.ttls.put(type, ResponseCacheConfig.DEFAULT_TTL);
+            }
+        }
+
+        /**
+         * Maximum number of responses kept in the cache. The least recently
+         * used responses are evicted first.
+         * 
+         * @param maximumSize the maximum number of cached responses
+         * @return the builder
+         */
+        public Builder maximumSize(final int maximumSize) {
+            this.maximumSize = maximumSize;
+            return this;
+        }
+
+        /**
+         * Time during which the resources of a given type are served from the
+         * cache. A time-to-live of zero disables caching of this type.
+         * 
+         * @param type the SDK class of the resource type, e.g.
+         *        MachineImage.class
+         * @param ttl the time-to-live in milliseconds
+         * @return the builder
+         */
+        public Builder ttl(final Class<?> type, final long ttl) {
+            if (ttl > 0) {
+                this.ttls.put(type, ttl);
+            } else {
+                this.ttls.remove(type);
+            }
+            return this;
+        }
+
+        /**
+         * Time during which a "not found" response is served from the cache.
+         * 
+         * @param notFoundTtl the time-to-live in milliseconds of negative
+         *        responses, or zero to not cache them
+         * @return the builder
+         */
+        public Builder notFoundTtl(final long notFoundTtl) {
+            this.notFoundTtl = notFoundTtl;
+            return this;
+        }
+
+        /**
+         * Builds a ResponseCacheConfig.
+         * 
+         * @return the response cache configuration
+         */
+        public ResponseCacheConfig build() {
+            ResponseCacheConfig result = new ResponseCacheConfig();
+            result.maximumSize = this.maximumSize;
+            result.notFoundTtl = this.notFoundTtl;
+            result.ttls = Collections.unmodifiableMap(new LinkedHashMap<Class<?>, Long>(this.ttls));
+            return result;
+        }
+    }
+
+    private int maximumSize;
+
+    private long notFoundTtl;
+
+    private Map<Class<?>, Long> ttls;
+
+    private ResponseCacheConfig() {
+    }
+
+    /**
+     * Builder.
+     * 
+     * @return the builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the maximum number of cached responses.
+     * 
+     * @return the maximum size
+     */
+    public int getMaximumSize() {
+        return this.maximumSize;
+    }
+
+    /**
+     * Returns the time-to-live in milliseconds of "not found" responses.
+     * 
+     * @return the time-to-live of negative responses
+     */
+    public long getNotFoundTtl() {
+        return this.notFoundTtl;
+    }
+
+    /**
+     * Returns the time-to-live in milliseconds of each cached resource type.
+     * 
+     * @return the time-to-live by SDK resource class
+     */
+    public Map<Class<?>, Long> getTtls() {
+        return this.ttls;
+    }
+
+}
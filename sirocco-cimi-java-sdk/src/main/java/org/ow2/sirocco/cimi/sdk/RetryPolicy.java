@@ -0,0 +1,264 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2012 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ *  $Id$
+ *
+ */
+package org.ow2.sirocco.cimi.sdk;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Policy controlling the automatic retry of requests rejected by the CIMI
+ * provider with a 502 (Bad gateway) or 503 (Service unavailable) status or
+ * failing because of a connection error. Delays between attempts grow
+ * exponentially and are randomized with some jitter. By default only
+ * idempotent requests (reads and deletes) are retried.
+ */
+public class RetryPolicy {
+
+    /**
+     * Helper class to build a RetryPolicy instance.
+     */
+    public static class Builder {
+        private int maxAttempts = 3;
+
+        private long baseDelay = 500;
+
+        private long maxDelay = 30 * 1000;
+
+        private double jitter = 0.2;
+
+        private boolean honorRetryAfter = true;
+
+        private Set<OperationType> retryableOperations = EnumSet.of(OperationType.READ, OperationType.DELETE);
+
+        /**
+         * Maximum number of attempts of a request, including the first one.
+         * 
+         * @param maxAttempts the maximum number of attempts
+         * @return the builder
+         */
+        public Builder maxAttempts(final int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        /**
+         * Delay before the first retry, doubled at each subsequent retry.
+         * 
+         * @param baseDelay the base delay in milliseconds
+         * @return the builder
+         */
+        public Builder baseDelay(final long baseDelay) {
+            this.baseDelay = baseDelay;
+            return this;
+        }
+
+        /**
+         * Upper bound of the delay between two attempts.
+         * 
+         * @param maxDelay the maximum delay in milliseconds
+         * @return the builder
+         */
+        public Builder maxDelay(final long maxDelay) {
+            this.maxDelay = maxDelay;
+            return this;
+        }
+
+        /**
+         * Fraction (between 0 and 1) of the delay that is randomized.
+         * 
+         * @param jitter the jitter
+         * @return the builder
+         */
+        public Builder jitter(final double jitter) {
+            this.jitter = jitter;
+            return this;
+        }
+
+        /**
+         * Whether the delay requested by the provider through a Retry-After
+         * header takes precedence over the computed delay.
+         * 
+         * @param honorRetryAfter true if Retry-After must be honored
+         * @return the builder
+         */
+        public Builder honorRetryAfter(final boolean honorRetryAfter) {
+            this.honorRetryAfter = honorRetryAfter;
+            return this;
+        }
+
+        /**
+         * Classes of requests that may be retried. Defaults to READ and DELETE.
+         * 
+         * @param operationTypes the retryable classes of requests
+         * @return the builder
+         */
+        public Builder retryOn(final OperationType... operationTypes) {
+            this.retryableOperations = EnumSet.noneOf(OperationType.class);
+            for (OperationType operationType : operationTypes) {
+                this.retryableOperations.add(operationType);
+            }
+            return this;
+        }
+
+        /**
+         * Builds a RetryPolicy.
+         * 
+         * @return the retry policy
+         */
+        public RetryPolicy build() {
+            RetryPolicy result = new RetryPolicy();
+            result.maxAttempts = this.maxAttempts;
+            result.baseDelay = this.baseDelay;
+            result.maxDelay = this.maxDelay;
+            result.jitter = this.jitter;
+            result.honorRetryAfter = this.honorRetryAfter;
+            result.retryableOperations = EnumSet.copyOf(this.retryableOperations);
+            return result;
+        }
+    }
+
+    private static final String HTTP_DATE_FORMAT = "EEE, dd MMM yyyy HH:mm:ss zzz";
+
+    private final Random random = new Random();
+
+    private int maxAttempts;
+
+    private long baseDelay;
+
+    private long maxDelay;
+
+    private double jitter;
+
+    private boolean honorRetryAfter;
+
+    private Set<OperationType> retryableOperations;
+
+    private RetryPolicy() {
+    }
+
+    /**
+     * Builder.
+     * 
+     * @return the builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Maximum number of attempts of a request, including the first one.
+     * 
+     * @return the maximum number of attempts
+     */
+    public int getMaxAttempts() {
+        return this.maxAttempts;
+    }
+
+    /**
+     * Delay before the first retry in milliseconds.
+     * 
+     * @return the base delay
+     */
+    public long getBaseDelay() {
+        return this.baseDelay;
+    }
+
+    /**
+     * Upper bound of the delay between two attempts in milliseconds.
+     * 
+     * @return the maximum delay
+     */
+    public long getMaxDelay() {
+        return this.maxDelay;
+    }
+
+    /**
+     * Fraction of the delay that is randomized.
+     * 
+     * @return the jitter
+     */
+    public double getJitter() {
+        return this.jitter;
+    }
+
+    /**
+     * Whether Retry-After headers are honored.
+     * 
+     * @return true if Retry-After headers are honored
+     */
+    public boolean isHonorRetryAfter() {
+        return this.honorRetryAfter;
+    }
+
+    /**
+     * Tells whether a class of requests may be retried.
+     * 
+     * @param operationType the class of request
+     * @return true if requests of this class may be retried
+     */
+    public boolean isRetryable(final OperationType operationType) {
+        return this.retryableOperations.contains(operationType);
+    }
+
+    long computeDelay(final int attempt, final String retryAfter) {
+        if (this.honorRetryAfter && retryAfter != null) {
+            long requestedDelay = RetryPolicy.parseRetryAfter(retryAfter);
+            if (requestedDelay >= 0) {
+                return Math.min(requestedDelay, this.maxDelay);
+            }
+        }
+        long delay = this.baseDelay << Math.min(attempt - 1, 30);
+        if (delay <= 0 || delay > this.maxDelay) {
+            delay = this.maxDelay;
+        }
+        if (this.jitter > 0) {
+            double randomized;
+            synchronized (this.random) {
+                randomized = this.random.nextDouble();
+            }
+            delay = (long) (delay * (1 - this.jitter + 2 * this.jitter * randomized));
+        }
+        return Math.max(0, Math.min(delay, this.maxDelay));
+    }
+
+    private static long parseRetryAfter(final String retryAfter) {
+        try {
+            return Long.parseLong(retryAfter.trim()) * 1000;
+        } catch (NumberFormatException e) {
+        }
+        try {
+            Date date = new SimpleDateFormat(RetryPolicy.HTTP_DATE_FORMAT, Locale.US).parse(retryAfter.trim());
+            return Math.max(0, date.getTime() - java.lang.System.currentTimeMillis());
+        } catch (ParseException e) {
+            return -1;
+        }
+    }
+
+}
@@ -0,0 +1,91 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2012 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ *  $Id$
+ *
+ */
+package org.ow2.sirocco.cimi.sdk;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces identical concurrent calls: the first caller of a given key
+ * performs the call and the callers arriving while it is in flight wait for
+ * and share its result, or its exception.
+ */
+final class SingleFlight {
+
+    private final ConcurrentMap<String, FutureTask<Object>> calls = new ConcurrentHashMap<String, FutureTask<Object>>();
+
+    private final AtomicLong coalescedCount = new AtomicLong();
+
+    @SuppressWarnings("unchecked")
+    <V> V execute(final String key, final Callable<V> callable) throws CimiClientException {
+        FutureTask<Object> call = new FutureTask<Object>((Callable<Object>) callable);
+        FutureTask<Object> inFlight = this.calls.putIfAbsent(key, call);
+        if (inFlight == null) {
+            try {
+                call.run();
+            } finally {
+                this.calls.remove(key, call);
+            }
+            inFlight = call;
+        } else {
+            this.coalescedCount.incrementAndGet();
+        }
+        try {
+            RequestContext context = RequestContext.current();
+            if (context != null && inFlight != call) {
+                return (V) inFlight.get(context.getRemainingMillis(), TimeUnit.MILLISECONDS);
+            }
+            return (V) inFlight.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof CimiClientException) {
+                throw (CimiClientException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new CimiClientException(cause.getMessage(), cause);
+        } catch (TimeoutException e) {
+            throw new CimiClientException("Deadline exceeded");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CimiClientException("Request interrupted", e);
+        }
+    }
+
+    long getCoalescedCount() {
+        return this.coalescedCount.get();
+    }
+
+}
@@ -26,16 +26,27 @@
 package org.ow2.sirocco.cimi.sdk;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
 
 import org.ow2.sirocco.cimi.domain.ActionType;
 import org.ow2.sirocco.cimi.domain.CimiAction;
+import org.ow2.sirocco.cimi.domain.CimiAddress;
 import org.ow2.sirocco.cimi.domain.CimiJob;
+import org.ow2.sirocco.cimi.domain.CimiMachine;
+import org.ow2.sirocco.cimi.domain.CimiNetwork;
+import org.ow2.sirocco.cimi.domain.CimiObjectCommonAbstract;
 import org.ow2.sirocco.cimi.domain.CimiSystem;
 import org.ow2.sirocco.cimi.domain.CimiSystemAddress;
 import org.ow2.sirocco.cimi.domain.CimiSystemMachine;
 import org.ow2.sirocco.cimi.domain.CimiSystemNetwork;
 import org.ow2.sirocco.cimi.domain.CimiSystemVolume;
+import org.ow2.sirocco.cimi.domain.CimiVolume;
+import org.ow2.sirocco.cimi.domain.collection.CimiCollectionAbstract;
 import org.ow2.sirocco.cimi.domain.collection.CimiSystemAddressCollectionRoot;
 import org.ow2.sirocco.cimi.domain.collection.CimiSystemCollection;
 import org.ow2.sirocco.cimi.domain.collection.CimiSystemCollectionRoot;
@@ -57,6 +68,8 @@ public class System extends Resource<CimiSystem> {
         CREATING, CREATED, STARTING, STARTED, STOPPING, STOPPED, PAUSING, PAUSED, SUSPENDING, SUSPENDED, MIXED, DELETING, DELETED, ERROR
     }
 
+    private static final int SNAPSHOT_PARALLELISM = 8;
+
     System(final CimiClient cimiClient, final String id) {
         super(cimiClient, new CimiSystem());
         this.cimiObject.setHref(id);
@@ -274,6 +287,199 @@ public class System extends Resource<CimiSystem> {
         return addresses;
     }
 
+    /**
+     * Loads this system and all its components with concurrent requests and
+     * returns them as an immutable snapshot. Component collections already
+     * expanded in this system are not fetched again, and neither are the
+     * machines, volumes, networks and addresses expanded in their entries.
+     * The others are retrieved in batches. This system is left unchanged.
+     * 
+     * @return the snapshot of this system
+     * @throws CimiClientException If any internal errors are encountered inside
+     *         the client while attempting to make the request or handle the
+     *         response. For example if a network connection is not available.
+     * @throws CimiProviderException If an error response is returned by the
+     *         CIMI provider indicating either a problem with the data in the
+     *         request, or a server side issue.
+     */
+    public SystemSnapshot snapshot() throws CimiClientException, CimiProviderException {
+        final CimiSystem cimiSystem = this.cimiObject;
+
+        // first round: the component collections not expanded in the system,
+        // with the resources referenced by their entries expanded
+        List<Callable<List<?>>> collectionTasks = new ArrayList<Callable<List<?>>>();
+        collectionTasks.add(this.componentsTask(cimiSystem.getMachines(), CimiSystemMachineCollectionRoot.class, "machine"));
+        collectionTasks.add(this.componentsTask(cimiSystem.getVolumes(), CimiSystemVolumeCollectionRoot.class, "volume"));
+        collectionTasks.add(this.componentsTask(cimiSystem.getNetworks(), CimiSystemNetworkCollectionRoot.class, "network"));
+        collectionTasks.add(this.componentsTask(cimiSystem.getAddresses(), CimiSystemAddressCollectionRoot.class,
+            "address"));
+        List<List<?>> entries = this.cimiClient.invokeAll(collectionTasks, System.SNAPSHOT_PARALLELISM);
+
+        // second round: the referenced resources left unexpanded, in batches
+        final List<String> machineIds = new ArrayList<String>();
+        for (Object entry : entries.get(0)) {
+            System.addUnexpandedHref(((CimiSystemMachine) entry).getMachine(), machineIds);
+        }
+        final List<String> volumeIds = new ArrayList<String>();
+        for (Object entry : entries.get(1)) {
+            System.addUnexpandedHref(((CimiSystemVolume) entry).getVolume(), volumeIds);
+        }
+        final List<String> networkIds = new ArrayList<String>();
+        for (Object entry : entries.get(2)) {
+            System.addUnexpandedHref(((CimiSystemNetwork) entry).getNetwork(), networkIds);
+        }
+        final List<String> addressIds = new ArrayList<String>();
+        for (Object entry : entries.get(3)) {
+            System.addUnexpandedHref(((CimiSystemAddress) entry).getAddress(), addressIds);
+        }
+        final CimiClient client = this.cimiClient;
+        List<Callable<Map<String, ?>>> resourceTasks = new ArrayList<Callable<Map<String, ?>>>();
+        resourceTasks.add(new Callable<Map<String, ?>>() {
+            @Override
+            public Map<String, ?> call() throws CimiClientException {
+                return Machine.getMachinesByIds(client, machineIds);
+            }
+        });
+        resourceTasks.add(new Callable<Map<String, ?>>() {
+            @Override
+            public Map<String, ?> call() throws CimiClientException {
+                return Volume.getVolumesByIds(client, volumeIds);
+            }
+        });
+        resourceTasks.add(new Callable<Map<String, ?>>() {
+            @Override
+            public Map<String, ?> call() throws CimiClientException {
+                return Network.getNetworksByIds(client, networkIds);
+            }
+        });
+        resourceTasks.add(new Callable<Map<String, ?>>() {
+            @Override
+            public Map<String, ?> call() throws CimiClientException {
+                return Address.getAddressesByIds(client, addressIds);
+            }
+        });
+        List<Map<String, ?>> resources = this.cimiClient.invokeAll(resourceTasks, System.SNAPSHOT_PARALLELISM);
+
+        List<SystemMachine> machines = new ArrayList<SystemMachine>();
+        for (Object entry : entries.get(0)) {
+            CimiSystemMachine cimiSystemMachine = (CimiSystemMachine) entry;
+            CimiMachine cimiMachine = cimiSystemMachine.getMachine();
+            Machine machine = null;
+            if (cimiMachine != null && cimiMachine.getId() != null) {
+                machine = client.canonicalize(new Machine(client, cimiMachine));
+            } else if (cimiMachine != null) {
+                machine = (Machine) resources.get(0).get(cimiMachine.getHref());
+            }
+            machines.add(new SystemMachine(client, cimiSystemMachine, machine));
+        }
+        List<SystemVolume> volumes = new ArrayList<SystemVolume>();
+        for (Object entry : entries.get(1)) {
+            CimiSystemVolume cimiSystemVolume = (CimiSystemVolume) entry;
+            CimiVolume cimiVolume = cimiSystemVolume.getVolume();
+            Volume volume = null;
+            if (cimiVolume != null && cimiVolume.getId() != null) {
+                volume = client.canonicalize(new Volume(client, cimiVolume));
+            } else if (cimiVolume != null) {
+                volume = (Volume) resources.get(1).get(cimiVolume.getHref());
+            }
+            volumes.add(new SystemVolume(client, cimiSystemVolume, volume));
+        }
+        List<SystemNetwork> networks = new ArrayList<SystemNetwork>();
+        for (Object entry : entries.get(2)) {
+            CimiSystemNetwork cimiSystemNetwork = (CimiSystemNetwork) entry;
+            CimiNetwork cimiNetwork = cimiSystemNetwork.getNetwork();
+            Network network = null;
+            if (cimiNetwork != null && cimiNetwork.getId() != null) {
+                network = client.canonicalize(new Network(client, cimiNetwork));
+            } else if (cimiNetwork != null) {
+                network = (Network) resources.get(2).get(cimiNetwork.getHref());
+            }
+            networks.add(new SystemNetwork(client, cimiSystemNetwork, network));
+        }
+        List<SystemAddress> addresses = new ArrayList<SystemAddress>();
+        for (Object entry : entries.get(3)) {
+            CimiSystemAddress cimiSystemAddress = (CimiSystemAddress) entry;
+            CimiAddress cimiAddress = cimiSystemAddress.getAddress();
+            Address address = null;
+            if (cimiAddress != null && cimiAddress.getId() != null) {
+                address = client.canonicalize(new Address(client, cimiAddress));
+            } else if (cimiAddress != null) {
+                address = (Address) resources.get(3).get(cimiAddress.getHref());
+            }
+            addresses.add(new SystemAddress(client, cimiSystemAddress, address));
+        }
+        return new SystemSnapshot(this, machines, volumes, networks, addresses);
+    }
+
+    /**
+     * Returns a task giving the entries of a component collection, loaded with
+     * the resources they reference expanded unless the system holds them.
+     */
+    private Callable<List<?>> componentsTask(final CimiCollectionAbstract<?> collection,
+        final Class<? extends CimiCollectionAbstract<?>> rootClass, final String referenceAttribute) {
+        return new Callable<List<?>>() {
+            @Override
+            public List<?> call() throws CimiClientException {
+                if (collection == null) {
+                    return Collections.emptyList();
+                }
+                Object[] entries = collection.getArray();
+                if (entries == null) {
+                    String path = System.this.cimiClient.extractPath(collection.getHref());
+                    CimiCollectionAbstract<?> loaded;
+                    try {
+                        loaded = System.this.cimiClient.getRequest(path, rootClass,
+                            QueryParams.builder().expand(referenceAttribute).build());
+                    } catch (CimiProviderException e) {
+                        if (e.getReturnCode() == null || (e.getReturnCode() != 400 && e.getReturnCode() != 501)) {
+                            throw e;
+                        }
+                        loaded = System.this.cimiClient.getRequest(path, rootClass);
+                    }
+                    entries = loaded.getArray();
+                }
+                return entries == null ? Collections.emptyList() : Arrays.asList(entries);
+            }
+        };
+    }
+
+    private static void addUnexpandedHref(final CimiObjectCommonAbstract reference, final List<String> hrefs) {
+        if (reference != null && reference.getId() == null && reference.getHref() != null) {
+            hrefs.add(reference.getHref());
+        }
+    }
+
+    /**
+     * Retrieves the system with the given id together with all its
+     * components. The component collections are requested in the same round
+     * trip as the system through $expand; those the provider does not expand
+     * are then fetched concurrently.
+     * 
+     * @param client the client
+     * @param id the id of the system
+     * @return the snapshot of the system
+     * @throws CimiClientException If any internal errors are encountered inside
+     *         the client while attempting to make the request or handle the
+     *         response. For example if a network connection is not available.
+     * @throws CimiProviderException If an error response is returned by the
+     *         CIMI provider indicating either a problem with the data in the
+     *         request, or a server side issue.
+     */
+    public static SystemSnapshot getSystemSnapshot(final CimiClient client, final String id) throws CimiClientException,
+        CimiProviderException {
+        System system;
+        try {
+            system = System.getSystemByReference(client, id,
+                QueryParams.builder().expand("machines,volumes,networks,addresses").build());
+        } catch (CimiProviderException e) {
+            if (e.getReturnCode() == null || (e.getReturnCode() != 400 && e.getReturnCode() != 501)) {
+                throw e;
+            }
+            system = System.getSystemByReference(client, id);
+        }
+        return system.snapshot();
+    }
+
     /**
      * Creates a new system.
      * 
@@ -292,9 +498,8 @@ public class System extends Resource<CimiSystem> {
         if (client.cloudEntryPoint.getSystems() == null) {
             throw new CimiClientException("Unsupported operation");
         }
-        CimiSystemCollection systemCollection = client.getRequest(
-            client.extractPath(client.cloudEntryPoint.getSystems().getHref()), CimiSystemCollectionRoot.class);
-        String addRef = Helper.findOperation("add", systemCollection);
+        String addRef = client.findCollectionOperation(client.cloudEntryPoint.getSystems().getHref(),
+            CimiSystemCollectionRoot.class, "add");
         if (addRef == null) {
             throw new CimiClientException("Unsupported operation");
         }
@@ -328,12 +533,61 @@ public class System extends Resource<CimiSystem> {
 
         if (systemCollection.getCollection() != null) {
             for (CimiSystem cimiSystem : systemCollection.getCollection().getArray()) {
-                result.add(new System(client, cimiSystem));
+                result.add(client.canonicalize(new System(client, cimiSystem), queryParams));
             }
         }
         return result;
     }
 
+    /**
+     * Iterates over the collection of systems, fetching them lazily by pages
+     * of pageSize elements.
+     * 
+     * @param client the client
+     * @param pageSize number of elements fetched per request
+     * @param queryParams optional query parameters ($first and $last bound the
+     *        range of elements iterated over)
+     * @return an iterable over the systems
+     */
+    public static PagedIterable<System> iterateSystems(final CimiClient client, final int pageSize,
+        final QueryParams... queryParams) {
+        return new PagedIterable<System>(client, pageSize, new PagedIterable.PageFetcher<System>() {
+            @Override
+            public List<System> fetch(final QueryParams pageParams) throws CimiClientException {
+                return System.getSystems(client, pageParams);
+            }
+        }, queryParams);
+    }
+
+    /**
+     * Retrieves the collection of systems and hands each of them to a visitor
+     * as soon as it is decoded, without holding the whole collection in
+     * memory.
+     * 
+     * @param client the client
+     * @param visitor the visitor
+     * @param queryParams optional query parameters
+     * @return the number of systems visited
+     * @throws CimiClientException If any internal errors are encountered
+     *         inside the client while attempting to make the request or handle
+     *         the response, or if the visitor aborts the traversal.
+     * @throws CimiProviderException If an error response is returned by the
+     *         CIMI provider.
+     */
+    public static int visitSystems(final CimiClient client, final CollectionVisitor<? super System> visitor,
+        final QueryParams... queryParams) throws CimiClientException, CimiProviderException {
+        if (client.cloudEntryPoint.getSystems() == null) {
+            throw new CimiClientException("Unsupported operation");
+        }
+        return client.visitCollection(client.extractPath(client.cloudEntryPoint.getSystems().getHref()), "systems",
+            "System", CimiSystem.class, new CollectionVisitor<CimiSystem>() {
+                @Override
+                public void visit(final CimiSystem cimiSystem) throws CimiClientException {
+                    visitor.visit(new System(client, cimiSystem));
+                }
+            }, queryParams);
+    }
+
     /**
      * Retrieves the system with the given id..
      * 
@@ -351,7 +605,37 @@ public class System extends Resource<CimiSystem> {
     public static System getSystemByReference(final CimiClient client, final String id, final QueryParams... queryParams)
         throws CimiClientException, CimiProviderException {
         System result = new System(client, client.getCimiObjectByReference(id, CimiSystem.class, queryParams));
-        return result;
+        return client.canonicalize(result, queryParams);
+    }
+
+    /**
+     * Retrieves the systems with the given ids. The ids are fetched in
+     * batches with filtered requests on the collection, or with concurrent
+     * requests if the provider does not support filtering on ids.
+     * 
+     * @param client the client
+     * @param ids the ids of the resources
+     * @param queryParams optional query parameters
+     * @return the resources found, keyed by id in the order of the given ids
+     * @throws CimiClientException If any internal errors are encountered
+     *         inside the client while attempting to make the request or handle
+     *         the response.
+     * @throws CimiProviderException If an error response is returned by the
+     *         CIMI provider.
+     */
+    public static Map<String, System> getSystemsByIds(final CimiClient client, final Collection<String> ids,
+        final QueryParams... queryParams) throws CimiClientException, CimiProviderException {
+        return BatchGet.getByIds(client, ids, new PagedIterable.PageFetcher<System>() {
+            @Override
+            public List<System> fetch(final QueryParams batchParams) throws CimiClientException {
+                return System.getSystems(client, batchParams);
+            }
+        }, new BatchGet.ResourceFetcher<System>() {
+            @Override
+            public System fetch(final String id, final QueryParams singleParams) throws CimiClientException {
+                return System.getSystemByReference(client, id, singleParams);
+            }
+        }, queryParams);
     }
 
 }
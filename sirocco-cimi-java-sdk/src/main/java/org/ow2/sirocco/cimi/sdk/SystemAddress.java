@@ -49,6 +49,11 @@ public class SystemAddress extends Resource<CimiSystemAddress> {
         this.address = Address.getAddressByReference(cimiClient, cimiObject.getAddress().getHref());
     }
 
+    SystemAddress(final CimiClient cimiClient, final CimiSystemAddress cimiObject, final Address address) {
+        super(cimiClient, cimiObject);
+        this.address = address;
+    }
+
     /**
      * Gets the address.
      * 
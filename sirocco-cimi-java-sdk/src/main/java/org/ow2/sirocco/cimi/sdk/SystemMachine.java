@@ -49,6 +49,11 @@ public class SystemMachine extends Resource<CimiSystemMachine> {
         this.machine = Machine.getMachineByReference(cimiClient, cimiObject.getMachine().getHref());
     }
 
+    SystemMachine(final CimiClient cimiClient, final CimiSystemMachine cimiObject, final Machine machine) {
+        super(cimiClient, cimiObject);
+        this.machine = machine;
+    }
+
     /**
      * Gets the machine.
      * 
@@ -49,6 +49,11 @@ public class SystemNetwork extends Resource<CimiSystemNetwork> {
         this.network = Network.getNetworkByReference(cimiClient, cimiObject.getNetwork().getHref());
     }
 
+    SystemNetwork(final CimiClient cimiClient, final CimiSystemNetwork cimiObject, final Network network) {
+        super(cimiClient, cimiObject);
+        this.network = network;
+    }
+
     /**
      * Gets the network.
      * 
@@ -0,0 +1,176 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2012 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ *  $Id$
+ *
+ */
+package org.ow2.sirocco.cimi.sdk;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable view of a System together with all its components, as returned
+ * by {@link System#snapshot()}. The attributes of the system are copied when
+ * the snapshot is taken, so later changes to the System are not seen.
+ */
+public final class SystemSnapshot {
+    private final String id;
+
+    private final String name;
+
+    private final String description;
+
+    private final System.State state;
+
+    private final Long created;
+
+    private final Long updated;
+
+    private final Map<String, String> properties;
+
+    private final List<SystemMachine> machines;
+
+    private final List<SystemVolume> volumes;
+
+    private final List<SystemNetwork> networks;
+
+    private final List<SystemAddress> addresses;
+
+    SystemSnapshot(final System system, final List<SystemMachine> machines, final List<SystemVolume> volumes,
+        final List<SystemNetwork> networks, final List<SystemAddress> addresses) {
+        this.id = system.getId();
+        this.name = system.getName();
+        this.description = system.getDescription();
+        this.state = system.getState();
+        this.created = system.getCreated() != null ? system.getCreated().getTime() : null;
+        this.updated = system.getUpdated() != null ? system.getUpdated().getTime() : null;
+        this.properties = system.getProperties() != null ? Collections.unmodifiableMap(new HashMap<String, String>(system
+            .getProperties())) : null;
+        this.machines = Collections.unmodifiableList(machines);
+        this.volumes = Collections.unmodifiableList(volumes);
+        this.networks = Collections.unmodifiableList(networks);
+        this.addresses = Collections.unmodifiableList(addresses);
+    }
+
+    /**
+     * Gets the id of the system.
+     * 
+     * @return the id of the system
+     */
+    public String getId() {
+        return this.id;
+    }
+
+    /**
+     * Gets the name of the system.
+     * 
+     * @return the name of the system
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Gets the description of the system.
+     * 
+     * @return the description of the system
+     */
+    public String getDescription() {
+        return this.description;
+    }
+
+    /**
+     * Gets the state of the system.
+     * 
+     * @return the state of the system
+     */
+    public System.State getState() {
+        return this.state;
+    }
+
+    /**
+     * Gets the creation date of the system.
+     * 
+     * @return the creation date of the system
+     */
+    public Date getCreated() {
+        return this.created != null ? new Date(this.created) : null;
+    }
+
+    /**
+     * Gets the last update date of the system.
+     * 
+     * @return the last update date of the system
+     */
+    public Date getUpdated() {
+        return this.updated != null ? new Date(this.updated) : null;
+    }
+
+    /**
+     * Gets the properties of the system.
+     * 
+     * @return the properties of the system, not modifiable
+     */
+    public Map<String, String> getProperties() {
+        return this.properties;
+    }
+
+    /**
+     * Gets the machines of the system.
+     * 
+     * @return the machines of the system
+     */
+    public List<SystemMachine> getMachines() {
+        return this.machines;
+    }
+
+    /**
+     * Gets the volumes of the system.
+     * 
+     * @return the volumes of the system
+     */
+    public List<SystemVolume> getVolumes() {
+        return this.volumes;
+    }
+
+    /**
+     * Gets the networks of the system.
+     * 
+     * @return the networks of the system
+     */
+    public List<SystemNetwork> getNetworks() {
+        return this.networks;
+    }
+
+    /**
+     * Gets the addresses of the system.
+     * 
+     * @return the addresses of the system
+     */
+    public List<SystemAddress> getAddresses() {
+        return this.addresses;
+    }
+
+}
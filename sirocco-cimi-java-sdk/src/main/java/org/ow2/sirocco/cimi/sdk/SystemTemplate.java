@@ -26,7 +26,9 @@
 package org.ow2.sirocco.cimi.sdk;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import org.ow2.sirocco.cimi.domain.CimiComponentDescriptor;
 import org.ow2.sirocco.cimi.domain.CimiJob;
@@ -132,9 +134,8 @@ public class SystemTemplate extends Resource<CimiSystemTemplate> {
         if (client.cloudEntryPoint.getSystemTemplates() == null) {
             throw new CimiClientException("Unsupported operation");
         }
-        CimiSystemTemplateCollection systemTemplateCollection = client.getRequest(
-            client.extractPath(client.cloudEntryPoint.getSystemTemplates().getHref()), CimiSystemTemplateCollectionRoot.class);
-        String addRef = Helper.findOperation("add", systemTemplateCollection);
+        String addRef = client.findCollectionOperation(client.cloudEntryPoint.getSystemTemplates().getHref(),
+            CimiSystemTemplateCollectionRoot.class, "add");
         if (addRef == null) {
             throw new CimiClientException("Unsupported operation");
         }
@@ -172,12 +173,32 @@ public class SystemTemplate extends Resource<CimiSystemTemplate> {
 
         if (systemTemplateCollection.getCollection() != null) {
             for (CimiSystemTemplate cimiSystemTemplate : systemTemplateCollection.getCollection().getArray()) {
-                result.add(new SystemTemplate(client, cimiSystemTemplate));
+                result.add(client.canonicalize(new SystemTemplate(client, cimiSystemTemplate), queryParams));
             }
         }
         return result;
     }
 
+    /**
+     * Iterates over the collection of system templates, fetching them lazily by pages
+     * of pageSize elements.
+     * 
+     * @param client the client
+     * @param pageSize number of elements fetched per request
+     * @param queryParams optional query parameters ($first and $last bound the
+     *        range of elements iterated over)
+     * @return an iterable over the system templates
+     */
+    public static PagedIterable<SystemTemplate> iterateSystemTemplates(final CimiClient client, final int pageSize,
+        final QueryParams... queryParams) {
+        return new PagedIterable<SystemTemplate>(client, pageSize, new PagedIterable.PageFetcher<SystemTemplate>() {
+            @Override
+            public List<SystemTemplate> fetch(final QueryParams pageParams) throws CimiClientException {
+                return SystemTemplate.getSystemTemplates(client, pageParams);
+            }
+        }, queryParams);
+    }
+
     /**
      * Retrieves the system template with the given id.
      * 
@@ -194,7 +215,39 @@ public class SystemTemplate extends Resource<CimiSystemTemplate> {
      */
     public static SystemTemplate getSystemTemplateByReference(final CimiClient client, final String id,
         final QueryParams... queryParams) throws CimiClientException, CimiProviderException {
-        return new SystemTemplate(client, client.getCimiObjectByReference(id, CimiSystemTemplate.class, queryParams));
+        SystemTemplate result = new SystemTemplate(client,
+            client.getCimiObjectByReference(id, CimiSystemTemplate.class, queryParams));
+        return client.canonicalize(result, queryParams);
+    }
+
+    /**
+     * Retrieves the system templates with the given ids. The ids are fetched in
+     * batches with filtered requests on the collection, or with concurrent
+     * requests if the provider does not support filtering on ids.
+     * 
+     * @param client the client
+     * @param ids the ids of the resources
+     * @param queryParams optional query parameters
+     * @return the resources found, keyed by id in the order of the given ids
+     * @throws CimiClientException If any internal errors are encountered
+     *         inside the client while attempting to make the request or handle
+     *         the response.
+     * @throws CimiProviderException If an error response is returned by the
+     *         CIMI provider.
+     */
+    public static Map<String, SystemTemplate> getSystemTemplatesByIds(final CimiClient client, final Collection<String> ids,
+        final QueryParams... queryParams) throws CimiClientException, CimiProviderException {
+        return BatchGet.getByIds(client, ids, new PagedIterable.PageFetcher<SystemTemplate>() {
+            @Override
+            public List<SystemTemplate> fetch(final QueryParams batchParams) throws CimiClientException {
+                return SystemTemplate.getSystemTemplates(client, batchParams);
+            }
+        }, new BatchGet.ResourceFetcher<SystemTemplate>() {
+            @Override
+            public SystemTemplate fetch(final String id, final QueryParams singleParams) throws CimiClientException {
+                return SystemTemplate.getSystemTemplateByReference(client, id, singleParams);
+            }
+        }, queryParams);
     }
 
 }
@@ -49,6 +49,11 @@ public class SystemVolume extends Resource<CimiSystemVolume> {
         this.volume = Volume.getVolumeByReference(cimiClient, cimiObject.getVolume().getHref());
     }
 
+    SystemVolume(final CimiClient cimiClient, final CimiSystemVolume cimiObject, final Volume volume) {
+        super(cimiClient, cimiObject);
+        this.volume = volume;
+    }
+
     /**
      * Gets the volume.
      * 
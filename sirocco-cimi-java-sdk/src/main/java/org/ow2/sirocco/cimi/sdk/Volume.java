@@ -26,7 +26,9 @@
 package org.ow2.sirocco.cimi.sdk;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import org.ow2.sirocco.cimi.domain.CimiJob;
 import org.ow2.sirocco.cimi.domain.CimiVolume;
@@ -150,9 +152,8 @@ public class Volume extends Resource<CimiVolume> {
         if (client.cloudEntryPoint.getVolumes() == null) {
             throw new CimiClientException("Unsupported operation");
         }
-        CimiVolumeCollection volumeCollection = client.getRequest(
-            client.extractPath(client.cloudEntryPoint.getVolumes().getHref()), CimiVolumeCollectionRoot.class);
-        String addRef = Helper.findOperation("add", volumeCollection);
+        String addRef = client.findCollectionOperation(client.cloudEntryPoint.getVolumes().getHref(),
+            CimiVolumeCollectionRoot.class, "add");
         if (addRef == null) {
             throw new CimiClientException("Unsupported operation");
         }
@@ -186,12 +187,61 @@ public class Volume extends Resource<CimiVolume> {
 
         if (volumeCollection.getCollection() != null) {
             for (CimiVolume cimiVolume : volumeCollection.getCollection().getArray()) {
-                result.add(new Volume(client, cimiVolume));
+                result.add(client.canonicalize(new Volume(client, cimiVolume), queryParams));
             }
         }
         return result;
     }
 
+    /**
+     * Iterates over the collection of volumes, fetching them lazily by pages
+     * of pageSize elements.
+     * 
+     * @param client the client
+     * @param pageSize number of elements fetched per request
+     * @param queryParams optional query parameters ($first and $last bound the
+     *        range of elements iterated over)
+     * @return an iterable over the volumes
+     */
+    public static PagedIterable<Volume> iterateVolumes(final CimiClient client, final int pageSize,
+        final QueryParams... queryParams) {
+        return new PagedIterable<Volume>(client, pageSize, new PagedIterable.PageFetcher<Volume>() {
+            @Override
+            public List<Volume> fetch(final QueryParams pageParams) throws CimiClientException {
+                return Volume.getVolumes(client, pageParams);
+            }
+        }, queryParams);
+    }
+
+    /**
+     * Retrieves the collection of volumes and hands each of them to a visitor
+     * as soon as it is decoded, without holding the whole collection in
+     * memory.
+     * 
+     * @param client the client
+     * @param visitor the visitor
+     * @param queryParams optional query parameters
+     * @return the number of volumes visited
+     * @throws CimiClientException If any internal errors are encountered
+     *         inside the client while attempting to make the request or handle
+     *         the response, or if the visitor aborts the traversal.
+     * @throws CimiProviderException If an error response is returned by the
+     *         CIMI provider.
+     */
+    public static int visitVolumes(final CimiClient client, final CollectionVisitor<? super Volume> visitor,
+        final QueryParams... queryParams) throws CimiClientException, CimiProviderException {
+        if (client.cloudEntryPoint.getVolumes() == null) {
+            throw new CimiClientException("Unsupported operation");
+        }
+        return client.visitCollection(client.extractPath(client.cloudEntryPoint.getVolumes().getHref()), "volumes",
+            "Volume", CimiVolume.class, new CollectionVisitor<CimiVolume>() {
+                @Override
+                public void visit(final CimiVolume cimiVolume) throws CimiClientException {
+                    visitor.visit(new Volume(client, cimiVolume));
+                }
+            }, queryParams);
+    }
+
     /**
      * Retrieves the volume with the given id.
      * 
@@ -208,7 +258,38 @@ public class Volume extends Resource<CimiVolume> {
      */
     public static Volume getVolumeByReference(final CimiClient client, final String id, final QueryParams... queryParams)
         throws CimiClientException, CimiProviderException {
-        return new Volume(client, client.getCimiObjectByReference(id, CimiVolume.class, queryParams));
+        Volume result = new Volume(client, client.getCimiObjectByReference(id, CimiVolume.class, queryParams));
+        return client.canonicalize(result, queryParams);
+    }
+
+    /**
+     * Retrieves the volumes with the given ids. The ids are fetched in
+     * batches with filtered requests on the collection, or with concurrent
+     * requests if the provider does not support filtering on ids.
+     * 
+     * @param client the client
+     * @param ids the ids of the resources
+     * @param queryParams optional query parameters
+     * @return the resources found, keyed by id in the order of the given ids
+     * @throws CimiClientException If any internal errors are encountered
+     *         inside the client while attempting to make the request or handle
+     *         the response.
+     * @throws CimiProviderException If an error response is returned by the
+     *         CIMI provider.
+     */
+    public static Map<String, Volume> getVolumesByIds(final CimiClient client, final Collection<String> ids,
+        final QueryParams... queryParams) throws CimiClientException, CimiProviderException {
+        return BatchGet.getByIds(client, ids, new PagedIterable.PageFetcher<Volume>() {
+            @Override
+            public List<Volume> fetch(final QueryParams batchParams) throws CimiClientException {
+                return Volume.getVolumes(client, batchParams);
+            }
+        }, new BatchGet.ResourceFetcher<Volume>() {
+            @Override
+            public Volume fetch(final String id, final QueryParams singleParams) throws CimiClientException {
+                return Volume.getVolumeByReference(client, id, singleParams);
+            }
+        }, queryParams);
     }
 
 }
@@ -26,7 +26,9 @@
 package org.ow2.sirocco.cimi.sdk;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import org.ow2.sirocco.cimi.domain.CimiJob;
 import org.ow2.sirocco.cimi.domain.CimiVolumeConfiguration;
@@ -152,10 +154,8 @@ public class VolumeConfiguration extends Resource<CimiVolumeConfiguration> {
         if (client.cloudEntryPoint.getVolumeConfigs() == null) {
             throw new CimiClientException("Unsupported operation");
         }
-        CimiVolumeConfigurationCollection volumeConfigCollection = client.getRequest(
-            client.extractPath(client.cloudEntryPoint.getVolumeConfigs().getHref()),
-            CimiVolumeConfigurationCollectionRoot.class);
-        String addRef = Helper.findOperation("add", volumeConfigCollection);
+        String addRef = client.findCollectionOperation(client.cloudEntryPoint.getVolumeConfigs().getHref(),
+            CimiVolumeConfigurationCollectionRoot.class, "add");
         if (addRef == null) {
             throw new CimiClientException("Unsupported operation");
         }
@@ -193,12 +193,32 @@ public class VolumeConfiguration extends Resource<CimiVolumeConfiguration> {
 
         if (volumeConfigCollection.getCollection() != null) {
             for (CimiVolumeConfiguration cimiVolumeConfig : volumeConfigCollection.getCollection().getArray()) {
-                result.add(new VolumeConfiguration(client, cimiVolumeConfig));
+                result.add(client.canonicalize(new VolumeConfiguration(client, cimiVolumeConfig), queryParams));
             }
         }
         return result;
     }
 
+    /**
+     * Iterates over the collection of volume configurations, fetching them lazily by pages
+     * of pageSize elements.
+     * 
+     * @param client the client
+     * @param pageSize number of elements fetched per request
+     * @param queryParams optional query parameters ($first and $last bound the
+     *        range of elements iterated over)
+     * @return an iterable over the volume configurations
+     */
+    public static PagedIterable<VolumeConfiguration> iterateVolumeConfigurations(final CimiClient client, final int pageSize,
+        final QueryParams... queryParams) {
+        return new PagedIterable<VolumeConfiguration>(client, pageSize, new PagedIterable.PageFetcher<VolumeConfiguration>() {
+            @Override
+            public List<VolumeConfiguration> fetch(final QueryParams pageParams) throws CimiClientException {
+                return VolumeConfiguration.getVolumeConfigurations(client, pageParams);
+            }
+        }, queryParams);
+    }
+
     /**
      * Retrieves the volume configuration with the given id.
      * 
@@ -215,7 +235,39 @@ public class VolumeConfiguration extends Resource<CimiVolumeConfiguration> {
      */
     public static VolumeConfiguration getVolumeConfigurationByReference(final CimiClient client, final String id,
         final QueryParams... queryParams) throws CimiClientException, CimiProviderException {
-        return new VolumeConfiguration(client, client.getCimiObjectByReference(id, CimiVolumeConfiguration.class, queryParams));
+        VolumeConfiguration result = new VolumeConfiguration(client,
+            client.getCimiObjectByReference(id, CimiVolumeConfiguration.class, queryParams));
+        return client.canonicalize(result, queryParams);
+    }
+
+    /**
+     * Retrieves the volume configurations with the given ids. The ids are fetched in
+     * batches with filtered requests on the collection, or with concurrent
+     * requests if the provider does not support filtering on ids.
+     * 
+     * @param client the client
+     * @param ids the ids of the resources
+     * @param queryParams optional query parameters
+     * @return the resources found, keyed by id in the order of the given ids
+     * @throws CimiClientException If any internal errors are encountered
+     *         inside the client while attempting to make the request or handle
+     *         the response.
+     * @throws CimiProviderException If an error response is returned by the
+     *         CIMI provider.
+     */
+    public static Map<String, VolumeConfiguration> getVolumeConfigurationsByIds(final CimiClient client, final Collection<String> ids,
+        final QueryParams... queryParams) throws CimiClientException, CimiProviderException {
+        return BatchGet.getByIds(client, ids, new PagedIterable.PageFetcher<VolumeConfiguration>() {
+            @Override
+            public List<VolumeConfiguration> fetch(final QueryParams batchParams) throws CimiClientException {
+                return VolumeConfiguration.getVolumeConfigurations(client, batchParams);
+            }
+        }, new BatchGet.ResourceFetcher<VolumeConfiguration>() {
+            @Override
+            public VolumeConfiguration fetch(final String id, final QueryParams singleParams) throws CimiClientException {
+                return VolumeConfiguration.getVolumeConfigurationByReference(client, id, singleParams);
+            }
+        }, queryParams);
     }
 
 }
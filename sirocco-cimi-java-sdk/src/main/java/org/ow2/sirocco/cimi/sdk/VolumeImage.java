@@ -26,7 +26,9 @@
 package org.ow2.sirocco.cimi.sdk;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import org.ow2.sirocco.cimi.domain.CimiJob;
 import org.ow2.sirocco.cimi.domain.CimiVolumeImage;
@@ -136,9 +138,8 @@ public class VolumeImage extends Resource<CimiVolumeImage> {
         if (client.cloudEntryPoint.getVolumeImages() == null) {
             throw new CimiClientException("Unsupported operation");
         }
-        CimiVolumeImageCollection volumeImagesCollection = client.getRequest(
-            client.extractPath(client.cloudEntryPoint.getVolumeImages().getHref()), CimiVolumeImageCollectionRoot.class);
-        String addRef = Helper.findOperation("add", volumeImagesCollection);
+        String addRef = client.findCollectionOperation(client.cloudEntryPoint.getVolumeImages().getHref(),
+            CimiVolumeImageCollectionRoot.class, "add");
         if (addRef == null) {
             throw new CimiClientException("Unsupported operation");
         }
@@ -175,12 +176,32 @@ public class VolumeImage extends Resource<CimiVolumeImage> {
 
         if (volumeImagesCollection.getCollection() != null) {
             for (CimiVolumeImage cimiVolumeImage : volumeImagesCollection.getCollection().getArray()) {
-                result.add(new VolumeImage(client, cimiVolumeImage));
+                result.add(client.canonicalize(new VolumeImage(client, cimiVolumeImage), queryParams));
             }
         }
         return result;
     }
 
+    /**
+     * Iterates over the collection of volume images, fetching them lazily by pages
+     * of pageSize elements.
+     * 
+     * @param client the client
+     * @param pageSize number of elements fetched per request
+     * @param queryParams optional query parameters ($first and $last bound the
+     *        range of elements iterated over)
+     * @return an iterable over the volume images
+     */
+    public static PagedIterable<VolumeImage> iterateVolumeImages(final CimiClient client, final int pageSize,
+        final QueryParams... queryParams) {
+        return new PagedIterable<VolumeImage>(client, pageSize, new PagedIterable.PageFetcher<VolumeImage>() {
+            @Override
+            public List<VolumeImage> fetch(final QueryParams pageParams) throws CimiClientException {
+                return VolumeImage.getVolumeImages(client, pageParams);
+            }
+        }, queryParams);
+    }
+
     /**
      * Retrieves the volume image with the given id.
      * 
@@ -197,7 +218,39 @@ public class VolumeImage extends Resource<CimiVolumeImage> {
      */
     public static VolumeImage getVolumeImageByReference(final CimiClient client, final String id,
         final QueryParams... queryParams) throws CimiClientException, CimiProviderException {
-        return new VolumeImage(client, client.getCimiObjectByReference(id, CimiVolumeImage.class, queryParams));
+        VolumeImage result = new VolumeImage(client,
+            client.getCimiObjectByReference(id, CimiVolumeImage.class, queryParams));
+        return client.canonicalize(result, queryParams);
+    }
+
+    /**
+     * Retrieves the volume images with the given ids. The ids are fetched in
+     * batches with filtered requests on the collection, or with concurrent
+     * requests if the provider does not support filtering on ids.
+     * 
+     * @param client the client
+     * @param ids the ids of the resources
+     * @param queryParams optional query parameters
+     * @return the resources found, keyed by id in the order of the given ids
+     * @throws CimiClientException If any internal errors are encountered
+     *         inside the client while attempting to make the request or handle
+     *         the response.
+     * @throws CimiProviderException If an error response is returned by the
+     *         CIMI provider.
+     */
+    public static Map<String, VolumeImage> getVolumeImagesByIds(final CimiClient client, final Collection<String> ids,
+        final QueryParams... queryParams) throws CimiClientException, CimiProviderException {
+        return BatchGet.getByIds(client, ids, new PagedIterable.PageFetcher<VolumeImage>() {
+            @Override
+            public List<VolumeImage> fetch(final QueryParams batchParams) throws CimiClientException {
+                return VolumeImage.getVolumeImages(client, batchParams);
+            }
+        }, new BatchGet.ResourceFetcher<VolumeImage>() {
+            @Override
+            public VolumeImage fetch(final String id, final QueryParams singleParams) throws CimiClientException {
+                return VolumeImage.getVolumeImageByReference(client, id, singleParams);
+            }
+        }, queryParams);
     }
 
 }
@@ -26,7 +26,9 @@
 package org.ow2.sirocco.cimi.sdk;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import org.ow2.sirocco.cimi.domain.CimiJob;
 import org.ow2.sirocco.cimi.domain.CimiVolumeTemplate;
@@ -176,9 +178,8 @@ public class VolumeTemplate extends Resource<CimiVolumeTemplate> {
         if (client.cloudEntryPoint.getVolumeTemplates() == null) {
             throw new CimiClientException("Unsupported operation");
         }
-        CimiVolumeTemplateCollection volumeTemplateCollection = client.getRequest(
-            client.extractPath(client.cloudEntryPoint.getVolumeTemplates().getHref()), CimiVolumeTemplateCollectionRoot.class);
-        String addRef = Helper.findOperation("add", volumeTemplateCollection);
+        String addRef = client.findCollectionOperation(client.cloudEntryPoint.getVolumeTemplates().getHref(),
+            CimiVolumeTemplateCollectionRoot.class, "add");
         if (addRef == null) {
             throw new CimiClientException("Unsupported operation");
         }
@@ -216,12 +217,32 @@ public class VolumeTemplate extends Resource<CimiVolumeTemplate> {
 
         if (volumeTemplateCollection.getCollection() != null) {
             for (CimiVolumeTemplate cimiVolumeTemplate : volumeTemplateCollection.getCollection().getArray()) {
-                result.add(new VolumeTemplate(client, cimiVolumeTemplate));
+                result.add(client.canonicalize(new VolumeTemplate(client, cimiVolumeTemplate), queryParams));
             }
         }
         return result;
     }
 
+    /**
+     * Iterates over the collection of volume templates, fetching them lazily by pages
+     * of pageSize elements.
+     * 
+     * @param client the client
+     * @param pageSize number of elements fetched per request
+     * @param queryParams optional query parameters ($first and $last bound the
+     *        range of elements iterated over)
+     * @return an iterable over the volume templates
+     */
+    public static PagedIterable<VolumeTemplate> iterateVolumeTemplates(final CimiClient client, final int pageSize,
+        final QueryParams... queryParams) {
+        return new PagedIterable<VolumeTemplate>(client, pageSize, new PagedIterable.PageFetcher<VolumeTemplate>() {
+            @Override
+            public List<VolumeTemplate> fetch(final QueryParams pageParams) throws CimiClientException {
+                return VolumeTemplate.getVolumeTemplates(client, pageParams);
+            }
+        }, queryParams);
+    }
+
     /**
      * Retrieves the volume template with the given id.
      * 
@@ -238,7 +259,39 @@ public class VolumeTemplate extends Resource<CimiVolumeTemplate> {
      */
     public static VolumeTemplate getVolumeTemplateByReference(final CimiClient client, final String id,
         final QueryParams... queryParams) throws CimiClientException, CimiProviderException {
-        return new VolumeTemplate(client, client.getCimiObjectByReference(id, CimiVolumeTemplate.class, queryParams));
+        VolumeTemplate result = new VolumeTemplate(client,
+            client.getCimiObjectByReference(id, CimiVolumeTemplate.class, queryParams));
+        return client.canonicalize(result, queryParams);
+    }
+
+    /**
+     * Retrieves the volume templates with the given ids. The ids are fetched in
+     * batches with filtered requests on the collection, or with concurrent
+     * requests if the provider does not support filtering on ids.
+     * 
+     * @param client the client
+     * @param ids the ids of the resources
+     * @param queryParams optional query parameters
+     * @return the resources found, keyed by id in the order of the given ids
+     * @throws CimiClientException If any internal errors are encountered
+     *         inside the client while attempting to make the request or handle
+     *         the response.
+     * @throws CimiProviderException If an error response is returned by the
+     *         CIMI provider.
+     */
+    public static Map<String, VolumeTemplate> getVolumeTemplatesByIds(final CimiClient client, final Collection<String> ids,
+        final QueryParams... queryParams) throws CimiClientException, CimiProviderException {
+        return BatchGet.getByIds(client, ids, new PagedIterable.PageFetcher<VolumeTemplate>() {
+            @Override
+            public List<VolumeTemplate> fetch(final QueryParams batchParams) throws CimiClientException {
+                return VolumeTemplate.getVolumeTemplates(client, batchParams);
+            }
+        }, new BatchGet.ResourceFetcher<VolumeTemplate>() {
+            @Override
+            public VolumeTemplate fetch(final String id, final QueryParams singleParams) throws CimiClientException {
+                return VolumeTemplate.getVolumeTemplateByReference(client, id, singleParams);
+            }
+        }, queryParams);
     }
 
 }
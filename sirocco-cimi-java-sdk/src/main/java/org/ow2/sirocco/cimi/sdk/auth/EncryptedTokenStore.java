@@ -0,0 +1,207 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2012 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ *  $Id$
+ *
+ */
+package org.ow2.sirocco.cimi.sdk.auth;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Stores Keystone tokens in a directory, one file per Keystone URL, tenant and
+ * user. Each token is encrypted with AES using a key derived from the user's
+ * password, so that only someone knowing the password can reuse it. Since the
+ * key is derived from the password, a stolen file allows guessing the password
+ * offline: the directory and its files are therefore kept readable by their
+ * owner only, and the key derivation is deliberately slow.
+ */
+final class EncryptedTokenStore {
+
+    private static final int SALT_LENGTH = 16;
+
+    private static final int IV_LENGTH = 16;
+
+    private static final int KEY_ITERATIONS = 150000;
+
+    private static final String CHARSET = "UTF-8";
+
+    private final File directory;
+
+    private final SecureRandom random = new SecureRandom();
+
+    EncryptedTokenStore(final File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Returns the stored token, or null if there is none or if it cannot be
+     * decrypted with the given password.
+     */
+    KeystoneTokenManager.Token load(final String key, final String password) {
+        File file = this.getFile(key);
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            byte[] data = EncryptedTokenStore.readFile(file);
+            if (data.length <= EncryptedTokenStore.SALT_LENGTH + EncryptedTokenStore.IV_LENGTH) {
+                return null;
+            }
+            byte[] salt = Arrays.copyOfRange(data, 0, EncryptedTokenStore.SALT_LENGTH);
+            byte[] iv = Arrays.copyOfRange(data, EncryptedTokenStore.SALT_LENGTH, EncryptedTokenStore.SALT_LENGTH
+                + EncryptedTokenStore.IV_LENGTH);
+            Cipher cipher = this.createCipher(Cipher.DECRYPT_MODE, password, salt, iv);
+            byte[] plain = cipher.doFinal(data, EncryptedTokenStore.SALT_LENGTH + EncryptedTokenStore.IV_LENGTH,
+                data.length - EncryptedTokenStore.SALT_LENGTH - EncryptedTokenStore.IV_LENGTH);
+            String[] fields = new String(plain, EncryptedTokenStore.CHARSET).split("\n");
+            if (fields.length != 2) {
+                return null;
+            }
+            return new KeystoneTokenManager.Token(fields[0], Long.parseLong(fields[1]));
+        } catch (IOException e) {
+            return null;
+        } catch (GeneralSecurityException e) {
+            return null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Stores a token. Failures are ignored: the token will be requested from
+     * Keystone next time.
+     */
+    void save(final String key, final String password, final KeystoneTokenManager.Token token) {
+        try {
+            if (!this.directory.isDirectory() && !this.directory.mkdirs()) {
+                return;
+            }
+            if (!EncryptedTokenStore.restrictToOwner(this.directory)) {
+                return;
+            }
+            byte[] salt = new byte[EncryptedTokenStore.SALT_LENGTH];
+            byte[] iv = new byte[EncryptedTokenStore.IV_LENGTH];
+            this.random.nextBytes(salt);
+            this.random.nextBytes(iv);
+            Cipher cipher = this.createCipher(Cipher.ENCRYPT_MODE, password, salt, iv);
+            String plain = token.getId() + "\n" + token.getExpiresAt();
+            byte[] encrypted = cipher.doFinal(plain.getBytes(EncryptedTokenStore.CHARSET));
+            File file = this.getFile(key);
+            File tmpFile = new File(this.directory, file.getName() + ".tmp");
+            tmpFile.delete();
+            if (!tmpFile.createNewFile()) {
+                return;
+            }
+            if (!EncryptedTokenStore.restrictToOwner(tmpFile)) {
+                tmpFile.delete();
+                return;
+            }
+            OutputStream out = new FileOutputStream(tmpFile);
+            try {
+                out.write(salt);
+                out.write(iv);
+                out.write(encrypted);
+            } finally {
+                out.close();
+            }
+            if (!tmpFile.renameTo(file)) {
+                file.delete();
+                tmpFile.renameTo(file);
+            }
+        } catch (IOException e) {
+            // not persisted
+        } catch (GeneralSecurityException e) {
+            // not persisted
+        }
+    }
+
+    /**
+     * Makes a file or directory accessible to its owner only.
+     */
+    private static boolean restrictToOwner(final File file) {
+        boolean executable = file.isDirectory();
+        return file.setReadable(false, false) && file.setReadable(true, true) && file.setWritable(false, false)
+            && file.setWritable(true, true) && file.setExecutable(false, false)
+            && (!executable || file.setExecutable(true, true));
+    }
+
+    void remove(final String key) {
+        this.getFile(key).delete();
+    }
+
+    private File getFile(final String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(EncryptedTokenStore.CHARSET));
+            StringBuilder name = new StringBuilder();
+            for (byte b : digest) {
+                name.append(String.format("%02x", b & 0xff));
+            }
+            return new File(this.directory, name.toString());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Cipher createCipher(final int mode, final String password, final byte[] salt, final byte[] iv)
+        throws GeneralSecurityException {
+        SecretKeyFactory factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA1");
+        byte[] key = factory.generateSecret(
+            new PBEKeySpec(password.toCharArray(), salt, EncryptedTokenStore.KEY_ITERATIONS, 128)).getEncoded();
+        Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+        cipher.init(mode, new SecretKeySpec(key, "AES"), new IvParameterSpec(iv));
+        return cipher;
+    }
+
+    private static byte[] readFile(final File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+}
@@ -0,0 +1,373 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2012 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ *  $Id$
+ *
+ */
+package org.ow2.sirocco.cimi.sdk.auth;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.ws.rs.core.MediaType;
+import javax.xml.bind.DatatypeConverter;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.ow2.sirocco.cimi.sdk.CimiClientException;
+import org.ow2.sirocco.cimi.sdk.RequestContext;
+
+import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.WebResource;
+import com.sun.jersey.api.client.config.ClientConfig;
+import com.sun.jersey.api.client.config.DefaultClientConfig;
+import com.sun.jersey.api.json.JSONConfiguration;
+
+/**
+ * Obtains Keystone tokens for a tenant and a user and keeps the current one
+ * valid: the token is renewed in the background shortly before it expires,
+ * and a single request to Keystone is in flight at any time. Each manager
+ * renews its token in its own thread, so that an unresponsive Keystone
+ * endpoint cannot hold up the managers of other endpoints.
+ */
+final class KeystoneTokenManager {
+
+    /** time before expiry from which the token is renewed in the background */
+    private static final long REFRESH_MARGIN = 5 * 60 * 1000;
+
+    /** time before expiry from which the token is no longer used */
+    private static final long EXPIRY_MARGIN = 30 * 1000;
+
+    static final int DEFAULT_CONNECT_TIMEOUT = 10 * 1000;
+
+    static final int DEFAULT_READ_TIMEOUT = 30 * 1000;
+
+    static final class Token {
+        private final String id;
+
+        private final long expiresAt;
+
+        Token(final String id, final long expiresAt) {
+            this.id = id;
+            this.expiresAt = expiresAt;
+        }
+
+        String getId() {
+            return this.id;
+        }
+
+        long getExpiresAt() {
+            return this.expiresAt;
+        }
+
+        long getRemainingMillis() {
+            return this.expiresAt - java.lang.System.currentTimeMillis();
+        }
+    }
+
+    private static class AuthInfo {
+        static class PasswordCredentials {
+            String username;
+
+            String password;
+
+            public String getUsername() {
+                return this.username;
+            }
+
+            public String getPassword() {
+                return this.password;
+            }
+
+            public void setPassword(final String password) {
+                this.password = password;
+            }
+
+            public void setUsername(final String username) {
+                this.username = username;
+            }
+        }
+
+        PasswordCredentials passwordCredentials;
+
+        String tenantName;
+
+        public PasswordCredentials getPasswordCredentials() {
+            return this.passwordCredentials;
+        }
+
+        public void setPasswordCredentials(final PasswordCredentials passwordCredentials) {
+            this.passwordCredentials = passwordCredentials;
+        }
+
+        public String getTenantName() {
+            return this.tenantName;
+        }
+
+        public void setTenantName(final String tenantName) {
+            this.tenantName = tenantName;
+        }
+    }
+
+    private static class AuthMessage {
+        AuthInfo auth;
+
+        public AuthInfo getAuth() {
+            return this.auth;
+        }
+
+        public void setAuth(final AuthInfo auth) {
+            this.auth = auth;
+        }
+    }
+
+    private final String authUrl;
+
+    private final String tenantName;
+
+    private final String userName;
+
+    private final String password;
+
+    private final EncryptedTokenStore tokenStore;
+
+    private final String storeKey;
+
+    private final Client client;
+
+    /** upper bound of the time spent waiting for a token */
+    private final long maxWait;
+
+    private final ThreadPoolExecutor refreshExecutor;
+
+    private volatile Token token;
+
+    private FutureTask<Token> refresh;
+
+    KeystoneTokenManager(final String authUrl, final String tenantName, final String userName, final String password,
+        final EncryptedTokenStore tokenStore, final int connectTimeout, final int readTimeout) {
+        this.authUrl = authUrl;
+        this.tenantName = tenantName;
+        this.userName = userName;
+        this.password = password;
+        this.tokenStore = tokenStore;
+        this.storeKey = authUrl + "\n" + tenantName + "\n" + userName;
+        ClientConfig config = new DefaultClientConfig();
+        config.getFeatures().put(JSONConfiguration.FEATURE_POJO_MAPPING, Boolean.TRUE);
+        this.client = Client.create(config);
+        this.client.setConnectTimeout(connectTimeout);
+        this.client.setReadTimeout(readTimeout);
+        this.maxWait = (long) connectTimeout + readTimeout;
+        this.refreshExecutor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    Thread thread = new Thread(runnable, "keystone-token-refresh");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        this.refreshExecutor.allowCoreThreadTimeOut(true);
+        if (tokenStore != null) {
+            Token storedToken = tokenStore.load(this.storeKey, password);
+            if (storedToken != null && storedToken.getRemainingMillis() > KeystoneTokenManager.EXPIRY_MARGIN) {
+                this.token = storedToken;
+            }
+        }
+    }
+
+    /**
+     * Returns a valid token, requesting a new one from Keystone if the current
+     * one has expired and renewing it in the background if it expires soon.
+     */
+    Token getToken() throws CimiClientException {
+        Token current = this.token;
+        if (current == null || current.getRemainingMillis() <= KeystoneTokenManager.EXPIRY_MARGIN) {
+            return this.awaitRefresh();
+        }
+        if (current.getRemainingMillis() <= KeystoneTokenManager.REFRESH_MARGIN) {
+            this.startRefresh();
+        }
+        return current;
+    }
+
+    /**
+     * Drops the given token rejected by the provider, unless it has already
+     * been replaced, and returns a valid token.
+     */
+    Token renew(final String rejectedTokenId) throws CimiClientException {
+        synchronized (this) {
+            Token current = this.token;
+            if (current != null && current.getId().equals(rejectedTokenId)) {
+                this.token = null;
+                if (this.tokenStore != null) {
+                    this.tokenStore.remove(this.storeKey);
+                }
+            }
+        }
+        return this.getToken();
+    }
+
+    /**
+     * Releases the HTTP client and the refresh thread of this manager.
+     */
+    void close() {
+        this.refreshExecutor.shutdownNow();
+        this.client.destroy();
+    }
+
+    /**
+     * Waits for a new token, at most for the time needed by one Keystone
+     * request and never beyond the deadline of the current RequestContext.
+     */
+    private Token awaitRefresh() throws CimiClientException {
+        long timeout = this.maxWait;
+        RequestContext context = RequestContext.current();
+        if (context != null) {
+            timeout = Math.min(timeout, context.getRemainingTime(TimeUnit.MILLISECONDS));
+        }
+        try {
+            return this.startRefresh().get(Math.max(0, timeout), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new CimiClientException("Timed out waiting for a Keystone token", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof CimiClientException) {
+                throw (CimiClientException) e.getCause();
+            }
+            throw new CimiClientException(e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CimiClientException("Request interrupted", e);
+        }
+    }
+
+    private synchronized Future<Token> startRefresh() {
+        FutureTask<Token> task = this.refresh;
+        if (task == null) {
+            task = new FutureTask<Token>(new Callable<Token>() {
+                @Override
+                public Token call() throws CimiClientException {
+                    try {
+                        Token newToken = KeystoneTokenManager.this.requestToken();
+                        KeystoneTokenManager.this.token = newToken;
+                        if (KeystoneTokenManager.this.tokenStore != null) {
+                            KeystoneTokenManager.this.tokenStore.save(KeystoneTokenManager.this.storeKey,
+                                KeystoneTokenManager.this.password, newToken);
+                        }
+                        return newToken;
+                    } finally {
+                        synchronized (KeystoneTokenManager.this) {
+                            KeystoneTokenManager.this.refresh = null;
+                        }
+                    }
+                }
+            });
+            this.refresh = task;
+            try {
+                this.refreshExecutor.execute(task);
+            } catch (RejectedExecutionException e) {
+                // closed manager
+                this.refresh = null;
+                task.run();
+            }
+        }
+        return task;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Token requestToken() throws CimiClientException {
+        WebResource webResource = this.client.resource(this.authUrl).path("/tokens");
+
+        AuthMessage authMessage = new AuthMessage();
+        AuthInfo authInfo = new AuthInfo();
+        authInfo.setTenantName(this.tenantName);
+        AuthInfo.PasswordCredentials passwordCredentials = new AuthInfo.PasswordCredentials();
+        passwordCredentials.setUsername(this.userName);
+        passwordCredentials.setPassword(this.password);
+        authInfo.setPasswordCredentials(passwordCredentials);
+        authMessage.setAuth(authInfo);
+
+        ClientResponse response;
+        try {
+            response = webResource.accept(MediaType.APPLICATION_JSON_TYPE)
+                .entity(authMessage, MediaType.APPLICATION_JSON_TYPE).post(ClientResponse.class);
+        } catch (ClientHandlerException e) {
+            throw new CimiClientException(e.getMessage(), e);
+        }
+
+        if (response.getStatus() < 200 || response.getStatus() >= 300) {
+            String body;
+            try {
+                body = response.getEntity(String.class);
+            } catch (RuntimeException e) {
+                body = "";
+            } finally {
+                response.close();
+            }
+            throw new CimiClientException((response.getStatus() == 401 ? "Unauthorized" : "Keystone error")
+                + " (HTTP " + response.getStatus() + "): " + body);
+        }
+
+        ObjectMapper mapper = new ObjectMapper();
+        Object tokenId;
+        Object expires;
+        try {
+            Map<String, Object> access = mapper.readValue(response.getEntityInputStream(), Map.class);
+            Map<String, Object> tokenInfo = (Map<String, Object>) ((Map<String, Object>) access.get("access")).get("token");
+            tokenId = tokenInfo.get("id");
+            expires = tokenInfo.get("expires");
+        } catch (Exception e) {
+            throw new CimiClientException("Unable to parse Keystone response: " + e, e);
+        } finally {
+            response.close();
+        }
+        if (!(tokenId instanceof String) || (expires != null && !(expires instanceof String))) {
+            throw new CimiClientException("Unable to parse Keystone response: missing token id");
+        }
+        return new Token((String) tokenId, KeystoneTokenManager.parseExpiry((String) expires));
+    }
+
+    /**
+     * Parses the ISO 8601 expiry date of a token. Tokens without a readable
+     * expiry are kept until the provider rejects them.
+     */
+    private static long parseExpiry(final String expires) {
+        if (expires == null) {
+            return Long.MAX_VALUE;
+        }
+        try {
+            return DatatypeConverter.parseDateTime(expires).getTimeInMillis();
+        } catch (IllegalArgumentException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+}
@@ -24,84 +24,31 @@
  */
 package org.ow2.sirocco.cimi.sdk.auth;
 
+import java.io.File;
 import java.util.Collections;
 import java.util.Map;
 
-import javax.ws.rs.core.MediaType;
-
-import org.codehaus.jackson.map.ObjectMapper;
-import org.ow2.sirocco.cimi.sdk.AuthPlugin;
 import org.ow2.sirocco.cimi.sdk.CimiClientException;
-
-import com.sun.jersey.api.client.Client;
-import com.sun.jersey.api.client.ClientResponse;
-import com.sun.jersey.api.client.WebResource;
-import com.sun.jersey.api.client.config.ClientConfig;
-import com.sun.jersey.api.client.config.DefaultClientConfig;
-import com.sun.jersey.api.client.filter.LoggingFilter;
-import com.sun.jersey.api.json.JSONConfiguration;
+import org.ow2.sirocco.cimi.sdk.RefreshableAuthPlugin;
 
 /**
  * Plugin implementing token-based authentication through the OpenStack Keystone
- * service.
+ * service. The token is renewed before it expires. If the system property
+ * CIMICLIENT_TOKEN_CACHE_DIR is set, tokens are stored encrypted in this
+ * directory and reused by later clients of the same tenant and user.
  */
-public class OpenStackKeystoneAuthPlugin implements AuthPlugin {
-
-    private static class AuthInfo {
-        static class PasswordCredentials {
-            String username;
-
-            String password;
-
-            public String getUsername() {
-                return this.username;
-            }
-
-            public String getPassword() {
-                return this.password;
-            }
-
-            public void setPassword(final String password) {
-                this.password = password;
-            }
-
-            public void setUsername(final String username) {
-                this.username = username;
-            }
-        }
+public class OpenStackKeystoneAuthPlugin implements RefreshableAuthPlugin {
 
-        PasswordCredentials passwordCredentials;
+    /** name of the system property giving the directory of stored tokens */
+    public static final String TOKEN_CACHE_DIR_PROP = "CIMICLIENT_TOKEN_CACHE_DIR";
 
-        String tenantName;
+    private static final String AUTH_TOKEN_HEADER = "X-Auth-Token";
 
-        public PasswordCredentials getPasswordCredentials() {
-            return this.passwordCredentials;
-        }
+    private KeystoneTokenManager tokenManager;
 
-        public void setPasswordCredentials(final PasswordCredentials passwordCredentials) {
-            this.passwordCredentials = passwordCredentials;
-        }
+    private int connectTimeout = KeystoneTokenManager.DEFAULT_CONNECT_TIMEOUT;
 
-        public String getTenantName() {
-            return this.tenantName;
-        }
-
-        public void setTenantName(final String tenantName) {
-            this.tenantName = tenantName;
-        }
-    }
-
-    private static class AuthMessage {
-        AuthInfo auth;
-
-        public AuthInfo getAuth() {
-            return this.auth;
-        }
-
-        public void setAuth(final AuthInfo auth) {
-            this.auth = auth;
-        }
-    }
+    private int readTimeout = KeystoneTokenManager.DEFAULT_READ_TIMEOUT;
 
     /*
      * (non-Javadoc)
@@ -120,40 +67,43 @@ public class OpenStackKeystoneAuthPlugin implements AuthPlugin {
         if (openStackAuthUrl == null) {
             throw new CimiClientException("OS_AUTH_URL environment variable muste be set");
         }
+        String tokenCacheDir = System.getProperty(OpenStackKeystoneAuthPlugin.TOKEN_CACHE_DIR_PROP);
+        EncryptedTokenStore tokenStore = tokenCacheDir != null ? new EncryptedTokenStore(new File(tokenCacheDir)) : null;
+        this.close();
+        this.tokenManager = new KeystoneTokenManager(openStackAuthUrl, tenantAndUser[0], tenantAndUser[1], password,
+            tokenStore, this.connectTimeout, this.readTimeout);
+        try {
+            return this.getAuthenticationHeaders();
+        } catch (CimiClientException e) {
+            this.close();
+            throw e;
+        }
+    }
 
-        ClientConfig config = new DefaultClientConfig();
-        config.getFeatures().put(JSONConfiguration.FEATURE_POJO_MAPPING, Boolean.TRUE);
-        Client client = Client.create(config);
-        client.addFilter(new LoggingFilter());
-        WebResource webResource = client.resource(openStackAuthUrl).path("/tokens");
-
-        AuthMessage authMessage = new AuthMessage();
-        AuthInfo authInfo = new AuthInfo();
-        authInfo.setTenantName(tenantAndUser[0]);
-        AuthInfo.PasswordCredentials passwordCredentials = new AuthInfo.PasswordCredentials();
-        passwordCredentials.setUsername(tenantAndUser[1]);
-        passwordCredentials.setPassword(password);
-        authInfo.setPasswordCredentials(passwordCredentials);
-        authMessage.setAuth(authInfo);
+    @Override
+    public Map<String, String> getAuthenticationHeaders() throws CimiClientException {
+        return Collections.singletonMap(OpenStackKeystoneAuthPlugin.AUTH_TOKEN_HEADER, this.tokenManager.getToken().getId());
+    }
 
-        ClientResponse response = webResource.accept(MediaType.APPLICATION_JSON_TYPE)
-            .entity(authMessage, MediaType.APPLICATION_JSON_TYPE).post(ClientResponse.class);
+    @Override
+    public Map<String, String> renew(final Map<String, String> rejectedHeaders) throws CimiClientException {
+        KeystoneTokenManager.Token token = this.tokenManager.renew(rejectedHeaders
+            .get(OpenStackKeystoneAuthPlugin.AUTH_TOKEN_HEADER));
+        return Collections.singletonMap(OpenStackKeystoneAuthPlugin.AUTH_TOKEN_HEADER, token.getId());
+    }
 
-        if (response.getStatus() == 401) {
-            throw new CimiClientException("Unauthorized");
-        }
+    @Override
+    public void setTimeouts(final Integer connectTimeout, final Integer readTimeout) {
+        this.connectTimeout = connectTimeout != null ? connectTimeout : KeystoneTokenManager.DEFAULT_CONNECT_TIMEOUT;
+        this.readTimeout = readTimeout != null ? readTimeout : KeystoneTokenManager.DEFAULT_READ_TIMEOUT;
+    }
 
-        ObjectMapper mapper = new ObjectMapper();
-        Map<String, Object> access;
-        try {
-            access = mapper.readValue(response.getEntityInputStream(), Map.class);
-        } catch (Exception e) {
-            throw new CimiClientException("Unable to parse Keystone response: " + e.getMessage());
+    @Override
+    public void close() {
+        if (this.tokenManager != null) {
+            this.tokenManager.close();
+            this.tokenManager = null;
         }
-        String tokenId = (String) ((Map<String, Object>) ((Map<String, Object>) access.get("access")).get("token")).get("id");
-
-        client.destroy();
-        return Collections.singletonMap("X-Auth-Token", tokenId);
     }
 
 }
@@ -0,0 +1,123 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2012 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ *  $Id$
+ *
+ */
+package org.ow2.sirocco.cimi.sdk.transport;
+
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
+import org.apache.commons.httpclient.util.IdleConnectionTimeoutThread;
+import org.ow2.sirocco.cimi.sdk.CimiClient.Options;
+import org.ow2.sirocco.cimi.sdk.CimiClientException;
+import org.ow2.sirocco.cimi.sdk.CimiTransport;
+import org.ow2.sirocco.cimi.sdk.ConnectionPoolStats;
+
+import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.json.JSONConfiguration;
+import com.sun.jersey.client.apache.ApacheHttpClient;
+import com.sun.jersey.client.apache.ApacheHttpClientHandler;
+import com.sun.jersey.client.apache.config.ApacheHttpClientConfig;
+import com.sun.jersey.client.apache.config.DefaultApacheHttpClientConfig;
+
+/**
+ * Transport relying on Apache HttpClient with a pool of persistent
+ * (keep-alive) connections shared by all requests.
+ * <p>
+ * The read timeout of each request, including the one derived from the
+ * deadline of its {@link org.ow2.sirocco.cimi.sdk.RequestContext}, is honored.
+ * The connect timeout is not: connections are opened by the pool with the
+ * connect timeout of the client options, whatever the remaining time of the
+ * request. The time spent waiting for a free pooled connection is bounded by
+ * the same connect timeout, or by 30 seconds if none is set.
+ */
+public class PooledHttpClientTransport implements CimiTransport {
+    private static final long DEFAULT_CONNECTION_POOL_TIMEOUT_IN_MILLISECONDS = 30 * 1000;
+
+    private Client client;
+
+    private MultiThreadedHttpConnectionManager connectionManager;
+
+    private IdleConnectionTimeoutThread idleConnectionTimeoutThread;
+
+    @Override
+    public Client createClient(final Options options) throws CimiClientException {
+        this.connectionManager = new MultiThreadedHttpConnectionManager();
+        HttpConnectionManagerParams params = this.connectionManager.getParams();
+        params.setDefaultMaxConnectionsPerHost(options.getMaxConnectionsPerHost());
+        params.setMaxTotalConnections(options.getMaxTotalConnections());
+        params.setStaleCheckingEnabled(true);
+        if (options.getConnectTimeout() != null) {
+            params.setConnectionTimeout(options.getConnectTimeout());
+        }
+        if (options.getIdleConnectionTimeout() > 0) {
+            this.idleConnectionTimeoutThread = new IdleConnectionTimeoutThread();
+            this.idleConnectionTimeoutThread.setName("cimiclient-idle-connection-evictor");
+            this.idleConnectionTimeoutThread.setConnectionTimeout(options.getIdleConnectionTimeout());
+            this.idleConnectionTimeoutThread.setTimeoutInterval(Math.max(1000, options.getIdleConnectionTimeout() / 2));
+            this.idleConnectionTimeoutThread.addConnectionManager(this.connectionManager);
+            this.idleConnectionTimeoutThread.start();
+        }
+
+        DefaultApacheHttpClientConfig config = new DefaultApacheHttpClientConfig();
+        String proxyHost = options.getHttpProxyHost();
+        String proxyPort = options.getHttpProxyPort();
+        if (proxyHost != null && proxyPort != null) {
+            config.getProperties().put(ApacheHttpClientConfig.PROPERTY_PROXY_URI, "http://" + proxyHost + ":" + proxyPort);
+        }
+        config.getFeatures().put(JSONConfiguration.FEATURE_POJO_MAPPING, Boolean.TRUE);
+        HttpClient httpClient = new HttpClient(this.connectionManager);
+        httpClient.getParams().setConnectionManagerTimeout(
+            options.getConnectTimeout() != null ? options.getConnectTimeout()
+                : PooledHttpClientTransport.DEFAULT_CONNECTION_POOL_TIMEOUT_IN_MILLISECONDS);
+        this.client = new ApacheHttpClient(new ApacheHttpClientHandler(httpClient, config), config, null);
+        return this.client;
+    }
+
+    @Override
+    public ConnectionPoolStats getConnectionPoolStats() {
+        if (this.connectionManager == null) {
+            return null;
+        }
+        HttpConnectionManagerParams params = this.connectionManager.getParams();
+        return new ConnectionPoolStats(this.connectionManager.getConnectionsInPool(),
+            this.connectionManager.getConnectionsInUse(), params.getDefaultMaxConnectionsPerHost(),
+            params.getMaxTotalConnections());
+    }
+
+    @Override
+    public void close() {
+        if (this.idleConnectionTimeoutThread != null) {
+            this.idleConnectionTimeoutThread.shutdown();
+            this.idleConnectionTimeoutThread = null;
+        }
+        if (this.client != null) {
+            this.client.destroy();
+            this.client = null;
+        }
+        if (this.connectionManager != null) {
+            this.connectionManager.shutdown();
+        }
+    }
+
+}
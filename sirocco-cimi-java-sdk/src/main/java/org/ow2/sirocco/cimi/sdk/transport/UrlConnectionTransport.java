@@ -0,0 +1,79 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2012 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ *  $Id$
+ *
+ */
+package org.ow2.sirocco.cimi.sdk.transport;
+
+import org.ow2.sirocco.cimi.sdk.CimiClient.Options;
+import org.ow2.sirocco.cimi.sdk.CimiClientException;
+import org.ow2.sirocco.cimi.sdk.CimiTransport;
+import org.ow2.sirocco.cimi.sdk.ConnectionPoolStats;
+
+import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.client.config.ClientConfig;
+import com.sun.jersey.api.client.config.DefaultClientConfig;
+import com.sun.jersey.api.json.JSONConfiguration;
+import com.sun.jersey.client.apache.ApacheHttpClient;
+import com.sun.jersey.client.apache.config.ApacheHttpClientConfig;
+import com.sun.jersey.client.apache.config.DefaultApacheHttpClientConfig;
+
+/**
+ * Default transport relying on the JDK HttpURLConnection.
+ */
+public class UrlConnectionTransport implements CimiTransport {
+    private Client client;
+
+    @Override
+    public Client createClient(final Options options) throws CimiClientException {
+        String proxyHost = options.getHttpProxyHost();
+        String proxyPort = options.getHttpProxyPort();
+
+        if (proxyHost != null && proxyPort == null) {
+            final DefaultApacheHttpClientConfig config = new DefaultApacheHttpClientConfig();
+            if (proxyHost != null && proxyPort != null) {
+                config.getProperties().put(ApacheHttpClientConfig.PROPERTY_PROXY_URI, "http://" + proxyHost + ":" + proxyPort);
+            }
+            config.getFeatures().put(JSONConfiguration.FEATURE_POJO_MAPPING, Boolean.TRUE);
+            this.client = ApacheHttpClient.create(config);
+        } else {
+            ClientConfig config = new DefaultClientConfig();
+            config.getFeatures().put(JSONConfiguration.FEATURE_POJO_MAPPING, Boolean.TRUE);
+            this.client = Client.create(config);
+        }
+        return this.client;
+    }
+
+    @Override
+    public ConnectionPoolStats getConnectionPoolStats() {
+        return null;
+    }
+
+    @Override
+    public void close() {
+        if (this.client != null) {
+            this.client.destroy();
+            this.client = null;
+        }
+    }
+
+}
@@ -0,0 +1,5 @@
+/**
+ * Client HTTP transport plugins: factories of the Jersey client, and of its
+ * HTTP engine, used by a CimiClient
+ */
+package org.ow2.sirocco.cimi.sdk.transport;
@@ -0,0 +1,120 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2012 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ *  $Id$
+ *
+ */
+package org.ow2.sirocco.cimi.sdk;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.ow2.sirocco.cimi.domain.CimiMachine;
+
+public class BatchGetTest {
+    private FakeCimiProvider provider;
+
+    private CimiClient client;
+
+    private final List<String> filters = Collections.synchronizedList(new ArrayList<String>());
+
+    private final List<String> singleFetches = Collections.synchronizedList(new ArrayList<String>());
+
+    @Before
+    public void setUp() throws Exception {
+        this.provider = new FakeCimiProvider();
+        this.client = this.provider.login(CimiClient.Options.build());
+    }
+
+    @After
+    public void tearDown() {
+        this.provider.stop();
+    }
+
+    private Machine machine(final String id) {
+        CimiMachine cimiMachine = new CimiMachine();
+        cimiMachine.setId(id);
+        return new Machine(this.client, cimiMachine);
+    }
+
+    private Map<String, Machine> getByIds(final List<String> ids, final String... stored) throws CimiClientException {
+        return BatchGet.getByIds(this.client, ids, new PagedIterable.PageFetcher<Machine>() {
+            @Override
+            public List<Machine> fetch(final QueryParams queryParams) {
+                BatchGetTest.this.filters.add(queryParams.getFilter());
+                List<Machine> result = new ArrayList<Machine>();
+                for (String id : stored) {
+                    if (queryParams.getFilter().contains("id='" + id + "'")) {
+                        result.add(BatchGetTest.this.machine(id));
+                    }
+                }
+                return result;
+            }
+        }, new BatchGet.ResourceFetcher<Machine>() {
+            @Override
+            public Machine fetch(final String id, final QueryParams queryParams) {
+                BatchGetTest.this.singleFetches.add(id);
+                return BatchGetTest.this.machine(id);
+            }
+        });
+    }
+
+    @Test
+    public void relativeIdsAreFilteredByAbsoluteHref() throws Exception {
+        String base = this.provider.getBaseUri();
+        Map<String, Machine> machines = this.getByIds(Arrays.asList("machines/1", "machines/2", "machines/3"), base
+            + "machines/1", base + "machines/2");
+
+        Assert.assertEquals(Arrays.asList("machines/1", "machines/2"), new ArrayList<String>(machines.keySet()));
+        Assert.assertEquals(base + "machines/2", machines.get("machines/2").getId());
+        Assert.assertEquals(1, this.filters.size());
+        Assert.assertEquals("id='" + base + "machines/1' or id='" + base + "machines/2' or id='" + base + "machines/3'",
+            this.filters.get(0));
+        Assert.assertTrue(this.singleFetches.isEmpty());
+    }
+
+    @Test
+    public void absoluteIdsAreKeptAndDuplicatesFetchedOnce() throws Exception {
+        String base = this.provider.getBaseUri();
+        Map<String, Machine> machines = this.getByIds(Arrays.asList(base + "machines/2", "machines/1", base
+            + "machines/2"), base + "machines/1", base + "machines/2");
+
+        Assert.assertEquals(Arrays.asList(base + "machines/2", "machines/1"), new ArrayList<String>(machines.keySet()));
+        Assert.assertEquals("id='" + base + "machines/2' or id='" + base + "machines/1'", this.filters.get(0));
+    }
+
+    @Test
+    public void idsAreSplitIntoChunks() throws Exception {
+        List<String> ids = new ArrayList<String>();
+        for (int i = 0; i < BatchGet.CHUNK_SIZE * 2 + 1; i++) {
+            ids.add("machines/" + i);
+        }
+        Assert.assertTrue(this.getByIds(ids).isEmpty());
+        Assert.assertEquals(3, this.filters.size());
+    }
+}
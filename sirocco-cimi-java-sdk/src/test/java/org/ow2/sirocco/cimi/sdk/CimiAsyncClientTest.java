@@ -0,0 +1,96 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2012 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ *  $Id$
+ *
+ */
+package org.ow2.sirocco.cimi.sdk;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.ow2.sirocco.cimi.domain.CimiJob;
+
+public class CimiAsyncClientTest {
+    private FakeCimiProvider provider;
+
+    private CimiAsyncClient asyncClient;
+
+    @Before
+    public void setUp() throws Exception {
+        this.provider = new FakeCimiProvider();
+        this.asyncClient = new CimiAsyncClient(this.provider.login(CimiClient.Options.build()), 2);
+    }
+
+    @After
+    public void tearDown() {
+        this.asyncClient.shutdown();
+        this.provider.stop();
+    }
+
+    @Test
+    public void submittedCallsRunInTheCallerContext() throws Exception {
+        RequestContext context = RequestContext.withTimeout(1, TimeUnit.MINUTES);
+        Future<Long> remaining;
+        try {
+            remaining = this.asyncClient.submit(new CimiAsyncClient.Call<Long>() {
+                @Override
+                public Long call(final CimiClient client) throws CimiClientException {
+                    return RequestContext.current() == null ? null : RequestContext.current().getRemainingMillis();
+                }
+            });
+        } finally {
+            context.close();
+        }
+        Assert.assertNotNull(remaining.get());
+        Assert.assertTrue(remaining.get() <= 60000);
+    }
+
+    @Test
+    public void waitForCompletionRunsInTheCallerContext() throws Exception {
+        this.provider.respond("GET", "/cimi/jobs/1", 200, "{\"id\":\"" + this.provider.getBaseUri()
+            + "jobs/1\",\"status\":\"RUNNING\"}");
+        CimiJob cimiJob = new CimiJob();
+        cimiJob.setId(this.provider.getBaseUri() + "jobs/1");
+        Job job = new Job(this.asyncClient.getClient(), cimiJob);
+
+        RequestContext context = RequestContext.withTimeout(1, TimeUnit.MILLISECONDS);
+        Future<Job> completion;
+        try {
+            Thread.sleep(10);
+            completion = this.asyncClient.waitForCompletion(job, 1, TimeUnit.MINUTES);
+        } finally {
+            context.close();
+        }
+        try {
+            completion.get(5, TimeUnit.SECONDS);
+            Assert.fail("the expired deadline should stop the polling");
+        } catch (ExecutionException e) {
+            Assert.assertEquals("Deadline exceeded", e.getCause().getMessage());
+        }
+        Assert.assertTrue(this.provider.getRequests("GET", "/cimi/jobs/1").isEmpty());
+    }
+}
@@ -0,0 +1,144 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2012 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ *  $Id$
+ *
+ */
+package org.ow2.sirocco.cimi.sdk;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.ws.rs.core.MediaType;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ow2.sirocco.cimi.domain.CimiMachine;
+
+import com.sun.jersey.api.client.Client;
+
+public class CimiEndpointTest {
+
+    @Test
+    public void backoffDoublesAndIsResetOnSuccess() {
+        CimiEndpoint endpoint = new CimiEndpoint("http://localhost", 1000);
+        Assert.assertEquals(0, endpoint.getBackoff());
+        endpoint.recordFailure();
+        Assert.assertEquals(1000, endpoint.getBackoff());
+        endpoint.recordFailure();
+        endpoint.recordFailure();
+        Assert.assertEquals(4000, endpoint.getBackoff());
+        for (int i = 0; i < 40; i++) {
+            endpoint.recordFailure();
+        }
+        Assert.assertEquals(CimiEndpoint.MAX_BACKOFF_IN_MILLISECONDS, endpoint.getBackoff());
+        endpoint.recordSuccess(1000);
+        Assert.assertEquals(0, endpoint.getBackoff());
+        Assert.assertTrue(endpoint.isHealthy());
+    }
+
+    private static final long BACKOFF = 200;
+
+    private static final long TIMEOUT = 5000;
+
+    private static long elapsedMillis(final long startTime) {
+        return TimeUnit.NANOSECONDS.toMillis(java.lang.System.nanoTime() - startTime);
+    }
+
+    @Test
+    public void failedEndpointIsSelectableAfterItsBackoff() throws Exception {
+        CimiEndpoint endpoint = new CimiEndpoint("http://localhost", CimiEndpointTest.BACKOFF);
+        Assert.assertFalse(endpoint.isSelectable());
+        endpoint.setWebResource("http://localhost/", Client.create().resource("http://localhost/"));
+        endpoint.recordSuccess(1000);
+        Assert.assertTrue(endpoint.isSelectable());
+        long startTime = java.lang.System.nanoTime();
+        endpoint.recordFailure();
+        boolean selectable = endpoint.isSelectable();
+        if (CimiEndpointTest.elapsedMillis(startTime) < CimiEndpointTest.BACKOFF) {
+            Assert.assertFalse(selectable);
+        }
+        while (!endpoint.isSelectable() && CimiEndpointTest.elapsedMillis(startTime) < CimiEndpointTest.TIMEOUT) {
+            Thread.sleep(10);
+        }
+        Assert.assertTrue(endpoint.isSelectable());
+        Assert.assertTrue(CimiEndpointTest.elapsedMillis(startTime) >= CimiEndpointTest.BACKOFF);
+    }
+
+    @Test
+    public void unreachedEndpointIsClaimedForProbeOnceAfterItsBackoff() throws Exception {
+        CimiEndpoint endpoint = new CimiEndpoint("http://localhost", CimiEndpointTest.BACKOFF);
+        long startTime = java.lang.System.nanoTime();
+        endpoint.recordFailure();
+        boolean claimed = endpoint.claimProbe();
+        if (CimiEndpointTest.elapsedMillis(startTime) < CimiEndpointTest.BACKOFF) {
+            Assert.assertFalse(claimed);
+        } else {
+            endpoint.probeDone();
+        }
+        while (!endpoint.claimProbe() && CimiEndpointTest.elapsedMillis(startTime) < CimiEndpointTest.TIMEOUT) {
+            Thread.sleep(10);
+        }
+        Assert.assertTrue(CimiEndpointTest.elapsedMillis(startTime) >= CimiEndpointTest.BACKOFF);
+        Assert.assertFalse(endpoint.claimProbe());
+        endpoint.probeDone();
+        Assert.assertTrue(endpoint.claimProbe());
+    }
+
+    @Test
+    public void endpointDownAtLoginIsProbedAgainAndSelected() throws Exception {
+        FakeCimiProvider primary = new FakeCimiProvider();
+        final FakeCimiProvider secondary = new FakeCimiProvider();
+        final AtomicInteger secondaryStatus = new AtomicInteger(503);
+        final String cep = "{\"id\":\"" + secondary.getBaseUri() + "cloudEntryPoint\",\"baseURI\":\""
+            + secondary.getBaseUri() + "\"}";
+        secondary.handle("GET", FakeCimiProvider.CEP_PATH, new FakeCimiProvider.Handler() {
+            @Override
+            public FakeCimiProvider.Response handle(final FakeCimiProvider.Request request) {
+                return new FakeCimiProvider.Response(secondaryStatus.get(), cep);
+            }
+        });
+        primary.respond("GET", "/cimi/machines/1", 200, "{\"id\":\"" + primary.getBaseUri() + "machines/1\"}");
+        CimiClient client = CimiClient.login(Arrays.asList(primary.getEndpointUrl(), secondary.getEndpointUrl()),
+            "user", "password", null, CimiClient.Options.build().setMediaType(MediaType.APPLICATION_JSON_TYPE)
+                .setEndpointBackoff(CimiEndpointTest.BACKOFF));
+        try {
+            CimiEndpoint secondaryEndpoint = client.getEndpoints().get(1);
+            Assert.assertNull(secondaryEndpoint.getBaseUri());
+            secondaryStatus.set(200);
+            // requests probe the endpoint again once its backoff has elapsed
+            long startTime = java.lang.System.nanoTime();
+            while (!secondaryEndpoint.isHealthy() && CimiEndpointTest.elapsedMillis(startTime) < CimiEndpointTest.TIMEOUT) {
+                client.getCimiObjectByReference("machines/1", CimiMachine.class);
+                Thread.sleep(20);
+            }
+            Assert.assertTrue(secondaryEndpoint.isHealthy());
+            Assert.assertEquals(secondary.getBaseUri(), secondaryEndpoint.getBaseUri());
+            Assert.assertEquals(2, secondary.getRequests("GET", FakeCimiProvider.CEP_PATH).size());
+        } finally {
+            client.close();
+            primary.stop();
+            secondary.stop();
+        }
+    }
+
+}
@@ -0,0 +1,102 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2012 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ *  $Id$
+ *
+ */
+package org.ow2.sirocco.cimi.sdk;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ow2.sirocco.cimi.domain.CimiMachine;
+import org.ow2.sirocco.cimi.sdk.transport.PooledHttpClientTransport;
+import org.ow2.sirocco.cimi.sdk.transport.UrlConnectionTransport;
+
+import com.sun.jersey.api.client.Client;
+
+public class CimiTransportTest {
+
+    /**
+     * Transport delegating to the default one and recording its use.
+     */
+    private static class RecordingTransport extends UrlConnectionTransport {
+        final AtomicInteger created = new AtomicInteger();
+
+        final AtomicInteger closed = new AtomicInteger();
+
+        @Override
+        public Client createClient(final CimiClient.Options options) throws CimiClientException {
+            this.created.incrementAndGet();
+            return super.createClient(options);
+        }
+
+        @Override
+        public void close() {
+            this.closed.incrementAndGet();
+            super.close();
+        }
+    }
+
+    private static void getMachine(final FakeCimiProvider provider, final CimiClient client) throws Exception {
+        Assert.assertEquals(provider.getBaseUri() + "machines/1", client.getCimiObjectByReference("machines/1",
+            CimiMachine.class).getId());
+    }
+
+    @Test
+    public void clientUsesAndClosesTheGivenTransport() throws Exception {
+        FakeCimiProvider provider = new FakeCimiProvider();
+        provider.respond("GET", "/cimi/machines/1", 200, "{\"id\":\"" + provider.getBaseUri() + "machines/1\"}");
+        RecordingTransport transport = new RecordingTransport();
+        CimiClient client = provider.login(CimiClient.Options.build().setTransport(transport));
+        try {
+            CimiTransportTest.getMachine(provider, client);
+            Assert.assertEquals(1, transport.created.get());
+            Assert.assertNull(client.getConnectionPoolStats());
+        } finally {
+            client.close();
+            provider.stop();
+        }
+        Assert.assertEquals(1, transport.closed.get());
+    }
+
+    @Test
+    public void pooledTransportReportsItsPool() throws Exception {
+        FakeCimiProvider provider = new FakeCimiProvider();
+        provider.respond("GET", "/cimi/machines/1", 200, "{\"id\":\"" + provider.getBaseUri() + "machines/1\"}");
+        CimiClient client = provider.login(CimiClient.Options.build().setTransport(new PooledHttpClientTransport())
+            .setMaxConnectionsPerHost(3).setMaxTotalConnections(7));
+        try {
+            for (int i = 0; i < 3; i++) {
+                CimiTransportTest.getMachine(provider, client);
+            }
+            ConnectionPoolStats stats = client.getConnectionPoolStats();
+            Assert.assertEquals(3, stats.getMaxConnectionsPerHost());
+            Assert.assertEquals(7, stats.getMaxTotalConnections());
+            Assert.assertTrue(stats.getConnectionsInPool() >= 1);
+        } finally {
+            client.close();
+            provider.stop();
+        }
+    }
+
+}
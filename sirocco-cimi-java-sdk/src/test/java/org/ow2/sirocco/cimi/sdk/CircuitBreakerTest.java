@@ -0,0 +1,261 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2012 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ *  $Id$
+ *
+ */
+package org.ow2.sirocco.cimi.sdk;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.ws.rs.core.MediaType;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ow2.sirocco.cimi.domain.CimiMachine;
+
+public class CircuitBreakerTest {
+    private final List<String> transitions = Collections.synchronizedList(new ArrayList<String>());
+
+    private final CircuitBreakerConfig.Listener listener = new CircuitBreakerConfig.Listener() {
+        @Override
+        public void onStateChange(final CircuitBreaker circuitBreaker, final CircuitBreaker.State from,
+            final CircuitBreaker.State to) {
+            CircuitBreakerTest.this.transitions.add(from + "->" + to);
+        }
+    };
+
+    private CircuitBreaker circuitBreaker(final long waitDuration, final int permittedCallsInHalfOpenState) {
+        return new CircuitBreaker("http://localhost", CircuitBreakerConfig.builder().slidingWindowSize(4)
+            .minimumNumberOfCalls(4).failureRateThreshold(0.5).waitDurationInOpenState(waitDuration)
+            .permittedCallsInHalfOpenState(permittedCallsInHalfOpenState).listener(this.listener).build());
+    }
+
+    private void assertRejected(final CircuitBreaker circuitBreaker) {
+        try {
+            circuitBreaker.acquirePermission();
+            Assert.fail("call should be rejected");
+        } catch (CimiCircuitOpenException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void opensWhenFailureRateIsReached() throws Exception {
+        CircuitBreaker circuitBreaker = this.circuitBreaker(60000, 1);
+        circuitBreaker.onResult(0, false);
+        circuitBreaker.onResult(0, true);
+        circuitBreaker.onResult(0, false);
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        circuitBreaker.onResult(0, true);
+        Assert.assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        this.assertRejected(circuitBreaker);
+        Assert.assertEquals(Arrays.asList("CLOSED->OPEN"), this.transitions);
+    }
+
+    @Test
+    public void closesAfterSuccessfulTrialCalls() throws Exception {
+        CircuitBreaker circuitBreaker = this.circuitBreaker(10, 1);
+        for (int i = 0; i < 4; i++) {
+            circuitBreaker.onResult(0, true);
+        }
+        Thread.sleep(20);
+        circuitBreaker.acquirePermission();
+        Assert.assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+        circuitBreaker.onResult(0, false);
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        Assert.assertEquals(Arrays.asList("CLOSED->OPEN", "OPEN->HALF_OPEN", "HALF_OPEN->CLOSED"), this.transitions);
+    }
+
+    @Test
+    public void reopensWhenATrialCallFails() throws Exception {
+        CircuitBreaker circuitBreaker = this.circuitBreaker(10, 2);
+        for (int i = 0; i < 4; i++) {
+            circuitBreaker.onResult(0, true);
+        }
+        Thread.sleep(20);
+        circuitBreaker.acquirePermission();
+        circuitBreaker.onResult(0, true);
+        Assert.assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        Assert.assertEquals(Arrays.asList("CLOSED->OPEN", "OPEN->HALF_OPEN", "HALF_OPEN->OPEN"), this.transitions);
+    }
+
+    @Test
+    public void concurrentCallsOnlyReportActualTransitions() throws Exception {
+        final CircuitBreaker circuitBreaker = this.circuitBreaker(0, 1);
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < 8; t++) {
+            final boolean failing = t % 2 == 0;
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 2000; i++) {
+                        try {
+                            circuitBreaker.acquirePermission();
+                            circuitBreaker.onResult(0, failing);
+                        } catch (CimiCircuitOpenException e) {
+                            // rejected trial call
+                        }
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        List<String> allowed = Arrays.asList("CLOSED->OPEN", "OPEN->HALF_OPEN", "HALF_OPEN->OPEN", "HALF_OPEN->CLOSED");
+        Assert.assertFalse(this.transitions.isEmpty());
+        for (String transition : this.transitions) {
+            Assert.assertTrue(transition, allowed.contains(transition));
+        }
+    }
+
+    @Test
+    public void notImplementedIsNotAnEndpointFailure() throws Exception {
+        FakeCimiProvider provider = new FakeCimiProvider();
+        try {
+            provider.respond("GET", "/cimi/machines/1", 501, "not implemented");
+            provider.respond("GET", "/cimi/machines/2", 503, "unavailable");
+            CimiClient client = provider.login(CimiClient.Options.build().setCircuitBreakerConfig(
+                CircuitBreakerConfig.builder().slidingWindowSize(2).minimumNumberOfCalls(2).failureRateThreshold(1.0)
+                    .build()));
+            for (int i = 0; i < 4; i++) {
+                this.assertProviderError(client, "machines/1", 501);
+            }
+            CircuitBreaker circuitBreaker = client.getCircuitBreakers().values().iterator().next();
+            Assert.assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+            this.assertProviderError(client, "machines/2", 503);
+            this.assertProviderError(client, "machines/2", 503);
+            Assert.assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        } finally {
+            provider.stop();
+        }
+    }
+
+    @Test
+    public void callPermittedDoesNotTakeATrialPermit() throws Exception {
+        CircuitBreaker open = this.circuitBreaker(60000, 1);
+        Assert.assertTrue(open.isCallPermitted());
+        for (int i = 0; i < 4; i++) {
+            open.onResult(0, true);
+        }
+        Assert.assertFalse(open.isCallPermitted());
+        CircuitBreaker circuitBreaker = this.circuitBreaker(0, 1);
+        for (int i = 0; i < 4; i++) {
+            circuitBreaker.onResult(0, true);
+        }
+        Assert.assertTrue(circuitBreaker.isCallPermitted());
+        Assert.assertTrue(circuitBreaker.isCallPermitted());
+        circuitBreaker.acquirePermission();
+        Assert.assertFalse(circuitBreaker.isCallPermitted());
+    }
+
+    @Test
+    public void endpointWithOpenCircuitIsNotSelected() throws Exception {
+        FakeCimiProvider primary = new FakeCimiProvider();
+        FakeCimiProvider secondary = new FakeCimiProvider();
+        try {
+            this.assertServedBy(primary, secondary, secondary);
+            this.assertServedBy(primary, secondary, primary);
+        } finally {
+            primary.stop();
+            secondary.stop();
+        }
+    }
+
+    @Test
+    public void openCircuitFailsOverAndFailsOnlyWhenAllAreOpen() throws Exception {
+        FakeCimiProvider primary = new FakeCimiProvider();
+        FakeCimiProvider secondary = new FakeCimiProvider();
+        try {
+            CimiClient client = this.login(primary, secondary);
+            this.open(client, primary);
+            this.open(client, secondary);
+            try {
+                client.getCimiObjectByReference("machines/1", CimiMachine.class);
+                Assert.fail("all circuits are open");
+            } catch (CimiCircuitOpenException e) {
+                // expected
+            }
+            Assert.assertTrue(primary.getRequests("GET", "/cimi/machines/1").isEmpty());
+            Assert.assertTrue(secondary.getRequests("GET", "/cimi/machines/1").isEmpty());
+            client.close();
+        } finally {
+            primary.stop();
+            secondary.stop();
+        }
+    }
+
+    private CimiClient login(final FakeCimiProvider primary, final FakeCimiProvider secondary) throws Exception {
+        for (FakeCimiProvider provider : Arrays.asList(primary, secondary)) {
+            provider.respond("GET", "/cimi/machines/1", 200, "{\"id\":\"" + provider.getBaseUri() + "machines/1\"}");
+        }
+        return CimiClient.login(Arrays.asList(primary.getEndpointUrl(), secondary.getEndpointUrl()), "user",
+            "password", null, CimiClient.Options.build().setMediaType(MediaType.APPLICATION_JSON_TYPE)
+                .setCircuitBreakerConfig(CircuitBreakerConfig.builder().slidingWindowSize(2).minimumNumberOfCalls(2)
+                    .failureRateThreshold(1.0).waitDurationInOpenState(60000).build()));
+    }
+
+    private void open(final CimiClient client, final FakeCimiProvider provider) {
+        String baseUri = provider.getBaseUri();
+        CircuitBreaker circuitBreaker = client.getCircuitBreakers().get(
+            baseUri.substring(0, baseUri.length() - "/cimi/".length()));
+        circuitBreaker.onResult(0, true);
+        circuitBreaker.onResult(0, true);
+        Assert.assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+    }
+
+    /**
+     * Opens the circuit of the endpoint that is not expected to serve the
+     * request, whatever its latency.
+     */
+    private void assertServedBy(final FakeCimiProvider primary, final FakeCimiProvider secondary,
+        final FakeCimiProvider expected) throws Exception {
+        CimiClient client = this.login(primary, secondary);
+        try {
+            int primaryRequests = primary.getRequests("GET", "/cimi/machines/1").size();
+            int secondaryRequests = secondary.getRequests("GET", "/cimi/machines/1").size();
+            this.open(client, expected == primary ? secondary : primary);
+            client.getCimiObjectByReference("machines/1", CimiMachine.class);
+            Assert.assertEquals(expected == primary ? primaryRequests + 1 : primaryRequests,
+                primary.getRequests("GET", "/cimi/machines/1").size());
+            Assert.assertEquals(expected == secondary ? secondaryRequests + 1 : secondaryRequests, secondary
+                .getRequests("GET", "/cimi/machines/1").size());
+        } finally {
+            client.close();
+        }
+    }
+
+    private void assertProviderError(final CimiClient client, final String path, final int status) throws Exception {
+        try {
+            client.getCimiObjectByReference(path, CimiMachine.class);
+            Assert.fail("expected error " + status);
+        } catch (CimiProviderException e) {
+            Assert.assertEquals(Integer.valueOf(status), e.getReturnCode());
+        }
+    }
+}
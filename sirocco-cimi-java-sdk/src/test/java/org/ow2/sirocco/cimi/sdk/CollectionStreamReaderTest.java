@@ -0,0 +1,134 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2012 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ *  $Id$
+ *
+ */
+package org.ow2.sirocco.cimi.sdk;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.ext.MessageBodyReader;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.junit.Assert;
+import org.junit.Test;
+import org.ow2.sirocco.cimi.domain.CimiMachine;
+
+import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.client.config.ClientConfig;
+import com.sun.jersey.api.client.config.DefaultClientConfig;
+import com.sun.jersey.api.json.JSONConfiguration;
+import com.sun.jersey.core.header.InBoundHeaders;
+
+public class CollectionStreamReaderTest {
+    private static final String MACHINE_1 = "{\"id\":\"http://localhost/cimi/machines/1\",\"name\":\"m1\",\"cpu\":2,"
+        + "\"memory\":1024,\"properties\":{\"k\":\"v\"}}";
+
+    private static final String MACHINE_2 = "{\"id\":\"http://localhost/cimi/machines/2\",\"name\":\"m2\","
+        + "\"state\":\"STARTED\"}";
+
+    private static final String COLLECTION = "{\"id\":\"http://localhost/cimi/machines\",\"count\":2,"
+        + "\"operations\":[{\"rel\":\"add\",\"href\":\"http://localhost/cimi/machines\"}],\"machines\":["
+        + CollectionStreamReaderTest.MACHINE_1 + "," + CollectionStreamReaderTest.MACHINE_2 + "]}";
+
+    private static <E> List<E> read(final String body, final MediaType mediaType, final String jsonArrayName,
+        final String xmlElementName, final Class<E> memberClass) throws Exception {
+        final List<E> members = new ArrayList<E>();
+        int count = CollectionStreamReader.read(new ByteArrayInputStream(body.getBytes("UTF-8")), mediaType,
+            jsonArrayName, xmlElementName, memberClass, new CollectionVisitor<E>() {
+                @Override
+                public void visit(final E element) {
+                    members.add(element);
+                }
+            });
+        Assert.assertEquals(members.size(), count);
+        return members;
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static Object readWithJersey(final String body, final Class<?> clazz) throws Exception {
+        ClientConfig config = new DefaultClientConfig();
+        config.getFeatures().put(JSONConfiguration.FEATURE_POJO_MAPPING, Boolean.TRUE);
+        Client client = Client.create(config);
+        MessageBodyReader reader = client.getProviders().getMessageBodyReader(clazz, clazz, new Annotation[0],
+            MediaType.APPLICATION_JSON_TYPE);
+        return reader.readFrom(clazz, clazz, new Annotation[0], MediaType.APPLICATION_JSON_TYPE, new InBoundHeaders(),
+            new ByteArrayInputStream(body.getBytes("UTF-8")));
+    }
+
+    @Test
+    public void jsonMembersAreDecodedLikeTheJerseyClientDoes() throws Exception {
+        List<CimiMachine> machines = CollectionStreamReaderTest.read(CollectionStreamReaderTest.COLLECTION,
+            MediaType.APPLICATION_JSON_TYPE, "machines", "Machine", CimiMachine.class);
+        Assert.assertEquals(2, machines.size());
+        ObjectMapper mapper = new ObjectMapper();
+        Assert.assertEquals(mapper.writeValueAsString(CollectionStreamReaderTest.readWithJersey(
+            CollectionStreamReaderTest.MACHINE_1, CimiMachine.class)), mapper.writeValueAsString(machines.get(0)));
+        Assert.assertEquals(mapper.writeValueAsString(CollectionStreamReaderTest.readWithJersey(
+            CollectionStreamReaderTest.MACHINE_2, CimiMachine.class)), mapper.writeValueAsString(machines.get(1)));
+        Assert.assertEquals("m1", machines.get(0).getName());
+    }
+
+    @Test
+    public void jsonWithoutMembersYieldsNothing() throws Exception {
+        Assert.assertTrue(CollectionStreamReaderTest.read("{\"id\":\"machines\",\"count\":0}",
+            MediaType.APPLICATION_JSON_TYPE, "machines", "Machine", CimiMachine.class).isEmpty());
+    }
+
+    @Test
+    public void xmlMembersAreDecoded() throws Exception {
+        String xml = "<Collection xmlns=\"http://schemas.dmtf.org/cimi/1\"><id>machines</id><count>2</count>"
+            + "<Machine><name>m1</name></Machine><Machine><name>m2</name></Machine></Collection>";
+        List<CimiMachine> machines = CollectionStreamReaderTest.read(xml, MediaType.APPLICATION_XML_TYPE, "machines",
+            "Machine", CimiMachine.class);
+        Assert.assertEquals(2, machines.size());
+    }
+
+    @Test
+    public void externalEntitiesAreNotResolved() throws Exception {
+        File secret = File.createTempFile("secret", ".txt");
+        try {
+            FileWriter writer = new FileWriter(secret);
+            writer.write("top-secret");
+            writer.close();
+            String xml = "<?xml version=\"1.0\"?><!DOCTYPE Collection [<!ENTITY xxe SYSTEM \"" + secret.toURI()
+                + "\">]><Collection><Machine><name>&xxe;</name></Machine></Collection>";
+            try {
+                List<CimiMachine> machines = CollectionStreamReaderTest.read(xml, MediaType.APPLICATION_XML_TYPE,
+                    "machines", "Machine", CimiMachine.class);
+                for (CimiMachine machine : machines) {
+                    Assert.assertFalse("top-secret".equals(machine.getName()));
+                }
+            } catch (CimiClientException e) {
+                // rejected document
+            }
+        } finally {
+            secret.delete();
+        }
+    }
+}
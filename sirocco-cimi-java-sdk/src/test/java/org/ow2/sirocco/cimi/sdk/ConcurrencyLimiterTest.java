@@ -0,0 +1,125 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2012 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ *  $Id$
+ *
+ */
+package org.ow2.sirocco.cimi.sdk;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ConcurrencyLimiterTest {
+    private static final long MILLISECOND = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void requestsBeyondTheLimitWait() throws Exception {
+        final ConcurrencyLimiter limiter = ConcurrencyLimiter.builder().initialLimit(1).build();
+        limiter.acquire();
+        final CountDownLatch acquired = new CountDownLatch(1);
+        Thread waiter = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    limiter.acquire();
+                    acquired.countDown();
+                } catch (CimiClientException e) {
+                    // test fails on the latch
+                }
+            }
+        };
+        waiter.start();
+        Assert.assertFalse(acquired.await(100, TimeUnit.MILLISECONDS));
+        limiter.release(ConcurrencyLimiterTest.MILLISECOND, false);
+        Assert.assertTrue(acquired.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(1, limiter.getInFlight());
+    }
+
+    @Test(timeout = 5000)
+    public void waitStopsAtTheDeadline() throws Exception {
+        ConcurrencyLimiter limiter = ConcurrencyLimiter.builder().initialLimit(1).build();
+        limiter.acquire();
+        RequestContext context = RequestContext.withTimeout(100, TimeUnit.MILLISECONDS);
+        try {
+            limiter.acquire();
+            Assert.fail("the deadline should stop the wait");
+        } catch (CimiClientException e) {
+            Assert.assertEquals("Deadline exceeded", e.getMessage());
+        } finally {
+            context.close();
+        }
+        Assert.assertEquals(1, limiter.getInFlight());
+    }
+
+    @Test
+    public void limitIsCutOncePerRoundTrip() throws Exception {
+        ConcurrencyLimiter limiter = ConcurrencyLimiter.builder().initialLimit(10).backoffRatio(0.5).build();
+        for (int i = 0; i < 5; i++) {
+            limiter.acquire();
+        }
+        // five requests sent together and all rejected
+        for (int i = 0; i < 5; i++) {
+            limiter.release(1000 * ConcurrencyLimiterTest.MILLISECOND, true);
+        }
+        Assert.assertEquals(5, limiter.getLimit());
+
+        // a request sent after the cut is rejected too
+        Thread.sleep(2);
+        limiter.acquire();
+        limiter.release(1, true);
+        Assert.assertEquals(2, limiter.getLimit());
+    }
+
+    @Test
+    public void limitNeverGoesBelowTheMinimum() throws Exception {
+        ConcurrencyLimiter limiter = ConcurrencyLimiter.builder().initialLimit(2).minLimit(2).build();
+        limiter.acquire();
+        limiter.release(1, true);
+        Assert.assertEquals(2, limiter.getLimit());
+    }
+
+    @Test
+    public void limitGrowsWhileUsedAndFast() throws Exception {
+        ConcurrencyLimiter limiter = ConcurrencyLimiter.builder().initialLimit(2).build();
+        for (int i = 0; i < 20; i++) {
+            limiter.acquire();
+            limiter.acquire();
+            limiter.release(ConcurrencyLimiterTest.MILLISECOND, false);
+            limiter.release(ConcurrencyLimiterTest.MILLISECOND, false);
+        }
+        Assert.assertTrue(limiter.getLimit() > 2);
+        Assert.assertEquals(1, limiter.getBaselineLatency());
+    }
+
+    @Test
+    public void latencySpikeCutsTheLimit() throws Exception {
+        ConcurrencyLimiter limiter = ConcurrencyLimiter.builder().initialLimit(10).backoffRatio(0.5).build();
+        limiter.acquire();
+        limiter.release(ConcurrencyLimiterTest.MILLISECOND, false);
+        Thread.sleep(2);
+        limiter.acquire();
+        limiter.release(ConcurrencyLimiterTest.MILLISECOND * 10, false);
+        Assert.assertEquals(5, limiter.getLimit());
+    }
+}
@@ -0,0 +1,150 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2012 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ *  $Id$
+ *
+ */
+package org.ow2.sirocco.cimi.sdk;
+
+import javax.ws.rs.core.MediaType;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.ow2.sirocco.cimi.domain.CimiMachine;
+
+public class ConditionalGetCacheTest {
+    private FakeCimiProvider provider;
+
+    private CimiClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        this.provider = new FakeCimiProvider();
+        this.client = this.provider.login(CimiClient.Options.build().setConditionalGet(true));
+    }
+
+    @After
+    public void tearDown() {
+        this.provider.stop();
+    }
+
+    private static ConditionalGetCache.Validators validators(final String path) throws Exception {
+        return new ConditionalGetCache.Validators(path, null, null, path.getBytes("UTF-8"),
+            MediaType.APPLICATION_JSON_TYPE);
+    }
+
+    @Test
+    public void invalidateForgetsResourceAndSubResources() throws Exception {
+        ConditionalGetCache cache = new ConditionalGetCache();
+        cache.put("a", ConditionalGetCacheTest.validators("machines/1"));
+        cache.put("b", ConditionalGetCacheTest.validators("machines/1/disks"));
+        cache.put("c", ConditionalGetCacheTest.validators("machines/10"));
+        cache.invalidate("machines/1");
+        Assert.assertNull(cache.get("a"));
+        Assert.assertNull(cache.get("b"));
+        Assert.assertNotNull(cache.get("c"));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedEntries() throws Exception {
+        ConditionalGetCache cache = new ConditionalGetCache();
+        for (int i = 0; i <= ConditionalGetCache.MAXIMUM_SIZE; i++) {
+            cache.put("k" + i, ConditionalGetCacheTest.validators("machines/" + i));
+            if (i == 0) {
+                continue;
+            }
+            cache.get("k0");
+        }
+        Assert.assertNotNull(cache.get("k0"));
+        Assert.assertNull(cache.get("k1"));
+    }
+
+    @Test
+    public void notModifiedResponseDecodesPreviousBody() throws Exception {
+        this.provider.handle("GET", "/cimi/machines/1", new FakeCimiProvider.Handler() {
+            @Override
+            public FakeCimiProvider.Response handle(final FakeCimiProvider.Request request) {
+                if ("\"v1\"".equals(request.getHeader("If-None-Match"))) {
+                    return new FakeCimiProvider.Response(304, null);
+                }
+                return new FakeCimiProvider.Response(200, "{\"id\":\"machines/1\",\"name\":\"m1\"}").header("ETag",
+                    "\"v1\"");
+            }
+        });
+        CimiMachine first = this.client.getCimiObjectByReference("machines/1", CimiMachine.class);
+        CimiMachine second = this.client.getCimiObjectByReference("machines/1", CimiMachine.class);
+        Assert.assertNotSame(first, second);
+        Assert.assertEquals("m1", second.getName());
+        Assert.assertEquals(1, this.client.getUnchangedResponseCount());
+    }
+
+    @Test
+    public void identicalBodyWithoutValidatorsIsCountedAsUnchanged() throws Exception {
+        this.provider.respond("GET", "/cimi/machines/1", 200, "{\"id\":\"machines/1\",\"name\":\"m1\"}");
+        CimiMachine first = this.client.getCimiObjectByReference("machines/1", CimiMachine.class);
+        CimiMachine second = this.client.getCimiObjectByReference("machines/1", CimiMachine.class);
+        Assert.assertNotSame(first, second);
+        Assert.assertEquals("m1", second.getName());
+        Assert.assertEquals(1, this.client.getUnchangedResponseCount());
+    }
+
+    @Test
+    public void localChangesAreNotHandedOutAgain() throws Exception {
+        this.provider.handle("GET", "/cimi/machines/1", new FakeCimiProvider.Handler() {
+            @Override
+            public FakeCimiProvider.Response handle(final FakeCimiProvider.Request request) {
+                if ("\"v1\"".equals(request.getHeader("If-None-Match"))) {
+                    return new FakeCimiProvider.Response(304, null);
+                }
+                return new FakeCimiProvider.Response(200, "{\"id\":\"machines/1\",\"name\":\"m1\"}").header("ETag",
+                    "\"v1\"");
+            }
+        });
+        CimiMachine machine = this.client.getCimiObjectByReference("machines/1", CimiMachine.class);
+        machine.setName("changed locally");
+        CimiMachine reread = this.client.getCimiObjectByReference("machines/1", CimiMachine.class);
+        Assert.assertEquals("m1", reread.getName());
+        reread.setName("changed again");
+        Assert.assertEquals("m1", this.client.getCimiObjectByReference("machines/1", CimiMachine.class).getName());
+        Assert.assertEquals(2, this.client.getUnchangedResponseCount());
+    }
+
+    @Test
+    public void updateInvalidatesTheCachedResource() throws Exception {
+        this.provider.respond("GET", "/cimi/machines/1", new FakeCimiProvider.Response(200,
+            "{\"id\":\"machines/1\",\"name\":\"m1\"}").header("ETag", "\"v1\""));
+        this.provider.respond("PUT", "/cimi/machines/1", 200, null);
+        CimiMachine machine = this.client.getCimiObjectByReference("machines/1", CimiMachine.class);
+
+        CimiMachine update = new CimiMachine();
+        update.setName("m2");
+        this.client.partialUpdateRequest(this.provider.getBaseUri() + "machines/1", update, "name");
+        Assert.assertEquals("name", this.provider.getRequests("PUT", "/cimi/machines/1").get(0).query.replace("$select=",
+            ""));
+
+        CimiMachine reread = this.client.getCimiObjectByReference("machines/1", CimiMachine.class);
+        Assert.assertNull(this.provider.getRequests("GET", "/cimi/machines/1").get(1).getHeader("If-None-Match"));
+        Assert.assertNotSame(machine, reread);
+        Assert.assertEquals(0, this.client.getUnchangedResponseCount());
+    }
+}
@@ -0,0 +1,138 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2012 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ *  $Id$
+ *
+ */
+package org.ow2.sirocco.cimi.sdk;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.ow2.sirocco.cimi.domain.CimiMachine;
+
+public class ContentEncodingFilterTest {
+    private FakeCimiProvider provider;
+
+    private CimiClient client;
+
+    private String machine;
+
+    @Before
+    public void setUp() throws Exception {
+        this.provider = new FakeCimiProvider();
+        StringBuilder description = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            description.append("compressible ");
+        }
+        this.machine = "{\"id\":\"" + this.provider.getBaseUri() + "machines/1\",\"description\":\"" + description
+            + "\"}";
+        this.client = this.provider.login(CimiClient.Options.build().setCompression(true)
+            .setRequestCompressionThreshold(256));
+    }
+
+    @After
+    public void tearDown() {
+        this.client.close();
+        this.provider.stop();
+    }
+
+    private static byte[] gzip(final String text) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        GZIPOutputStream out = new GZIPOutputStream(bytes);
+        out.write(text.getBytes("UTF-8"));
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static byte[] deflate(final String text) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DeflaterOutputStream out = new DeflaterOutputStream(bytes);
+        out.write(text.getBytes("UTF-8"));
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static String gunzip(final byte[] bytes) throws Exception {
+        InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            out.write(buffer, 0, n);
+        }
+        return out.toString("UTF-8");
+    }
+
+    @Test
+    public void decodesGzipResponses() throws Exception {
+        byte[] body = ContentEncodingFilterTest.gzip(this.machine);
+        this.provider.respond("GET", "/cimi/machines/1", FakeCimiProvider.Response.binary(200, body).header(
+            "Content-Encoding", "gzip"));
+        CompressionStats stats = this.client.getCompressionStats();
+        long received = stats.getResponseBytesReceived();
+        long decoded = stats.getResponseBytesDecoded();
+        CimiMachine machine = this.client.getCimiObjectByReference("machines/1", CimiMachine.class);
+        Assert.assertTrue(machine.getDescription().startsWith("compressible"));
+        Assert.assertTrue(this.provider.getRequests("GET", "/cimi/machines/1").get(0).getHeader("Accept-Encoding")
+            .contains("gzip"));
+        Assert.assertEquals(body.length, stats.getResponseBytesReceived() - received);
+        Assert.assertEquals(this.machine.length(), stats.getResponseBytesDecoded() - decoded);
+    }
+
+    @Test
+    public void decodesDeflateResponses() throws Exception {
+        this.provider.respond("GET", "/cimi/machines/1", FakeCimiProvider.Response.binary(200, ContentEncodingFilterTest
+            .deflate(this.machine)).header("Content-Encoding", "deflate"));
+        CimiMachine machine = this.client.getCimiObjectByReference("machines/1", CimiMachine.class);
+        Assert.assertTrue(machine.getDescription().startsWith("compressible"));
+    }
+
+    @Test
+    public void passesUncompressedResponsesThrough() throws Exception {
+        this.provider.respond("GET", "/cimi/machines/1", 200, this.machine);
+        CimiMachine machine = this.client.getCimiObjectByReference("machines/1", CimiMachine.class);
+        Assert.assertTrue(machine.getDescription().startsWith("compressible"));
+        CompressionStats stats = this.client.getCompressionStats();
+        Assert.assertEquals(stats.getResponseBytesReceived(), stats.getResponseBytesDecoded());
+    }
+
+    @Test
+    public void compressesLargeRequestBodies() throws Exception {
+        this.provider.respond("PUT", "/cimi/machines/1", 200, null);
+        CimiMachine update = new CimiMachine();
+        update.setDescription(this.machine);
+        this.client.partialUpdateRequest(this.provider.getBaseUri() + "machines/1", update, "description");
+        FakeCimiProvider.Request request = this.provider.getRequests("PUT", "/cimi/machines/1").get(0);
+        Assert.assertEquals("gzip", request.getHeader("Content-Encoding"));
+        Assert.assertTrue(ContentEncodingFilterTest.gunzip(request.bytes).contains("compressible"));
+        Assert.assertTrue(request.bytes.length < this.machine.length());
+    }
+
+}
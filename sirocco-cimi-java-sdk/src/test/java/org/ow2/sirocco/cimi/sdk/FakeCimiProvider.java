@@ -0,0 +1,230 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2012 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ *  $Id$
+ *
+ */
+package org.ow2.sirocco.cimi.sdk;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.ws.rs.core.MediaType;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * In-process CIMI provider serving canned JSON responses, used by the unit
+ * tests to exercise the client without a real provider.
+ */
+class FakeCimiProvider {
+    static final String CEP_PATH = "/cimi/cloudEntryPoint";
+
+    /**
+     * A canned response.
+     */
+    static class Response {
+        final int status;
+
+        final String body;
+
+        final byte[] bytes;
+
+        final Map<String, String> headers = new HashMap<String, String>();
+
+        Response(final int status, final String body) {
+            this(status, body, null);
+        }
+
+        private Response(final int status, final String body, final byte[] bytes) {
+            this.status = status;
+            this.body = body;
+            this.bytes = bytes;
+        }
+
+        /**
+         * Returns a response with a binary (e.g. compressed) body.
+         */
+        static Response binary(final int status, final byte[] bytes) {
+            return new Response(status, null, bytes);
+        }
+
+        Response header(final String name, final String value) {
+            this.headers.put(name, value);
+            return this;
+        }
+    }
+
+    /**
+     * A request received by the provider.
+     */
+    static class Request {
+        final String method;
+
+        final String path;
+
+        final String query;
+
+        final Map<String, List<String>> headers;
+
+        final String body;
+
+        final byte[] bytes;
+
+        Request(final String method, final String path, final String query, final Map<String, List<String>> headers,
+            final byte[] bytes) throws IOException {
+            this.method = method;
+            this.path = path;
+            this.query = query;
+            this.headers = headers;
+            this.bytes = bytes;
+            this.body = new String(bytes, "UTF-8");
+        }
+
+        String getHeader(final String name) {
+            for (Map.Entry<String, List<String>> header : this.headers.entrySet()) {
+                if (header.getKey().equalsIgnoreCase(name) && !header.getValue().isEmpty()) {
+                    return header.getValue().get(0);
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Computes a response dynamically.
+     */
+    interface Handler {
+        Response handle(Request request);
+    }
+
+    private final HttpServer server;
+
+    private final Map<String, Handler> handlers = Collections.synchronizedMap(new HashMap<String, Handler>());
+
+    private final List<Request> requests = Collections.synchronizedList(new ArrayList<Request>());
+
+    FakeCimiProvider() throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(final HttpExchange exchange) throws IOException {
+                FakeCimiProvider.this.dispatch(exchange);
+            }
+        });
+        this.server.start();
+        this.respond("GET", FakeCimiProvider.CEP_PATH, 200, "{\"id\":\"" + this.getBaseUri() + "cloudEntryPoint\","
+            + "\"baseURI\":\"" + this.getBaseUri() + "\",\"machines\":{\"href\":\"" + this.getBaseUri() + "machines\"},"
+            + "\"volumes\":{\"href\":\"" + this.getBaseUri() + "volumes\"},\"jobs\":{\"href\":\"" + this.getBaseUri()
+            + "jobs\"},\"systems\":{\"href\":\"" + this.getBaseUri() + "systems\"}}");
+    }
+
+    String getBaseUri() {
+        return "http://127.0.0.1:" + this.server.getAddress().getPort() + "/cimi/";
+    }
+
+    String getEndpointUrl() {
+        return "http://127.0.0.1:" + this.server.getAddress().getPort() + FakeCimiProvider.CEP_PATH;
+    }
+
+    CimiClient login(final CimiClient.Options options) throws CimiClientException {
+        return CimiClient.login(this.getEndpointUrl(), "user", "password", null,
+            options.setMediaType(MediaType.APPLICATION_JSON_TYPE));
+    }
+
+    void respond(final String method, final String path, final int status, final String body) {
+        this.respond(method, path, new Response(status, body));
+    }
+
+    void respond(final String method, final String path, final Response response) {
+        this.handle(method, path, new Handler() {
+            @Override
+            public Response handle(final Request request) {
+                return response;
+            }
+        });
+    }
+
+    void handle(final String method, final String path, final Handler handler) {
+        this.handlers.put(method + " " + path, handler);
+    }
+
+    List<Request> getRequests() {
+        synchronized (this.requests) {
+            return new ArrayList<Request>(this.requests);
+        }
+    }
+
+    List<Request> getRequests(final String method, final String path) {
+        List<Request> result = new ArrayList<Request>();
+        for (Request request : this.getRequests()) {
+            if (request.method.equals(method) && request.path.equals(path)) {
+                result.add(request);
+            }
+        }
+        return result;
+    }
+
+    void stop() {
+        this.server.stop(0);
+    }
+
+    private void dispatch(final HttpExchange exchange) throws IOException {
+        try {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            InputStream in = exchange.getRequestBody();
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                body.write(buffer, 0, n);
+            }
+            Request request = new Request(exchange.getRequestMethod(), exchange.getRequestURI().getPath(), exchange
+                .getRequestURI().getQuery(), exchange.getRequestHeaders(), body.toByteArray());
+            this.requests.add(request);
+            Handler handler = this.handlers.get(request.method + " " + request.path);
+            Response response = handler != null ? handler.handle(request) : new Response(404, null);
+            for (Map.Entry<String, String> header : response.headers.entrySet()) {
+                exchange.getResponseHeaders().add(header.getKey(), header.getValue());
+            }
+            if (response.body == null && response.bytes == null) {
+                exchange.sendResponseHeaders(response.status, -1);
+            } else {
+                byte[] bytes = response.bytes != null ? response.bytes : response.body.getBytes("UTF-8");
+                exchange.getResponseHeaders().add("Content-Type", MediaType.APPLICATION_JSON);
+                exchange.sendResponseHeaders(response.status, bytes.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(bytes);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2012 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ *  $Id$
+ *
+ */
+package org.ow2.sirocco.cimi.sdk;
+
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ow2.sirocco.cimi.domain.CimiMachine;
+import org.ow2.sirocco.cimi.domain.CimiOperation;
+
+public class HelperTest {
+
+    private static CimiMachine machine(final CimiOperation... operations) {
+        CimiMachine machine = new CimiMachine();
+        machine.setOperations(operations);
+        return machine;
+    }
+
+    @Test
+    public void findsFirstOperationWithRel() {
+        CimiMachine machine = HelperTest.machine(new CimiOperation(null, "ignored"), new CimiOperation("edit",
+            "machines/1"), new CimiOperation("edit", "machines/2"));
+        Assert.assertEquals("machines/1", Helper.findOperation("edit", machine));
+        Assert.assertNull(Helper.findOperation("delete", machine));
+        Assert.assertNull(Helper.findOperation("edit", new CimiMachine()));
+    }
+
+    @Test
+    public void indexesOperationsByRel() {
+        CimiMachine machine = HelperTest.machine(new CimiOperation("add", "machines"), new CimiOperation("add",
+            "other"), new CimiOperation(null, "ignored"));
+        Map<String, String> index = Helper.indexOperations(machine);
+        Assert.assertEquals(1, index.size());
+        Assert.assertEquals("machines", index.get("add"));
+        Assert.assertTrue(Helper.indexOperations(new CimiMachine()).isEmpty());
+    }
+
+    @Test
+    public void seesOperationsReplacedInPlace() {
+        CimiMachine machine = HelperTest.machine(new CimiOperation("edit", "machines/1"));
+        Assert.assertEquals("machines/1", Helper.findOperation("edit", machine));
+        machine.getOperations()[0] = new CimiOperation("edit", "machines/2");
+        Assert.assertEquals("machines/2", Helper.findOperation("edit", machine));
+    }
+
+}
@@ -0,0 +1,97 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2012 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ *  $Id$
+ *
+ */
+package org.ow2.sirocco.cimi.sdk;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ow2.sirocco.cimi.domain.CimiMachine;
+
+public class IdentityMapTest {
+    private final IdentityMap identityMap = new IdentityMap();
+
+    private static Machine machine(final String name) {
+        CimiMachine cimiMachine = new CimiMachine();
+        cimiMachine.setId("http://localhost/cimi/machines/1");
+        cimiMachine.setName(name);
+        return new Machine(null, cimiMachine);
+    }
+
+    @Test
+    public void refreshesCanonicalInstanceInPlace() {
+        Machine first = IdentityMapTest.machine("first");
+        Assert.assertSame(first, this.identityMap.canonicalize("machines/1", first));
+        Machine second = IdentityMapTest.machine("second");
+        Assert.assertSame(first, this.identityMap.canonicalize("machines/1", second));
+        Assert.assertEquals("second", first.getName());
+        Assert.assertEquals(1, this.identityMap.size());
+    }
+
+    @Test
+    public void forgetsResourcesNoLongerReferenced() throws Exception {
+        this.identityMap.canonicalize("machines/1", IdentityMapTest.machine("first"));
+        for (int i = 0; i < 50 && this.identityMap.size() > 0; i++) {
+            java.lang.System.gc();
+            Thread.sleep(20);
+        }
+        Assert.assertEquals(0, this.identityMap.size());
+        Machine second = IdentityMapTest.machine("second");
+        Assert.assertSame(second, this.identityMap.canonicalize("machines/1", second));
+    }
+
+    @Test
+    public void concurrentLoadsAgreeOnOneInstance() throws Exception {
+        final int threads = 8;
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Machine>> futures = new ArrayList<Future<Machine>>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(new Callable<Machine>() {
+                    @Override
+                    public Machine call() throws Exception {
+                        start.await();
+                        return IdentityMapTest.this.identityMap.canonicalize("machines/1", IdentityMapTest.machine("m"));
+                    }
+                }));
+            }
+            start.countDown();
+            Machine canonical = futures.get(0).get();
+            for (Future<Machine> future : futures) {
+                Assert.assertSame(canonical, future.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+}
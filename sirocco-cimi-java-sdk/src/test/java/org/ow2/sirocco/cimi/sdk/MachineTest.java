@@ -0,0 +1,143 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2012 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ *  $Id$
+ *
+ */
+package org.ow2.sirocco.cimi.sdk;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.ow2.sirocco.cimi.domain.CimiMachine;
+import org.ow2.sirocco.cimi.domain.collection.CimiMachineDiskCollection;
+import org.ow2.sirocco.cimi.domain.collection.CimiMachineNetworkInterfaceCollection;
+import org.ow2.sirocco.cimi.domain.collection.CimiMachineVolumeCollection;
+
+public class MachineTest {
+    private FakeCimiProvider provider;
+
+    private CimiClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        this.provider = new FakeCimiProvider();
+        this.client = this.provider.login(CimiClient.Options.build());
+    }
+
+    @After
+    public void tearDown() {
+        this.client.close();
+        this.provider.stop();
+    }
+
+    private Machine machine(final int index) {
+        String id = this.provider.getBaseUri() + "machines/" + index;
+        CimiMachine cimiMachine = new CimiMachine();
+        cimiMachine.setId(id);
+        CimiMachineDiskCollection disks = new CimiMachineDiskCollection();
+        disks.setHref(id + "/disks");
+        cimiMachine.setDisks(disks);
+        CimiMachineVolumeCollection volumes = new CimiMachineVolumeCollection();
+        volumes.setHref(id + "/volumes");
+        cimiMachine.setVolumes(volumes);
+        return new Machine(this.client, cimiMachine);
+    }
+
+    @Test
+    public void prefetchLoadsSubCollectionsOfAllMachines() throws Exception {
+        List<Machine> machines = new ArrayList<Machine>();
+        for (int i = 1; i <= 3; i++) {
+            String id = this.provider.getBaseUri() + "machines/" + i;
+            this.provider.respond("GET", "/cimi/machines/" + i + "/disks", 200, "{\"id\":\"" + id
+                + "/disks\",\"count\":1,\"disks\":[{\"id\":\"" + id + "/disks/1\",\"capacity\":" + i + "}]}");
+            // empty collection without array
+            this.provider.respond("GET", "/cimi/machines/" + i + "/volumes", 200, "{\"id\":\"" + id
+                + "/volumes\",\"count\":0}");
+            machines.add(this.machine(i));
+        }
+        int requests = this.provider.getRequests().size();
+        Machine.prefetch(machines, Machine.DISKS, Machine.VOLUMES);
+        Assert.assertEquals(requests + 6, this.provider.getRequests().size());
+
+        for (int i = 1; i <= 3; i++) {
+            Machine machine = machines.get(i - 1);
+            Assert.assertEquals(1, machine.getDisks().size());
+            Assert.assertEquals(Integer.valueOf(i), machine.getDisks().get(0).getCapacity());
+            Assert.assertTrue(machine.getVolumes().isEmpty());
+        }
+        Assert.assertEquals(requests + 6, this.provider.getRequests().size());
+    }
+
+    @Test
+    public void subCollectionWithoutArrayIsEmpty() throws Exception {
+        String id = this.provider.getBaseUri() + "machines/1";
+        this.provider.respond("GET", "/cimi/machines/1/disks", 200, "{\"id\":\"" + id + "/disks\",\"count\":0}");
+        this.provider.respond("GET", "/cimi/machines/1/volumes", 200, "{\"id\":\"" + id + "/volumes\",\"count\":0}");
+        Machine machine = this.machine(1);
+        Assert.assertTrue(machine.getDisks().isEmpty());
+        Assert.assertTrue(machine.getVolumes().isEmpty());
+        Assert.assertTrue(machine.getDisks().isEmpty());
+        Assert.assertEquals(1, this.provider.getRequests("GET", "/cimi/machines/1/disks").size());
+    }
+
+    @Test
+    public void multiHomedMachineLoadsAllAddressCollections() throws Exception {
+        String id = this.provider.getBaseUri() + "machines/1";
+        StringBuilder nics = new StringBuilder();
+        for (int i = 1; i <= 3; i++) {
+            String nicId = id + "/nics/" + i;
+            nics.append("{\"id\":\"").append(nicId).append("\",\"addresses\":{\"href\":\"").append(nicId).append(
+                "/addresses\"}},");
+            this.provider.respond("GET", "/cimi/machines/1/nics/" + i + "/addresses", 200, "{\"id\":\"" + nicId
+                + "/addresses\",\"count\":1,\"addresses\":[{\"id\":\"" + nicId + "/addresses/1\",\"address\":{\"id\":\""
+                + this.provider.getBaseUri() + "addresses/" + i + "\",\"ip\":\"10.0.0." + i + "\"}}]}");
+        }
+        // network interface without addresses
+        nics.append("{\"id\":\"").append(id).append("/nics/4\"}");
+        this.provider.respond("GET", "/cimi/machines/1/nics", 200, "{\"id\":\"" + id + "/nics\",\"count\":4,"
+            + "\"networkInterfaces\":[" + nics + "]}");
+        CimiMachine cimiMachine = new CimiMachine();
+        cimiMachine.setId(id);
+        CimiMachineNetworkInterfaceCollection nicCollection = new CimiMachineNetworkInterfaceCollection();
+        nicCollection.setHref(id + "/nics");
+        cimiMachine.setNetworkInterfaces(nicCollection);
+        Machine machine = new Machine(this.client, cimiMachine);
+
+        Machine.prefetch(Collections.singletonList(machine), Machine.NETWORK_INTERFACES);
+        int requests = this.provider.getRequests().size();
+        List<MachineNetworkInterface> networkInterfaces = machine.getNetworkInterfaces();
+        Assert.assertEquals(4, networkInterfaces.size());
+        for (int i = 1; i <= 3; i++) {
+            List<Address> addresses = networkInterfaces.get(i - 1).getAddresses();
+            Assert.assertEquals(1, addresses.size());
+            Assert.assertEquals("10.0.0." + i, addresses.get(0).getIp());
+        }
+        Assert.assertTrue(networkInterfaces.get(3).getAddresses().isEmpty());
+        Assert.assertEquals(requests, this.provider.getRequests().size());
+    }
+
+}
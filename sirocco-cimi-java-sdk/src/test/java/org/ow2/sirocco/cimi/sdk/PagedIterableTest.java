@@ -0,0 +1,225 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2012 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ *  $Id$
+ *
+ */
+package org.ow2.sirocco.cimi.sdk;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PagedIterableTest {
+    private FakeCimiProvider provider;
+
+    private CimiClient client;
+
+    private final List<String> ranges = Collections.synchronizedList(new ArrayList<String>());
+
+    @Before
+    public void setUp() throws Exception {
+        this.provider = new FakeCimiProvider();
+        this.client = this.provider.login(CimiClient.Options.build());
+    }
+
+    @After
+    public void tearDown() {
+        this.client.close();
+        this.provider.stop();
+    }
+
+    /**
+     * Returns a fetcher over the integers 1 to size, honoring $first/$last.
+     */
+    private PagedIterable.PageFetcher<Integer> collection(final int size) {
+        return new PagedIterable.PageFetcher<Integer>() {
+            @Override
+            public List<Integer> fetch(final QueryParams queryParams) {
+                PagedIterableTest.this.ranges.add(queryParams.getFirst() + "-" + queryParams.getLast());
+                List<Integer> page = new ArrayList<Integer>();
+                for (int i = queryParams.getFirst(); i <= Math.min(queryParams.getLast(), size); i++) {
+                    page.add(i);
+                }
+                return page;
+            }
+        };
+    }
+
+    private static List<Integer> numbers(final int from, final int to) {
+        List<Integer> numbers = new ArrayList<Integer>();
+        for (int i = from; i <= to; i++) {
+            numbers.add(i);
+        }
+        return numbers;
+    }
+
+    @Test
+    public void iteratesPageByPage() {
+        List<Integer> elements = new ArrayList<Integer>();
+        for (Integer element : new PagedIterable<Integer>(this.client, 10, this.collection(25))) {
+            elements.add(element);
+        }
+        Assert.assertEquals(PagedIterableTest.numbers(1, 25), elements);
+        Assert.assertEquals(3, this.ranges.size());
+    }
+
+    @Test
+    public void iteratesRangeBoundedByFirstAndLast() {
+        List<Integer> elements = new ArrayList<Integer>();
+        for (Integer element : new PagedIterable<Integer>(this.client, 10, this.collection(100), QueryParams.builder()
+            .first(5).last(18).build())) {
+            elements.add(element);
+        }
+        Assert.assertEquals(PagedIterableTest.numbers(5, 18), elements);
+        Assert.assertEquals(2, this.ranges.size());
+    }
+
+    @Test
+    public void stopsWhenProviderIgnoresPaging() {
+        PagedIterable<Integer> iterable = new PagedIterable<Integer>(this.client, 10,
+            new PagedIterable.PageFetcher<Integer>() {
+                @Override
+                public List<Integer> fetch(final QueryParams queryParams) {
+                    PagedIterableTest.this.ranges.add(queryParams.getFirst() + "-" + queryParams.getLast());
+                    return PagedIterableTest.numbers(1, 15);
+                }
+            });
+        List<Integer> elements = new ArrayList<Integer>();
+        for (Integer element : iterable) {
+            elements.add(element);
+        }
+        Assert.assertEquals(PagedIterableTest.numbers(1, 15), elements);
+        Assert.assertEquals(1, this.ranges.size());
+    }
+
+    @Test
+    public void stopsWhenProviderIgnoresPagingOfAFullPage() throws Exception {
+        StringBuilder machines = new StringBuilder();
+        for (int i = 1; i <= 10; i++) {
+            machines.append(i > 1 ? "," : "").append("{\"id\":\"").append(this.provider.getBaseUri()).append("machines/")
+                .append(i).append("\"}");
+        }
+        this.provider.respond("GET", "/cimi/machines", 200, "{\"id\":\"" + this.provider.getBaseUri()
+            + "machines\",\"count\":10,\"machines\":[" + machines + "]}");
+        List<String> ids = new ArrayList<String>();
+        for (Machine machine : Machine.iterateMachines(this.client, 10)) {
+            ids.add(machine.getId());
+        }
+        Assert.assertEquals(10, ids.size());
+        Assert.assertEquals(this.provider.getBaseUri() + "machines/10", ids.get(9));
+        Assert.assertEquals(2, this.provider.getRequests("GET", "/cimi/machines").size());
+        Assert.assertEquals(10, Machine.iterateMachines(this.client, 10).fetchAll(4).size());
+    }
+
+    @Test
+    public void fetchAllStopsWhenProviderIgnoresPagingOfAFullPage() throws Exception {
+        PagedIterable<Integer> iterable = new PagedIterable<Integer>(this.client, 10,
+            new PagedIterable.PageFetcher<Integer>() {
+                @Override
+                public List<Integer> fetch(final QueryParams queryParams) {
+                    PagedIterableTest.this.ranges.add(queryParams.getFirst() + "-" + queryParams.getLast());
+                    return PagedIterableTest.numbers(1, 10);
+                }
+            });
+        Assert.assertEquals(PagedIterableTest.numbers(1, 10), iterable.fetchAll(4));
+        final List<Integer> visited = new ArrayList<Integer>();
+        iterable.visitAll(4, new CollectionVisitor<Integer>() {
+            @Override
+            public void visit(final Integer element) {
+                visited.add(element);
+            }
+        });
+        Assert.assertEquals(PagedIterableTest.numbers(1, 10), visited);
+    }
+
+    @Test
+    public void reportsFetchErrors() {
+        PagedIterable<Integer> iterable = new PagedIterable<Integer>(this.client, 10,
+            new PagedIterable.PageFetcher<Integer>() {
+                @Override
+                public List<Integer> fetch(final QueryParams queryParams) throws CimiClientException {
+                    throw new CimiClientException("boom");
+                }
+            });
+        try {
+            iterable.iterator().hasNext();
+            Assert.fail("error should be reported");
+        } catch (CimiIterationException e) {
+            Assert.assertEquals("boom", e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void closeCancelsBackgroundFetch() throws Exception {
+        final CountDownLatch prefetchStarted = new CountDownLatch(1);
+        final CountDownLatch prefetchInterrupted = new CountDownLatch(1);
+        PagedIterable<Integer> iterable = new PagedIterable<Integer>(this.client, 10,
+            new PagedIterable.PageFetcher<Integer>() {
+                @Override
+                public List<Integer> fetch(final QueryParams queryParams) {
+                    if (queryParams.getFirst() == 1) {
+                        return PagedIterableTest.numbers(1, 10);
+                    }
+                    prefetchStarted.countDown();
+                    try {
+                        Thread.sleep(10000);
+                    } catch (InterruptedException e) {
+                        prefetchInterrupted.countDown();
+                    }
+                    return Collections.emptyList();
+                }
+            });
+        PagedIterable.PagedIterator<Integer> iterator = iterable.iterator();
+        Assert.assertEquals(Integer.valueOf(1), iterator.next());
+        Assert.assertTrue(prefetchStarted.await(5, TimeUnit.SECONDS));
+        iterator.close();
+        Assert.assertTrue(prefetchInterrupted.await(5, TimeUnit.SECONDS));
+        Assert.assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void fetchAllKeepsCollectionOrder() throws Exception {
+        Assert.assertEquals(PagedIterableTest.numbers(1, 95), new PagedIterable<Integer>(this.client, 10, this
+            .collection(95)).fetchAll(4));
+    }
+
+    @Test
+    public void mapDropsNullResults() throws Exception {
+        List<Integer> even = new PagedIterable<Integer>(this.client, 10, this.collection(30)).map(3,
+            new ElementMapper<Integer, Integer>() {
+                @Override
+                public Integer map(final Integer element) {
+                    return element % 2 == 0 ? element : null;
+                }
+            });
+        Assert.assertEquals(15, even.size());
+        Assert.assertEquals(Integer.valueOf(30), even.get(14));
+    }
+
+}
@@ -0,0 +1,147 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2012 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ *  $Id$
+ *
+ */
+package org.ow2.sirocco.cimi.sdk;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RateLimiterTest {
+
+    private static void assertRejected(final RateLimiter limiter, final OperationType operationType)
+        throws CimiClientException {
+        try {
+            limiter.acquire(operationType);
+            Assert.fail("request should be rejected");
+        } catch (CimiRateLimitException e) {
+            Assert.assertEquals(operationType, e.getOperationType());
+        }
+    }
+
+    @Test
+    public void failFastRejectsBeyondBurst() throws Exception {
+        RateLimiter limiter = RateLimiter.builder().globalRate(0.001, 2).mode(RateLimiter.Mode.FAIL_FAST).build();
+        limiter.acquire(OperationType.READ);
+        limiter.acquire(OperationType.CREATE);
+        RateLimiterTest.assertRejected(limiter, OperationType.READ);
+        Assert.assertEquals(1, limiter.getRejectedCount());
+        Assert.assertEquals(0, limiter.getThrottledCount());
+    }
+
+    @Test
+    public void operationLimitOnlyAppliesToItsOperation() throws Exception {
+        RateLimiter limiter = RateLimiter.builder().rate(OperationType.CREATE, 0.001, 1)
+            .mode(RateLimiter.Mode.FAIL_FAST).build();
+        limiter.acquire(OperationType.CREATE);
+        RateLimiterTest.assertRejected(limiter, OperationType.CREATE);
+        for (int i = 0; i < 10; i++) {
+            limiter.acquire(OperationType.READ);
+        }
+    }
+
+    @Test
+    public void blockingWaitsForNextToken() throws Exception {
+        RateLimiter limiter = RateLimiter.builder().globalRate(10, 1).build();
+        limiter.acquire(OperationType.READ);
+        long start = java.lang.System.nanoTime();
+        limiter.acquire(OperationType.READ);
+        long waited = TimeUnit.NANOSECONDS.toMillis(java.lang.System.nanoTime() - start);
+        Assert.assertTrue("waited " + waited, waited >= 50);
+        Assert.assertEquals(1, limiter.getThrottledCount());
+    }
+
+    @Test(timeout = 5000)
+    public void blockingWaitStopsAtTheDeadline() throws Exception {
+        RateLimiter limiter = RateLimiter.builder().globalRate(0.5, 1).build();
+        limiter.acquire(OperationType.READ);
+        RequestContext context = RequestContext.withTimeout(100, TimeUnit.MILLISECONDS);
+        try {
+            limiter.acquire(OperationType.READ);
+            Assert.fail("the deadline should stop the wait");
+        } catch (CimiClientException e) {
+            Assert.assertEquals("Deadline exceeded", e.getMessage());
+        } finally {
+            context.close();
+        }
+    }
+
+    @Test
+    public void tokenOfAbandonedWaitIsGivenBack() throws Exception {
+        RateLimiter limiter = RateLimiter.builder().globalRate(20, 1).build();
+        limiter.acquire(OperationType.READ);
+        RequestContext context = RequestContext.withTimeout(10, TimeUnit.MILLISECONDS);
+        try {
+            limiter.acquire(OperationType.READ);
+            Assert.fail("the deadline should stop the wait");
+        } catch (CimiClientException e) {
+            // expected
+        } finally {
+            context.close();
+        }
+        long start = java.lang.System.nanoTime();
+        limiter.acquire(OperationType.READ);
+        long waited = TimeUnit.NANOSECONDS.toMillis(java.lang.System.nanoTime() - start);
+        Assert.assertTrue("waited " + waited, waited < 60);
+    }
+
+    @Test
+    public void tokenOfInterruptedWaitIsGivenBack() throws Exception {
+        RateLimiter limiter = RateLimiter.builder().globalRate(5, 1).build();
+        limiter.acquire(OperationType.READ);
+        Thread.currentThread().interrupt();
+        try {
+            limiter.acquire(OperationType.READ);
+            Assert.fail("the wait should be interrupted");
+        } catch (CimiClientException e) {
+            Assert.assertTrue(Thread.interrupted());
+        }
+        // the next token comes in 200ms, or in 400ms if the interrupted
+        // request kept its reservation
+        RequestContext context = RequestContext.withTimeout(300, TimeUnit.MILLISECONDS);
+        try {
+            limiter.acquire(OperationType.READ);
+        } finally {
+            context.close();
+        }
+    }
+
+    @Test
+    public void nonPositiveRateIsRejected() {
+        try {
+            RateLimiter.builder().globalRate(0, 1);
+            Assert.fail("a zero rate should be rejected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            RateLimiter.builder().rate(OperationType.READ, -1, 1);
+            Assert.fail("a negative rate should be rejected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+}
@@ -0,0 +1,105 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2012 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ *  $Id$
+ *
+ */
+package org.ow2.sirocco.cimi.sdk;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.ow2.sirocco.cimi.domain.CimiMachine;
+import org.ow2.sirocco.cimi.domain.collection.CimiMachineDiskCollection;
+
+public class ReferenceExpanderTest {
+    private FakeCimiProvider provider;
+
+    private CimiClient client;
+
+    private ReferenceExpander expander;
+
+    @Before
+    public void setUp() throws Exception {
+        this.provider = new FakeCimiProvider();
+        this.provider.respond("GET", "/cimi/machines/1/disks", 200, "{\"id\":\"" + this.provider.getBaseUri()
+            + "machines/1/disks\",\"count\":2}");
+        this.client = this.provider.login(CimiClient.Options.build());
+        this.expander = new ReferenceExpander(this.client);
+    }
+
+    @After
+    public void tearDown() {
+        this.client.close();
+        this.provider.stop();
+    }
+
+    private CimiMachine machine(final Integer diskCount, final boolean expanded) {
+        CimiMachineDiskCollection disks = new CimiMachineDiskCollection();
+        disks.setHref(this.provider.getBaseUri() + "machines/1/disks");
+        if (expanded) {
+            disks.setId(disks.getHref());
+        }
+        disks.setCount(diskCount);
+        CimiMachine machine = new CimiMachine();
+        machine.setId(this.provider.getBaseUri() + "machines/1");
+        machine.setDisks(disks);
+        return machine;
+    }
+
+    private int diskRequests() {
+        return this.provider.getRequests("GET", "/cimi/machines/1/disks").size();
+    }
+
+    @Test
+    public void resolvesAbsentCollection() throws Exception {
+        CimiMachine machine = this.machine(null, false);
+        Assert.assertEquals(1, this.expander.expand(machine, "disks"));
+        Assert.assertEquals(1, this.diskRequests());
+        Assert.assertEquals(Integer.valueOf(2), machine.getDisks().getCount());
+        Assert.assertNotNull(machine.getDisks().getId());
+    }
+
+    @Test
+    public void keepsCollectionExpandedEmpty() throws Exception {
+        CimiMachine machine = this.machine(0, false);
+        Assert.assertEquals(0, this.expander.expand(machine, "disks"));
+        Assert.assertEquals(0, this.diskRequests());
+        Assert.assertEquals(Integer.valueOf(0), machine.getDisks().getCount());
+    }
+
+    @Test
+    public void stopsInspectingOnceProviderExpands() throws Exception {
+        Assert.assertEquals(0, this.expander.expand(this.machine(0, false), "disks"));
+        Assert.assertEquals(0, this.expander.expand(this.machine(null, false), "disks"));
+        Assert.assertEquals(0, this.diskRequests());
+    }
+
+    @Test
+    public void keepsResolvingOnceProviderIgnoredExpand() throws Exception {
+        Assert.assertEquals(1, this.expander.expand(this.machine(null, false), "disks"));
+        Assert.assertEquals(0, this.expander.expand(this.machine(0, false), "disks"));
+        Assert.assertEquals(1, this.expander.expand(this.machine(null, false), "*"));
+        Assert.assertEquals(2, this.diskRequests());
+    }
+
+}
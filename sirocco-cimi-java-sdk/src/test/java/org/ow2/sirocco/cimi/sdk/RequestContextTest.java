@@ -0,0 +1,102 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2012 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ *  $Id$
+ *
+ */
+package org.ow2.sirocco.cimi.sdk;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ow2.sirocco.cimi.domain.CimiMachine;
+
+public class RequestContextTest {
+
+    @Test
+    public void innerContextIsCappedByOuterOne() {
+        RequestContext outer = RequestContext.withTimeout(100, TimeUnit.MILLISECONDS);
+        try {
+            RequestContext inner = RequestContext.withTimeout(10, TimeUnit.SECONDS);
+            try {
+                Assert.assertSame(inner, RequestContext.current());
+                Assert.assertTrue(inner.getRemainingTime(TimeUnit.MILLISECONDS) <= 100);
+            } finally {
+                inner.close();
+            }
+            Assert.assertSame(outer, RequestContext.current());
+        } finally {
+            outer.close();
+        }
+        Assert.assertNull(RequestContext.current());
+    }
+
+    @Test
+    public void expiredContextFailsWithoutSendingTheRequest() throws Exception {
+        FakeCimiProvider provider = new FakeCimiProvider();
+        CimiClient client = provider.login(CimiClient.Options.build());
+        RequestContext context = RequestContext.withTimeout(1, TimeUnit.MILLISECONDS);
+        try {
+            Thread.sleep(10);
+            Assert.assertTrue(context.isExpired());
+            client.getCimiObjectByReference("machines/1", CimiMachine.class);
+            Assert.fail("the deadline has passed");
+        } catch (CimiClientException e) {
+            Assert.assertEquals("Deadline exceeded", e.getMessage());
+        } finally {
+            context.close();
+            client.close();
+            provider.stop();
+        }
+        Assert.assertTrue(provider.getRequests("GET", "/cimi/machines/1").isEmpty());
+    }
+
+    @Test(timeout = 10000)
+    public void slowResponseIsCutAtTheDeadline() throws Exception {
+        FakeCimiProvider provider = new FakeCimiProvider();
+        provider.handle("GET", "/cimi/machines/1", new FakeCimiProvider.Handler() {
+            @Override
+            public FakeCimiProvider.Response handle(final FakeCimiProvider.Request request) {
+                try {
+                    Thread.sleep(3000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return new FakeCimiProvider.Response(200, "{}");
+            }
+        });
+        CimiClient client = provider.login(CimiClient.Options.build());
+        long start = java.lang.System.nanoTime();
+        RequestContext context = RequestContext.withTimeout(300, TimeUnit.MILLISECONDS);
+        try {
+            client.getCimiObjectByReference("machines/1", CimiMachine.class);
+            Assert.fail("the deadline should cut the request");
+        } catch (CimiClientException e) {
+            Assert.assertTrue(TimeUnit.NANOSECONDS.toMillis(java.lang.System.nanoTime() - start) < 2000);
+        } finally {
+            context.close();
+            client.close();
+            provider.stop();
+        }
+    }
+
+}
@@ -0,0 +1,135 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2012 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ *  $Id$
+ *
+ */
+package org.ow2.sirocco.cimi.sdk;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.ws.rs.core.MediaType;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ow2.sirocco.cimi.domain.CimiMachine;
+
+public class ResponseCacheTest {
+    private static final byte[] BODY = "{}".getBytes();
+
+    /** current time of the caches, in nanoseconds */
+    private final AtomicLong now = new AtomicLong();
+
+    private ResponseCache cache(final int maximumSize, final long ttl) {
+        Map<String, Long> ttls = new HashMap<String, Long>();
+        ttls.put("machineConfigs", ttl);
+        ttls.put("machineImages", ttl);
+        return new ResponseCache(ResponseCacheConfig.builder().maximumSize(maximumSize).notFoundTtl(ttl).build(), ttls) {
+            @Override
+            long nanoTime() {
+                return ResponseCacheTest.this.now.get();
+            }
+        };
+    }
+
+    private void advance(final long millis) {
+        this.now.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    @Test
+    public void findsCollectionOfResourcePaths() {
+        ResponseCache cache = this.cache(10, 60000);
+        Assert.assertEquals("machineConfigs", cache.findCollectionPath("machineConfigs"));
+        Assert.assertEquals("machineConfigs", cache.findCollectionPath("machineConfigs/1"));
+        Assert.assertEquals("machineConfigs", cache.findCollectionPath("machineConfigs?$first=1"));
+        Assert.assertNull(cache.findCollectionPath("machineConfigsOld/1"));
+        Assert.assertNull(cache.findCollectionPath("machines/1"));
+    }
+
+    @Test
+    public void expiresEntriesAfterTheirTtl() {
+        ResponseCache cache = this.cache(10, 50);
+        cache.put("a", "machineConfigs", ResponseCacheTest.BODY, MediaType.APPLICATION_JSON_TYPE);
+        cache.putNotFound("b", "machineConfigs", "not found");
+        this.advance(49);
+        Assert.assertNotNull(cache.get("a"));
+        Assert.assertNotNull(cache.get("b"));
+        this.advance(1);
+        Assert.assertNull(cache.get("a"));
+        Assert.assertNull(cache.get("b"));
+        Assert.assertEquals(2, cache.getHitCount());
+        Assert.assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedEntries() {
+        ResponseCache cache = this.cache(2, 60000);
+        cache.put("a", "machineConfigs", ResponseCacheTest.BODY, MediaType.APPLICATION_JSON_TYPE);
+        cache.put("b", "machineConfigs", ResponseCacheTest.BODY, MediaType.APPLICATION_JSON_TYPE);
+        cache.get("a");
+        cache.put("c", "machineConfigs", ResponseCacheTest.BODY, MediaType.APPLICATION_JSON_TYPE);
+        Assert.assertNotNull(cache.get("a"));
+        Assert.assertNull(cache.get("b"));
+        Assert.assertEquals(1, cache.getEvictionCount());
+        Assert.assertEquals(2, cache.getSize());
+    }
+
+    @Test
+    public void invalidatesOnlyTheResourceTypeOfThePath() {
+        ResponseCache cache = this.cache(10, 60000);
+        cache.put("a", "machineConfigs", ResponseCacheTest.BODY, MediaType.APPLICATION_JSON_TYPE);
+        cache.putNotFound("b", "machineConfigs", "not found");
+        cache.put("c", "machineImages", ResponseCacheTest.BODY, MediaType.APPLICATION_JSON_TYPE);
+        Assert.assertTrue(cache.get("b").isNotFound());
+        cache.invalidate("machineConfigs/1");
+        Assert.assertNull(cache.get("a"));
+        Assert.assertNull(cache.get("b"));
+        Assert.assertNotNull(cache.get("c"));
+        cache.invalidateAll();
+        Assert.assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void clientServesCachedResponsesUntilAWrite() throws Exception {
+        FakeCimiProvider provider = new FakeCimiProvider();
+        provider.respond("GET", "/cimi/machines/1", 200, "{\"id\":\"" + provider.getBaseUri() + "machines/1\"}");
+        provider.respond("DELETE", "/cimi/machines/1", 200, null);
+        CimiClient client = provider.login(CimiClient.Options.build().setResponseCache(
+            ResponseCacheConfig.builder().ttl(Machine.class, 60000).build()));
+        try {
+            CimiMachine first = client.getCimiObjectByReference("machines/1", CimiMachine.class);
+            CimiMachine second = client.getCimiObjectByReference("machines/1", CimiMachine.class);
+            Assert.assertNotSame(first, second);
+            Assert.assertEquals(1, provider.getRequests("GET", "/cimi/machines/1").size());
+            client.deleteRequest(provider.getBaseUri() + "machines/1");
+            client.getCimiObjectByReference("machines/1", CimiMachine.class);
+            Assert.assertEquals(2, provider.getRequests("GET", "/cimi/machines/1").size());
+            Assert.assertEquals(1, client.getResponseCache().getHitCount());
+        } finally {
+            client.close();
+            provider.stop();
+        }
+    }
+
+}
@@ -0,0 +1,83 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2012 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ *  $Id$
+ *
+ */
+package org.ow2.sirocco.cimi.sdk;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that every response gives its connection back to the pool: with a
+ * single pooled connection, a leaked response makes the next request time out
+ * waiting for a connection.
+ */
+public class ResponseReleaseTest {
+    private FakeCimiProvider provider;
+
+    private CimiClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        this.provider = new FakeCimiProvider();
+        this.client = this.provider.login(CimiClient.Options.build().setConnectionPooling(true).setMaxConnectionsPerHost(1)
+            .setMaxTotalConnections(1).setConnectTimeout(2000));
+    }
+
+    @After
+    public void tearDown() {
+        this.client.close();
+        this.provider.stop();
+    }
+
+    private void assertProviderError(final int status, final String path) {
+        try {
+            this.client.deleteRequest(this.provider.getBaseUri() + path);
+            Assert.fail("expected error " + status);
+        } catch (CimiProviderException e) {
+            Assert.assertEquals(Integer.valueOf(status), e.getReturnCode());
+        } catch (CimiClientException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    @Test
+    public void errorResponsesReleaseTheirConnection() throws Exception {
+        this.provider.respond("DELETE", "/cimi/machines/401", 401, "denied");
+        this.provider.respond("DELETE", "/cimi/machines/405", 405, "not allowed");
+        for (int i = 0; i < 3; i++) {
+            this.assertProviderError(401, "machines/401");
+            this.assertProviderError(405, "machines/405");
+        }
+    }
+
+    @Test
+    public void unreadSuccessResponsesReleaseTheirConnection() throws Exception {
+        this.provider.respond("DELETE", "/cimi/machines/1", 200, "{\"id\":\"machines/1\"}");
+        for (int i = 0; i < 3; i++) {
+            Assert.assertNull(this.client.deleteRequest(this.provider.getBaseUri() + "machines/1"));
+        }
+    }
+}
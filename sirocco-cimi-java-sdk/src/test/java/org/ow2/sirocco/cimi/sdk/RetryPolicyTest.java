@@ -0,0 +1,138 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2012 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ *  $Id$
+ *
+ */
+package org.ow2.sirocco.cimi.sdk;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ow2.sirocco.cimi.domain.CimiMachine;
+
+public class RetryPolicyTest {
+
+    private static RetryPolicy.Builder noJitter() {
+        return RetryPolicy.builder().baseDelay(100).maxDelay(1000).jitter(0);
+    }
+
+    @Test
+    public void retriesIdempotentRequestsByDefault() {
+        RetryPolicy policy = RetryPolicy.builder().build();
+        Assert.assertTrue(policy.isRetryable(OperationType.READ));
+        Assert.assertTrue(policy.isRetryable(OperationType.DELETE));
+        Assert.assertFalse(policy.isRetryable(OperationType.CREATE));
+        Assert.assertFalse(policy.isRetryable(OperationType.UPDATE));
+        Assert.assertFalse(policy.isRetryable(OperationType.ACTION));
+    }
+
+    @Test
+    public void delayDoublesUpToMaximum() {
+        RetryPolicy policy = RetryPolicyTest.noJitter().build();
+        Assert.assertEquals(100, policy.computeDelay(1, null));
+        Assert.assertEquals(200, policy.computeDelay(2, null));
+        Assert.assertEquals(400, policy.computeDelay(3, null));
+        Assert.assertEquals(1000, policy.computeDelay(5, null));
+        Assert.assertEquals(1000, policy.computeDelay(100, null));
+    }
+
+    @Test
+    public void jitterStaysWithinBounds() {
+        RetryPolicy policy = RetryPolicy.builder().baseDelay(1000).maxDelay(10000).jitter(0.2).build();
+        for (int i = 0; i < 200; i++) {
+            long delay = policy.computeDelay(1, null);
+            Assert.assertTrue("delay " + delay, delay >= 800 && delay <= 1200);
+        }
+    }
+
+    @Test
+    public void honorsRetryAfterBoundedByMaximum() {
+        RetryPolicy policy = RetryPolicyTest.noJitter().maxDelay(5000).build();
+        Assert.assertEquals(2000, policy.computeDelay(1, "2"));
+        Assert.assertEquals(5000, policy.computeDelay(1, "60"));
+        Assert.assertEquals(100, policy.computeDelay(1, "soon"));
+        SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        long delay = policy.computeDelay(1, format.format(new Date(java.lang.System.currentTimeMillis() + 3000)));
+        Assert.assertTrue("delay " + delay, delay > 1000 && delay <= 3000);
+        Assert.assertEquals(100, RetryPolicyTest.noJitter().honorRetryAfter(false).build().computeDelay(1, "2"));
+    }
+
+    @Test
+    public void retriesUnavailableProviderUntilSuccess() throws Exception {
+        final FakeCimiProvider provider = new FakeCimiProvider();
+        final AtomicInteger failures = new AtomicInteger(2);
+        provider.handle("GET", "/cimi/machines/1", new FakeCimiProvider.Handler() {
+            @Override
+            public FakeCimiProvider.Response handle(final FakeCimiProvider.Request request) {
+                if (failures.getAndDecrement() > 0) {
+                    return new FakeCimiProvider.Response(503, "busy").header("Retry-After", "0");
+                }
+                return new FakeCimiProvider.Response(200, "{\"id\":\"" + provider.getBaseUri() + "machines/1\"}");
+            }
+        });
+        CimiClient client = provider.login(CimiClient.Options.build().setRetryPolicy(
+            RetryPolicy.builder().maxAttempts(3).baseDelay(1).build()));
+        try {
+            Assert.assertNotNull(client.getCimiObjectByReference("machines/1", CimiMachine.class).getId());
+            Assert.assertEquals(3, provider.getRequests("GET", "/cimi/machines/1").size());
+            Assert.assertEquals(2, client.getRetryCount());
+        } finally {
+            client.close();
+            provider.stop();
+        }
+    }
+
+    @Test
+    public void givesUpAfterMaxAttemptsAndSkipsNonRetryableRequests() throws Exception {
+        FakeCimiProvider provider = new FakeCimiProvider();
+        provider.respond("GET", "/cimi/machines/1", 503, "busy");
+        provider.respond("PUT", "/cimi/machines/1", 503, "busy");
+        CimiClient client = provider.login(CimiClient.Options.build().setRetryPolicy(
+            RetryPolicy.builder().maxAttempts(2).baseDelay(1).build()));
+        try {
+            try {
+                client.getCimiObjectByReference("machines/1", CimiMachine.class);
+                Assert.fail("request should fail");
+            } catch (CimiProviderException e) {
+                Assert.assertEquals(Integer.valueOf(503), e.getReturnCode());
+            }
+            Assert.assertEquals(2, provider.getRequests("GET", "/cimi/machines/1").size());
+            try {
+                client.partialUpdateRequest(provider.getBaseUri() + "machines/1", new CimiMachine(), "name");
+                Assert.fail("request should fail");
+            } catch (CimiProviderException e) {
+                Assert.assertEquals(Integer.valueOf(503), e.getReturnCode());
+            }
+            Assert.assertEquals(1, provider.getRequests("PUT", "/cimi/machines/1").size());
+        } finally {
+            client.close();
+            provider.stop();
+        }
+    }
+
+}
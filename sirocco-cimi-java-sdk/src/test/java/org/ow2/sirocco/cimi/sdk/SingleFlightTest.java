@@ -0,0 +1,154 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2012 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ *  $Id$
+ *
+ */
+package org.ow2.sirocco.cimi.sdk;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SingleFlightTest {
+    private final SingleFlight singleFlight = new SingleFlight();
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @After
+    public void tearDown() {
+        this.release.countDown();
+        this.executor.shutdownNow();
+    }
+
+    /**
+     * Returns a call that blocks until released, then returns or throws.
+     */
+    private Callable<String> blockingCall(final CimiClientException error) {
+        return new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                SingleFlightTest.this.calls.incrementAndGet();
+                SingleFlightTest.this.release.await();
+                if (error != null) {
+                    throw error;
+                }
+                return "result";
+            }
+        };
+    }
+
+    private Future<String> submit(final String key, final Callable<String> call) {
+        return this.executor.submit(new Callable<String>() {
+            @Override
+            public String call() throws CimiClientException {
+                return SingleFlightTest.this.singleFlight.execute(key, call);
+            }
+        });
+    }
+
+    private void awaitCoalesced(final long count) throws InterruptedException {
+        for (int i = 0; i < 250 && this.singleFlight.getCoalescedCount() < count; i++) {
+            Thread.sleep(20);
+        }
+        Assert.assertEquals(count, this.singleFlight.getCoalescedCount());
+    }
+
+    @Test
+    public void concurrentCallsShareOneExecution() throws Exception {
+        List<Future<String>> results = new ArrayList<Future<String>>();
+        for (int i = 0; i < 5; i++) {
+            results.add(this.submit("GET machines/1", this.blockingCall(null)));
+        }
+        this.awaitCoalesced(4);
+        this.release.countDown();
+        for (Future<String> result : results) {
+            Assert.assertEquals("result", result.get(5, TimeUnit.SECONDS));
+        }
+        Assert.assertEquals(1, this.calls.get());
+    }
+
+    @Test
+    public void concurrentCallsShareTheFailure() throws Exception {
+        CimiClientException error = new CimiClientException("boom");
+        Future<String> first = this.submit("GET machines/1", this.blockingCall(error));
+        Future<String> second = this.submit("GET machines/1", this.blockingCall(error));
+        this.awaitCoalesced(1);
+        this.release.countDown();
+        List<Future<String>> results = new ArrayList<Future<String>>();
+        results.add(first);
+        results.add(second);
+        for (Future<String> result : results) {
+            try {
+                result.get(5, TimeUnit.SECONDS);
+                Assert.fail("the failure should be shared");
+            } catch (ExecutionException e) {
+                Assert.assertSame(error, e.getCause());
+            }
+        }
+        Assert.assertEquals(1, this.calls.get());
+    }
+
+    @Test
+    public void distinctKeysAndLaterCallsAreNotCoalesced() throws Exception {
+        this.release.countDown();
+        Assert.assertEquals("result", this.singleFlight.execute("GET machines/1", this.blockingCall(null)));
+        Assert.assertEquals("result", this.singleFlight.execute("GET machines/1", this.blockingCall(null)));
+        Assert.assertEquals("result", this.singleFlight.execute("GET machines/2", this.blockingCall(null)));
+        Assert.assertEquals(3, this.calls.get());
+        Assert.assertEquals(0, this.singleFlight.getCoalescedCount());
+    }
+
+    @Test(timeout = 5000)
+    public void waiterStopsAtItsDeadline() throws Exception {
+        Future<String> first = this.submit("GET machines/1", this.blockingCall(null));
+        while (this.calls.get() == 0) {
+            Thread.sleep(5);
+        }
+        RequestContext context = RequestContext.withTimeout(100, TimeUnit.MILLISECONDS);
+        try {
+            this.singleFlight.execute("GET machines/1", this.blockingCall(null));
+            Assert.fail("the deadline should stop the wait");
+        } catch (CimiClientException e) {
+            Assert.assertEquals("Deadline exceeded", e.getMessage());
+        } finally {
+            context.close();
+        }
+        this.release.countDown();
+        Assert.assertEquals("result", first.get(5, TimeUnit.SECONDS));
+    }
+
+}
@@ -0,0 +1,122 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2012 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ *  $Id$
+ *
+ */
+package org.ow2.sirocco.cimi.sdk;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.ow2.sirocco.cimi.domain.CimiMachine;
+import org.ow2.sirocco.cimi.domain.CimiSystem;
+import org.ow2.sirocco.cimi.domain.CimiSystemMachine;
+import org.ow2.sirocco.cimi.domain.collection.CimiSystemMachineCollection;
+
+public class SystemSnapshotTest {
+    private FakeCimiProvider provider;
+
+    private CimiClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        this.provider = new FakeCimiProvider();
+        this.client = this.provider.login(CimiClient.Options.build());
+    }
+
+    @After
+    public void tearDown() {
+        this.client.close();
+        this.provider.stop();
+    }
+
+    private CimiSystemMachine systemMachine(final String machineId, final boolean expanded) {
+        CimiMachine cimiMachine = new CimiMachine();
+        cimiMachine.setHref(machineId);
+        if (expanded) {
+            cimiMachine.setId(machineId);
+            cimiMachine.setName("expanded");
+        }
+        CimiSystemMachine cimiSystemMachine = new CimiSystemMachine();
+        cimiSystemMachine.setMachine(cimiMachine);
+        return cimiSystemMachine;
+    }
+
+    private System system() {
+        String base = this.provider.getBaseUri();
+        CimiSystemMachineCollection machines = new CimiSystemMachineCollection();
+        machines.setHref(base + "systems/1/machines");
+        machines.setArray(new CimiSystemMachine[] {this.systemMachine(base + "machines/1", true),
+            this.systemMachine(base + "machines/2", false)});
+        CimiSystem cimiSystem = new CimiSystem();
+        cimiSystem.setId(base + "systems/1");
+        cimiSystem.setName("system");
+        Map<String, String> properties = new HashMap<String, String>();
+        properties.put("tier", "web");
+        cimiSystem.setProperties(properties);
+        cimiSystem.setMachines(machines);
+        return new System(this.client, cimiSystem);
+    }
+
+    @Test
+    public void buildsComponentsFromExpandedEntries() throws Exception {
+        String base = this.provider.getBaseUri();
+        // no filtering on ids: the unexpanded machine is fetched on its own
+        this.provider.respond("GET", "/cimi/machines", 400, null);
+        this.provider.respond("GET", "/cimi/machines/2", 200, "{\"id\":\"" + base + "machines/2\",\"name\":\"fetched\"}");
+
+        SystemSnapshot snapshot = this.system().snapshot();
+
+        Assert.assertEquals(2, snapshot.getMachines().size());
+        Assert.assertEquals("expanded", snapshot.getMachines().get(0).getMachine().getName());
+        Assert.assertEquals("fetched", snapshot.getMachines().get(1).getMachine().getName());
+        Assert.assertTrue(this.provider.getRequests("GET", "/cimi/machines/1").isEmpty());
+        Assert.assertEquals(1, this.provider.getRequests("GET", "/cimi/machines/2").size());
+        Assert.assertTrue(snapshot.getVolumes().isEmpty());
+    }
+
+    @Test
+    public void isNotAffectedByLaterChangesToTheSystem() throws Exception {
+        this.provider.respond("GET", "/cimi/machines", 400, null);
+        this.provider.respond("GET", "/cimi/machines/2", 200, "{\"id\":\"" + this.provider.getBaseUri()
+            + "machines/2\"}");
+        System system = this.system();
+        SystemSnapshot snapshot = system.snapshot();
+
+        system.setName("renamed");
+        system.addProperty("tier", "db");
+        Assert.assertEquals(system.getId(), snapshot.getId());
+        Assert.assertEquals("system", snapshot.getName());
+        Assert.assertEquals("web", snapshot.getProperties().get("tier"));
+        try {
+            snapshot.getProperties().put("tier", "db");
+            Assert.fail("properties should not be modifiable");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+}
@@ -0,0 +1,107 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2012 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ *  $Id$
+ *
+ */
+package org.ow2.sirocco.cimi.sdk.auth;
+
+import java.io.File;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class EncryptedTokenStoreTest {
+    private File directory;
+
+    private EncryptedTokenStore store;
+
+    @Before
+    public void setUp() throws Exception {
+        this.directory = File.createTempFile("tokens", "");
+        this.directory.delete();
+        this.store = new EncryptedTokenStore(new File(this.directory, "cache"));
+    }
+
+    @After
+    public void tearDown() {
+        File cache = new File(this.directory, "cache");
+        File[] files = cache.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        cache.delete();
+        this.directory.delete();
+    }
+
+    @Test
+    public void savedTokenIsLoadedWithThePassword() {
+        this.store.save("key", "secret", new KeystoneTokenManager.Token("token-1", 1234L));
+        KeystoneTokenManager.Token token = this.store.load("key", "secret");
+        Assert.assertEquals("token-1", token.getId());
+        Assert.assertEquals(1234L, token.getExpiresAt());
+    }
+
+    @Test
+    public void tokenIsNotStoredInClear() throws Exception {
+        this.store.save("key", "secret", new KeystoneTokenManager.Token("token-1", 1234L));
+        File[] files = new File(this.directory, "cache").listFiles();
+        Assert.assertEquals(1, files.length);
+        byte[] data = new byte[(int) files[0].length()];
+        java.io.FileInputStream in = new java.io.FileInputStream(files[0]);
+        try {
+            Assert.assertEquals(data.length, in.read(data));
+        } finally {
+            in.close();
+        }
+        Assert.assertFalse(new String(data, "ISO-8859-1").contains("token-1"));
+    }
+
+    @Test
+    public void wrongPasswordOrKeyLoadsNothing() {
+        this.store.save("key", "secret", new KeystoneTokenManager.Token("token-1", 1234L));
+        KeystoneTokenManager.Token token = this.store.load("key", "other");
+        Assert.assertTrue(token == null || !"token-1".equals(token.getId()));
+        Assert.assertNull(this.store.load("other-key", "secret"));
+    }
+
+    @Test
+    public void leftoverTemporaryFileIsReplaced() throws Exception {
+        this.store.save("key", "secret", new KeystoneTokenManager.Token("token-1", 1234L));
+        File file = new File(this.directory, "cache").listFiles()[0];
+        File tmpFile = new File(file.getPath() + ".tmp");
+        Assert.assertTrue(tmpFile.createNewFile());
+        this.store.save("key", "secret", new KeystoneTokenManager.Token("token-2", 5678L));
+        Assert.assertFalse(tmpFile.exists());
+        Assert.assertEquals("token-2", this.store.load("key", "secret").getId());
+    }
+
+    @Test
+    public void removedTokenIsForgotten() {
+        this.store.save("key", "secret", new KeystoneTokenManager.Token("token-1", 1234L));
+        this.store.remove("key");
+        Assert.assertNull(this.store.load("key", "secret"));
+    }
+}
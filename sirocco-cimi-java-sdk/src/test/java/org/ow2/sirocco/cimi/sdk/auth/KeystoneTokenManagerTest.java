@@ -0,0 +1,267 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2012 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ *  $Id$
+ *
+ */
+package org.ow2.sirocco.cimi.sdk.auth;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.bind.DatatypeConverter;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.ow2.sirocco.cimi.sdk.CimiClientException;
+import org.ow2.sirocco.cimi.sdk.RequestContext;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class KeystoneTokenManagerTest {
+    private HttpServer keystone;
+
+    private final AtomicInteger requestCount = new AtomicInteger();
+
+    private volatile int status = 200;
+
+    private volatile String body;
+
+    private volatile long delay;
+
+    private final List<KeystoneTokenManager> managers = new ArrayList<KeystoneTokenManager>();
+
+    @Before
+    public void setUp() throws Exception {
+        this.keystone = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.keystone.setExecutor(Executors.newCachedThreadPool());
+        this.keystone.createContext("/v2.0/tokens", new HttpHandler() {
+            @Override
+            public void handle(final HttpExchange exchange) throws IOException {
+                try {
+                    int n = KeystoneTokenManagerTest.this.requestCount.incrementAndGet();
+                    if (KeystoneTokenManagerTest.this.delay > 0) {
+                        Thread.sleep(KeystoneTokenManagerTest.this.delay);
+                    }
+                    String response = KeystoneTokenManagerTest.this.body != null ? KeystoneTokenManagerTest.this.body
+                        : KeystoneTokenManagerTest.tokenResponse("token-" + n, 3600 * 1000);
+                    byte[] bytes = response.getBytes("UTF-8");
+                    exchange.getResponseHeaders().add("Content-Type", "application/json");
+                    exchange.sendResponseHeaders(KeystoneTokenManagerTest.this.status, bytes.length);
+                    OutputStream out = exchange.getResponseBody();
+                    out.write(bytes);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+        this.keystone.start();
+    }
+
+    @After
+    public void tearDown() {
+        for (KeystoneTokenManager manager : this.managers) {
+            manager.close();
+        }
+        this.keystone.stop(0);
+    }
+
+    private static String tokenResponse(final String id, final long validity) {
+        java.util.Calendar expires = java.util.Calendar.getInstance();
+        expires.setTimeInMillis(java.lang.System.currentTimeMillis() + validity);
+        return "{\"access\":{\"token\":{\"id\":\"" + id + "\",\"expires\":\"" + DatatypeConverter.printDateTime(expires)
+            + "\"}}}";
+    }
+
+    private KeystoneTokenManager manager(final int readTimeout) {
+        KeystoneTokenManager manager = new KeystoneTokenManager("http://127.0.0.1:" + this.keystone.getAddress().getPort()
+            + "/v2.0", "tenant", "user", "password", null, 1000, readTimeout);
+        this.managers.add(manager);
+        return manager;
+    }
+
+    @Test
+    public void tokenIsRequestedOnceAndReused() throws Exception {
+        KeystoneTokenManager manager = this.manager(5000);
+        Assert.assertEquals("token-1", manager.getToken().getId());
+        Assert.assertEquals("token-1", manager.getToken().getId());
+        Assert.assertEquals(1, this.requestCount.get());
+    }
+
+    @Test
+    public void concurrentCallersShareOneRequest() throws Exception {
+        this.delay = 200;
+        final KeystoneTokenManager manager = this.manager(5000);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> ids = new ArrayList<Future<String>>();
+            for (int i = 0; i < 8; i++) {
+                ids.add(executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        return manager.getToken().getId();
+                    }
+                }));
+            }
+            for (Future<String> id : ids) {
+                Assert.assertEquals("token-1", id.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        Assert.assertEquals(1, this.requestCount.get());
+    }
+
+    @Test
+    public void rejectedTokenIsRenewedOnce() throws Exception {
+        KeystoneTokenManager manager = this.manager(5000);
+        Assert.assertEquals("token-1", manager.getToken().getId());
+        Assert.assertEquals("token-2", manager.renew("token-1").getId());
+        Assert.assertEquals("token-2", manager.renew("token-1").getId());
+        Assert.assertEquals(2, this.requestCount.get());
+    }
+
+    @Test
+    public void tokenCloseToExpiryIsReplaced() throws Exception {
+        this.body = KeystoneTokenManagerTest.tokenResponse("short-lived", 10 * 1000);
+        KeystoneTokenManager manager = this.manager(5000);
+        Assert.assertEquals("short-lived", manager.getToken().getId());
+        this.body = null;
+        Assert.assertEquals("token-2", manager.getToken().getId());
+    }
+
+    @Test
+    public void errorStatusIsReportedWithItsBody() throws Exception {
+        this.status = 500;
+        this.body = "{\"error\":\"backend down\"}";
+        try {
+            this.manager(5000).getToken();
+            Assert.fail("expected a failure");
+        } catch (CimiClientException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("500"));
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("backend down"));
+        }
+    }
+
+    @Test
+    public void unreadableResponseKeepsTheCause() throws Exception {
+        this.body = "{\"access\":";
+        try {
+            this.manager(5000).getToken();
+            Assert.fail("expected a failure");
+        } catch (CimiClientException e) {
+            Assert.assertNotNull(e.getCause());
+        }
+        this.body = "{\"unexpected\":true}";
+        try {
+            this.manager(5000).getToken();
+            Assert.fail("expected a failure");
+        } catch (CimiClientException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("Unable to parse Keystone response"));
+            Assert.assertFalse(e.getMessage(), e.getMessage().endsWith("null"));
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void slowKeystoneIsTimedOut() throws Exception {
+        this.delay = 3000;
+        long start = java.lang.System.nanoTime();
+        try {
+            this.manager(300).getToken();
+            Assert.fail("expected a timeout");
+        } catch (CimiClientException e) {
+            // expected
+        }
+        Assert.assertTrue(TimeUnit.NANOSECONDS.toMillis(java.lang.System.nanoTime() - start) < 2500);
+    }
+
+    @Test(timeout = 10000)
+    public void waitIsBoundedByTheRequestContext() throws Exception {
+        this.delay = 3000;
+        KeystoneTokenManager manager = this.manager(10000);
+        RequestContext context = RequestContext.withTimeout(200, TimeUnit.MILLISECONDS);
+        long start = java.lang.System.nanoTime();
+        try {
+            manager.getToken();
+            Assert.fail("expected a timeout");
+        } catch (CimiClientException e) {
+            // expected
+        } finally {
+            context.close();
+        }
+        Assert.assertTrue(TimeUnit.NANOSECONDS.toMillis(java.lang.System.nanoTime() - start) < 2500);
+    }
+
+    @Test(timeout = 10000)
+    public void hungEndpointDoesNotBlockOtherManagers() throws Exception {
+        HttpServer hung = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        hung.createContext("/v2.0/tokens", new HttpHandler() {
+            @Override
+            public void handle(final HttpExchange exchange) throws IOException {
+                try {
+                    Thread.sleep(5000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                exchange.close();
+            }
+        });
+        hung.start();
+        try {
+            final KeystoneTokenManager hungManager = new KeystoneTokenManager("http://127.0.0.1:"
+                + hung.getAddress().getPort() + "/v2.0", "tenant", "user", "password", null, 1000, 10000);
+            this.managers.add(hungManager);
+            Thread waiter = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        hungManager.getToken();
+                    } catch (CimiClientException e) {
+                        // expected
+                    }
+                }
+            };
+            waiter.setDaemon(true);
+            waiter.start();
+            Thread.sleep(100);
+            long start = java.lang.System.nanoTime();
+            Assert.assertEquals("token-1", this.manager(5000).getToken().getId());
+            Assert.assertTrue(TimeUnit.NANOSECONDS.toMillis(java.lang.System.nanoTime() - start) < 2000);
+        } finally {
+            hung.stop(0);
+        }
+    }
+}